@@ -7,3 +7,77 @@ CREATE TABLE IF NOT EXISTS subscription_reminders (
     UNIQUE KEY unique_reminder (subscription_id, reminder_type)
 );
 
+-- Background queue for POI distance / tour length recomputation
+CREATE TABLE IF NOT EXISTS distance_jobs (
+    id INT AUTO_INCREMENT PRIMARY KEY,
+    batch_id VARCHAR(36) NOT NULL,
+    job_type VARCHAR(10) NOT NULL,
+    target_id INT NOT NULL,
+    requested_by INT NULL,
+    status VARCHAR(20) NOT NULL DEFAULT 'PENDING',
+    attempts INT NOT NULL DEFAULT 0,
+    last_error VARCHAR(500) NULL,
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
+    INDEX idx_distance_jobs_status (status, id),
+    INDEX idx_distance_jobs_batch (batch_id)
+);
+
+-- Per-city content versions and change log for map content delta sync
+CREATE TABLE IF NOT EXISTS content_versions (
+    city_id INT PRIMARY KEY,
+    version BIGINT NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS map_change_log (
+    city_id INT NOT NULL,
+    version BIGINT NOT NULL,
+    map_id INT NULL,
+    entity_type VARCHAR(10) NOT NULL,
+    entity_id INT NOT NULL,
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (city_id, version),
+    INDEX idx_map_change_log_created (created_at)
+);
+
+-- Immutable compressed snapshots of published map content (customer reads, downloads)
+CREATE TABLE IF NOT EXISTS map_version_snapshots (
+    id INT AUTO_INCREMENT PRIMARY KEY,
+    map_id INT NOT NULL,
+    city_id INT NOT NULL,
+    version_id INT NULL,
+    content_version BIGINT NOT NULL,
+    refreshed TINYINT(1) NOT NULL DEFAULT 0,
+    content MEDIUMBLOB NOT NULL,
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    INDEX idx_map_version_snapshots_map (map_id, id),
+    INDEX idx_map_version_snapshots_version (version_id),
+    FOREIGN KEY (map_id) REFERENCES maps(id) ON DELETE CASCADE,
+    FOREIGN KEY (version_id) REFERENCES map_versions(id) ON DELETE SET NULL
+);
+
+-- Current offline package of each city (files are stored by SHA-256 under gcm.packages.dir)
+CREATE TABLE IF NOT EXISTS map_packages (
+    city_id INT PRIMARY KEY,
+    package_hash CHAR(64) NOT NULL,
+    previous_hash CHAR(64) NULL,
+    size_bytes BIGINT NOT NULL,
+    content_version BIGINT NOT NULL,
+    built_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
+    FOREIGN KEY (city_id) REFERENCES cities(id) ON DELETE CASCADE
+);
+
+-- Autosaved edits of map drafts since the draft request was last written in full
+CREATE TABLE IF NOT EXISTS map_draft_ops (
+    map_id INT NOT NULL,
+    user_id INT NOT NULL,
+    sequence INT NOT NULL,
+    changes_blob MEDIUMBLOB NOT NULL,
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (map_id, user_id, sequence)
+);
+
+-- Row versions of maps, POIs and tours; publishing/approving map edits is compare-and-set on them
+ALTER TABLE maps ADD COLUMN version INT NOT NULL DEFAULT 0;
+ALTER TABLE pois ADD COLUMN version INT NOT NULL DEFAULT 0;
+ALTER TABLE tours ADD COLUMN version INT NOT NULL DEFAULT 0;
@@ -46,6 +46,9 @@ public class GCMClient extends AbstractClient {
     /** Callbacks for async requests (requestId -> callback). Response is delivered on handler thread. */
     private final Map<UUID, Consumer<Response>> asyncCallbacks = new ConcurrentHashMap<>();
 
+    /** Stored catalog/map/purchase responses; unchanged ones come back as NOT_MODIFIED. */
+    private final ResponseCache responseCache = new ResponseCache();
+
     /**
      * Private constructor to enforce Singleton pattern.
      */
@@ -132,6 +135,7 @@ public class GCMClient extends AbstractClient {
         this.currentUserId = null;
         this.currentUsername = null;
         this.currentRole = null;
+        responseCache.clear();
     }
 
     public Integer getCurrentUserId() {
@@ -199,13 +203,32 @@ public class GCMClient extends AbstractClient {
         }
     }
 
+    /**
+     * Send a message; reads that have a stored response ask only for changes (ResponseCache).
+     */
+    @Override
+    public void sendToServer(Object msg) throws IOException {
+        if (msg instanceof Request) {
+            responseCache.prepare((Request) msg);
+        }
+        try {
+            super.sendToServer(msg);
+        } catch (IOException e) {
+            if (msg instanceof Request) {
+                responseCache.forget((Request) msg);
+            }
+            throw e;
+        }
+    }
+
     @Override
     protected void handleMessageFromServer(Object msg) {
         System.out.println("GCMClient: handleMessageFromServer called with: " + msg.getClass().getName());
 
         // If it's a Response, deliver to sync waiter or async callback
         if (msg instanceof Response) {
-            Response resp = (Response) msg;
+            Response resp = responseCache.complete((Response) msg);
+            msg = resp;
             if (pendingSyncRequestId != null && pendingSyncRequestId.equals(resp.getRequestId())) {
                 responseQueue.offer(resp);
             } else {
@@ -0,0 +1,159 @@
+package client;
+
+import common.MessageType;
+import common.Request;
+import common.Response;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Last response of each conditional read, so it is only downloaded again when it changed.
+ *
+ * Outgoing requests of the cached types get the ETag of the stored response
+ * (Request#setIfNoneMatch); a NOT_MODIFIED answer is replaced with a copy of the stored payload
+ * before screens see it, so they handle it like a normal response. Entries are keyed by message
+ * type, session and payload, and the least recently used ones are dropped beyond MAX_ENTRIES.
+ */
+public class ResponseCache {
+
+    private static final int MAX_ENTRIES = 64;
+
+    /** Reads the server answers with an ETag. */
+    private static final Set<MessageType> CACHED_TYPES = EnumSet.of(
+            MessageType.GET_CITIES_CATALOG,
+            MessageType.GET_CITIES,
+            MessageType.GET_MAPS_FOR_CITY,
+            MessageType.GET_MAP_CONTENT,
+            MessageType.GET_MY_PURCHASES);
+
+    private static final class Entry {
+        final String etag;
+        final byte[] payload;
+
+        Entry(String etag, byte[] payload) {
+            this.etag = etag;
+            this.payload = payload;
+        }
+    }
+
+    private static final class Pending {
+        final String key;
+        /** Entry whose ETag was sent, kept in case it is evicted before the answer arrives. */
+        final Entry sent;
+
+        Pending(String key, Entry sent) {
+            this.key = key;
+            this.sent = sent;
+        }
+    }
+
+    private final Map<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+    // Request id -> cache key, until the response arrives
+    private final Map<UUID, Pending> pending = new ConcurrentHashMap<>();
+
+    /**
+     * Mark an outgoing request as conditional if a response to it is stored.
+     */
+    public void prepare(Request request) {
+        if (!CACHED_TYPES.contains(request.getType())) return;
+        String key = keyOf(request);
+        if (key == null) return;
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(key);
+        }
+        if (entry != null) request.setIfNoneMatch(entry.etag);
+        pending.put(request.getRequestId(), new Pending(key, entry));
+    }
+
+    /**
+     * Store a tagged response, or complete a NOT_MODIFIED one with the stored payload.
+     *
+     * @return the response to hand to the screens
+     */
+    public Response complete(Response response) {
+        Pending request = pending.remove(response.getRequestId());
+        if (request == null) return response;
+        if (response.isNotModified()) {
+            Object payload = request.sent != null ? deserialize(request.sent.payload) : null;
+            if (payload == null) {
+                System.err.println("ResponseCache: stored payload unreadable for " + request.key);
+                return response;
+            }
+            return response.withCachedPayload(payload);
+        }
+        if (response.isOk() && response.getEtag() != null) {
+            byte[] payload = serialize(response.getPayload());
+            if (payload != null) {
+                synchronized (entries) {
+                    entries.put(request.key, new Entry(response.getEtag(), payload));
+                }
+            }
+        }
+        return response;
+    }
+
+    /** The request was not sent; no response will come. */
+    public void forget(Request request) {
+        pending.remove(request.getRequestId());
+    }
+
+    /** Drop all stored responses (e.g. on logout). */
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    private static String keyOf(Request request) {
+        byte[] payload = serialize(request.getPayload());
+        if (payload == null) return null;
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(String.valueOf(request.getSessionToken()).getBytes());
+            digest.update(payload);
+            StringBuilder sb = new StringBuilder(request.getType().name()).append(':');
+            for (byte b : digest.digest()) {
+                sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            return null;
+        }
+    }
+
+    private static byte[] serialize(Object value) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(value);
+        } catch (IOException e) {
+            return null;
+        }
+        return bytes.toByteArray();
+    }
+
+    private static Object deserialize(byte[] data) {
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(data))) {
+            return in.readObject();
+        } catch (IOException | ClassNotFoundException e) {
+            return null;
+        }
+    }
+}
@@ -13,6 +13,7 @@ import javafx.collections.ObservableList;
 import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
 import javafx.fxml.FXMLLoader;
+import javafx.geometry.Orientation;
 import javafx.scene.Node;
 import javafx.scene.Parent;
 import javafx.scene.Scene;
@@ -234,6 +235,9 @@ public class CatalogSearchScreen implements SearchControl.SearchResultCallback {
             });
         }
 
+        // Lazy loading: fetch the next page when the results list is scrolled near the bottom
+        resultsListView.skinProperty().addListener((obs, oldSkin, newSkin) -> installLazyLoading());
+
         // Search mode change listeners
         searchModeGroup.selectedToggleProperty().addListener((obs, oldVal, newVal) -> {
             updateSearchInputs();
@@ -249,6 +253,56 @@ public class CatalogSearchScreen implements SearchControl.SearchResultCallback {
         connectToServer();
     }
 
+    /**
+     * Hook the results list's vertical scroll bar so the next page is requested
+     * when the user scrolls past 85% of the loaded items.
+     */
+    private void installLazyLoading() {
+        for (Node node : resultsListView.lookupAll(".scroll-bar")) {
+            if (node instanceof ScrollBar && ((ScrollBar) node).getOrientation() == Orientation.VERTICAL) {
+                ScrollBar bar = (ScrollBar) node;
+                bar.valueProperty().addListener((obs, oldVal, newVal) -> {
+                    if (newVal.doubleValue() >= bar.getMax() * 0.85) {
+                        loadMoreResults();
+                    }
+                });
+                return;
+            }
+        }
+    }
+
+    private void loadMoreResults() {
+        if (searchControl != null && searchControl.hasMoreResults()) {
+            updateStatus("Loading more results...", "#667eea");
+            searchControl.loadNextPage();
+        }
+    }
+
+    /**
+     * If the loaded page does not fill the list (no scroll bar yet), keep loading.
+     */
+    private void loadMoreIfNotScrollable() {
+        Platform.runLater(() -> {
+            for (Node node : resultsListView.lookupAll(".scroll-bar")) {
+                if (node instanceof ScrollBar && ((ScrollBar) node).getOrientation() == Orientation.VERTICAL
+                        && node.isVisible()) {
+                    return;
+                }
+            }
+            loadMoreResults();
+        });
+    }
+
+    private void updateResultCount() {
+        int totalMaps = searchResults.stream().mapToInt(CitySearchResult::getTotalMaps).sum();
+        int total = searchControl != null ? searchControl.getTotalResultCount() : -1;
+        String cities = total > searchResults.size()
+                ? searchResults.size() + " of " + total + " cities"
+                : searchResults.size() + " cities";
+        updateStatus("Found " + cities + " with " + totalMaps + " maps", "#27ae60");
+        resultCountLabel.setText(cities + ", " + totalMaps + " maps");
+    }
+
     private static void configureAutoSizingList(ListView<?> listView, ObservableList<?> backingList) {
         if (listView == null || backingList == null) return;
         listView.setFixedCellSize(LIST_CELL_HEIGHT);
@@ -912,14 +966,14 @@ public class CatalogSearchScreen implements SearchControl.SearchResultCallback {
         Platform.runLater(() -> {
             searchResults.clear();
             searchResults.addAll(results);
+            resultsListView.scrollTo(0);
 
             if (results.isEmpty()) {
                 updateStatus("No results found. Try a different search term.", "#f39c12");
                 resultCountLabel.setText("0 results");
             } else {
-                int totalMaps = results.stream().mapToInt(CitySearchResult::getTotalMaps).sum();
-                updateStatus("Found " + results.size() + " cities with " + totalMaps + " maps", "#27ae60");
-                resultCountLabel.setText(results.size() + " cities, " + totalMaps + " maps");
+                updateResultCount();
+                loadMoreIfNotScrollable();
             }
 
             // Clear selection
@@ -928,6 +982,15 @@ public class CatalogSearchScreen implements SearchControl.SearchResultCallback {
         });
     }
 
+    @Override
+    public void onMoreSearchResults(List<CitySearchResult> results) {
+        Platform.runLater(() -> {
+            searchResults.addAll(results);
+            updateResultCount();
+            loadMoreIfNotScrollable();
+        });
+    }
+
     @Override
     public void onDiscountEligibility(common.dto.DiscountEligibilityResponse response) {
         Platform.runLater(() -> {
@@ -282,104 +282,17 @@ public class MapApprovalsScreen implements ContentManagementControl.ContentCallb
     /** True when the request is primarily for a city (add city, delete city, or add city+first map). Used to show "New City Request" instead of "New Map Request". */
     private static boolean isCityOnlyRequest(MapEditRequestDTO request) {
         if (request == null) return false;
-        MapChanges ch = request.getChanges();
-        if (ch == null) return request.getMapName() == null && request.getCityName() != null;
-        if (ch.getDeletedCityIds() != null && !ch.getDeletedCityIds().isEmpty() && (ch.getMapId() == null || ch.getMapId() <= 0) && (ch.getNewMapName() == null || ch.getNewMapName().isEmpty()))
-            return true;
-        if (ch.isCreateNewCity() || (ch.getNewCities() != null && !ch.getNewCities().isEmpty())) return true;
-        if (ch.getNewCityWithMap() != null && !ch.getNewCityWithMap().isEmpty()) return true;
-        return false;
+        MapChangesSummary summary = request.getSummary();
+        if (summary == null) return request.getMapName() == null && request.getCityName() != null;
+        return summary.isCityOnly();
     }
 
-    /** Display title for the list: "Delete city: X", "Add map: Y", "Update POI: Z", etc. */
+    /** Display title for the list: "Delete city: X", "Add map: Y", "Update POI: Z", etc. Reads only the summary, not the changes. */
     private static String getRequestDisplayName(MapEditRequestDTO req) {
-        MapChanges ch = req.getChanges();
-        String cityName = req.getCityName();
-        String mapName = req.getMapName();
-        if (ch != null) {
-            String dispCity = (cityName != null && !cityName.isEmpty()) ? cityName : (ch.getDisplayCityName() != null ? ch.getDisplayCityName() : null);
-            String dispMap = (mapName != null && !mapName.isEmpty()) ? mapName : (ch.getDisplayMapName() != null ? ch.getDisplayMapName() : null);
-            // Prefer "add" over "delete" so mixed payloads (e.g. draft delete + new add city) show the intended action
-            // Add city + first map
-            if (ch.getNewCityWithMap() != null && !ch.getNewCityWithMap().isEmpty()) {
-                MapChanges.CityWithMapRequest cwm = ch.getNewCityWithMap().get(0);
-                String c = nullToEmpty(cwm.getCityName());
-                String m = nullToEmpty(cwm.getMapName());
-                if (!m.isEmpty()) return "Add city and map: " + c + " / " + m;
-                return "Add city: " + c;
-            }
-            // Add city only
-            if (ch.isCreateNewCity() || (ch.getNewCities() != null && !ch.getNewCities().isEmpty())) {
-                String name = ch.getNewCityName();
-                if (name == null && ch.getNewCities() != null && !ch.getNewCities().isEmpty())
-                    name = ch.getNewCities().get(0).getName();
-                return "Add city: " + nullToEmpty(name);
-            }
-            // Add first map of new city (city created in same request)
-            if (ch.getNewMapCityName() != null && !ch.getNewMapCityName().trim().isEmpty() && ch.getNewMapName() != null && !ch.getNewMapName().isEmpty()) {
-                return "Add first map: " + ch.getNewMapName() + " (city: " + ch.getNewMapCityName().trim() + ")";
-            }
-            // Add map (new map in existing city)
-            if (ch.getNewMapName() != null && !ch.getNewMapName().isEmpty() && (ch.getMapId() == null || ch.getMapId() <= 0) && (ch.getCityId() == null || ch.getCityId() > 0)) {
-                String inCity = (dispCity != null && !dispCity.isEmpty()) ? " (" + dispCity + ")" : "";
-                return "Add map: " + ch.getNewMapName() + inCity;
-            }
-            // Delete city (only when no add-city/add-map intent)
-            if (ch.getDeletedCityIds() != null && !ch.getDeletedCityIds().isEmpty()) {
-                return "Delete city: " + (dispCity != null && !dispCity.isEmpty() ? dispCity : "ID " + ch.getDeletedCityIds().get(0));
-            }
-            // Delete map
-            if (ch.getDeletedMapIds() != null && !ch.getDeletedMapIds().isEmpty()) {
-                return "Delete map: " + (dispMap != null && !dispMap.isEmpty() ? dispMap + (dispCity != null && !dispCity.isEmpty() ? " (" + dispCity + ")" : "") : "ID " + ch.getDeletedMapIds().get(0));
-            }
-            // Add POI
-            if (ch.getAddedPois() != null && !ch.getAddedPois().isEmpty()) {
-                String n = ch.getAddedPois().get(0).getName();
-                return "Add POI: " + (n != null && !n.isEmpty() ? n : "—");
-            }
-            // Update POI
-            if (ch.getUpdatedPois() != null && !ch.getUpdatedPois().isEmpty()) {
-                String n = ch.getUpdatedPois().get(0).getName();
-                return "Update POI: " + (n != null && !n.isEmpty() ? n : "—");
-            }
-            // Delete POI
-            if (ch.getDeletedPoiIds() != null && !ch.getDeletedPoiIds().isEmpty()) {
-                String name = (ch.getDeletedPoiDisplayNames() != null && !ch.getDeletedPoiDisplayNames().isEmpty())
-                        ? ch.getDeletedPoiDisplayNames().get(0) : ("id: " + ch.getDeletedPoiIds().get(0));
-                return "Delete POI: \"" + name + "\"";
-            }
-            // Add tour
-            if (ch.getAddedTours() != null && !ch.getAddedTours().isEmpty()) {
-                String n = ch.getAddedTours().get(0).getName();
-                return "Add tour: " + (n != null && !n.isEmpty() ? n : "—");
-            }
-            // Update tour
-            if (ch.getUpdatedTours() != null && !ch.getUpdatedTours().isEmpty()) {
-                String n = ch.getUpdatedTours().get(0).getName();
-                return "Update tour: " + (n != null && !n.isEmpty() ? n : "—");
-            }
-            // Delete tour
-            if (ch.getDeletedTourIds() != null && !ch.getDeletedTourIds().isEmpty()) {
-                String name = (ch.getDeletedTourDisplayNames() != null && !ch.getDeletedTourDisplayNames().isEmpty())
-                        ? ch.getDeletedTourDisplayNames().get(0) : ("id: " + ch.getDeletedTourIds().get(0));
-                return "Delete tour: \"" + name + "\"";
-            }
-            // Update map info (name/description)
-            if (ch.getNewMapName() != null && !ch.getNewMapName().isEmpty()) {
-                return "Update map: " + ch.getNewMapName() + (dispCity != null && !dispCity.isEmpty() ? " (" + dispCity + ")" : "");
-            }
-            // Tour stops / links / unlinks
-            if (ch.getAddedStops() != null && !ch.getAddedStops().isEmpty()) return "Add tour stop(s)";
-            if (ch.getUpdatedStops() != null && !ch.getUpdatedStops().isEmpty()) return "Update tour stop(s)";
-            if (ch.getDeletedStopIds() != null && !ch.getDeletedStopIds().isEmpty()) return "Remove tour stop(s)";
-            if (ch.getPoiMapLinks() != null && !ch.getPoiMapLinks().isEmpty()) return "Link POI to map";
-            if (ch.getPoiMapUnlinks() != null && !ch.getPoiMapUnlinks().isEmpty()) return "Unlink POI from map";
-        }
-        String dispCity = req.getCityName();
-        if (ch != null && (dispCity == null || dispCity.isEmpty()) && ch.getDisplayCityName() != null) dispCity = ch.getDisplayCityName();
+        MapChangesSummary summary = req.getSummary();
+        if (summary != null) return summary.title(req.getCityName(), req.getMapName());
         String dispMap = req.getMapName();
-        if (ch != null && (dispMap == null || dispMap.isEmpty()) && ch.getDisplayMapName() != null) dispMap = ch.getDisplayMapName();
-        // Fallback
+        String dispCity = req.getCityName();
         if (dispMap != null && !dispMap.isEmpty())
             return "Update map: " + dispMap + (dispCity != null && !dispCity.isEmpty() ? " (" + dispCity + ")" : "");
         if (dispCity != null && !dispCity.isEmpty())
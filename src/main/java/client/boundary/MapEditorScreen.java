@@ -4,6 +4,10 @@ import client.GCMClient;
 import client.LoginController;
 import client.MenuNavigationHelper;
 import client.control.ContentManagementControl;
+import client.control.PoiImportReader;
+import client.control.TileService;
+import client.util.MarkerIndex;
+import com.gluonhq.maps.BaseMap;
 import com.gluonhq.maps.MapLayer;
 import com.gluonhq.maps.MapPoint;
 import com.gluonhq.maps.MapView;
@@ -25,6 +29,7 @@ import javafx.event.ActionEvent;
 import javafx.scene.layout.GridPane;
 import javafx.scene.layout.HBox;
 import javafx.scene.layout.Priority;
+import javafx.scene.layout.Region;
 import javafx.scene.layout.StackPane;
 import javafx.scene.layout.VBox;
 import javafx.scene.paint.Color;
@@ -36,6 +41,7 @@ import javafx.scene.shape.MoveTo;
 import javafx.scene.shape.Path;
 import javafx.scene.shape.SVGPath;
 import javafx.scene.Group;
+import javafx.stage.FileChooser;
 import javafx.stage.Stage;
 import javafx.util.Pair;
 
@@ -111,6 +117,8 @@ public class MapEditorScreen implements ContentManagementControl.ContentCallback
     @FXML
     private Button addExistingPoiToMapBtn;
     @FXML
+    private Button importPoisBtn;
+    @FXML
     private Button editTourBtn;
     @FXML
     private Button removeStopBtn;
@@ -179,6 +187,18 @@ public class MapEditorScreen implements ContentManagementControl.ContentCallback
     /** City ID for which we last requested maps (so we ignore stale responses). */
     private int lastRequestedCityId = -1;
     private MapChanges pendingChanges = new MapChanges(); // Collect changes locally
+    /** Autosave: quiet time after the last edit before the draft is saved (edits in between are coalesced). */
+    private static final javafx.util.Duration AUTOSAVE_DELAY = javafx.util.Duration.millis(1500);
+    private final javafx.animation.PauseTransition autosaveTimer = new javafx.animation.PauseTransition(AUTOSAVE_DELAY);
+    /** The current map's draft as the server has it (null: unknown, Save sends the full changes). */
+    private MapChanges savedDraft;
+    /** Last op sequence of the draft acknowledged by the server. */
+    private int draftSequence;
+    /** Patch waiting for its answer (at most one) and the draft the server has once it is applied. */
+    private MapChangesPatch patchInFlight;
+    private MapChanges patchInFlightDraft;
+    /** Changes last sent to Publish; restored (rebased) if the server answers with a conflict. */
+    private MapChanges lastPublishedChanges;
     /** New cities (city only) not yet saved – saved as draft on Save, sent for approval on Send. */
     private java.util.List<MapChanges.NewCityRequest> pendingNewCities = new java.util.ArrayList<>();
     /** New city + first map not yet saved. */
@@ -414,19 +434,66 @@ public class MapEditorScreen implements ContentManagementControl.ContentCallback
         return new Group(teardrop, cutout);
     }
 
-    /** Inner class: a Gluon MapLayer that shows POI pin markers. */
+    /** Zoom levels below this draw nearby POIs as one cluster with a count. */
+    private static final double CLUSTER_BELOW_ZOOM = 15;
+    /** Cluster cell size in pixels: POIs closer than about this are drawn as one cluster. */
+    private static final double CLUSTER_CELL_PX = 48;
+    /** Markers this far outside the map are still laid out, so they do not pop in at the edge. */
+    private static final double VIEWPORT_MARGIN_PX = 40;
+
+    /**
+     * World-to-screen transform of the map as currently panned and zoomed, derived from two
+     * projected reference points (one getMapPoint call each instead of one per marker).
+     */
+    private static MarkerIndex.Transform viewTransform(BaseMap baseMap) {
+        if (baseMap == null) return null;
+        Point2D a = baseMap.getMapPoint(0, 0);
+        Point2D b = baseMap.getMapPoint(0, 90);
+        if (a == null || b == null) return null;
+        return MarkerIndex.Transform.fromReference(0, 0, a.getX(), a.getY(), 0, 90, b.getX(), b.getY());
+    }
+
+    /** Visible size of the map a layer is drawn on (a large default before it is laid out). */
+    private static double[] viewportSize(MapLayer layer) {
+        Parent parent = layer.getParent();
+        if (parent instanceof Region && ((Region) parent).getWidth() > 0) {
+            return new double[] { ((Region) parent).getWidth(), ((Region) parent).getHeight() };
+        }
+        return new double[] { 4096, 4096 };
+    }
+
+    /**
+     * Inner class: a Gluon MapLayer that shows POI pin markers.
+     *
+     * POIs are kept in a spatial grid (MarkerIndex); a layout pass places only the ones in the
+     * viewport, clustered with a count below CLUSTER_BELOW_ZOOM. Pin and cluster nodes come from
+     * pools that grow to the most shown at once and are reused on every pan and zoom.
+     */
     private static class PoiMarkerLayer extends MapLayer {
-        private final List<Pair<MapPoint, Node>> entries = new ArrayList<>();
+        private final MarkerIndex<PoiMarker> index = new MarkerIndex<>();
+        private final List<Node> pinPool = new ArrayList<>();
+        private final List<Tooltip> pinTips = new ArrayList<>();
+        private final List<StackPane> clusterPool = new ArrayList<>();
+        private final List<Tooltip> clusterTips = new ArrayList<>();
+
+        private static final class PoiMarker {
+            final int id;
+            final String tip;
+
+            PoiMarker(int id, String tip) {
+                this.id = id;
+                this.tip = tip;
+            }
+        }
 
         void addPoi(Poi p) {
             if (p == null) return;
-            double lat = p.getLatitude() != null ? p.getLatitude() : 0;
-            double lng = p.getLongitude() != null ? p.getLongitude() : 0;
-            String name = p.getName() != null ? p.getName() : "";
-            // Red map-pin shape (teardrop with circular cutout), tip at anchor
-            Node pin = createPinMarker();
-            pin.setUserData(p.getId());
+            addPoi(p, p.getLatitude() != null ? p.getLatitude() : 0, p.getLongitude() != null ? p.getLongitude() : 0);
+        }
 
+        void addPoi(Poi p, double lat, double lng) {
+            if (p == null) return;
+            String name = p.getName() != null ? p.getName() : "";
             StringBuilder tipText = new StringBuilder();
             if (!name.isEmpty()) tipText.append(name);
             if (p.isDraft()) tipText.append(tipText.length() > 0 ? "\n" : "").append("[Draft]");
@@ -437,64 +504,106 @@ public class MapEditorScreen implements ContentManagementControl.ContentCallback
             if (p.getShortExplanation() != null && !p.getShortExplanation().isEmpty())
                 tipText.append(tipText.length() > 0 ? "\n" : "").append(p.getShortExplanation());
             if (tipText.length() == 0) tipText.append("POI");
-            Tooltip tip = new Tooltip(tipText.toString());
-            tip.setWrapText(true);
-            tip.setMaxWidth(300);
-            Tooltip.install(pin, tip);
 
-            MapPoint point = new MapPoint(lat, lng);
-            entries.add(new Pair<>(point, pin));
-            getChildren().add(pin);
+            index.add(new PoiMarker(p.getId(), tipText.toString()), lat, lng);
             this.markDirty();
         }
 
-        void addPoi(int id, double lat, double lng, String name) {
-            Poi p = new Poi(id, 0, name, null, null, null, true);
-            p.setLatitude(lat);
-            p.setLongitude(lng);
-            addPoi(p);
-        }
-
         void clearPois() {
-            entries.clear();
-            getChildren().clear();
+            index.clear();
             this.markDirty();
         }
 
+        /** Pooled pin number i (red map-pin, tip at anchor), created on first use. */
+        private Node pin(int i) {
+            if (i < pinPool.size()) return pinPool.get(i);
+            Node pin = createPinMarker();
+            Tooltip tip = new Tooltip();
+            tip.setWrapText(true);
+            tip.setMaxWidth(300);
+            Tooltip.install(pin, tip);
+            pinPool.add(pin);
+            pinTips.add(tip);
+            getChildren().add(pin);
+            return pin;
+        }
+
+        /** Pooled cluster badge number i (circle with the count), created on first use. */
+        private StackPane cluster(int i) {
+            if (i < clusterPool.size()) return clusterPool.get(i);
+            Circle circle = new Circle(15);
+            circle.setFill(Color.web("#e74c3c", 0.85));
+            circle.setStroke(Color.WHITE);
+            circle.setStrokeWidth(2);
+            Label count = new Label();
+            count.setTextFill(Color.WHITE);
+            count.setStyle("-fx-font-weight: bold;");
+            StackPane badge = new StackPane(circle, count);
+            Tooltip tip = new Tooltip();
+            Tooltip.install(badge, tip);
+            clusterPool.add(badge);
+            clusterTips.add(tip);
+            getChildren().add(badge);
+            return badge;
+        }
+
         @Override
         protected void layoutLayer() {
-            for (Pair<MapPoint, Node> entry : entries) {
-                MapPoint mp = entry.getKey();
-                Node node = entry.getValue();
-                Point2D screen = baseMap.getMapPoint(mp.getLatitude(), mp.getLongitude());
-                node.setVisible(true);
-                node.setTranslateX(screen.getX());
-                node.setTranslateY(screen.getY());
+            MarkerIndex.Transform view = viewTransform(baseMap);
+            if (view == null) return;
+            double[] size = viewportSize(this);
+            double clusterPx = view.getZoom() < CLUSTER_BELOW_ZOOM ? CLUSTER_CELL_PX : 0;
+            int pins = 0;
+            int clusters = 0;
+            for (MarkerIndex.Cluster<PoiMarker> c : index.query(view, size[0], size[1], VIEWPORT_MARGIN_PX, clusterPx)) {
+                if (c.isSingle()) {
+                    Node pin = pin(pins);
+                    pin.setUserData(c.getFirst().id);
+                    pinTips.get(pins).setText(c.getFirst().tip);
+                    pin.setTranslateX(c.getScreenX());
+                    pin.setTranslateY(c.getScreenY());
+                    pin.setVisible(true);
+                    pins++;
+                } else {
+                    StackPane badge = cluster(clusters);
+                    Circle circle = (Circle) badge.getChildren().get(0);
+                    circle.setRadius(c.getCount() < 100 ? 15 : 19);
+                    ((Label) badge.getChildren().get(1)).setText(String.valueOf(c.getCount()));
+                    clusterTips.get(clusters).setText(c.getCount() + " POIs - zoom in to see them");
+                    // Centre the badge on the cluster
+                    badge.setTranslateX(c.getScreenX() - circle.getRadius());
+                    badge.setTranslateY(c.getScreenY() - circle.getRadius());
+                    badge.setVisible(true);
+                    clusters++;
+                }
             }
+            for (int i = pins; i < pinPool.size(); i++) pinPool.get(i).setVisible(false);
+            for (int i = clusters; i < clusterPool.size(); i++) clusterPool.get(i).setVisible(false);
         }
     }
 
-    /** Layer that draws tour route segments (straight lines) and shows distance on hover. */
+    /**
+     * Layer that draws tour route segments (straight lines) and shows distance on hover.
+     * Only segments crossing the viewport are laid out; their lines come from a reused pool.
+     */
     private static class TourRouteLayer extends MapLayer {
-        private final List<Pair<TourSegmentDTO, Line>> segments = new ArrayList<>();
+        /** Valid segments as world coordinates {fromX, fromY, toX, toY}. */
+        private final List<double[]> segments = new ArrayList<>();
+        private final List<String> distances = new ArrayList<>();
+        private final List<Line> linePool = new ArrayList<>();
+        private final List<Tooltip> lineTips = new ArrayList<>();
 
         void setSegments(List<TourSegmentDTO> list) {
             segments.clear();
-            getChildren().clear();
-            if (list == null) {
-                markDirty();
-                return;
-            }
-            for (TourSegmentDTO seg : list) {
-                if (seg.getFromLat() == null || seg.getFromLon() == null || seg.getToLat() == null || seg.getToLon() == null) continue;
-                Line line = new Line(0, 0, 0, 0);
-                line.setStroke(Color.web("#3498db"));
-                line.setStrokeWidth(2);
-                line.setMouseTransparent(false);
-                String distText = seg.getDistanceMeters() != null ? String.format("%.0f m", seg.getDistanceMeters()) : "? m";
-                Tooltip.install(line, new Tooltip(distText));
-                segments.add(new Pair<>(seg, line));
-                getChildren().add(line);
+            distances.clear();
+            if (list != null) {
+                for (TourSegmentDTO seg : list) {
+                    if (seg.getFromLat() == null || seg.getFromLon() == null || seg.getToLat() == null || seg.getToLon() == null) continue;
+                    segments.add(new double[] {
+                            MarkerIndex.worldX(seg.getFromLon()), MarkerIndex.worldY(seg.getFromLat()),
+                            MarkerIndex.worldX(seg.getToLon()), MarkerIndex.worldY(seg.getToLat()) });
+                    distances.add(seg.getDistanceMeters() != null ? String.format("%.0f m", seg.getDistanceMeters()) : "? m");
+                }
             }
             markDirty();
         }
@@ -503,19 +612,45 @@ public class MapEditorScreen implements ContentManagementControl.ContentCallback
             setSegments(null);
         }
 
+        /** Pooled line number i, created on first use. */
+        private Line line(int i) {
+            if (i < linePool.size()) return linePool.get(i);
+            Line line = new Line(0, 0, 0, 0);
+            line.setStroke(Color.web("#3498db"));
+            line.setStrokeWidth(2);
+            line.setMouseTransparent(false);
+            Tooltip tip = new Tooltip();
+            Tooltip.install(line, tip);
+            linePool.add(line);
+            lineTips.add(tip);
+            getChildren().add(line);
+            return line;
+        }
+
         @Override
         protected void layoutLayer() {
-            for (Pair<TourSegmentDTO, Line> entry : segments) {
-                TourSegmentDTO seg = entry.getKey();
-                Line line = entry.getValue();
-                Point2D from = baseMap.getMapPoint(seg.getFromLat(), seg.getFromLon());
-                Point2D to = baseMap.getMapPoint(seg.getToLat(), seg.getToLon());
-                line.setStartX(from.getX());
-                line.setStartY(from.getY());
-                line.setEndX(to.getX());
-                line.setEndY(to.getY());
+            MarkerIndex.Transform view = viewTransform(baseMap);
+            if (view == null) return;
+            double[] size = viewportSize(this);
+            double m = VIEWPORT_MARGIN_PX;
+            int used = 0;
+            for (int i = 0; i < segments.size(); i++) {
+                double[] seg = segments.get(i);
+                double x1 = view.toScreenX(seg[0]), y1 = view.toScreenY(seg[1]);
+                double x2 = view.toScreenX(seg[2]), y2 = view.toScreenY(seg[3]);
+                // Bounding box outside the viewport: the line cannot cross it
+                if (Math.max(x1, x2) < -m || Math.min(x1, x2) > size[0] + m
+                        || Math.max(y1, y2) < -m || Math.min(y1, y2) > size[1] + m) continue;
+                Line line = line(used);
+                lineTips.get(used).setText(distances.get(i));
+                line.setStartX(x1);
+                line.setStartY(y1);
+                line.setEndX(x2);
+                line.setEndY(y2);
                 line.setVisible(true);
+                used++;
             }
+            for (int i = used; i < linePool.size(); i++) linePool.get(i).setVisible(false);
         }
     }
 
@@ -554,7 +689,7 @@ public class MapEditorScreen implements ContentManagementControl.ContentCallback
                 double lat = p.getLatitude() != null ? p.getLatitude() : parseLatLon(p.getLocation(), true);
                 double lng = p.getLongitude() != null ? p.getLongitude() : parseLatLon(p.getLocation(), false);
                 if (Double.isNaN(lat) || Double.isNaN(lng)) continue;
-                poiMarkerLayer.addPoi(p);
+                poiMarkerLayer.addPoi(p, lat, lng);
             }
         }
 
@@ -1208,7 +1343,7 @@ dialog.getDialogPane().setContent(content);
             Optional<OSMPlace> result = dialog.showAndWait();
         result.ifPresent(place -> {
             pendingNewCities.add(new MapChanges.NewCityRequest(place.displayName, "New city description", 50.0));
-            hasUnsavedChanges = true;
+            markUnsaved();
             setStatus("New city \"" + place.displayName + "\" added. Click Save to draft, then Send to manager for approval.");
             control.getCities();
         });
@@ -1357,7 +1492,7 @@ dialog.getDialogPane().setContent(content);
             result.ifPresent(arr -> {
                 pendingNewCityWithMap.add(new MapChanges.CityWithMapRequest(
                         arr[0], "New city description", 50.0, arr[1], arr[2]));
-                hasUnsavedChanges = true;
+                markUnsaved();
                 setStatus("New city \"" + arr[0] + "\" and map \"" + arr[1] + "\" added. Click Save to draft, then Send to manager for approval.");
                 control.getCities();
             });
@@ -1405,7 +1540,7 @@ dialog.getDialogPane().setContent(content);
         Optional<String[]> result = dialog.showAndWait();
         result.ifPresent(nameAndDesc -> {
             pendingNewMaps.add(new MapChanges.NewMapRequest(selectedCity.getId(), nameAndDesc[0], nameAndDesc[1]));
-            hasUnsavedChanges = true;
+            markUnsaved();
             setStatus("New map \"" + nameAndDesc[0] + "\" added. Click Save to draft, then Send to manager for approval.");
             if (selectedCity != null && lastRequestedCityId == selectedCity.getId()) {
                 control.getMapsForCity(selectedCity.getId());
@@ -1424,7 +1559,7 @@ dialog.getDialogPane().setContent(content);
         pendingChanges.setMapId(currentMapContent.getMapId());
         pendingChanges.setNewMapName(mapNameField.getText().trim());
         pendingChanges.setNewMapDescription(mapDescArea.getText().trim());
-        hasUnsavedChanges = true;
+        markUnsaved();
         setStatus("Map info added to pending changes. Click 'Save All Changes' to submit for approval.");
     }
 
@@ -1445,6 +1580,29 @@ dialog.getDialogPane().setContent(content);
         showPoiEditForm(editingPoi);
     }
 
+    @FXML
+    private void handleImportPois() {
+        if (selectedCity == null || currentMapContent == null || currentMapContent.getMapId() <= 0) {
+            showError("Please select a saved map first");
+            return;
+        }
+        FileChooser chooser = new FileChooser();
+        chooser.setTitle("Import POIs into " + currentMapContent.getMapName());
+        chooser.getExtensionFilters().addAll(
+                new FileChooser.ExtensionFilter("CSV or GeoJSON", "*.csv", "*.geojson", "*.json"),
+                new FileChooser.ExtensionFilter("All files", "*.*"));
+        java.io.File file = chooser.showOpenDialog(statusLabel.getScene().getWindow());
+        if (file == null) return;
+        try {
+            PoiImportReader reader = PoiImportReader.open(file.toPath());
+            if (importPoisBtn != null) importPoisBtn.setDisable(true);
+            setStatus("Importing POIs from " + file.getName() + "...");
+            control.importPois(reader, selectedCity.getId(), currentMapContent.getMapId());
+        } catch (java.io.IOException e) {
+            showError("Could not read " + file.getName() + ": " + e.getMessage());
+        }
+    }
+
     @FXML
     private void handleEditPoi() {
         Poi selected = poisListView.getSelectionModel().getSelectedItem();
@@ -1465,7 +1623,7 @@ dialog.getDialogPane().setContent(content);
                 pendingChanges.getPoiMapUnlinks().add(new MapChanges.PoiMapLink(currentMapContent.getMapId(), selected.getId(), 0));
                 selected.setPendingRemoval(true); // Keep in list but tag as pending removal
                 poisListView.setItems(FXCollections.observableArrayList(currentMapContent.getPois()));
-                hasUnsavedChanges = true;
+                markUnsaved();
                 handleCancelPoiEdit();
                 setStatus("POI removal added to pending changes. Save to submit for approval.");
             }
@@ -1521,7 +1679,7 @@ dialog.getDialogPane().setContent(content);
                 pendingChanges.getPoiMapLinks().add(new MapChanges.PoiMapLink(currentMapContent.getMapId(), poi.getId(), order));
                 currentMapContent.getPois().add(poi);
                 poisListView.setItems(FXCollections.observableArrayList(currentMapContent.getPois()));
-                hasUnsavedChanges = true;
+                markUnsaved();
                 setStatus("POI added to map in pending changes.");
             });
         };
@@ -1630,7 +1788,7 @@ dialog.getDialogPane().setContent(content);
                     poisListView.setItems(FXCollections.observableArrayList(currentMapContent.getPois()));
                     setStatus("POI updated in pending changes. Save or Send to manager to submit.");
                 }
-                hasUnsavedChanges = true;
+                markUnsaved();
                 handleCancelPoiEdit();
             },
             () -> {
@@ -1663,7 +1821,7 @@ dialog.getDialogPane().setContent(content);
                 poisListView.setItems(FXCollections.observableArrayList(currentMapContent.getPois()));
                 if (sel != null) tourStopsListView.setItems(FXCollections.observableArrayList(sel.getStops() != null ? sel.getStops() : java.util.Collections.emptyList()));
                 handleCancelPoiEdit();
-                hasUnsavedChanges = true;
+                markUnsaved();
                 setStatus("POI deletion added to pending changes. Save to submit for approval.");
             }
         });
@@ -1773,7 +1931,7 @@ dialog.getDialogPane().setContent(content);
             setStatus("Tour updated. Save or Send to manager to submit.");
         }
 
-        hasUnsavedChanges = true;
+        markUnsaved();
         handleCancelTourEdit();
     }
 
@@ -1799,7 +1957,7 @@ dialog.getDialogPane().setContent(content);
                     toursListView.setItems(FXCollections.observableArrayList(currentMapContent.getTours()));
                 }
                 handleCancelTourEdit();
-                hasUnsavedChanges = true;
+                markUnsaved();
                 setStatus("Tour removed. Save or Publish to apply.");
             } else {
                 // Saved tour: pending deletion (applied when manager publishes, like POIs)
@@ -1807,7 +1965,7 @@ dialog.getDialogPane().setContent(content);
                 editingTour.setPendingDeletion(true);
                 toursListView.setItems(FXCollections.observableArrayList(currentMapContent.getTours()));
                 handleCancelTourEdit();
-                hasUnsavedChanges = true;
+                markUnsaved();
                 setStatus("Tour marked for deletion. Publish to delete permanently.");
             }
         });
@@ -1864,7 +2022,7 @@ dialog.getDialogPane().setContent(content);
                     pendingChanges.getAddedStops().add(stop);
                 }
                 tourStopsListView.setItems(FXCollections.observableArrayList(tourForStop.getStops()));
-                hasUnsavedChanges = true;
+                markUnsaved();
                 setStatus("Tour stop added. Save or Send to manager to submit.");
             });
         };
@@ -1918,7 +2076,7 @@ dialog.getDialogPane().setContent(content);
                 pendingChanges.getUpdatedStops().add(selectedStop);
             }
             tourStopsListView.setItems(FXCollections.observableArrayList(selectedTour.getStops()));
-            hasUnsavedChanges = true;
+            markUnsaved();
             setStatus("Tour stop updated in pending changes.");
         });
     }
@@ -1956,7 +2114,7 @@ dialog.getDialogPane().setContent(content);
                     }
                 }
                 tourStopsListView.setItems(FXCollections.observableArrayList(stops));
-                hasUnsavedChanges = true;
+                markUnsaved();
                 setStatus("Tour stop removal added to pending changes. Click 'Save All Changes' to submit.");
             }
         });
@@ -1989,7 +2147,90 @@ dialog.getDialogPane().setContent(content);
                 || !pendingNewMaps.isEmpty();
     }
 
+    /** Record an edit; the draft is autosaved when no further edit follows within AUTOSAVE_DELAY. */
+    private void markUnsaved() {
+        hasUnsavedChanges = true;
+        stampBaseVersions();
+        autosaveTimer.setOnFinished(e -> autosave());
+        autosaveTimer.playFromStart();
+    }
+
+    /**
+     * Remember the version each edited map/POI/tour had when it was loaded, the first time it is
+     * edited; Publish and approval only overwrite it if nobody changed it since.
+     */
+    private void stampBaseVersions() {
+        if (currentMapContent == null) return;
+        if (pendingChanges.getBaseMapVersion() == null
+                && (pendingChanges.getNewMapName() != null || pendingChanges.getNewMapDescription() != null)) {
+            pendingChanges.setBaseMapVersion(currentMapContent.getMapVersion());
+        }
+        java.util.Map<Integer, Integer> poiVersions = new java.util.HashMap<>();
+        if (currentMapContent.getPois() != null) {
+            for (common.Poi p : currentMapContent.getPois()) {
+                if (p != null) poiVersions.put(p.getId(), p.getVersion());
+            }
+        }
+        java.util.Set<Integer> poiIds = new java.util.HashSet<>(pendingChanges.getDeletedPoiIds());
+        for (common.Poi p : pendingChanges.getUpdatedPois()) poiIds.add(p.getId());
+        for (MapChanges.PoiMapLink l : pendingChanges.getPoiMapUnlinks()) poiIds.add(l.poiId);
+        for (Integer id : poiIds) {
+            Integer version = poiVersions.get(id);
+            if (version != null) pendingChanges.getBasePoiVersions().putIfAbsent(id, version);
+        }
+        java.util.Map<Integer, Integer> tourVersions = new java.util.HashMap<>();
+        if (currentMapContent.getTours() != null) {
+            for (common.dto.TourDTO t : currentMapContent.getTours()) {
+                if (t != null) tourVersions.put(t.getId(), t.getVersion());
+            }
+        }
+        java.util.Set<Integer> tourIds = new java.util.HashSet<>(pendingChanges.getDeletedTourIds());
+        for (common.dto.TourDTO t : pendingChanges.getUpdatedTours()) tourIds.add(t.getId());
+        for (common.dto.TourStopDTO s : pendingChanges.getAddedStops()) tourIds.add(s.getTourId());
+        for (common.dto.TourStopDTO s : pendingChanges.getUpdatedStops()) tourIds.add(s.getTourId());
+        for (Integer id : tourIds) {
+            Integer version = tourVersions.get(id);
+            if (version != null) pendingChanges.getBaseTourVersions().putIfAbsent(id, version);
+        }
+    }
+
+    /**
+     * Autosave applies to edits of a loaded map whose draft state is known; new cities/maps and
+     * map or city removals go through Save.
+     */
+    private boolean canAutosave() {
+        return currentMapContent != null && currentMapContent.getMapId() > 0 && currentMapContent.getCityId() > 0
+                && savedDraft != null && !hasAnyPendingChanges() && !pendingMapOrCityDeletionUnsaved
+                && pendingChanges.getDeletedMapIds().isEmpty() && pendingChanges.getDeletedCityIds().isEmpty();
+    }
+
+    /**
+     * Send the edits made since the last acknowledged save as one op. While a patch is waiting
+     * for its answer nothing is sent; the answer triggers the next save if needed.
+     *
+     * @return false if there was nothing to save
+     */
+    private boolean autosave() {
+        if (!hasUnsavedChanges || !canAutosave()) return false;
+        if (patchInFlight != null) return true;
+        MapChangesPatch.Op op = MapChangesPatch.diff(savedDraft, pendingChanges, draftSequence + 1);
+        if (op == null) {
+            hasUnsavedChanges = false;
+            return false;
+        }
+        MapChangesPatch patch = new MapChangesPatch(currentMapContent.getMapId(), currentMapContent.getCityId());
+        patch.getOps().add(op);
+        patchInFlight = patch;
+        patchInFlightDraft = MapChangesPatch.copyOf(pendingChanges);
+        control.saveMapChangesPatch(patch);
+        setStatus("Saving draft...");
+        return true;
+    }
+
     private void submitPendingChanges(boolean asDraft) {
+        // The full changes are sent; the editor continues from the reloaded draft
+        autosaveTimer.stop();
+        savedDraft = null;
         if (currentMapContent == null && selectedCity == null && !hasAnyPendingChanges()) {
             // When sending for approval: allow if there is a draft city (with or without maps) to submit
             boolean allowSendWithoutSelection = false;
@@ -2062,11 +2303,13 @@ dialog.getDialogPane().setContent(content);
                 && pendingChanges.getNewCities().isEmpty() && pendingChanges.getNewCityWithMap().isEmpty()) {
             pendingChanges.getDeletedCityIds().removeIf(id -> id != null && id == selectedCity.getId());
         }
+        stampBaseVersions();
         if (asDraft) {
             control.saveMapChanges(pendingChanges);
             pendingMapOrCityDeletionUnsaved = false; // Save applied; user can now Send
         } else {
             pendingChanges.setDraft(false);
+            lastPublishedChanges = pendingChanges;
             control.submitMapChanges(pendingChanges, false);
         }
         setStatus(asDraft ? "Saving changes as draft..." : (LoginController.currentUserRole == LoginController.UserRole.MANAGER ? "Publishing..." : "Sending to content manager..."));
@@ -2088,6 +2331,11 @@ dialog.getDialogPane().setContent(content);
 
     @FXML
     private void handleSaveChanges() {
+        if (canAutosave()) {
+            autosaveTimer.stop();
+            if (!autosave()) setStatus("No changes to save.");
+            return;
+        }
         submitPendingChanges(true);
     }
 
@@ -2110,7 +2358,7 @@ dialog.getDialogPane().setContent(content);
         confirm.showAndWait().ifPresent(result -> {
             if (result == ButtonType.OK) {
                 pendingChanges.getDeletedMapIds().add(currentMapContent.getMapId());
-                hasUnsavedChanges = true;
+                markUnsaved();
                 pendingMapOrCityDeletionUnsaved = true; // Must save before send (employee)
                 setStatus("Map removal added. Save changes first, then send to content manager.");
                 mapsListView.getSelectionModel().clearSelection();
@@ -2131,7 +2379,7 @@ dialog.getDialogPane().setContent(content);
         confirm.showAndWait().ifPresent(result -> {
             if (result == ButtonType.OK) {
                 pendingChanges.getDeletedCityIds().add(selectedCity.getId());
-                hasUnsavedChanges = true;
+                markUnsaved();
                 if (!isManager) pendingMapOrCityDeletionUnsaved = true; // Must save before send (employee)
                 setStatus("City \"" + selectedCity.getName() + "\" marked for removal. " + (isManager ? "Press Publish to apply." : "Save changes, then Send to content manager."));
                 cityComboBox.getSelectionModel().clearSelection();
@@ -2156,6 +2404,8 @@ dialog.getDialogPane().setContent(content);
 
         confirm.showAndWait().ifPresent(result -> {
             if (result == ButtonType.OK) {
+                autosaveTimer.stop();
+                savedDraft = null;
                 pendingChanges = new MapChanges();
                 pendingNewCities.clear();
                 pendingNewCityWithMap.clear();
@@ -2434,6 +2684,11 @@ dialog.getDialogPane().setContent(content);
                 if (draft.getDeletedMapIds() != null) pendingChanges.getDeletedMapIds().addAll(draft.getDeletedMapIds());
                 pendingChanges.getDeletedCityIds().clear();
                 if (draft.getDeletedCityIds() != null) pendingChanges.getDeletedCityIds().addAll(draft.getDeletedCityIds());
+                pendingChanges.setBaseMapVersion(draft.getBaseMapVersion());
+                pendingChanges.getBasePoiVersions().clear();
+                pendingChanges.getBasePoiVersions().putAll(draft.getBasePoiVersions());
+                pendingChanges.getBaseTourVersions().clear();
+                pendingChanges.getBaseTourVersions().putAll(draft.getBaseTourVersions());
             } else {
                 // No draft for this map: clear map-specific pending changes so we don't carry over the previous map's edits
                 pendingChanges.getPoiMapUnlinks().clear();
@@ -2451,7 +2706,18 @@ dialog.getDialogPane().setContent(content);
                 pendingChanges.getDeletedCityIds().clear();
                 pendingChanges.setNewMapName(null);
                 pendingChanges.setNewMapDescription(null);
-            }
+                pendingChanges.setBaseMapVersion(null);
+                pendingChanges.getBasePoiVersions().clear();
+                pendingChanges.getBaseTourVersions().clear();
+            }
+            // Autosave continues from the draft as loaded; added POIs/links are never part of it.
+            // An answer to a patch sent before (other map, or this one before reloading) is ignored.
+            patchInFlight = null;
+            patchInFlightDraft = null;
+            draftSequence = content.getDraftSequence();
+            savedDraft = MapChangesPatch.copyOf(pendingChanges);
+            savedDraft.getAddedPois().clear();
+            savedDraft.getPoiMapLinks().clear();
 
             // Update POIs tab (null-safe) and overlay draft-only updated fields from the draft request.
             java.util.List<common.Poi> pois = content.getPois();
@@ -2506,6 +2772,8 @@ dialog.getDialogPane().setContent(content);
             // Update the map view and markers so the map shows the new city/map, not the previous one
             System.out.println("MapEditorScreen.onMapContentReceived: calling refreshMapMarkers");
             refreshMapMarkers();
+            // Warm the tile cache around the map's POIs while the user looks at the first screen
+            TileService.getInstance().prefetchPois(content.getPois());
             System.out.println("MapEditorScreen.onMapContentReceived: done");
         });
     }
@@ -2574,9 +2842,114 @@ dialog.getDialogPane().setContent(content);
         });
     }
 
+    @Override
+    public void onMapChangesPatched(MapChangesPatchResult result) {
+        Platform.runLater(() -> {
+            MapChanges sentDraft = patchInFlightDraft;
+            patchInFlight = null;
+            patchInFlightDraft = null;
+            if (sentDraft == null || currentMapContent == null || result.getMapId() != currentMapContent.getMapId()) {
+                return; // answer for a map that is no longer open
+            }
+            ValidationResult validation = result.getValidation();
+            if (validation == null || !validation.isValid()) {
+                if (result.getSequence() != draftSequence) {
+                    // Draft saved from another window or sent meanwhile: start over from the server's draft
+                    savedDraft = null;
+                    control.getMapContent(currentMapContent.getMapId());
+                }
+                if (validation != null) onValidationResult(validation);
+                return;
+            }
+            draftSequence = result.getSequence();
+            if (result.isReloadRequired()) {
+                // New POIs/links got ids on the server: drop the sent ones and reload (restores the draft)
+                if (MapChangesPatch.diff(sentDraft, pendingChanges, 0) == null) hasUnsavedChanges = false;
+                pendingChanges.getAddedPois().subList(0, Math.min(sentDraft.getAddedPois().size(), pendingChanges.getAddedPois().size())).clear();
+                pendingChanges.getPoiMapLinks().subList(0, Math.min(sentDraft.getPoiMapLinks().size(), pendingChanges.getPoiMapLinks().size())).clear();
+                savedDraft = null;
+                control.getMapContent(currentMapContent.getMapId());
+            } else {
+                savedDraft = sentDraft;
+                if (MapChangesPatch.diff(savedDraft, pendingChanges, 0) == null) {
+                    hasUnsavedChanges = false;
+                } else {
+                    markUnsaved(); // edited while saving
+                }
+            }
+            setStatus("✓ Draft saved");
+        });
+    }
+
+    @Override
+    public void onSaveMapChangesFailed(String errorCode, String errorMessage) {
+        Platform.runLater(() -> {
+            // Whether a patch was applied is unknown: the next save sends the full changes
+            patchInFlight = null;
+            patchInFlightDraft = null;
+            savedDraft = null;
+        });
+        onError(errorCode, errorMessage);
+    }
+
+    @Override
+    public void onEditConflict(EditConflict conflict, String message) {
+        Platform.runLater(() -> {
+            MapChanges published = lastPublishedChanges;
+            lastPublishedChanges = null;
+            if (published == null || currentMapContent == null || conflict.getMapId() != currentMapContent.getMapId()) {
+                onError(common.Response.ERR_CONFLICT, message);
+                return;
+            }
+            // Nothing was published: take the changes back, on top of the current versions, with edits made since
+            MapChanges editedSince = pendingChanges;
+            conflict.rebase(published);
+            MapChangesPatch.merge(published, editedSince);
+            published.getAddedPois().addAll(editedSince.getAddedPois().stream().filter(p -> p.getId() <= 0).toList());
+            published.getPoiMapLinks().addAll(editedSince.getPoiMapLinks().stream().filter(l -> l.poiId <= 0).toList());
+            pendingChanges = published;
+            hasUnsavedChanges = true;
+            setStatus("Not published – content was changed by someone else");
+
+            Alert alert = new Alert(Alert.AlertType.WARNING);
+            alert.setTitle("Publish");
+            alert.setHeaderText("Someone else changed this map while you were editing");
+            alert.setContentText("Changed meanwhile: " + conflict.describe()
+                    + "\n\nYour changes are kept. Publish again to overwrite their changes, or Discard to load the current version.");
+            alert.show();
+        });
+    }
+
+    @Override
+    public void onPoiImportProgress(PoiImportResult result) {
+        Platform.runLater(() -> {
+            String counts = result.getImported() + " imported, " + result.getDuplicates() + " duplicates skipped, "
+                    + result.getRejected() + " rejected";
+            if (!result.isComplete()) {
+                setStatus("Importing POIs... " + counts);
+                return;
+            }
+            if (importPoisBtn != null) importPoisBtn.setDisable(false);
+            setStatus("POI import finished: " + counts
+                    + (result.getEditRequestId() != null ? ". Sent to the content manager for approval." : "."));
+            if (!result.getErrors().isEmpty()) {
+                Alert alert = new Alert(Alert.AlertType.WARNING);
+                alert.setTitle("POI import");
+                alert.setHeaderText(result.getRejected() + " row(s) were not imported");
+                alert.setContentText(String.join("\n", result.getErrors())
+                        + (result.getRejected() > result.getErrors().size() ? "\n..." : ""));
+                alert.show();
+            }
+            if (currentMapContent != null && result.getImported() > 0) {
+                control.getMapContent(currentMapContent.getMapId());
+            }
+        });
+    }
+
     @Override
     public void onError(String errorCode, String errorMessage) {
         Platform.runLater(() -> {
+            if (importPoisBtn != null) importPoisBtn.setDisable(false);
             setStatus("Error – " + errorMessage);
             showError(errorCode + ": " + errorMessage);
         });
@@ -3,6 +3,8 @@ package client.boundary;
 import client.GCMClient;
 import client.LoginController;
 import client.MenuNavigationHelper;
+import client.control.MapPackageDownload;
+import client.control.TileService;
 import com.google.gson.Gson;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
@@ -15,6 +17,8 @@ import common.Request;
 import common.Response;
 import common.dto.EntitlementInfo;
 import common.dto.MapContent;
+import common.dto.MapPackageChunk;
+import common.dto.MapPackageInfo;
 import common.dto.MapSummary;
 import common.dto.TourSegmentDTO;
 import javafx.application.Platform;
@@ -109,6 +113,9 @@ public class MyPurchasesScreen implements GCMClient.MessageHandler {
     /** When non-null, the map viewer popup is open; used to route GET_MAPS_FOR_CITY / GET_MAP_CONTENT responses. */
     private MapViewerPopupContext viewerPopup;
 
+    /** Offline package being downloaded in chunks (after DOWNLOAD_MAP_VERSION), or null. */
+    private MapPackageDownload packageDownload;
+
     /** If set (e.g. after one-time purchase), auto-open map viewer for this city once purchases load. */
     public static volatile Integer AUTO_OPEN_CITY_ID = null;
     public static volatile String AUTO_OPEN_CITY_NAME = null;
@@ -457,6 +464,29 @@ public class MyPurchasesScreen implements GCMClient.MessageHandler {
         }
     }
 
+    /**
+     * Request the next chunk of the offline package, or report it as saved. A download cut
+     * off earlier resumes from the bytes already on disk.
+     */
+    private void continuePackageDownload() {
+        if (packageDownload == null)
+            return;
+        if (packageDownload.isComplete()) {
+            statusLabel.setText("Offline maps saved.");
+            statusLabel.setStyle("-fx-text-fill: green;");
+            packageDownload = null;
+            return;
+        }
+        try {
+            gcmClient.sendToServer(new Request(MessageType.GET_MAP_PACKAGE_CHUNK, packageDownload.nextRequest(),
+                    LoginController.currentSessionToken));
+            statusLabel.setText("Downloading offline maps... " + packageDownload.getPercent() + "%");
+            statusLabel.setStyle("-fx-text-fill: #7f8c8d;");
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
     @Override
     @SuppressWarnings("unchecked")
     public void displayMessage(Object msg) {
@@ -464,6 +494,9 @@ public class MyPurchasesScreen implements GCMClient.MessageHandler {
             if (msg instanceof Response) {
                 Response response = (Response) msg;
                 if (!response.isOk()) {
+                    if (response.getRequestType() == MessageType.GET_MAP_PACKAGE_CHUNK) {
+                        packageDownload = null;
+                    }
                     if (viewerPopup != null && (response.getRequestType() == MessageType.GET_MAPS_FOR_CITY
                             || response.getRequestType() == MessageType.GET_MAP_CONTENT)) {
                         viewerPopup.setError(response.getErrorMessage());
@@ -490,12 +523,25 @@ public class MyPurchasesScreen implements GCMClient.MessageHandler {
                 }
 
                 if (response.getRequestType() == MessageType.DOWNLOAD_MAP_VERSION) {
-                    statusLabel.setText("Content loaded.");
-                    statusLabel.setStyle("-fx-text-fill: green;");
+                    if (response.getPayload() instanceof MapPackageInfo) {
+                        packageDownload = new MapPackageDownload((MapPackageInfo) response.getPayload());
+                        continuePackageDownload();
+                    }
                     // No alert when popup is open – popup shows the maps
                     if (viewerPopup == null) {
                         showAlert("Success", "Content loaded successfully. You can view or download the map.");
                     }
+                } else if (response.getRequestType() == MessageType.GET_MAP_PACKAGE_CHUNK) {
+                    if (packageDownload != null && response.getPayload() instanceof MapPackageChunk) {
+                        try {
+                            packageDownload.append((MapPackageChunk) response.getPayload());
+                            continuePackageDownload();
+                        } catch (IOException e) {
+                            packageDownload = null;
+                            statusLabel.setText("Offline download failed: " + e.getMessage());
+                            statusLabel.setStyle("-fx-text-fill: red;");
+                        }
+                    }
                 } else if (response.getRequestType() == MessageType.GET_MY_PURCHASES) {
                     Object payload = response.getPayload();
                     if (payload instanceof List) {
@@ -817,6 +863,7 @@ public class MyPurchasesScreen implements GCMClient.MessageHandler {
             } else {
                 mapView.flyTo(0, new MapPoint(centerLat, centerLng), 0.2);
             }
+            TileService.getInstance().prefetchPois(pois);
             statusLabel.setText("Viewing: " + content.getMapName());
             statusLabel.setStyle("-fx-text-fill: #27ae60;");
             String cityDesc = content.getCityDescription();
@@ -7,6 +7,9 @@ import common.DailyStat;
 import common.MessageType;
 import common.Request;
 import common.Response;
+import common.dto.CatalogExportChunk;
+import common.dto.CatalogExportChunkRequest;
+import common.dto.CatalogExportInfo;
 import common.dto.CityDTO;
 import common.dto.ReportRequest;
 import javafx.application.Platform;
@@ -38,10 +41,15 @@ import javafx.scene.shape.Line;
 import javafx.geometry.Pos;
 import javafx.scene.transform.Scale;
 import javafx.scene.web.WebView;
+import javafx.stage.FileChooser;
 import javafx.stage.Stage;
 import javafx.util.StringConverter;
 
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.time.LocalDate;
 import java.util.Map;
 import java.util.ArrayList;
@@ -109,6 +117,12 @@ public class ReportsController implements GCMClient.MessageHandler {
     private static final double AXIS_LEFT = 44;
 
     private final int[] lastDrawnValues = new int[6];
+    /** Catalog export being downloaded: chunks are appended to exportPart, then moved to exportTarget. */
+    private CatalogExportInfo exportInfo;
+    private Path exportTarget;
+    private Path exportPart;
+    private OutputStream exportOut;
+    private long exportReceived;
     private GCMClient client;
     private static ExecutorService reportExecutor;
 
@@ -375,9 +389,100 @@ public class ReportsController implements GCMClient.MessageHandler {
             }
         } else if (response.getRequestType() == MessageType.GET_ACTIVITY_REPORT) {
             applyReportResponse(response);
+        } else if (response.getRequestType() == MessageType.EXPORT_CATALOG
+                || response.getRequestType() == MessageType.GET_CATALOG_EXPORT_CHUNK) {
+            applyExportResponse(response);
         }
     }
 
+    @FXML
+    void handleExportCatalog(ActionEvent event) {
+        if (client == null) {
+            showAlert("Error", "Not connected to server. Go back and try again.");
+            return;
+        }
+        if (exportOut != null) {
+            showAlert("Export", "An export is already being downloaded.");
+            return;
+        }
+        FileChooser chooser = new FileChooser();
+        chooser.setTitle("Export approved catalog");
+        FileChooser.ExtensionFilter geoJson = new FileChooser.ExtensionFilter("GeoJSON (gzipped)", "*.geojson.gz");
+        FileChooser.ExtensionFilter ndJson = new FileChooser.ExtensionFilter("Newline-delimited GeoJSON (gzipped)", "*.ndjson.gz");
+        chooser.getExtensionFilters().addAll(geoJson, ndJson);
+        chooser.setInitialFileName("gcm-catalog-" + LocalDate.now() + ".geojson.gz");
+        java.io.File file = chooser.showSaveDialog(statusLabel.getScene().getWindow());
+        if (file == null) return;
+        CatalogExportInfo.Format format = file.getName().endsWith(".ndjson.gz") || chooser.getSelectedExtensionFilter() == ndJson
+                ? CatalogExportInfo.Format.NDJSON : CatalogExportInfo.Format.GEOJSON;
+        exportTarget = file.toPath();
+        statusLabel.setText("Preparing catalog export...");
+        sendExportRequest(new Request(MessageType.EXPORT_CATALOG, format, LoginController.currentSessionToken));
+    }
+
+    private void sendExportRequest(Request request) {
+        getReportExecutor().execute(() -> {
+            try {
+                client.sendToServer(request);
+            } catch (IOException e) {
+                Platform.runLater(() -> failExport("Failed to send export request: " + e.getMessage()));
+            }
+        });
+    }
+
+    /** Start or continue the export download (runs on JavaFX thread). */
+    private void applyExportResponse(Response response) {
+        if (!response.isOk()) {
+            failExport("Export failed: " + response.getErrorMessage());
+            return;
+        }
+        try {
+            if (response.getPayload() instanceof CatalogExportInfo) {
+                if (exportTarget == null || exportOut != null) return;
+                exportInfo = (CatalogExportInfo) response.getPayload();
+                exportPart = exportTarget.resolveSibling(exportTarget.getFileName() + ".part");
+                exportOut = Files.newOutputStream(exportPart);
+                exportReceived = 0;
+            } else if (response.getPayload() instanceof CatalogExportChunk) {
+                CatalogExportChunk chunk = (CatalogExportChunk) response.getPayload();
+                if (exportOut == null || !exportInfo.getHash().equals(chunk.getHash()) || chunk.getOffset() != exportReceived) {
+                    return;
+                }
+                exportOut.write(chunk.getData());
+                exportReceived += chunk.getData().length;
+                if (chunk.isLast()) {
+                    exportOut.close();
+                    exportOut = null;
+                    Files.move(exportPart, exportTarget, StandardCopyOption.REPLACE_EXISTING);
+                    statusLabel.setText("Exported " + exportInfo.getFeatureCount() + " features to " + exportTarget.getFileName());
+                    exportTarget = null;
+                    return;
+                }
+            } else {
+                return;
+            }
+            statusLabel.setText("Downloading catalog export... "
+                    + (exportInfo.getSizeBytes() > 0 ? exportReceived * 100 / exportInfo.getSizeBytes() : 100) + "%");
+            sendExportRequest(new Request(MessageType.GET_CATALOG_EXPORT_CHUNK,
+                    new CatalogExportChunkRequest(exportInfo.getHash(), exportReceived), LoginController.currentSessionToken));
+        } catch (IOException e) {
+            failExport("Could not write " + exportTarget.getFileName() + ": " + e.getMessage());
+        }
+    }
+
+    private void failExport(String message) {
+        if (exportOut != null) {
+            try {
+                exportOut.close();
+                Files.deleteIfExists(exportPart);
+            } catch (IOException ignored) { }
+        }
+        exportOut = null;
+        exportTarget = null;
+        if (statusLabel != null) statusLabel.setText(message);
+        showAlert("Error", message);
+    }
+
     /** Apply report response to chart and status (runs on JavaFX thread). */
     private void applyReportResponse(Response response) {
         try {
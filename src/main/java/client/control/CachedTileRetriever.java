@@ -0,0 +1,43 @@
+package client.control;
+
+import com.gluonhq.maps.tile.TileRetriever;
+import javafx.scene.image.Image;
+import javafx.scene.image.PixelWriter;
+import javafx.scene.image.WritableImage;
+import javafx.scene.paint.Color;
+
+import java.io.ByteArrayInputStream;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Tile source of every Gluon MapView in the client (registered in
+ * META-INF/services/com.gluonhq.maps.tile.TileRetriever): tiles come from TileService, i.e. the
+ * disk cache first. A tile that is not available (offline, server down) is drawn as a plain
+ * grey square instead of leaving the view waiting.
+ */
+public class CachedTileRetriever implements TileRetriever {
+
+    private static final int TILE_SIZE = 256;
+    private static final Image MISSING_TILE = missingTile();
+
+    @Override
+    public CompletableFuture<Image> loadTile(int zoom, long i, long j) {
+        return TileService.getInstance().getTile(zoom, i, j).thenApply(data -> {
+            if (data == null) return MISSING_TILE;
+            Image image = new Image(new ByteArrayInputStream(data));
+            return image.isError() ? MISSING_TILE : image;
+        });
+    }
+
+    private static Image missingTile() {
+        WritableImage image = new WritableImage(TILE_SIZE, TILE_SIZE);
+        PixelWriter writer = image.getPixelWriter();
+        Color fill = Color.rgb(236, 236, 236);
+        for (int x = 0; x < TILE_SIZE; x++) {
+            for (int y = 0; y < TILE_SIZE; y++) {
+                writer.setColor(x, y, fill);
+            }
+        }
+        return image;
+    }
+}
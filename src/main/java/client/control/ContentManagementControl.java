@@ -1,8 +1,15 @@
 package client.control;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.UUID;
 
 import client.GCMClient;
 import client.LoginController;
@@ -11,11 +18,20 @@ import common.Poi;
 import common.Request;
 import common.Response;
 import common.dto.CityDTO;
+import common.dto.EditConflict;
 import common.dto.MapChanges;
+import common.dto.MapChangesPatch;
+import common.dto.MapChangesPatchResult;
 import common.dto.MapContent;
+import common.dto.MapContentDelta;
+import common.dto.MapContentSyncRequest;
 import common.dto.MapEditRequestDTO;
 import common.dto.MapSummary;
+import common.dto.PoiImportChunk;
+import common.dto.PoiImportResult;
 import common.dto.TourDTO;
+import common.dto.TourOptimizationRequest;
+import common.dto.TourOptimizationResult;
 import common.dto.TourStopDTO;
 import common.dto.ValidationResult;
 
@@ -29,6 +45,24 @@ public class ContentManagementControl implements GCMClient.MessageHandler {
     private GCMClient client;
     private MessageType lastRequestType;
 
+    /** Rows sent per IMPORT_POIS request. */
+    private static final int IMPORT_CHUNK_ROWS = 200;
+    /** File being imported, until the last chunk is answered or the import fails. */
+    private PoiImportReader importReader;
+    private PoiImportChunk lastImportChunk;
+
+    private static final int CONTENT_CACHE_SIZE = 8;
+    /**
+     * Last received content per session and map, kept unmodified (the editor gets copies) as the
+     * base for GET_MAP_CONTENT_DELTA. Shared by all screens.
+     */
+    private static final Map<String, MapContent> contentCache = new LinkedHashMap<String, MapContent>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, MapContent> eldest) {
+            return size() > CONTENT_CACHE_SIZE;
+        }
+    };
+
     /**
      * Callback interface for content management results.
      */
@@ -47,6 +81,35 @@ public class ContentManagementControl implements GCMClient.MessageHandler {
 
         /** Called when GET_MY_DRAFT returns (user-level draft, e.g. delete-city-only). Payload may be null. */
         void onMyDraftReceived(MapEditRequestDTO draft);
+
+        /** Called when OPTIMIZE_TOUR returns the suggested stop order. */
+        default void onTourOptimized(TourOptimizationResult result) {
+        }
+
+        /** Called when a saveMapChangesPatch is answered. */
+        default void onMapChangesPatched(MapChangesPatchResult result) {
+        }
+
+        /**
+         * Called when saving a draft (SAVE_MAP_CHANGES) failed or could not be sent; nothing
+         * was saved. By default reported as an error.
+         */
+        default void onSaveMapChangesFailed(String errorCode, String errorMessage) {
+            onError(errorCode, errorMessage);
+        }
+
+        /** Called after each imported chunk of importPois; the last call has result.isComplete(). */
+        default void onPoiImportProgress(PoiImportResult result) {
+        }
+
+        /**
+         * Called when publishing or approving changes was refused because the content changed
+         * since it was loaded. Nothing was written; by default reported as an error.
+         */
+        default void onEditConflict(EditConflict conflict, String message) {
+            onError(Response.ERR_CONFLICT, message);
+        }
+
         void onError(String errorCode, String errorMessage);
     }
 
@@ -116,12 +179,42 @@ public class ContentManagementControl implements GCMClient.MessageHandler {
      * Get full map content for editing. Sends session token so server can return this user's draft POIs.
      */
     public void getMapContent(int mapId) {
-        System.out.println("ContentManagementControl.getMapContent: requesting mapId=" + mapId);
         String token = LoginController.currentSessionToken;
+        MapContent cached;
+        synchronized (contentCache) {
+            cached = contentCache.get(cacheKey(mapId));
+        }
+        if (cached != null && cached.getContentVersion() >= 0) {
+            // Only the changes since the cached version are sent back
+            System.out.println("ContentManagementControl.getMapContent: requesting delta mapId=" + mapId + " since " + cached.getContentVersion());
+            sendRequest(new Request(MessageType.GET_MAP_CONTENT_DELTA, new MapContentSyncRequest(mapId, cached.getContentVersion()), token));
+            return;
+        }
+        System.out.println("ContentManagementControl.getMapContent: requesting mapId=" + mapId);
         Request request = new Request(MessageType.GET_MAP_CONTENT, mapId, token);
         sendRequest(request);
     }
 
+    private static String cacheKey(int mapId) {
+        return LoginController.currentSessionToken + ":" + mapId;
+    }
+
+    /** Serialization copy: the cached base must not see the editor's in-place changes. */
+    private static MapContent copyOf(MapContent content) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+                out.writeObject(content);
+            }
+            try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+                return (MapContent) in.readObject();
+            }
+        } catch (IOException | ClassNotFoundException e) {
+            System.err.println("ContentManagementControl: could not copy map content: " + e.getMessage());
+            return null;
+        }
+    }
+
     /**
      * Get all POIs for a city (for adding tour stops from any map, or adding existing POI to current map).
      */
@@ -215,6 +308,53 @@ public class ContentManagementControl implements GCMClient.MessageHandler {
         sendRequest(request);
     }
 
+    /**
+     * Ask for the shortest stop order of a tour or POI list (the tour itself is not changed).
+     */
+    public void optimizeTour(TourOptimizationRequest optimization) {
+        Request request = new Request(MessageType.OPTIMIZE_TOUR, optimization);
+        sendRequest(request);
+    }
+
+    /**
+     * Import POIs from a file into a map as drafts. Chunks are sent one after another, each after
+     * the previous one was answered; progress arrives via onPoiImportProgress. The reader is closed
+     * when the import ends or fails.
+     */
+    public void importPois(PoiImportReader reader, int cityId, int mapId) {
+        closeImport();
+        importReader = reader;
+        lastImportChunk = new PoiImportChunk(UUID.randomUUID().toString(), cityId, mapId, -1, 0, null, false);
+        sendNextImportChunk();
+    }
+
+    private void sendNextImportChunk() {
+        PoiImportChunk previous = lastImportChunk;
+        try {
+            int firstRow = importReader.getRowsRead() + 1;
+            List<Poi> rows = importReader.next(IMPORT_CHUNK_ROWS);
+            lastImportChunk = new PoiImportChunk(previous.getImportId(), previous.getCityId(), previous.getMapId(),
+                    previous.getSequence() + 1, firstRow, rows, !importReader.hasMore());
+        } catch (IOException e) {
+            closeImport();
+            if (callback != null) callback.onError("IMPORT_FAILED", "Could not read the import file: " + e.getMessage());
+            return;
+        }
+        sendRequest(new Request(MessageType.IMPORT_POIS, lastImportChunk, LoginController.currentSessionToken));
+    }
+
+    private void closeImport() {
+        if (importReader != null) {
+            try {
+                importReader.close();
+            } catch (IOException e) {
+                System.err.println("ContentManagementControl: closing import file failed: " + e.getMessage());
+            }
+        }
+        importReader = null;
+        lastImportChunk = null;
+    }
+
     // ==================== Batch Submit ====================
 
     /**
@@ -229,6 +369,17 @@ public class ContentManagementControl implements GCMClient.MessageHandler {
         sendRequest(request);
     }
 
+    /**
+     * Autosave: send only the ops added to the draft since the last acknowledged save.
+     * The answer arrives as onMapChangesPatched.
+     */
+    public void saveMapChangesPatch(MapChangesPatch patch) {
+        if (patch == null || patch.getOps().isEmpty()) return;
+        String token = LoginController.currentSessionToken;
+        Request request = new Request(MessageType.SAVE_MAP_CHANGES, patch, token);
+        sendRequest(request);
+    }
+
     /**
      * Submit map changes (Send to manager / Publish). Use for "Send to content manager" or manager Publish.
      * @param asDraft true = apply as draft on server (if manager); false = create requests (editor) or publish (manager)
@@ -263,11 +414,11 @@ public class ContentManagementControl implements GCMClient.MessageHandler {
 
     private void sendRequest(Request request) {
         if (client == null) {
-            if (callback != null) callback.onError("CONNECTION_ERROR", "Not connected to server");
+            if (callback != null) reportError(request.getType(), "CONNECTION_ERROR", "Not connected to server");
             return;
         }
         if (!client.ensureConnected()) {
-            if (callback != null) callback.onError("CONNECTION_ERROR", "Could not connect to server. Is the server running?");
+            if (callback != null) reportError(request.getType(), "CONNECTION_ERROR", "Could not connect to server. Is the server running?");
             return;
         }
         try {
@@ -278,11 +429,19 @@ public class ContentManagementControl implements GCMClient.MessageHandler {
             System.out.println("ContentManagementControl: Error sending request: " + e.getMessage());
             e.printStackTrace();
             if (callback != null) {
-                callback.onError("CONNECTION_ERROR", "Failed to send request to server. Try again or check the server is running.");
+                reportError(request.getType(), "CONNECTION_ERROR", "Failed to send request to server. Try again or check the server is running.");
             }
         }
     }
 
+    private void reportError(MessageType requestType, String errorCode, String errorMessage) {
+        if (requestType == MessageType.SAVE_MAP_CHANGES) {
+            callback.onSaveMapChangesFailed(errorCode, errorMessage);
+        } else {
+            callback.onError(errorCode, errorMessage);
+        }
+    }
+
     @Override
     @SuppressWarnings("unchecked")
     public void displayMessage(Object msg) {
@@ -302,7 +461,12 @@ public class ContentManagementControl implements GCMClient.MessageHandler {
 
         if (!response.isOk()) {
             System.out.println("ContentManagementControl: response not OK, type=" + lastRequestType + ", errorCode=" + response.getErrorCode() + ", message=" + response.getErrorMessage());
-            callback.onError(response.getErrorCode(), response.getErrorMessage());
+            if (response.getRequestType() == MessageType.IMPORT_POIS) closeImport();
+            if (Response.ERR_CONFLICT.equals(response.getErrorCode()) && response.getPayload() instanceof EditConflict) {
+                callback.onEditConflict((EditConflict) response.getPayload(), response.getErrorMessage());
+                return;
+            }
+            reportError(response.getRequestType(), response.getErrorCode(), response.getErrorMessage());
             return;
         }
 
@@ -335,14 +499,50 @@ public class ContentManagementControl implements GCMClient.MessageHandler {
                     callback.onCitiesReceived(new ArrayList<>());
                 }
             }
+        } else if (payload instanceof MapContentDelta) {
+            MapContentDelta delta = (MapContentDelta) payload;
+            MapContent content = null;
+            synchronized (contentCache) {
+                MapContent cached = contentCache.get(cacheKey(delta.getMapId()));
+                if (delta.applyTo(cached)) {
+                    content = copyOf(cached);
+                } else {
+                    contentCache.remove(cacheKey(delta.getMapId()));
+                }
+            }
+            if (content == null) {
+                System.out.println("ContentManagementControl: delta for mapId=" + delta.getMapId() + " does not apply, reloading");
+                sendRequest(new Request(MessageType.GET_MAP_CONTENT, delta.getMapId(), LoginController.currentSessionToken));
+                return;
+            }
+            System.out.println("ContentManagementControl: applied " + delta + " -> onMapContentReceived");
+            callback.onMapContentReceived(content);
         } else if (payload instanceof MapContent) {
             MapContent mc = (MapContent) payload;
+            MapContent base = mc.getContentVersion() >= 0 ? copyOf(mc) : null;
+            synchronized (contentCache) {
+                if (base != null) contentCache.put(cacheKey(mc.getMapId()), base);
+                else contentCache.remove(cacheKey(mc.getMapId()));
+            }
             System.out.println("ContentManagementControl: received MapContent mapId=" + mc.getMapId() + ", pois=" + (mc.getPois() != null ? mc.getPois().size() : "null") + ", tours=" + (mc.getTours() != null ? mc.getTours().size() : "null") + " -> onMapContentReceived");
             callback.onMapContentReceived(mc);
         } else if (lastRequestType == MessageType.GET_MY_DRAFT && (payload == null || payload instanceof MapEditRequestDTO)) {
             callback.onMyDraftReceived(payload instanceof MapEditRequestDTO ? (MapEditRequestDTO) payload : null);
         } else if (payload instanceof ValidationResult) {
             callback.onValidationResult((ValidationResult) payload);
+        } else if (payload instanceof MapChangesPatchResult) {
+            callback.onMapChangesPatched((MapChangesPatchResult) payload);
+        } else if (payload instanceof TourOptimizationResult) {
+            callback.onTourOptimized((TourOptimizationResult) payload);
+        } else if (payload instanceof PoiImportResult) {
+            PoiImportResult result = (PoiImportResult) payload;
+            boolean current = lastImportChunk != null && lastImportChunk.getImportId().equals(result.getImportId());
+            if (result.isComplete() || !current) {
+                if (current) closeImport();
+            } else if (result.getSequence() == lastImportChunk.getSequence()) {
+                sendNextImportChunk();
+            }
+            callback.onPoiImportProgress(result);
         }
     }
 
@@ -0,0 +1,125 @@
+package client.control;
+
+import common.dto.MapPackageChunk;
+import common.dto.MapPackageChunkRequest;
+import common.dto.MapPackageInfo;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Client side of an offline package download (DOWNLOAD_MAP_VERSION, then GET_MAP_PACKAGE_CHUNK
+ * until the last chunk).
+ *
+ * Chunks are appended to &lt;hash&gt;.part in the package directory (default ~/.gcm/packages), so
+ * a download interrupted by a disconnect or restart continues from the bytes already on disk.
+ * The finished file is checked against the hash and renamed to &lt;hash&gt;.gcmpkg.
+ */
+public class MapPackageDownload {
+
+    private final Path directory;
+    private final MapPackageInfo info;
+
+    public MapPackageDownload(MapPackageInfo info) {
+        this(Paths.get(System.getProperty("user.home"), ".gcm", "packages"), info);
+    }
+
+    public MapPackageDownload(Path directory, MapPackageInfo info) {
+        this.directory = directory;
+        this.info = info;
+    }
+
+    public MapPackageInfo getInfo() {
+        return info;
+    }
+
+    /** The downloaded package file (exists once the download is complete). */
+    public Path getPackageFile() {
+        return directory.resolve(info.getHash() + ".gcmpkg");
+    }
+
+    private Path getPartFile() {
+        return directory.resolve(info.getHash() + ".part");
+    }
+
+    public boolean isComplete() {
+        return Files.exists(getPackageFile());
+    }
+
+    /** Bytes already on disk. */
+    public long getReceivedBytes() {
+        if (isComplete()) return info.getSizeBytes();
+        try {
+            return Files.exists(getPartFile()) ? Files.size(getPartFile()) : 0;
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    public int getPercent() {
+        return info.getSizeBytes() <= 0 ? 100 : (int) (getReceivedBytes() * 100 / info.getSizeBytes());
+    }
+
+    /** Request for the chunk following the bytes already received. */
+    public MapPackageChunkRequest nextRequest() {
+        return new MapPackageChunkRequest(info.getCityId(), info.getHash(), getReceivedBytes());
+    }
+
+    /**
+     * Append a received chunk. Chunks of another package or at another offset (e.g. a late
+     * duplicate) are ignored.
+     *
+     * @return true when the package is complete
+     * @throws IOException if writing fails or the finished file does not match the hash (the
+     *                     partial file is then removed so the next attempt starts over)
+     */
+    public boolean append(MapPackageChunk chunk) throws IOException {
+        if (isComplete()) return true;
+        if (chunk == null || !info.getHash().equals(chunk.getHash()) || chunk.getData() == null
+                || chunk.getOffset() != getReceivedBytes()) {
+            return false;
+        }
+        Files.createDirectories(directory);
+        Path part = getPartFile();
+        try (OutputStream out = Files.newOutputStream(part, StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            out.write(chunk.getData());
+        }
+        if (!chunk.isLast()) return false;
+
+        if (!info.getHash().equals(sha256(part))) {
+            Files.deleteIfExists(part);
+            throw new IOException("Downloaded package is corrupt");
+        }
+        Files.move(part, getPackageFile(), StandardCopyOption.REPLACE_EXISTING);
+        return true;
+    }
+
+    private static String sha256(Path file) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        try (InputStream in = new DigestInputStream(Files.newInputStream(file), digest)) {
+            byte[] buffer = new byte[8192];
+            while (in.read(buffer) != -1) {
+                // digest is updated while reading
+            }
+        }
+        StringBuilder sb = new StringBuilder();
+        for (byte b : digest.digest()) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
+    }
+}
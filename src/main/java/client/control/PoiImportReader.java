@@ -0,0 +1,243 @@
+package client.control;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import common.Poi;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Reads POIs from a CSV or GeoJSON file a few rows at a time, so files of any size can be
+ * imported without loading them (see ContentManagementControl#importPois).
+ *
+ * CSV: first line is a header; recognised columns are name, latitude/lat, longitude/lon/lng,
+ * category, location/address, description/short_explanation and accessible (true/yes/1).
+ * GeoJSON: a FeatureCollection of Point features; the same names are read from the properties.
+ * Values that are present but not numbers become NaN, so the server rejects the row with its
+ * row number instead of importing it without coordinates.
+ */
+public abstract class PoiImportReader implements Closeable {
+
+    private Poi peeked;
+    private int rowsRead;
+
+    /**
+     * Open a file by its extension (.csv, otherwise GeoJSON).
+     */
+    public static PoiImportReader open(Path file) throws IOException {
+        BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8);
+        String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+        return name.endsWith(".csv") ? csv(reader) : geoJson(reader);
+    }
+
+    public static PoiImportReader csv(Reader reader) throws IOException {
+        return new CsvReader(reader instanceof BufferedReader ? (BufferedReader) reader : new BufferedReader(reader));
+    }
+
+    public static PoiImportReader geoJson(Reader reader) throws IOException {
+        return new GeoJsonReader(reader);
+    }
+
+    /** Next row, or null at the end of the file. */
+    protected abstract Poi readRow() throws IOException;
+
+    /**
+     * Up to max further rows (empty at the end of the file).
+     */
+    public List<Poi> next(int max) throws IOException {
+        List<Poi> pois = new ArrayList<>();
+        while (pois.size() < max && hasMore()) {
+            pois.add(peeked);
+            peeked = null;
+            rowsRead++;
+        }
+        return pois;
+    }
+
+    public boolean hasMore() throws IOException {
+        if (peeked == null) peeked = readRow();
+        return peeked != null;
+    }
+
+    /** Rows returned so far; the next row has number getRowsRead() + 1. */
+    public int getRowsRead() {
+        return rowsRead;
+    }
+
+    private static Poi toPoi(Map<String, String> values) {
+        Poi poi = new Poi(0, 0, values.get("name"), first(values, "location", "address"),
+                toDouble(first(values, "latitude", "lat")), toDouble(first(values, "longitude", "lon", "lng")),
+                values.get("category"), first(values, "description", "short_explanation", "explanation"),
+                toBoolean(first(values, "accessible", "is_accessible")));
+        poi.setDraft(true);
+        return poi;
+    }
+
+    private static String first(Map<String, String> values, String... keys) {
+        for (String key : keys) {
+            String value = values.get(key);
+            if (value != null && !value.isEmpty()) return value;
+        }
+        return null;
+    }
+
+    private static Double toDouble(String value) {
+        if (value == null || value.isEmpty()) return null;
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            return Double.NaN;
+        }
+    }
+
+    private static boolean toBoolean(String value) {
+        if (value == null) return false;
+        String v = value.toLowerCase(Locale.ROOT);
+        return v.equals("true") || v.equals("yes") || v.equals("1");
+    }
+
+    private static final class CsvReader extends PoiImportReader {
+        private final BufferedReader reader;
+        private final List<String> header;
+
+        CsvReader(BufferedReader reader) throws IOException {
+            this.reader = reader;
+            String line = reader.readLine();
+            if (line != null && line.startsWith("\uFEFF")) line = line.substring(1);
+            header = new ArrayList<>();
+            if (line != null) {
+                for (String column : parseLine(line)) {
+                    header.add(column.toLowerCase(Locale.ROOT));
+                }
+            }
+            if (!header.contains("name")) {
+                reader.close();
+                throw new IOException("CSV header must contain a 'name' column");
+            }
+        }
+
+        @Override
+        protected Poi readRow() throws IOException {
+            String line;
+            do {
+                line = reader.readLine();
+                if (line == null) return null;
+            } while (line.trim().isEmpty());
+            List<String> cells = parseLine(line);
+            Map<String, String> values = new HashMap<>();
+            for (int i = 0; i < header.size() && i < cells.size(); i++) {
+                values.put(header.get(i), cells.get(i));
+            }
+            return toPoi(values);
+        }
+
+        /** One record per line; fields may be quoted with "" as an escaped quote. */
+        static List<String> parseLine(String line) {
+            List<String> cells = new ArrayList<>();
+            StringBuilder cell = new StringBuilder();
+            boolean quoted = false;
+            for (int i = 0; i < line.length(); i++) {
+                char c = line.charAt(i);
+                if (quoted) {
+                    if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                        cell.append('"');
+                        i++;
+                    } else if (c == '"') {
+                        quoted = false;
+                    } else {
+                        cell.append(c);
+                    }
+                } else if (c == '"') {
+                    quoted = true;
+                } else if (c == ',') {
+                    cells.add(cell.toString().trim());
+                    cell.setLength(0);
+                } else {
+                    cell.append(c);
+                }
+            }
+            cells.add(cell.toString().trim());
+            return cells;
+        }
+
+        @Override
+        public void close() throws IOException {
+            reader.close();
+        }
+    }
+
+    private static final class GeoJsonReader extends PoiImportReader {
+        private final JsonReader json;
+        private boolean ended;
+
+        GeoJsonReader(Reader reader) throws IOException {
+            json = new JsonReader(reader);
+            // Skip to the features array; other members (type, crs, ...) are ignored
+            json.beginObject();
+            while (json.hasNext()) {
+                if ("features".equals(json.nextName()) && json.peek() == JsonToken.BEGIN_ARRAY) {
+                    json.beginArray();
+                    return;
+                }
+                json.skipValue();
+            }
+            ended = true;
+        }
+
+        @Override
+        protected Poi readRow() throws IOException {
+            if (ended || !json.hasNext()) {
+                ended = true;
+                return null;
+            }
+            JsonElement element = JsonParser.parseReader(json);
+            Map<String, String> values = new HashMap<>();
+            if (element.isJsonObject()) {
+                JsonObject feature = element.getAsJsonObject();
+                if (feature.has("properties") && feature.get("properties").isJsonObject()) {
+                    for (Map.Entry<String, JsonElement> property : feature.getAsJsonObject("properties").entrySet()) {
+                        if (property.getValue().isJsonPrimitive()) {
+                            values.put(property.getKey().toLowerCase(Locale.ROOT), property.getValue().getAsString().trim());
+                        }
+                    }
+                }
+                JsonElement geometry = feature.get("geometry");
+                if (geometry != null && geometry.isJsonObject()) {
+                    JsonObject g = geometry.getAsJsonObject();
+                    JsonElement coordinates = g.get("coordinates");
+                    if (g.has("type") && "Point".equals(g.get("type").getAsString())
+                            && coordinates != null && coordinates.isJsonArray() && coordinates.getAsJsonArray().size() >= 2) {
+                        // GeoJSON order is [longitude, latitude]
+                        JsonArray point = coordinates.getAsJsonArray();
+                        values.put("longitude", point.get(0).getAsString());
+                        values.put("latitude", point.get(1).getAsString());
+                    } else {
+                        values.put("latitude", "not a point");
+                        values.put("longitude", "not a point");
+                    }
+                }
+            }
+            return toPoi(values);
+        }
+
+        @Override
+        public void close() throws IOException {
+            json.close();
+        }
+    }
+}
@@ -2,6 +2,7 @@ package client.control;
 
 import java.io.IOException;
 import java.util.List;
+import java.util.UUID;
 
 import client.GCMClient;
 import common.MessageType;
@@ -9,6 +10,9 @@ import common.Request;
 import common.Response;
 import common.dto.CitySearchResult;
 import common.dto.CustomerProfileDTO;
+import common.dto.PaginatedRequest;
+import common.dto.PaginatedResponse;
+import common.dto.SearchFacets;
 import common.dto.SearchRequest;
 import client.LoginController;
 
@@ -28,6 +32,9 @@ public class SearchControl implements GCMClient.MessageHandler {
     public interface SearchResultCallback {
         void onSearchResults(List<CitySearchResult> results);
 
+        /** Next page of the current search was loaded (lazy loading on scroll). */
+        void onMoreSearchResults(List<CitySearchResult> results);
+
         void onDiscountEligibility(common.dto.DiscountEligibilityResponse response);
 
         void onError(String errorCode, String errorMessage);
@@ -40,6 +47,21 @@ public class SearchControl implements GCMClient.MessageHandler {
 
     private ProfileCallback pendingProfileCallback;
 
+    /** Results per page for catalog/search requests. */
+    public static final int SEARCH_PAGE_SIZE = 20;
+
+    // Paging state of the current search (keyset cursor from the last page)
+    private MessageType currentSearchType;
+    private PaginatedRequest currentPage;
+    private PaginatedResponse<CitySearchResult> lastPage;
+    private UUID pendingPageRequestId;
+    private int totalResultCount = -1;
+    private SearchFacets resultFacets;
+
+    // Facet filter applied to every search started after setFacetFilter
+    private List<String> facetCategories;
+    private Boolean facetAccessible;
+
     public SearchControl(String host, int port) throws IOException {
         // Host/port ignored as we use singleton
         client = GCMClient.getInstance();
@@ -55,37 +77,81 @@ public class SearchControl implements GCMClient.MessageHandler {
     }
 
     /**
-     * Get the full cities catalog.
+     * Get the full cities catalog (first page; more pages via loadNextPage).
      */
     public void getCatalog() {
-        Request request = new Request(MessageType.GET_CITIES_CATALOG);
-        sendRequest(request);
+        startSearch(MessageType.GET_CITIES_CATALOG, new SearchRequest());
     }
 
     /**
      * Search by city name.
      */
     public void searchByCityName(String cityName) {
-        SearchRequest searchReq = SearchRequest.byCity(cityName);
-        Request request = new Request(MessageType.SEARCH_BY_CITY_NAME, searchReq);
-        sendRequest(request);
+        startSearch(MessageType.SEARCH_BY_CITY_NAME, SearchRequest.byCity(cityName));
     }
 
     /**
      * Search by POI name.
      */
     public void searchByPoiName(String poiName) {
-        SearchRequest searchReq = SearchRequest.byPoi(poiName);
-        Request request = new Request(MessageType.SEARCH_BY_POI_NAME, searchReq);
-        sendRequest(request);
+        startSearch(MessageType.SEARCH_BY_POI_NAME, SearchRequest.byPoi(poiName));
     }
 
     /**
      * Search by both city and POI name.
      */
     public void searchByCityAndPoi(String cityName, String poiName) {
-        SearchRequest searchReq = SearchRequest.byCityAndPoi(cityName, poiName);
-        Request request = new Request(MessageType.SEARCH_BY_CITY_AND_POI, searchReq);
+        startSearch(MessageType.SEARCH_BY_CITY_AND_POI, SearchRequest.byCityAndPoi(cityName, poiName));
+    }
+
+    /**
+     * Request the next page of the current search. No-op if a page is already
+     * loading or the last page has been reached.
+     */
+    public void loadNextPage() {
+        if (currentPage == null || pendingPageRequestId != null || lastPage == null || !lastPage.hasNextPage()) {
+            return;
+        }
+        sendPageRequest(currentPage.nextPage(lastPage));
+    }
+
+    /** True if the current search has more pages on the server. */
+    public boolean hasMoreResults() {
+        return lastPage != null && lastPage.hasNextPage();
+    }
+
+    /** Total number of matching cities for the current search (-1 if unknown). */
+    public int getTotalResultCount() {
+        return totalResultCount;
+    }
+
+    /**
+     * Restrict subsequent searches to cities with POIs in these categories and/or with
+     * the given accessibility (null = any). Call a search method again to apply it.
+     */
+    public void setFacetFilter(List<String> categories, Boolean accessible) {
+        this.facetCategories = categories;
+        this.facetAccessible = accessible;
+    }
+
+    /** Category / accessibility counts over the whole current result set (null if unavailable). */
+    public SearchFacets getResultFacets() {
+        return resultFacets;
+    }
+
+    private void startSearch(MessageType type, SearchRequest filter) {
+        currentSearchType = type;
+        lastPage = null;
+        totalResultCount = -1;
+        resultFacets = null;
+        filter.withFacetFilter(facetCategories, facetAccessible);
+        sendPageRequest(new PaginatedRequest(1, SEARCH_PAGE_SIZE, filter));
+    }
+
+    private void sendPageRequest(PaginatedRequest page) {
+        currentPage = page;
+        Request request = new Request(currentSearchType, page);
+        pendingPageRequestId = request.getRequestId();
         sendRequest(request);
     }
 
@@ -210,7 +276,23 @@ public class SearchControl implements GCMClient.MessageHandler {
 
         if (response.isOk()) {
             Object payload = response.getPayload();
-            if (payload instanceof List) {
+            if (payload instanceof PaginatedResponse) {
+                // Ignore pages of a search that has since been replaced
+                if (pendingPageRequestId == null || !pendingPageRequestId.equals(response.getRequestId())) {
+                    return;
+                }
+                pendingPageRequestId = null;
+                PaginatedResponse<CitySearchResult> page = (PaginatedResponse<CitySearchResult>) payload;
+                boolean firstPage = lastPage == null;
+                lastPage = page;
+                if (firstPage) {
+                    totalResultCount = page.getTotalCount();
+                    resultFacets = page.getFacets();
+                    resultCallback.onSearchResults(page.getItems());
+                } else {
+                    resultCallback.onMoreSearchResults(page.getItems());
+                }
+            } else if (payload instanceof List) {
                 List<?> list = (List<?>) payload;
                 if (list.isEmpty() || list.get(0) instanceof CitySearchResult) {
                     resultCallback.onSearchResults((List<CitySearchResult>) payload);
@@ -224,6 +306,9 @@ public class SearchControl implements GCMClient.MessageHandler {
                 resultCallback.onError("INVALID_RESPONSE", "Server returned unexpected data format");
             }
         } else {
+            if (pendingPageRequestId != null && pendingPageRequestId.equals(response.getRequestId())) {
+                pendingPageRequestId = null;
+            }
             resultCallback.onError(
                     response.getErrorCode() != null ? response.getErrorCode() : "ERROR",
                     response.getErrorMessage() != null ? response.getErrorMessage() : "Request failed");
@@ -0,0 +1,271 @@
+package client.control;
+
+import common.Poi;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Map tiles for the Gluon MapView screens (see CachedTileRetriever): served from the disk cache
+ * (TileStore) when present, otherwise downloaded from the tile server and cached.
+ *
+ * Opening a city prefetches the tiles around its POIs at the usual zoom levels in the
+ * background, on its own small pool so tiles on screen are not queued behind it; opening
+ * another city drops what is left of the previous prefetch. In offline mode only cached tiles
+ * are served (a missing tile stays empty).
+ *
+ * Configuration (system properties): gcm.tiles.url (default OpenStreetMap, {z}/{x}/{y}),
+ * gcm.tiles.dir (default ~/.gcm/tiles), gcm.tiles.cacheMb (default 256),
+ * gcm.tiles.maxConcurrentRequests (default 4), gcm.tiles.prefetchConcurrency (default 2),
+ * gcm.tiles.prefetchMinZoom / gcm.tiles.prefetchMaxZoom (default 12 / 16),
+ * gcm.tiles.prefetchMaxTiles (default 400), gcm.tiles.offline (default false).
+ */
+public class TileService {
+
+    private static final String DEFAULT_URL = "https://tile.openstreetmap.org/{z}/{x}/{y}.png";
+    /** OpenStreetMap tile usage policy requires an identifying User-Agent. */
+    private static final String USER_AGENT = "GCM-Client/1.0 (city map viewer)";
+    private static final int TIMEOUT_SECONDS = 10;
+    /** Latitude limit of the Web Mercator projection. */
+    private static final double MAX_LATITUDE = 85.0511287798;
+
+    private static TileService instance;
+
+    private final String urlTemplate;
+    private final TileStore store;
+    private final HttpClient httpClient;
+    private final ExecutorService fetchExecutor;
+    private final ExecutorService prefetchExecutor;
+    private final int prefetchMinZoom;
+    private final int prefetchMaxZoom;
+    private final int prefetchMaxTiles;
+    /** Downloads in progress, so a tile requested twice is fetched once. */
+    private final Map<String, CompletableFuture<byte[]>> inFlight = new ConcurrentHashMap<>();
+    /** Bumped by each prefetch; queued tiles of an older prefetch are skipped. */
+    private final AtomicInteger prefetchGeneration = new AtomicInteger();
+    private volatile boolean offline;
+
+    public static synchronized TileService getInstance() {
+        if (instance == null) {
+            long cacheBytes = Long.getLong("gcm.tiles.cacheMb", 256L) * 1024 * 1024;
+            instance = new TileService(
+                    System.getProperty("gcm.tiles.url", DEFAULT_URL),
+                    new TileStore(Paths.get(System.getProperty("gcm.tiles.dir",
+                            Paths.get(System.getProperty("user.home"), ".gcm", "tiles").toString())), cacheBytes),
+                    Integer.getInteger("gcm.tiles.maxConcurrentRequests", 4),
+                    Integer.getInteger("gcm.tiles.prefetchConcurrency", 2),
+                    Integer.getInteger("gcm.tiles.prefetchMinZoom", 12),
+                    Integer.getInteger("gcm.tiles.prefetchMaxZoom", 16),
+                    Integer.getInteger("gcm.tiles.prefetchMaxTiles", 400));
+            instance.setOffline(Boolean.getBoolean("gcm.tiles.offline"));
+        }
+        return instance;
+    }
+
+    /**
+     * Service for a specific tile server and cache (e.g. a test stub).
+     *
+     * @param urlTemplate           tile URL with {z}, {x} and {y}
+     * @param maxConcurrentRequests downloads of visible tiles at once
+     * @param prefetchConcurrency   prefetch downloads at once
+     */
+    public TileService(String urlTemplate, TileStore store, int maxConcurrentRequests, int prefetchConcurrency,
+            int prefetchMinZoom, int prefetchMaxZoom, int prefetchMaxTiles) {
+        this.urlTemplate = urlTemplate;
+        this.store = store;
+        this.httpClient = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(5))
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .build();
+        this.fetchExecutor = daemonPool("TileFetch", maxConcurrentRequests);
+        this.prefetchExecutor = daemonPool("TilePrefetch", prefetchConcurrency);
+        this.prefetchMinZoom = prefetchMinZoom;
+        this.prefetchMaxZoom = Math.max(prefetchMinZoom, prefetchMaxZoom);
+        this.prefetchMaxTiles = prefetchMaxTiles;
+    }
+
+    private static ExecutorService daemonPool(String name, int threads) {
+        AtomicInteger threadNumber = new AtomicInteger(1);
+        return Executors.newFixedThreadPool(Math.max(1, threads), r -> {
+            Thread t = new Thread(r, name + "-" + threadNumber.getAndIncrement());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    public boolean isOffline() {
+        return offline;
+    }
+
+    /** In offline mode only cached tiles are served and nothing is prefetched. */
+    public void setOffline(boolean offline) {
+        this.offline = offline;
+    }
+
+    public TileStore getStore() {
+        return store;
+    }
+
+    /**
+     * PNG bytes of a tile: from the cache, or downloaded (and cached) on the fetch pool.
+     * Completes with null if the tile is not available (offline and not cached, or the server
+     * failed).
+     */
+    public CompletableFuture<byte[]> getTile(int zoom, long x, long y) {
+        byte[] cached = store.get(zoom, x, y);
+        if (cached != null) return CompletableFuture.completedFuture(cached);
+        if (offline) return CompletableFuture.completedFuture(null);
+        return download(zoom, x, y, fetchExecutor);
+    }
+
+    private CompletableFuture<byte[]> download(int zoom, long x, long y, Executor executor) {
+        String key = zoom + "/" + x + "/" + y;
+        CompletableFuture<byte[]> future = new CompletableFuture<>();
+        CompletableFuture<byte[]> running = inFlight.putIfAbsent(key, future);
+        if (running != null) return running;
+        executor.execute(() -> {
+            try {
+                byte[] data = store.get(zoom, x, y);
+                if (data == null && !offline) {
+                    data = fetch(zoom, x, y);
+                    if (data != null) store.put(zoom, x, y, data);
+                }
+                future.complete(data);
+            } catch (RuntimeException e) {
+                future.complete(null);
+            } finally {
+                inFlight.remove(key, future);
+            }
+        });
+        return future;
+    }
+
+    private byte[] fetch(int zoom, long x, long y) {
+        String url = urlTemplate.replace("{z}", String.valueOf(zoom))
+                .replace("{x}", String.valueOf(x))
+                .replace("{y}", String.valueOf(y));
+        try {
+            HttpRequest request = HttpRequest.newBuilder()
+                    .uri(URI.create(url))
+                    .header("User-Agent", USER_AGENT)
+                    .timeout(Duration.ofSeconds(TIMEOUT_SECONDS))
+                    .GET()
+                    .build();
+            HttpResponse<byte[]> response = httpClient.send(request, HttpResponse.BodyHandlers.ofByteArray());
+            if (response.statusCode() != 200) {
+                System.err.println("TileService: " + url + " answered " + response.statusCode());
+                return null;
+            }
+            return response.body();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (Exception e) {
+            System.err.println("TileService: " + url + " failed: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Prefetch the tiles covering the POIs (with a margin) at the prefetch zoom levels, lowest
+     * zoom first, up to prefetchMaxTiles. Cancels the rest of an earlier prefetch.
+     *
+     * @return completes with the number of tiles downloaded (0 if offline or no POI has coordinates)
+     */
+    public CompletableFuture<Integer> prefetchPois(List<Poi> pois) {
+        double minLat = Double.MAX_VALUE, minLon = Double.MAX_VALUE;
+        double maxLat = -Double.MAX_VALUE, maxLon = -Double.MAX_VALUE;
+        if (pois != null) {
+            for (Poi p : pois) {
+                if (p == null || p.getLatitude() == null || p.getLongitude() == null) continue;
+                minLat = Math.min(minLat, p.getLatitude());
+                maxLat = Math.max(maxLat, p.getLatitude());
+                minLon = Math.min(minLon, p.getLongitude());
+                maxLon = Math.max(maxLon, p.getLongitude());
+            }
+        }
+        if (minLat > maxLat) {
+            prefetchGeneration.incrementAndGet();
+            return CompletableFuture.completedFuture(0);
+        }
+        // 10% margin (at least ~500 m) so POIs at the edge are not on the last tile
+        double padLat = Math.max((maxLat - minLat) * 0.1, 0.005);
+        double padLon = Math.max((maxLon - minLon) * 0.1, 0.005);
+        return prefetch(minLat - padLat, minLon - padLon, maxLat + padLat, maxLon + padLon);
+    }
+
+    /**
+     * Prefetch the tiles of a bounding box (see prefetchPois).
+     */
+    public CompletableFuture<Integer> prefetch(double minLat, double minLon, double maxLat, double maxLon) {
+        int generation = prefetchGeneration.incrementAndGet();
+        if (offline) return CompletableFuture.completedFuture(0);
+        List<long[]> tiles = tilesFor(minLat, minLon, maxLat, maxLon, prefetchMinZoom, prefetchMaxZoom, prefetchMaxTiles);
+        List<CompletableFuture<Boolean>> downloads = new ArrayList<>();
+        for (long[] t : tiles) {
+            int zoom = (int) t[0];
+            if (store.contains(zoom, t[1], t[2])) continue;
+            CompletableFuture<Boolean> done = new CompletableFuture<>();
+            prefetchExecutor.execute(() -> {
+                if (generation != prefetchGeneration.get() || offline || store.contains(zoom, t[1], t[2])) {
+                    done.complete(false);
+                    return;
+                }
+                // Runs on this pool's thread: at most prefetchConcurrency downloads at once
+                download(zoom, t[1], t[2], Runnable::run)
+                        .whenComplete((data, e) -> done.complete(data != null));
+            });
+            downloads.add(done);
+        }
+        return CompletableFuture.allOf(downloads.toArray(new CompletableFuture<?>[0]))
+                .thenApply(v -> (int) downloads.stream().filter(CompletableFuture::join).count());
+    }
+
+    /**
+     * Tiles {zoom, x, y} covering a bounding box, zoom level by zoom level, at most maxTiles.
+     */
+    static List<long[]> tilesFor(double minLat, double minLon, double maxLat, double maxLon,
+            int minZoom, int maxZoom, int maxTiles) {
+        List<long[]> tiles = new ArrayList<>();
+        for (int zoom = minZoom; zoom <= maxZoom; zoom++) {
+            long x0 = tileX(minLon, zoom), x1 = tileX(maxLon, zoom);
+            // y grows southwards
+            long y0 = tileY(maxLat, zoom), y1 = tileY(minLat, zoom);
+            if ((x1 - x0 + 1) * (y1 - y0 + 1) > maxTiles - tiles.size()) break;
+            for (long x = x0; x <= x1; x++) {
+                for (long y = y0; y <= y1; y++) {
+                    tiles.add(new long[] { zoom, x, y });
+                }
+            }
+        }
+        return tiles;
+    }
+
+    /** Web Mercator tile column of a longitude. */
+    static long tileX(double lon, int zoom) {
+        long n = 1L << zoom;
+        long x = (long) Math.floor((lon + 180.0) / 360.0 * n);
+        return Math.max(0, Math.min(n - 1, x));
+    }
+
+    /** Web Mercator tile row of a latitude. */
+    static long tileY(double lat, int zoom) {
+        long n = 1L << zoom;
+        double rad = Math.toRadians(Math.max(-MAX_LATITUDE, Math.min(MAX_LATITUDE, lat)));
+        long y = (long) Math.floor((1.0 - Math.log(Math.tan(rad) + 1.0 / Math.cos(rad)) / Math.PI) / 2.0 * n);
+        return Math.max(0, Math.min(n - 1, y));
+    }
+}
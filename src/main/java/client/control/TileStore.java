@@ -0,0 +1,172 @@
+package client.control;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Map tiles on disk (&lt;dir&gt;/&lt;zoom&gt;/&lt;x&gt;/&lt;y&gt;.png) with a size limit and least-recently-used
+ * eviction.
+ *
+ * The index (tile key to size, in access order) is kept in memory and rebuilt from the files'
+ * modification times on start; a read touches the file's time so the order survives restarts.
+ * Writes go through a temporary file, so a crash never leaves a half-written tile. Only the index
+ * is guarded by the store's lock; reading a cached tile does its disk I/O outside it, so hits do
+ * not wait behind writes and evictions.
+ */
+public class TileStore {
+
+    private final Path directory;
+    private final long maxBytes;
+    private final LinkedHashMap<String, Long> index = new LinkedHashMap<>(256, 0.75f, true);
+    private long totalBytes;
+
+    /**
+     * @param directory tile directory (created when needed)
+     * @param maxBytes  size limit; least recently used tiles are deleted beyond it
+     */
+    public TileStore(Path directory, long maxBytes) {
+        this.directory = directory;
+        this.maxBytes = Math.max(0, maxBytes);
+        loadIndex();
+    }
+
+    private void loadIndex() {
+        if (!Files.isDirectory(directory)) return;
+        List<Path> files = new ArrayList<>();
+        try (Stream<Path> walk = Files.walk(directory, 3)) {
+            walk.filter(p -> p.getFileName().toString().endsWith(".png")).forEach(files::add);
+        } catch (IOException e) {
+            System.err.println("TileStore: cannot read " + directory + ": " + e.getMessage());
+            return;
+        }
+        files.sort(Comparator.comparingLong(TileStore::lastModified));
+        for (Path file : files) {
+            String key = keyOf(file);
+            if (key == null) continue;
+            try {
+                long size = Files.size(file);
+                index.put(key, size);
+                totalBytes += size;
+            } catch (IOException ignored) {
+                // vanished meanwhile
+            }
+        }
+        evict();
+    }
+
+    /** "z/x/y" of a tile file, or null if the path is not one. */
+    private String keyOf(Path file) {
+        Path rel = directory.relativize(file);
+        if (rel.getNameCount() != 3) return null;
+        String y = rel.getName(2).toString();
+        return rel.getName(0) + "/" + rel.getName(1) + "/" + y.substring(0, y.length() - ".png".length());
+    }
+
+    private static long lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file).toMillis();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private static String key(int zoom, long x, long y) {
+        return zoom + "/" + x + "/" + y;
+    }
+
+    private Path file(String key) {
+        return directory.resolve(key + ".png");
+    }
+
+    /**
+     * The stored tile, or null if it is not cached.
+     */
+    public byte[] get(int zoom, long x, long y) {
+        String key = key(zoom, x, y);
+        synchronized (this) {
+            // Marks the tile as most recently used
+            if (index.get(key) == null) return null;
+        }
+        Path file = file(key);
+        byte[] data;
+        try {
+            data = Files.readAllBytes(file);
+        } catch (IOException e) {
+            // Evicted meanwhile, or deleted from outside: forget it unless it was written again
+            synchronized (this) {
+                if (!Files.exists(file)) {
+                    Long size = index.remove(key);
+                    if (size != null) totalBytes -= size;
+                }
+            }
+            return null;
+        }
+        try {
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (IOException ignored) {
+            // evicted right after the read; the data is still good
+        }
+        return data;
+    }
+
+    public synchronized boolean contains(int zoom, long x, long y) {
+        return index.containsKey(key(zoom, x, y));
+    }
+
+    /**
+     * Store a tile, then evict least recently used tiles beyond the size limit.
+     */
+    public synchronized void put(int zoom, long x, long y, byte[] data) {
+        if (data == null || data.length == 0 || data.length > maxBytes) return;
+        String key = key(zoom, x, y);
+        Path file = file(key);
+        try {
+            Files.createDirectories(file.getParent());
+            Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+            Files.write(tmp, data);
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            System.err.println("TileStore: cannot write tile " + key + ": " + e.getMessage());
+            return;
+        }
+        Long previous = index.put(key, (long) data.length);
+        totalBytes += data.length - (previous != null ? previous : 0);
+        evict();
+    }
+
+    private void evict() {
+        Iterator<Map.Entry<String, Long>> it = index.entrySet().iterator();
+        while (totalBytes > maxBytes && it.hasNext()) {
+            Map.Entry<String, Long> eldest = it.next();
+            try {
+                Files.deleteIfExists(file(eldest.getKey()));
+            } catch (IOException e) {
+                System.err.println("TileStore: cannot delete tile " + eldest.getKey() + ": " + e.getMessage());
+            }
+            totalBytes -= eldest.getValue();
+            it.remove();
+        }
+    }
+
+    public synchronized int getTileCount() {
+        return index.size();
+    }
+
+    public synchronized long getTotalBytes() {
+        return totalBytes;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+}
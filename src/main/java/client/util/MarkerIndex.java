@@ -0,0 +1,229 @@
+package client.util;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Map markers in a spatial grid, for map layers that lay out only what is on screen.
+ *
+ * Positions are Web Mercator world coordinates (0..1 across and down the world), so a map
+ * view is an offset plus a scale (see Transform). A query returns the markers inside the
+ * viewport, optionally clustered: markers in the same screen-sized cell become one cluster
+ * with a count. Cells are anchored to the world, not the screen, so clusters do not change
+ * while panning.
+ *
+ * @param <T> marker payload (e.g. the POI)
+ */
+public class MarkerIndex<T> {
+
+    /** Grid cells per world axis (~2.4 km at the equator). */
+    private static final int GRID_SIZE = 1 << 14;
+    /** Latitude limit of the Web Mercator projection. */
+    private static final double MAX_LATITUDE = 85.0511287798;
+
+    private final Map<Long, List<Entry<T>>> grid = new HashMap<>();
+    private final List<Entry<T>> entries = new ArrayList<>();
+
+    private static final class Entry<T> {
+        final T item;
+        final double x;
+        final double y;
+
+        Entry(T item, double x, double y) {
+            this.item = item;
+            this.x = x;
+            this.y = y;
+        }
+    }
+
+    /** World x (0..1) of a longitude. */
+    public static double worldX(double lon) {
+        return (lon + 180.0) / 360.0;
+    }
+
+    /** World y (0..1, growing southwards) of a latitude. */
+    public static double worldY(double lat) {
+        double rad = Math.toRadians(Math.max(-MAX_LATITUDE, Math.min(MAX_LATITUDE, lat)));
+        return (1.0 - Math.log(Math.tan(rad) + 1.0 / Math.cos(rad)) / Math.PI) / 2.0;
+    }
+
+    private static long cellKey(int cx, int cy) {
+        return ((long) cx << 32) | (cy & 0xffffffffL);
+    }
+
+    private static int cell(double world) {
+        return Math.max(0, Math.min(GRID_SIZE - 1, (int) Math.floor(world * GRID_SIZE)));
+    }
+
+    public void add(T item, double lat, double lon) {
+        Entry<T> entry = new Entry<>(item, worldX(lon), worldY(lat));
+        entries.add(entry);
+        grid.computeIfAbsent(cellKey(cell(entry.x), cell(entry.y)), k -> new ArrayList<>()).add(entry);
+    }
+
+    public void clear() {
+        entries.clear();
+        grid.clear();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Markers inside the world rectangle, in insertion order within each cell.
+     */
+    private List<Entry<T>> inside(double minX, double minY, double maxX, double maxY) {
+        List<Entry<T>> result = new ArrayList<>();
+        int cx0 = cell(minX), cx1 = cell(maxX);
+        int cy0 = cell(minY), cy1 = cell(maxY);
+        long cells = (long) (cx1 - cx0 + 1) * (cy1 - cy0 + 1);
+        if (cells > entries.size()) {
+            // Zoomed out: fewer markers than cells, scan them all
+            for (Entry<T> e : entries) {
+                if (e.x >= minX && e.x <= maxX && e.y >= minY && e.y <= maxY) result.add(e);
+            }
+            return result;
+        }
+        for (int cx = cx0; cx <= cx1; cx++) {
+            for (int cy = cy0; cy <= cy1; cy++) {
+                List<Entry<T>> bucket = grid.get(cellKey(cx, cy));
+                if (bucket == null) continue;
+                for (Entry<T> e : bucket) {
+                    if (e.x >= minX && e.x <= maxX && e.y >= minY && e.y <= maxY) result.add(e);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Markers and clusters to draw in a viewport.
+     *
+     * @param view      world-to-screen transform of the map
+     * @param width     viewport width in pixels (screen x from 0)
+     * @param height    viewport height in pixels (screen y from 0)
+     * @param margin    extra pixels around the viewport, so markers at the edge do not pop in
+     * @param clusterPx cluster cell size in pixels; 0 or less draws every marker on its own
+     */
+    public List<Cluster<T>> query(Transform view, double width, double height, double margin, double clusterPx) {
+        List<Entry<T>> visible = inside(
+                view.toWorldX(-margin), view.toWorldY(-margin),
+                view.toWorldX(width + margin), view.toWorldY(height + margin));
+        List<Cluster<T>> result = new ArrayList<>();
+        if (clusterPx <= 0) {
+            for (Entry<T> e : visible) {
+                Cluster<T> single = new Cluster<>(e.item);
+                single.add(e, view);
+                result.add(single);
+            }
+            return result;
+        }
+        double cellWorld = clusterPx / view.scale;
+        Map<Long, Cluster<T>> cells = new LinkedHashMap<>();
+        for (Entry<T> e : visible) {
+            long key = cellKey((int) Math.floor(e.x / cellWorld), (int) Math.floor(e.y / cellWorld));
+            cells.computeIfAbsent(key, k -> new Cluster<>(e.item)).add(e, view);
+        }
+        result.addAll(cells.values());
+        return result;
+    }
+
+    /** One marker, or several close together (drawn at their centre with a count). */
+    public static class Cluster<T> {
+        private final T first;
+        private int count;
+        private double sumX;
+        private double sumY;
+
+        Cluster(T first) {
+            this.first = first;
+        }
+
+        void add(Entry<T> e, Transform view) {
+            count++;
+            sumX += view.toScreenX(e.x);
+            sumY += view.toScreenY(e.y);
+        }
+
+        /** The marker, or the first marker of a cluster. */
+        public T getFirst() {
+            return first;
+        }
+
+        public int getCount() {
+            return count;
+        }
+
+        public boolean isSingle() {
+            return count == 1;
+        }
+
+        public double getScreenX() {
+            return sumX / count;
+        }
+
+        public double getScreenY() {
+            return sumY / count;
+        }
+    }
+
+    /**
+     * World-to-screen mapping of a map view: screen = world * scale + origin. Web Mercator is
+     * linear in both axes, so two projected reference points are enough to derive it.
+     */
+    public static class Transform {
+        private final double scale;
+        private final double originX;
+        private final double originY;
+
+        public Transform(double scale, double originX, double originY) {
+            this.scale = scale;
+            this.originX = originX;
+            this.originY = originY;
+        }
+
+        /**
+         * Transform from the screen positions of two reference coordinates, as projected by the map.
+         *
+         * @return null if the points do not determine a scale (e.g. the map is not laid out yet)
+         */
+        public static Transform fromReference(double latA, double lonA, double screenAX, double screenAY,
+                double latB, double lonB, double screenBX, double screenBY) {
+            double dx = worldX(lonB) - worldX(lonA);
+            if (dx == 0) return null;
+            double scale = (screenBX - screenAX) / dx;
+            if (!(scale > 0) || Double.isInfinite(scale)) return null;
+            return new Transform(scale, screenAX - worldX(lonA) * scale, screenAY - worldY(latA) * scale);
+        }
+
+        /** Pixels across the whole world (256 * 2^zoom for a tile map). */
+        public double getScale() {
+            return scale;
+        }
+
+        /** Tile zoom level of the scale. */
+        public double getZoom() {
+            return Math.log(scale / 256.0) / Math.log(2);
+        }
+
+        public double toScreenX(double worldX) {
+            return worldX * scale + originX;
+        }
+
+        public double toScreenY(double worldY) {
+            return worldY * scale + originY;
+        }
+
+        public double toWorldX(double screenX) {
+            return (screenX - originX) / scale;
+        }
+
+        public double toWorldY(double screenY) {
+            return (screenY - originY) / scale;
+        }
+    }
+}
@@ -19,6 +19,12 @@ public enum MessageType {
     /** Search maps by both city and POI name */
     SEARCH_BY_CITY_AND_POI,
 
+    /** Find published POIs within a radius of a point, closest first */
+    SEARCH_POIS_NEAR,
+
+    /** Find published POIs inside a lat/lon bounding box */
+    SEARCH_POIS_IN_BBOX,
+
     // ==================== MAP EDITING (Phase 2) ====================
     /** Get all cities for editor */
     GET_CITIES,
@@ -29,6 +35,9 @@ public enum MessageType {
     /** Get full map content for editing */
     GET_MAP_CONTENT,
 
+    /** Get changes of map content since a content version (MapContentSyncRequest); MapContentDelta or full MapContent */
+    GET_MAP_CONTENT_DELTA,
+
     /**
      * Save map changes as draft only (never publish); does not depend on payload
      * draft field.
@@ -98,6 +107,12 @@ public enum MessageType {
     /** Remove stop from tour */
     REMOVE_TOUR_STOP,
 
+    /** Suggest the shortest stop order for a tour or POI list (TourOptimizationRequest) */
+    OPTIMIZE_TOUR,
+
+    /** Import POIs from a file into a map as drafts, one PoiImportChunk per request */
+    IMPORT_POIS,
+
     // ==================== VERSION PUBLISHING (Phase 3) ====================
     /** List all pending map versions for approval */
     LIST_PENDING_MAP_VERSIONS,
@@ -130,9 +145,12 @@ public enum MessageType {
     /** Check if user can download map */
     CAN_DOWNLOAD,
 
-    /** Record map version download event */
+    /** Record map version download event; returns the city's offline package (MapPackageInfo) */
     DOWNLOAD_MAP_VERSION,
 
+    /** Next chunk of an offline map package (MapPackageChunkRequest -> MapPackageChunk) */
+    GET_MAP_PACKAGE_CHUNK,
+
     /** Record map view event */
     RECORD_VIEW_EVENT,
 
@@ -239,6 +257,12 @@ public enum MessageType {
     /** Get activity report stats */
     GET_ACTIVITY_REPORT,
 
+    /** Export approved cities, maps, POIs and tours (CatalogExportInfo.Format -> CatalogExportInfo) */
+    EXPORT_CATALOG,
+
+    /** Next chunk of a catalog export file (CatalogExportChunkRequest -> CatalogExportChunk) */
+    GET_CATALOG_EXPORT_CHUNK,
+
     // ==================== MAP EDIT APPROVALS ====================
     /**
      * Get all POIs for a city (for tours from different maps, add existing POI to
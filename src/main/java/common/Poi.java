@@ -24,6 +24,8 @@ public class Poi implements Serializable {
     private boolean pendingRemoval;
     /** True when POI is pending full deletion – waiting for manager approval. */
     private boolean pendingDeletion;
+    /** Row version when loaded (base version of edits; see common.dto.MapChanges). */
+    private int version;
 
     public Poi() {
     }
@@ -146,6 +148,14 @@ public class Poi implements Serializable {
         this.pendingDeletion = pendingDeletion;
     }
 
+    public int getVersion() {
+        return version;
+    }
+
+    public void setVersion(int version) {
+        this.version = version;
+    }
+
     @Override
     public String toString() {
         return name + " [" + category + "] - " + shortExplanation;
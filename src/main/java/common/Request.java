@@ -25,6 +25,9 @@ public class Request implements Serializable {
     /** User ID of the requester (set after authentication) */
     private int userId;
 
+    /** ETag of the response payload the client already has; the server answers NOT_MODIFIED if it is current */
+    private String ifNoneMatch;
+
     /**
      * Creates a new request with auto-generated ID.
      * 
@@ -95,6 +98,14 @@ public class Request implements Serializable {
         this.userId = userId;
     }
 
+    public String getIfNoneMatch() {
+        return ifNoneMatch;
+    }
+
+    public void setIfNoneMatch(String ifNoneMatch) {
+        this.ifNoneMatch = ifNoneMatch;
+    }
+
     /**
      * Checks if this request has authentication.
      */
@@ -28,6 +28,12 @@ public class Response implements Serializable {
     /** Request message type this response corresponds to */
     private final MessageType requestType;
 
+    /** ETag of the payload (version of the content it was read at); null if the type has none */
+    private String etag;
+
+    /** True if the client's copy (Request#getIfNoneMatch) is current; the payload is then omitted */
+    private boolean notModified;
+
     /**
      * Creates a successful response.
      */
@@ -44,9 +50,16 @@ public class Response implements Serializable {
      * Creates an error response.
      */
     private Response(UUID requestId, String errorCode, String errorMessage, MessageType requestType) {
+        this(requestId, errorCode, errorMessage, null, requestType);
+    }
+
+    /**
+     * Creates an error response with details in the payload.
+     */
+    private Response(UUID requestId, String errorCode, String errorMessage, Object payload, MessageType requestType) {
         this.requestId = requestId;
         this.ok = false;
-        this.payload = null;
+        this.payload = payload;
         this.errorCode = errorCode;
         this.errorMessage = errorMessage;
         this.requestType = requestType;
@@ -82,6 +95,14 @@ public class Response implements Serializable {
         return new Response(request.getRequestId(), errorCode, errorMessage, request.getType());
     }
 
+    /**
+     * Creates a CONFLICT error: the request was based on outdated versions; the payload describes
+     * the conflicting entities (e.g. common.dto.EditConflict).
+     */
+    public static Response conflict(Request request, String errorMessage, Object details) {
+        return new Response(request.getRequestId(), ERR_CONFLICT, errorMessage, details, request.getType());
+    }
+
     /**
      * Creates a success response from a Request.
      */
@@ -89,6 +110,34 @@ public class Response implements Serializable {
         return new Response(request.getRequestId(), payload, request.getType());
     }
 
+    /**
+     * Creates a success response carrying the ETag of its payload.
+     */
+    public static Response success(Request request, Object payload, String etag) {
+        Response response = new Response(request.getRequestId(), payload, request.getType());
+        response.etag = etag;
+        return response;
+    }
+
+    /**
+     * Creates a NOT_MODIFIED response: the client's copy with this ETag is current.
+     */
+    public static Response notModified(Request request, String etag) {
+        Response response = new Response(request.getRequestId(), null, request.getType());
+        response.etag = etag;
+        response.notModified = true;
+        return response;
+    }
+
+    /**
+     * Copy of a NOT_MODIFIED response with the client's cached payload filled in.
+     */
+    public Response withCachedPayload(Object cachedPayload) {
+        Response response = new Response(requestId, cachedPayload, requestType);
+        response.etag = etag;
+        return response;
+    }
+
     // ==================== Common Error Codes ====================
     public static final String ERR_NOT_FOUND = "NOT_FOUND";
     public static final String ERR_UNAUTHORIZED = "UNAUTHORIZED";
@@ -99,6 +148,7 @@ public class Response implements Serializable {
     public static final String ERR_SESSION_EXPIRED = "SESSION_EXPIRED";
     public static final String ERR_ALREADY_LOGGED_IN = "ALREADY_LOGGED_IN";
     public static final String ERR_AUTHENTICATION = "AUTHENTICATION_REQUIRED";
+    public static final String ERR_CONFLICT = "CONFLICT";
 
     // Getters
     public UUID getRequestId() {
@@ -121,6 +171,14 @@ public class Response implements Serializable {
         return errorMessage;
     }
 
+    public String getEtag() {
+        return etag;
+    }
+
+    public boolean isNotModified() {
+        return notModified;
+    }
+
     /**
      * Gets payload cast to specific type.
      */
@@ -132,8 +190,8 @@ public class Response implements Serializable {
     @Override
     public String toString() {
         if (ok) {
-            return "Response{OK, id=" + requestId.toString().substring(0, 8) + "..., hasPayload=" + (payload != null)
-                    + "}";
+            return "Response{" + (notModified ? "NOT_MODIFIED" : "OK") + ", id=" + requestId.toString().substring(0, 8)
+                    + "..., hasPayload=" + (payload != null) + "}";
         } else {
             return "Response{ERROR, id=" + requestId.toString().substring(0, 8) + "..., code=" + errorCode + ", msg="
                     + errorMessage + "}";
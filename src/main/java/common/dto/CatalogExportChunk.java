@@ -0,0 +1,39 @@
+package common.dto;
+
+import java.io.Serializable;
+
+/**
+ * One fixed-size chunk of a catalog export (the last one may be shorter).
+ */
+public class CatalogExportChunk implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private String hash;
+    private long offset;
+    private long totalSize;
+    private byte[] data;
+
+    public CatalogExportChunk() {
+    }
+
+    public CatalogExportChunk(String hash, long offset, long totalSize, byte[] data) {
+        this.hash = hash;
+        this.offset = offset;
+        this.totalSize = totalSize;
+        this.data = data;
+    }
+
+    public String getHash() { return hash; }
+    public void setHash(String hash) { this.hash = hash; }
+    public long getOffset() { return offset; }
+    public void setOffset(long offset) { this.offset = offset; }
+    public long getTotalSize() { return totalSize; }
+    public void setTotalSize(long totalSize) { this.totalSize = totalSize; }
+    public byte[] getData() { return data; }
+    public void setData(byte[] data) { this.data = data; }
+
+    /** True if this chunk ends the export. */
+    public boolean isLast() {
+        return offset + (data != null ? data.length : 0) >= totalSize;
+    }
+}
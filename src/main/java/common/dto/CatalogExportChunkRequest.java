@@ -0,0 +1,27 @@
+package common.dto;
+
+import java.io.Serializable;
+
+/**
+ * Payload of GET_CATALOG_EXPORT_CHUNK: the chunk of an export starting at the number of bytes
+ * the client already has.
+ */
+public class CatalogExportChunkRequest implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private String hash;
+    private long offset;
+
+    public CatalogExportChunkRequest() {
+    }
+
+    public CatalogExportChunkRequest(String hash, long offset) {
+        this.hash = hash;
+        this.offset = offset;
+    }
+
+    public String getHash() { return hash; }
+    public void setHash(String hash) { this.hash = hash; }
+    public long getOffset() { return offset; }
+    public void setOffset(long offset) { this.offset = offset; }
+}
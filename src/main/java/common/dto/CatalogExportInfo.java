@@ -0,0 +1,57 @@
+package common.dto;
+
+import java.io.Serializable;
+
+/**
+ * Response of EXPORT_CATALOG: a gzipped export of all approved content, identified by the
+ * SHA-256 of its bytes, and the size of the chunks it is served in (GET_CATALOG_EXPORT_CHUNK).
+ */
+public class CatalogExportInfo implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    /** Layout of the export. */
+    public enum Format {
+        /** One GeoJSON FeatureCollection. */
+        GEOJSON(".geojson.gz"),
+        /** One GeoJSON Feature per line. */
+        NDJSON(".ndjson.gz");
+
+        private final String extension;
+
+        Format(String extension) {
+            this.extension = extension;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+    }
+
+    private Format format;
+    private String hash;
+    private long sizeBytes;
+    private int chunkSize;
+    private long featureCount;
+
+    public CatalogExportInfo() {
+    }
+
+    public CatalogExportInfo(Format format, String hash, long sizeBytes, int chunkSize, long featureCount) {
+        this.format = format;
+        this.hash = hash;
+        this.sizeBytes = sizeBytes;
+        this.chunkSize = chunkSize;
+        this.featureCount = featureCount;
+    }
+
+    public Format getFormat() { return format; }
+    public void setFormat(Format format) { this.format = format; }
+    public String getHash() { return hash; }
+    public void setHash(String hash) { this.hash = hash; }
+    public long getSizeBytes() { return sizeBytes; }
+    public void setSizeBytes(long sizeBytes) { this.sizeBytes = sizeBytes; }
+    public int getChunkSize() { return chunkSize; }
+    public void setChunkSize(int chunkSize) { this.chunkSize = chunkSize; }
+    public long getFeatureCount() { return featureCount; }
+    public void setFeatureCount(long featureCount) { this.featureCount = featureCount; }
+}
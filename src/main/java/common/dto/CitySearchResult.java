@@ -17,6 +17,7 @@ public class CitySearchResult implements Serializable {
     private double cityPrice;
     private int totalMaps;
     private List<MapSummary> maps;
+    private SearchFacets facets;
 
     public CitySearchResult() {
         this.maps = new ArrayList<>();
@@ -89,6 +90,15 @@ public class CitySearchResult implements Serializable {
         this.totalMaps = maps.size();
     }
 
+    /** POI facet counts for this city (null when the facet index is not loaded). */
+    public SearchFacets getFacets() {
+        return facets;
+    }
+
+    public void setFacets(SearchFacets facets) {
+        this.facets = facets;
+    }
+
     @Override
     public String toString() {
         return cityName + " (" + totalMaps + " maps) - $" + cityPrice;
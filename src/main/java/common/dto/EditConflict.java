@@ -0,0 +1,175 @@
+package common.dto;
+
+import common.Poi;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Payload of a CONFLICT response to publishing or approving map changes: the map, POIs and tours
+ * that were changed by someone else after the changes were made (their version moved on from the
+ * base version in MapChanges). Nothing was written; the editor rebases onto the current versions
+ * and sends the changes again.
+ */
+public class EditConflict implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    public static final String MAP = "MAP";
+    public static final String POI = "POI";
+    public static final String TOUR = "TOUR";
+
+    private int mapId;
+    private List<Entity> entities = new ArrayList<>();
+
+    /** One conflicting entity. */
+    public static class Entity implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private String type;
+        private int id;
+        private int baseVersion;
+        private int currentVersion;
+
+        public Entity() {
+        }
+
+        public Entity(String type, int id, int baseVersion, int currentVersion) {
+            this.type = type;
+            this.id = id;
+            this.baseVersion = baseVersion;
+            this.currentVersion = currentVersion;
+        }
+
+        /** MAP, POI or TOUR. */
+        public String getType() { return type; }
+        public void setType(String type) { this.type = type; }
+        public int getId() { return id; }
+        public void setId(int id) { this.id = id; }
+        /** Version the changes were made against. */
+        public int getBaseVersion() { return baseVersion; }
+        public void setBaseVersion(int baseVersion) { this.baseVersion = baseVersion; }
+        /** Version in the database now; -1 if the entity was deleted. */
+        public int getCurrentVersion() { return currentVersion; }
+        public void setCurrentVersion(int currentVersion) { this.currentVersion = currentVersion; }
+        public boolean isDeleted() { return currentVersion < 0; }
+    }
+
+    public EditConflict() {
+    }
+
+    public EditConflict(int mapId, List<Entity> entities) {
+        this.mapId = mapId;
+        this.entities = entities != null ? entities : new ArrayList<>();
+    }
+
+    public int getMapId() { return mapId; }
+    public void setMapId(int mapId) { this.mapId = mapId; }
+    public List<Entity> getEntities() { return entities; }
+    public void setEntities(List<Entity> entities) { this.entities = entities; }
+
+    /**
+     * Rebase changes onto the current versions of the conflicting entities, so sending them again
+     * overwrites what the other edit did. Edits of entities that were deleted meanwhile are dropped.
+     */
+    public void rebase(MapChanges changes) {
+        for (Entity e : entities) {
+            if (MAP.equals(e.type)) {
+                changes.setBaseMapVersion(e.isDeleted() ? null : e.currentVersion);
+            } else if (POI.equals(e.type)) {
+                if (e.isDeleted()) {
+                    changes.getBasePoiVersions().remove(e.id);
+                    changes.getUpdatedPois().removeIf(p -> p.getId() == e.id);
+                } else {
+                    changes.getBasePoiVersions().put(e.id, e.currentVersion);
+                }
+            } else if (TOUR.equals(e.type)) {
+                if (e.isDeleted()) {
+                    changes.getBaseTourVersions().remove(e.id);
+                    changes.getUpdatedTours().removeIf(t -> t.getId() == e.id);
+                    changes.getAddedStops().removeIf(s -> s.getTourId() == e.id);
+                    changes.getUpdatedStops().removeIf(s -> s.getTourId() == e.id);
+                } else {
+                    changes.getBaseTourVersions().put(e.id, e.currentVersion);
+                }
+            }
+        }
+    }
+
+    /**
+     * Keep each base version only in the first of the parts of one submission that writes the
+     * entity (a submission is split into one approval request per POI, tour, ...). Approving that
+     * part moves the entity's version on, so a later part writing it again (e.g. unlinking a POI
+     * that another part updates) claims it without a base version instead of conflicting with the
+     * editor's own change.
+     *
+     * @param parts              the parts in submission order; base versions are removed in place
+     * @param deletedStopTourIds tours of the deleted stops (stops in MapChanges carry no tour id)
+     */
+    public static void keepBaseVersionsInFirstPart(List<MapChanges> parts, Set<Integer> deletedStopTourIds) {
+        Set<String> written = new HashSet<>();
+        for (MapChanges part : parts) {
+            Set<String> keys = writtenEntities(part, deletedStopTourIds);
+            for (String key : keys) {
+                if (!written.add(key)) {
+                    String[] typeAndId = key.split("/");
+                    int id = Integer.parseInt(typeAndId[1]);
+                    if (MAP.equals(typeAndId[0])) part.setBaseMapVersion(null);
+                    else if (POI.equals(typeAndId[0])) part.getBasePoiVersions().remove(id);
+                    else part.getBaseTourVersions().remove(id);
+                }
+            }
+        }
+    }
+
+    /** "TYPE/id" of the existing entities a change set writes; mirrors EntityVersionDAO's claims. */
+    private static Set<String> writtenEntities(MapChanges changes, Set<Integer> deletedStopTourIds) {
+        Set<String> keys = new LinkedHashSet<>();
+        Integer mapId = changes.getMapId();
+        if (mapId != null && mapId > 0) {
+            boolean deleted = changes.getDeletedMapIds() != null && changes.getDeletedMapIds().contains(mapId);
+            if (deleted || changes.getNewMapName() != null || changes.getNewMapDescription() != null) {
+                keys.add(MAP + "/" + mapId);
+            }
+        }
+        for (Integer id : changes.getDeletedPoiIds()) {
+            if (id != null && id > 0) keys.add(POI + "/" + id);
+        }
+        for (Poi p : changes.getUpdatedPois()) {
+            if (p.getId() > 0) keys.add(POI + "/" + p.getId());
+        }
+        for (MapChanges.PoiMapLink link : changes.getPoiMapUnlinks()) {
+            if (link.poiId > 0) keys.add(POI + "/" + link.poiId);
+        }
+        for (Integer id : changes.getDeletedTourIds()) {
+            if (id != null && id > 0) keys.add(TOUR + "/" + id);
+        }
+        for (TourDTO t : changes.getUpdatedTours()) {
+            if (t.getId() > 0) keys.add(TOUR + "/" + t.getId());
+        }
+        for (TourStopDTO s : changes.getAddedStops()) {
+            if (s.getTourId() > 0) keys.add(TOUR + "/" + s.getTourId());
+        }
+        for (TourStopDTO s : changes.getUpdatedStops()) {
+            if (s.getTourId() > 0) keys.add(TOUR + "/" + s.getTourId());
+        }
+        if (!changes.getDeletedStopIds().isEmpty() && deletedStopTourIds != null) {
+            for (Integer id : deletedStopTourIds) keys.add(TOUR + "/" + id);
+        }
+        return keys;
+    }
+
+    /** Short text for the editor, e.g. "POI #12 (changed), tour #4 (deleted)". */
+    public String describe() {
+        StringBuilder sb = new StringBuilder();
+        for (Entity e : entities) {
+            if (sb.length() > 0) sb.append(", ");
+            String type = MAP.equals(e.type) ? "map" : POI.equals(e.type) ? "POI" : "tour";
+            sb.append(type).append(" #").append(e.id).append(e.isDeleted() ? " (deleted)" : " (changed)");
+        }
+        return sb.toString();
+    }
+}
@@ -3,7 +3,9 @@ package common.dto;
 import common.Poi;
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * DTO containing changes to submit for a map.
@@ -68,6 +70,15 @@ public class MapChanges implements Serializable {
     /** Display names for deleted tours (same order as deletedTourIds), so manager sees "Delete tour: Name" instead of ID. */
     private List<String> deletedTourDisplayNames;
 
+    /**
+     * Versions of the existing map, POIs and tours the changes were made against (as loaded by the
+     * editor). Publishing and approval write them compare-and-set; an entity whose version moved on
+     * since is reported back as an EditConflict. Entities without a base version are not checked.
+     */
+    private Integer baseMapVersion;
+    private Map<Integer, Integer> basePoiVersions;
+    private Map<Integer, Integer> baseTourVersions;
+
     /** Request to create a new city (name, description, price). */
     public static class NewCityRequest implements Serializable {
         private static final long serialVersionUID = 1L;
@@ -473,6 +484,32 @@ public class MapChanges implements Serializable {
         this.deletedTourDisplayNames = deletedTourDisplayNames;
     }
 
+    public Integer getBaseMapVersion() {
+        return baseMapVersion;
+    }
+
+    public void setBaseMapVersion(Integer baseMapVersion) {
+        this.baseMapVersion = baseMapVersion;
+    }
+
+    public Map<Integer, Integer> getBasePoiVersions() {
+        if (basePoiVersions == null) basePoiVersions = new LinkedHashMap<>();
+        return basePoiVersions;
+    }
+
+    public void setBasePoiVersions(Map<Integer, Integer> basePoiVersions) {
+        this.basePoiVersions = basePoiVersions;
+    }
+
+    public Map<Integer, Integer> getBaseTourVersions() {
+        if (baseTourVersions == null) baseTourVersions = new LinkedHashMap<>();
+        return baseTourVersions;
+    }
+
+    public void setBaseTourVersions(Map<Integer, Integer> baseTourVersions) {
+        this.baseTourVersions = baseTourVersions;
+    }
+
     public boolean hasChanges() {
         return createNewCity || newMapName != null || newMapDescription != null ||
                 !addedPois.isEmpty() || !updatedPois.isEmpty() || !deletedPoiIds.isEmpty() ||
@@ -0,0 +1,164 @@
+package common.dto;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.google.gson.reflect.TypeToken;
+import common.Poi;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Stored form of MapChanges (map_edit_requests.changes_blob):
+ * <pre>
+ * "GMC" | format version (1 byte) | header length (int) | header | body length (int) | deflated body
+ * </pre>
+ * The header is the MapChangesSummary, so lists can be titled without inflating the body.
+ * Header and body are JSON, whose field names keep older and newer readers compatible; the
+ * body is deflate-compressed. Legacy rows hold the plain JSON text (see fromJson).
+ */
+public final class MapChangesCodec {
+
+    public static final int FORMAT_VERSION = 1;
+    private static final byte[] MAGIC = { 'G', 'M', 'C' };
+
+    private static final Gson gson = new Gson();
+    private static final Type LIST_POI = new TypeToken<List<Poi>>(){}.getType();
+    private static final Type LIST_TOUR = new TypeToken<List<TourDTO>>(){}.getType();
+    private static final Type LIST_TOUR_STOP = new TypeToken<List<TourStopDTO>>(){}.getType();
+
+    private MapChangesCodec() {
+    }
+
+    public static byte[] encode(MapChanges changes) {
+        byte[] header = gson.toJson(MapChangesSummary.of(changes)).getBytes(StandardCharsets.UTF_8);
+        byte[] body = deflate(gson.toJson(changes).getBytes(StandardCharsets.UTF_8));
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(header.length + body.length + 16);
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.write(MAGIC);
+            out.writeByte(FORMAT_VERSION);
+            out.writeInt(header.length);
+            out.write(header);
+            out.writeInt(body.length);
+            out.write(body);
+            out.flush();
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new IllegalStateException("Encoding map changes failed", e);
+        }
+    }
+
+    /** True if the bytes are in this format (not legacy JSON). */
+    public static boolean isEncoded(byte[] data) {
+        return data != null && data.length > MAGIC.length + 1
+                && data[0] == MAGIC[0] && data[1] == MAGIC[1] && data[2] == MAGIC[2];
+    }
+
+    /** Read only the summary header. */
+    public static MapChangesSummary readSummary(byte[] data) {
+        try (DataInputStream in = open(data)) {
+            byte[] header = new byte[in.readInt()];
+            in.readFully(header);
+            return gson.fromJson(new String(header, StandardCharsets.UTF_8), MapChangesSummary.class);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Corrupt map changes header", e);
+        }
+    }
+
+    /** Decode the full changes. */
+    public static MapChanges decode(byte[] data) {
+        try (DataInputStream in = open(data)) {
+            in.skipBytes(in.readInt());
+            byte[] body = new byte[in.readInt()];
+            in.readFully(body);
+            return fromJson(new String(inflate(body), StandardCharsets.UTF_8));
+        } catch (IOException | DataFormatException e) {
+            throw new IllegalArgumentException("Corrupt map changes body", e);
+        }
+    }
+
+    private static DataInputStream open(byte[] data) throws IOException {
+        if (!isEncoded(data)) throw new IOException("Not encoded map changes");
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+        in.skipBytes(MAGIC.length);
+        int version = in.readUnsignedByte();
+        if (version > FORMAT_VERSION) throw new IOException("Unsupported map changes format " + version);
+        return in;
+    }
+
+    /**
+     * Deserialize MapChanges from JSON with correct types for List&lt;Poi&gt; so POI details
+     * (name, category, description, etc.) are preserved for the manager approval view.
+     */
+    public static MapChanges fromJson(String json) {
+        JsonObject obj = gson.fromJson(json, JsonObject.class);
+        if (obj == null) return null;
+        MapChanges changes = gson.fromJson(obj, MapChanges.class);
+        if (changes == null) return null;
+        try {
+            replace(changes.getAddedPois(), obj, "addedPois", LIST_POI);
+            replace(changes.getUpdatedPois(), obj, "updatedPois", LIST_POI);
+            replace(changes.getAddedTours(), obj, "addedTours", LIST_TOUR);
+            replace(changes.getUpdatedTours(), obj, "updatedTours", LIST_TOUR);
+            replace(changes.getAddedStops(), obj, "addedStops", LIST_TOUR_STOP);
+            replace(changes.getUpdatedStops(), obj, "updatedStops", LIST_TOUR_STOP);
+        } catch (Exception e) {
+            System.err.println("MapChangesCodec: Fallback list deserialization failed: " + e.getMessage());
+        }
+        return changes;
+    }
+
+    private static <T> void replace(List<T> target, JsonObject obj, String field, Type type) {
+        if (target == null || !obj.has(field) || !obj.get(field).isJsonArray()) return;
+        List<T> values = gson.fromJson(obj.get(field), type);
+        if (values != null) {
+            target.clear();
+            target.addAll(values);
+        }
+    }
+
+    private static byte[] deflate(byte[] data) {
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        try {
+            deflater.setInput(data);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, data.length / 4));
+            byte[] buffer = new byte[8192];
+            while (!deflater.finished()) {
+                out.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] inflate(byte[] data) throws DataFormatException {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(data);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(data.length * 4);
+            byte[] buffer = new byte[8192];
+            while (!inflater.finished()) {
+                int n = inflater.inflate(buffer);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new DataFormatException("Truncated map changes body");
+                }
+                out.write(buffer, 0, n);
+            }
+            return out.toByteArray();
+        } finally {
+            inflater.end();
+        }
+    }
+}
@@ -0,0 +1,207 @@
+package common.dto;
+
+import com.google.gson.Gson;
+import common.Poi;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Payload of SAVE_MAP_CHANGES for autosave: only the edits made since the last acknowledged save,
+ * as numbered operations on the user's draft of one map.
+ *
+ * Each op is a MapChanges fragment holding the new or changed entries of the draft; the server
+ * applies ops in sequence order and skips ops it already has, so a resent patch is harmless.
+ * A fragment can only add or replace entries (by id), so when something was taken out of the
+ * draft the op is marked full and carries the whole draft instead.
+ */
+public class MapChangesPatch implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private static final Gson gson = new Gson();
+
+    private int mapId;
+    private int cityId;
+    private List<Op> ops = new ArrayList<>();
+
+    /** One numbered edit of the draft. */
+    public static class Op implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private int sequence;
+        private boolean full;
+        private MapChanges changes;
+
+        public Op() {
+        }
+
+        public Op(int sequence, boolean full, MapChanges changes) {
+            this.sequence = sequence;
+            this.full = full;
+            this.changes = changes;
+        }
+
+        public int getSequence() { return sequence; }
+        public void setSequence(int sequence) { this.sequence = sequence; }
+        /** True if the changes replace the whole draft instead of being merged into it. */
+        public boolean isFull() { return full; }
+        public void setFull(boolean full) { this.full = full; }
+        public MapChanges getChanges() { return changes; }
+        public void setChanges(MapChanges changes) { this.changes = changes; }
+    }
+
+    public MapChangesPatch() {
+    }
+
+    public MapChangesPatch(int mapId, int cityId) {
+        this.mapId = mapId;
+        this.cityId = cityId;
+    }
+
+    public int getMapId() { return mapId; }
+    public void setMapId(int mapId) { this.mapId = mapId; }
+    public int getCityId() { return cityId; }
+    public void setCityId(int cityId) { this.cityId = cityId; }
+    public List<Op> getOps() { return ops; }
+    public void setOps(List<Op> ops) { this.ops = ops != null ? ops : new ArrayList<>(); }
+
+    /** Highest sequence in this patch (0 if empty). */
+    public int getLastSequence() {
+        int last = 0;
+        for (Op op : ops) last = Math.max(last, op.sequence);
+        return last;
+    }
+
+    // ==================== Draft diff / merge ====================
+
+    private static final Function<Poi, Object> POI_KEY = p -> p.getId() > 0 ? p.getId() : gson.toJson(p);
+    private static final Function<MapChanges.PoiMapLink, Object> LINK_KEY = l -> l.mapId + "/" + l.poiId;
+    private static final Function<TourDTO, Object> TOUR_KEY = t -> t.getId() > 0 ? t.getId() : "name:" + t.getName();
+    private static final Function<TourStopDTO, Object> STOP_KEY = s -> s.getId() > 0 ? s.getId() : s.getTourId() + "/" + s.getPoiId();
+
+    /** Deep copy (the editor changes entries in place, so a snapshot must not share them). */
+    public static MapChanges copyOf(MapChanges changes) {
+        return gson.fromJson(gson.toJson(changes), MapChanges.class);
+    }
+
+    /**
+     * The op that brings a draft from saved to current: the entries of current that are new or
+     * differ from saved, or the whole of current (full) if anything of saved is gone.
+     *
+     * @return null if current equals saved
+     */
+    public static Op diff(MapChanges saved, MapChanges current, int sequence) {
+        MapChanges fragment = new MapChanges();
+        boolean[] removed = { false };
+        fragment.setAddedPois(diff(saved.getAddedPois(), current.getAddedPois(), POI_KEY, removed));
+        fragment.setUpdatedPois(diff(saved.getUpdatedPois(), current.getUpdatedPois(), POI_KEY, removed));
+        fragment.setDeletedPoiIds(diff(saved.getDeletedPoiIds(), current.getDeletedPoiIds(), id -> id, removed));
+        fragment.setPoiMapLinks(diff(saved.getPoiMapLinks(), current.getPoiMapLinks(), LINK_KEY, removed));
+        fragment.setPoiMapUnlinks(diff(saved.getPoiMapUnlinks(), current.getPoiMapUnlinks(), LINK_KEY, removed));
+        fragment.setAddedTours(diff(saved.getAddedTours(), current.getAddedTours(), TOUR_KEY, removed));
+        fragment.setUpdatedTours(diff(saved.getUpdatedTours(), current.getUpdatedTours(), TOUR_KEY, removed));
+        fragment.setDeletedTourIds(diff(saved.getDeletedTourIds(), current.getDeletedTourIds(), id -> id, removed));
+        fragment.setAddedStops(diff(saved.getAddedStops(), current.getAddedStops(), STOP_KEY, removed));
+        fragment.setUpdatedStops(diff(saved.getUpdatedStops(), current.getUpdatedStops(), STOP_KEY, removed));
+        fragment.setDeletedStopIds(diff(saved.getDeletedStopIds(), current.getDeletedStopIds(), id -> id, removed));
+        fragment.setDeletedPoiDisplayNames(diff(saved.getDeletedPoiDisplayNames(), current.getDeletedPoiDisplayNames(), n -> n, removed));
+        fragment.setDeletedTourDisplayNames(diff(saved.getDeletedTourDisplayNames(), current.getDeletedTourDisplayNames(), n -> n, removed));
+        if (!Objects.equals(saved.getNewMapName(), current.getNewMapName())) {
+            if (current.getNewMapName() == null) removed[0] = true;
+            fragment.setNewMapName(current.getNewMapName());
+        }
+        if (!Objects.equals(saved.getNewMapDescription(), current.getNewMapDescription())) {
+            if (current.getNewMapDescription() == null) removed[0] = true;
+            fragment.setNewMapDescription(current.getNewMapDescription());
+        }
+        if (!Objects.equals(saved.getBaseMapVersion(), current.getBaseMapVersion())) {
+            fragment.setBaseMapVersion(current.getBaseMapVersion());
+        }
+        fragment.setBasePoiVersions(diff(saved.getBasePoiVersions(), current.getBasePoiVersions()));
+        fragment.setBaseTourVersions(diff(saved.getBaseTourVersions(), current.getBaseTourVersions()));
+        if (removed[0]) {
+            return new Op(sequence, true, copyOf(current));
+        }
+        return fragment.hasChanges() ? new Op(sequence, false, fragment) : null;
+    }
+
+    /**
+     * Merge an op fragment into a stored draft: entries replace those with the same key, deleted
+     * ids are added once, map name/description and base versions are overwritten when set. POIs
+     * and links without an id were created as draft rows when the op was applied, so they are not
+     * kept.
+     */
+    public static void merge(MapChanges draft, MapChanges op) {
+        List<Poi> addedPois = new ArrayList<>();
+        for (Poi p : nonNull(op.getAddedPois())) {
+            if (p.getId() > 0) addedPois.add(p);
+        }
+        List<MapChanges.PoiMapLink> links = new ArrayList<>();
+        for (MapChanges.PoiMapLink l : nonNull(op.getPoiMapLinks())) {
+            if (l.poiId > 0) links.add(l);
+        }
+        draft.setAddedPois(merge(draft.getAddedPois(), addedPois, POI_KEY));
+        draft.setUpdatedPois(merge(draft.getUpdatedPois(), op.getUpdatedPois(), POI_KEY));
+        draft.setDeletedPoiIds(merge(draft.getDeletedPoiIds(), op.getDeletedPoiIds(), id -> id));
+        draft.setPoiMapLinks(merge(draft.getPoiMapLinks(), links, LINK_KEY));
+        draft.setPoiMapUnlinks(merge(draft.getPoiMapUnlinks(), op.getPoiMapUnlinks(), LINK_KEY));
+        draft.setAddedTours(merge(draft.getAddedTours(), op.getAddedTours(), TOUR_KEY));
+        draft.setUpdatedTours(merge(draft.getUpdatedTours(), op.getUpdatedTours(), TOUR_KEY));
+        draft.setDeletedTourIds(merge(draft.getDeletedTourIds(), op.getDeletedTourIds(), id -> id));
+        draft.setAddedStops(merge(draft.getAddedStops(), op.getAddedStops(), STOP_KEY));
+        draft.setUpdatedStops(merge(draft.getUpdatedStops(), op.getUpdatedStops(), STOP_KEY));
+        draft.setDeletedStopIds(merge(draft.getDeletedStopIds(), op.getDeletedStopIds(), id -> id));
+        draft.setDeletedPoiDisplayNames(merge(draft.getDeletedPoiDisplayNames(), op.getDeletedPoiDisplayNames(), n -> n));
+        draft.setDeletedTourDisplayNames(merge(draft.getDeletedTourDisplayNames(), op.getDeletedTourDisplayNames(), n -> n));
+        if (op.getNewMapName() != null) draft.setNewMapName(op.getNewMapName());
+        if (op.getNewMapDescription() != null) draft.setNewMapDescription(op.getNewMapDescription());
+        if (op.getBaseMapVersion() != null) draft.setBaseMapVersion(op.getBaseMapVersion());
+        draft.getBasePoiVersions().putAll(op.getBasePoiVersions());
+        draft.getBaseTourVersions().putAll(op.getBaseTourVersions());
+    }
+
+    private static <T> List<T> diff(List<T> saved, List<T> current, Function<T, Object> key, boolean[] removed) {
+        Set<String> savedJson = new HashSet<>();
+        for (T item : nonNull(saved)) savedJson.add(gson.toJson(item));
+        Set<Object> currentKeys = new HashSet<>();
+        List<T> changed = new ArrayList<>();
+        for (T item : nonNull(current)) {
+            currentKeys.add(key.apply(item));
+            if (!savedJson.contains(gson.toJson(item))) changed.add(item);
+        }
+        for (T item : nonNull(saved)) {
+            if (!currentKeys.contains(key.apply(item))) removed[0] = true;
+        }
+        return changed;
+    }
+
+    /** Base versions that are new or were rebased (a version is only dropped with a full op). */
+    private static Map<Integer, Integer> diff(Map<Integer, Integer> saved, Map<Integer, Integer> current) {
+        Map<Integer, Integer> changed = new LinkedHashMap<>();
+        for (Map.Entry<Integer, Integer> e : current.entrySet()) {
+            if (!Objects.equals(saved.get(e.getKey()), e.getValue())) changed.put(e.getKey(), e.getValue());
+        }
+        return changed;
+    }
+
+    private static <T> List<T> merge(List<T> draft, List<T> op, Function<T, Object> key) {
+        List<T> merged = new ArrayList<>(nonNull(draft));
+        for (T item : nonNull(op)) {
+            Object k = key.apply(item);
+            merged.removeIf(existing -> k.equals(key.apply(existing)));
+            merged.add(item);
+        }
+        return merged;
+    }
+
+    private static <T> List<T> nonNull(List<T> list) {
+        return list != null ? list : new ArrayList<>();
+    }
+}
@@ -0,0 +1,36 @@
+package common.dto;
+
+import java.io.Serializable;
+
+/**
+ * Answer to a MapChangesPatch: the highest sequence the server has applied to the draft, and
+ * the validation of the new ops. When the ops created rows (new POIs, links), the editor must
+ * reload the map to learn their ids; otherwise it keeps its state.
+ */
+public class MapChangesPatchResult implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private int mapId;
+    private int sequence;
+    private ValidationResult validation;
+    private boolean reloadRequired;
+
+    public MapChangesPatchResult() {
+    }
+
+    public MapChangesPatchResult(int mapId, int sequence, ValidationResult validation) {
+        this.mapId = mapId;
+        this.sequence = sequence;
+        this.validation = validation;
+    }
+
+    public int getMapId() { return mapId; }
+    public void setMapId(int mapId) { this.mapId = mapId; }
+    /** Last applied sequence; on failure the sequence the draft is still at. */
+    public int getSequence() { return sequence; }
+    public void setSequence(int sequence) { this.sequence = sequence; }
+    public ValidationResult getValidation() { return validation; }
+    public void setValidation(ValidationResult validation) { this.validation = validation; }
+    public boolean isReloadRequired() { return reloadRequired; }
+    public void setReloadRequired(boolean reloadRequired) { this.reloadRequired = reloadRequired; }
+}
@@ -0,0 +1,183 @@
+package common.dto;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * What a map edit request is about, without its payload: the first item and count of each
+ * kind of change. Stored in the header of encoded MapChanges (MapChangesCodec) so request
+ * lists can be titled without decoding the changes.
+ */
+public class MapChangesSummary implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    Integer mapId;
+    Integer cityId;
+    String displayCityName;
+    String displayMapName;
+
+    /** New city with its first map (first entry). */
+    String newCityWithMapCity;
+    String newCityWithMapMap;
+    /** New city only (createNewCity or newCities). */
+    boolean newCity;
+    String newCityName;
+    /** New map (in an existing city, or in a city created by the same request). */
+    String newMapName;
+    String newMapCityName;
+
+    int deletedCityCount;
+    Integer firstDeletedCityId;
+    int deletedMapCount;
+    Integer firstDeletedMapId;
+
+    int addedPoiCount;
+    String firstAddedPoiName;
+    int updatedPoiCount;
+    String firstUpdatedPoiName;
+    int deletedPoiCount;
+    /** Display name of the first deleted POI, or "id: N". */
+    String firstDeletedPoi;
+
+    int addedTourCount;
+    String firstAddedTourName;
+    int updatedTourCount;
+    String firstUpdatedTourName;
+    int deletedTourCount;
+    String firstDeletedTour;
+
+    int addedStopCount;
+    int updatedStopCount;
+    int deletedStopCount;
+    int linkCount;
+    int unlinkCount;
+
+    public MapChangesSummary() {
+    }
+
+    public static MapChangesSummary of(MapChanges ch) {
+        MapChangesSummary s = new MapChangesSummary();
+        s.mapId = ch.getMapId();
+        s.cityId = ch.getCityId();
+        s.displayCityName = ch.getDisplayCityName();
+        s.displayMapName = ch.getDisplayMapName();
+        if (notEmpty(ch.getNewCityWithMap())) {
+            s.newCityWithMapCity = ch.getNewCityWithMap().get(0).getCityName();
+            s.newCityWithMapMap = ch.getNewCityWithMap().get(0).getMapName();
+        }
+        s.newCity = ch.isCreateNewCity() || notEmpty(ch.getNewCities());
+        s.newCityName = ch.getNewCityName();
+        if (s.newCityName == null && notEmpty(ch.getNewCities())) s.newCityName = ch.getNewCities().get(0).getName();
+        s.newMapName = ch.getNewMapName();
+        s.newMapCityName = ch.getNewMapCityName();
+
+        s.deletedCityCount = size(ch.getDeletedCityIds());
+        if (s.deletedCityCount > 0) s.firstDeletedCityId = ch.getDeletedCityIds().get(0);
+        s.deletedMapCount = size(ch.getDeletedMapIds());
+        if (s.deletedMapCount > 0) s.firstDeletedMapId = ch.getDeletedMapIds().get(0);
+
+        s.addedPoiCount = size(ch.getAddedPois());
+        if (s.addedPoiCount > 0) s.firstAddedPoiName = ch.getAddedPois().get(0).getName();
+        s.updatedPoiCount = size(ch.getUpdatedPois());
+        if (s.updatedPoiCount > 0) s.firstUpdatedPoiName = ch.getUpdatedPois().get(0).getName();
+        s.deletedPoiCount = size(ch.getDeletedPoiIds());
+        if (s.deletedPoiCount > 0) {
+            s.firstDeletedPoi = notEmpty(ch.getDeletedPoiDisplayNames())
+                    ? ch.getDeletedPoiDisplayNames().get(0) : "id: " + ch.getDeletedPoiIds().get(0);
+        }
+
+        s.addedTourCount = size(ch.getAddedTours());
+        if (s.addedTourCount > 0) s.firstAddedTourName = ch.getAddedTours().get(0).getName();
+        s.updatedTourCount = size(ch.getUpdatedTours());
+        if (s.updatedTourCount > 0) s.firstUpdatedTourName = ch.getUpdatedTours().get(0).getName();
+        s.deletedTourCount = size(ch.getDeletedTourIds());
+        if (s.deletedTourCount > 0) {
+            s.firstDeletedTour = notEmpty(ch.getDeletedTourDisplayNames())
+                    ? ch.getDeletedTourDisplayNames().get(0) : "id: " + ch.getDeletedTourIds().get(0);
+        }
+
+        s.addedStopCount = size(ch.getAddedStops());
+        s.updatedStopCount = size(ch.getUpdatedStops());
+        s.deletedStopCount = size(ch.getDeletedStopIds());
+        s.linkCount = size(ch.getPoiMapLinks());
+        s.unlinkCount = size(ch.getPoiMapUnlinks());
+        return s;
+    }
+
+    /** True when the request is primarily for a city (add city, delete city, or add city+first map). */
+    public boolean isCityOnly() {
+        if (deletedCityCount > 0 && (mapId == null || mapId <= 0) && isEmpty(newMapName)) return true;
+        return newCity || newCityWithMapCity != null;
+    }
+
+    /**
+     * Display title for request lists: "Delete city: X", "Add map: Y", "Update POI: Z", etc.
+     * cityName / mapName are the current names (null if the city or map was deleted).
+     */
+    public String title(String cityName, String mapName) {
+        String dispCity = !isEmpty(cityName) ? cityName : displayCityName;
+        String dispMap = !isEmpty(mapName) ? mapName : displayMapName;
+        String inCity = !isEmpty(dispCity) ? " (" + dispCity + ")" : "";
+        // Prefer "add" over "delete" so mixed payloads (e.g. draft delete + new add city) show the intended action
+        if (newCityWithMapCity != null) {
+            String c = nullToEmpty(newCityWithMapCity);
+            String m = nullToEmpty(newCityWithMapMap);
+            return !m.isEmpty() ? "Add city and map: " + c + " / " + m : "Add city: " + c;
+        }
+        if (newCity) return "Add city: " + nullToEmpty(newCityName);
+        if (newMapCityName != null && !newMapCityName.trim().isEmpty() && !isEmpty(newMapName)) {
+            return "Add first map: " + newMapName + " (city: " + newMapCityName.trim() + ")";
+        }
+        if (!isEmpty(newMapName) && (mapId == null || mapId <= 0) && (cityId == null || cityId > 0)) {
+            return "Add map: " + newMapName + inCity;
+        }
+        if (deletedCityCount > 0) return "Delete city: " + (!isEmpty(dispCity) ? dispCity : "ID " + firstDeletedCityId);
+        if (deletedMapCount > 0) return "Delete map: " + (!isEmpty(dispMap) ? dispMap + inCity : "ID " + firstDeletedMapId);
+        if (addedPoiCount > 0) return "Add POI: " + orDash(firstAddedPoiName);
+        if (updatedPoiCount > 0) return "Update POI: " + orDash(firstUpdatedPoiName);
+        if (deletedPoiCount > 0) return "Delete POI: \"" + firstDeletedPoi + "\"";
+        if (addedTourCount > 0) return "Add tour: " + orDash(firstAddedTourName);
+        if (updatedTourCount > 0) return "Update tour: " + orDash(firstUpdatedTourName);
+        if (deletedTourCount > 0) return "Delete tour: \"" + firstDeletedTour + "\"";
+        if (!isEmpty(newMapName)) return "Update map: " + newMapName + inCity;
+        if (addedStopCount > 0) return "Add tour stop(s)";
+        if (updatedStopCount > 0) return "Update tour stop(s)";
+        if (deletedStopCount > 0) return "Remove tour stop(s)";
+        if (linkCount > 0) return "Link POI to map";
+        if (unlinkCount > 0) return "Unlink POI from map";
+        if (!isEmpty(dispMap)) return "Update map: " + dispMap + inCity;
+        if (!isEmpty(dispCity)) return "Request: " + dispCity;
+        return "Map edit request";
+    }
+
+    public String getDisplayCityName() { return displayCityName; }
+    public String getDisplayMapName() { return displayMapName; }
+    public int getDeletedCityCount() { return deletedCityCount; }
+    public int getDeletedMapCount() { return deletedMapCount; }
+    public int getAddedPoiCount() { return addedPoiCount; }
+    public int getUpdatedPoiCount() { return updatedPoiCount; }
+    public int getDeletedPoiCount() { return deletedPoiCount; }
+    public int getAddedTourCount() { return addedTourCount; }
+    public int getUpdatedTourCount() { return updatedTourCount; }
+    public int getDeletedTourCount() { return deletedTourCount; }
+
+    private static int size(List<?> list) {
+        return list != null ? list.size() : 0;
+    }
+
+    private static boolean notEmpty(List<?> list) {
+        return list != null && !list.isEmpty();
+    }
+
+    private static boolean isEmpty(String s) {
+        return s == null || s.isEmpty();
+    }
+
+    private static String nullToEmpty(String s) {
+        return s == null ? "" : s;
+    }
+
+    private static String orDash(String s) {
+        return !isEmpty(s) ? s : "—";
+    }
+}
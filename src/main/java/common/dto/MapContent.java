@@ -44,6 +44,13 @@ public class MapContent implements Serializable {
     /** Segment list for tour maps: from/to coords and distance for each leg (including circle back). */
     private List<TourSegmentDTO> tourSegments;
 
+    /** Content version of the map's city when loaded (-1 if unknown); base for GET_MAP_CONTENT_DELTA. */
+    private long contentVersion = -1;
+    /** Last autosaved op of the editor's draft (MapChangesPatch); the next patch continues from it. */
+    private int draftSequence;
+    /** Row version of the map when loaded (base version of map info edits). */
+    private int mapVersion;
+
     public MapContent() {
         this.pois = new ArrayList<>();
         this.tours = new ArrayList<>();
@@ -69,6 +76,8 @@ public class MapContent implements Serializable {
         this.pendingDeletedTourIds = new ArrayList<>();
     }
 
+    public long getContentVersion() { return contentVersion; }
+    public void setContentVersion(long contentVersion) { this.contentVersion = contentVersion; }
     public Integer getTourId() { return tourId; }
     public void setTourId(Integer tourId) { this.tourId = tourId; }
     public List<TourSegmentDTO> getTourSegments() { return tourSegments != null ? tourSegments : new ArrayList<>(); }
@@ -196,6 +205,22 @@ public class MapContent implements Serializable {
         this.pendingDeletedTourIds = pendingDeletedTourIds != null ? pendingDeletedTourIds : new ArrayList<>();
     }
 
+    public int getDraftSequence() {
+        return draftSequence;
+    }
+
+    public void setDraftSequence(int draftSequence) {
+        this.draftSequence = draftSequence;
+    }
+
+    public int getMapVersion() {
+        return mapVersion;
+    }
+
+    public void setMapVersion(int mapVersion) {
+        this.mapVersion = mapVersion;
+    }
+
     public MapChanges getDraftChangesToRestore() {
         return pendingDraftChanges;
     }
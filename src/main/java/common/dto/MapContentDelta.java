@@ -0,0 +1,144 @@
+package common.dto;
+
+import common.Poi;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Response of GET_MAP_CONTENT_DELTA: what changed in a map's content between the client's
+ * version (baseVersion) and the current one.
+ *
+ * The full POI and tour order is sent as ids; only changed POIs and tours are sent in full.
+ * When tourIds is null, upsertedTours is the complete tour list (e.g. draft tours without id).
+ * The small per-user lists (pending markers, tour segments) are always sent.
+ */
+public class MapContentDelta implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private int mapId;
+    private long baseVersion;
+    private long version;
+    /** True when nothing changed since baseVersion; only the version is meaningful. */
+    private boolean unchanged;
+
+    private List<Integer> poiIds = new ArrayList<>();
+    private List<Poi> upsertedPois = new ArrayList<>();
+    private List<Integer> tourIds;
+    private List<TourDTO> upsertedTours = new ArrayList<>();
+
+    private Integer tourId;
+    private List<TourSegmentDTO> tourSegments = new ArrayList<>();
+    private List<MapChanges.PoiMapLink> pendingPoiMapUnlinks = new ArrayList<>();
+    private List<Integer> pendingDeletedPoiIds = new ArrayList<>();
+    private List<TourDTO> pendingAddedTours = new ArrayList<>();
+    private List<Integer> pendingDeletedTourIds = new ArrayList<>();
+
+    public MapContentDelta() {
+    }
+
+    public MapContentDelta(int mapId, long baseVersion, long version) {
+        this.mapId = mapId;
+        this.baseVersion = baseVersion;
+        this.version = version;
+    }
+
+    /** Delta for a client that is already up to date. */
+    public static MapContentDelta unchanged(int mapId, long version) {
+        MapContentDelta delta = new MapContentDelta(mapId, version, version);
+        delta.unchanged = true;
+        return delta;
+    }
+
+    /**
+     * Apply this delta to the client's cached content of baseVersion.
+     *
+     * @return false (cached content left untouched) if the cache is not the base of this delta
+     *         or misses an entity that was not re-sent; the client then reloads the full content
+     */
+    public boolean applyTo(MapContent cached) {
+        if (cached == null || cached.getMapId() != mapId || cached.getContentVersion() != baseVersion) {
+            return false;
+        }
+        if (unchanged) {
+            cached.setContentVersion(version);
+            return true;
+        }
+
+        Map<Integer, Poi> pois = new HashMap<>();
+        for (Poi p : cached.getPois()) pois.put(p.getId(), p);
+        for (Poi p : upsertedPois) pois.put(p.getId(), p);
+        List<Poi> newPois = new ArrayList<>();
+        for (Integer id : poiIds) {
+            Poi p = pois.get(id);
+            if (p == null) return false;
+            newPois.add(p);
+        }
+
+        List<TourDTO> newTours;
+        if (tourIds == null) {
+            newTours = new ArrayList<>(upsertedTours);
+        } else {
+            Map<Integer, TourDTO> tours = new HashMap<>();
+            for (TourDTO t : cached.getTours()) tours.put(t.getId(), t);
+            for (TourDTO t : upsertedTours) tours.put(t.getId(), t);
+            newTours = new ArrayList<>();
+            for (Integer id : tourIds) {
+                TourDTO t = tours.get(id);
+                if (t == null) return false;
+                newTours.add(t);
+            }
+        }
+
+        cached.setPois(newPois);
+        cached.setTours(newTours);
+        cached.setTourId(tourId);
+        cached.setTourSegments(tourSegments);
+        cached.setPendingPoiMapUnlinks(pendingPoiMapUnlinks);
+        cached.setPendingDeletedPoiIds(pendingDeletedPoiIds);
+        cached.setPendingAddedTours(pendingAddedTours);
+        cached.setPendingDeletedTourIds(pendingDeletedTourIds);
+        cached.setContentVersion(version);
+        return true;
+    }
+
+    public int getMapId() { return mapId; }
+    public void setMapId(int mapId) { this.mapId = mapId; }
+    public long getBaseVersion() { return baseVersion; }
+    public void setBaseVersion(long baseVersion) { this.baseVersion = baseVersion; }
+    public long getVersion() { return version; }
+    public void setVersion(long version) { this.version = version; }
+    public boolean isUnchanged() { return unchanged; }
+    public void setUnchanged(boolean unchanged) { this.unchanged = unchanged; }
+
+    public List<Integer> getPoiIds() { return poiIds; }
+    public void setPoiIds(List<Integer> poiIds) { this.poiIds = poiIds != null ? poiIds : new ArrayList<>(); }
+    public List<Poi> getUpsertedPois() { return upsertedPois; }
+    public void setUpsertedPois(List<Poi> upsertedPois) { this.upsertedPois = upsertedPois != null ? upsertedPois : new ArrayList<>(); }
+    public List<Integer> getTourIds() { return tourIds; }
+    public void setTourIds(List<Integer> tourIds) { this.tourIds = tourIds; }
+    public List<TourDTO> getUpsertedTours() { return upsertedTours; }
+    public void setUpsertedTours(List<TourDTO> upsertedTours) { this.upsertedTours = upsertedTours != null ? upsertedTours : new ArrayList<>(); }
+
+    public Integer getTourId() { return tourId; }
+    public void setTourId(Integer tourId) { this.tourId = tourId; }
+    public List<TourSegmentDTO> getTourSegments() { return tourSegments; }
+    public void setTourSegments(List<TourSegmentDTO> tourSegments) { this.tourSegments = tourSegments != null ? tourSegments : new ArrayList<>(); }
+    public List<MapChanges.PoiMapLink> getPendingPoiMapUnlinks() { return pendingPoiMapUnlinks; }
+    public void setPendingPoiMapUnlinks(List<MapChanges.PoiMapLink> pendingPoiMapUnlinks) { this.pendingPoiMapUnlinks = pendingPoiMapUnlinks != null ? pendingPoiMapUnlinks : new ArrayList<>(); }
+    public List<Integer> getPendingDeletedPoiIds() { return pendingDeletedPoiIds; }
+    public void setPendingDeletedPoiIds(List<Integer> pendingDeletedPoiIds) { this.pendingDeletedPoiIds = pendingDeletedPoiIds != null ? pendingDeletedPoiIds : new ArrayList<>(); }
+    public List<TourDTO> getPendingAddedTours() { return pendingAddedTours; }
+    public void setPendingAddedTours(List<TourDTO> pendingAddedTours) { this.pendingAddedTours = pendingAddedTours != null ? pendingAddedTours : new ArrayList<>(); }
+    public List<Integer> getPendingDeletedTourIds() { return pendingDeletedTourIds; }
+    public void setPendingDeletedTourIds(List<Integer> pendingDeletedTourIds) { this.pendingDeletedTourIds = pendingDeletedTourIds != null ? pendingDeletedTourIds : new ArrayList<>(); }
+
+    @Override
+    public String toString() {
+        return unchanged ? "MapContentDelta[map " + mapId + " unchanged @" + version + "]"
+                : "MapContentDelta[map " + mapId + " " + baseVersion + "->" + version + ", " + upsertedPois.size()
+                        + " POIs, " + upsertedTours.size() + " tours]";
+    }
+}
@@ -0,0 +1,26 @@
+package common.dto;
+
+import java.io.Serializable;
+
+/**
+ * Payload of GET_MAP_CONTENT_DELTA: the map and the content version the client already has.
+ */
+public class MapContentSyncRequest implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private int mapId;
+    private long sinceVersion;
+
+    public MapContentSyncRequest() {
+    }
+
+    public MapContentSyncRequest(int mapId, long sinceVersion) {
+        this.mapId = mapId;
+        this.sinceVersion = sinceVersion;
+    }
+
+    public int getMapId() { return mapId; }
+    public void setMapId(int mapId) { this.mapId = mapId; }
+    public long getSinceVersion() { return sinceVersion; }
+    public void setSinceVersion(long sinceVersion) { this.sinceVersion = sinceVersion; }
+}
@@ -1,5 +1,7 @@
 package common.dto;
 
+import com.google.gson.JsonParseException;
+
 import java.io.Serializable;
 import java.util.Date;
 
@@ -15,6 +17,9 @@ public class MapEditRequestDTO implements Serializable {
     private int userId;
     private String username;
     private MapChanges changes;
+    /** Stored form of the changes (MapChangesCodec), decoded on first getChanges(). */
+    private byte[] encodedChanges;
+    private MapChangesSummary summary;
     private String status;
     private Date createdAt;
 
@@ -78,11 +83,40 @@ public class MapEditRequestDTO implements Serializable {
     }
 
     public MapChanges getChanges() {
+        if (changes == null && encodedChanges != null) {
+            changes = MapChangesCodec.decode(encodedChanges);
+            encodedChanges = null;
+        }
         return changes;
     }
 
     public void setChanges(MapChanges changes) {
         this.changes = changes;
+        this.encodedChanges = null;
+        this.summary = null;
+    }
+
+    /**
+     * Set the stored changes without decoding them; the summary is read from their header. An
+     * unreadable header leaves the summary null, so getSummary() decodes the changes instead.
+     */
+    public void setEncodedChanges(byte[] encodedChanges) {
+        this.encodedChanges = encodedChanges;
+        this.changes = null;
+        try {
+            this.summary = MapChangesCodec.readSummary(encodedChanges);
+        } catch (IllegalArgumentException | JsonParseException e) {
+            System.err.println("MapEditRequestDTO: summary of request " + id + " unreadable: " + e.getMessage());
+            this.summary = null;
+        }
+    }
+
+    /** Summary of the changes (null if there are none); does not decode encoded changes. */
+    public MapChangesSummary getSummary() {
+        if (summary == null && getChanges() != null) {
+            summary = MapChangesSummary.of(changes);
+        }
+        return summary;
     }
 
     public String getStatus() {
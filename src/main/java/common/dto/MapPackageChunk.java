@@ -0,0 +1,43 @@
+package common.dto;
+
+import java.io.Serializable;
+
+/**
+ * One fixed-size chunk of an offline map package (the last one may be shorter).
+ */
+public class MapPackageChunk implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private int cityId;
+    private String hash;
+    private long offset;
+    private long totalSize;
+    private byte[] data;
+
+    public MapPackageChunk() {
+    }
+
+    public MapPackageChunk(int cityId, String hash, long offset, long totalSize, byte[] data) {
+        this.cityId = cityId;
+        this.hash = hash;
+        this.offset = offset;
+        this.totalSize = totalSize;
+        this.data = data;
+    }
+
+    public int getCityId() { return cityId; }
+    public void setCityId(int cityId) { this.cityId = cityId; }
+    public String getHash() { return hash; }
+    public void setHash(String hash) { this.hash = hash; }
+    public long getOffset() { return offset; }
+    public void setOffset(long offset) { this.offset = offset; }
+    public long getTotalSize() { return totalSize; }
+    public void setTotalSize(long totalSize) { this.totalSize = totalSize; }
+    public byte[] getData() { return data; }
+    public void setData(byte[] data) { this.data = data; }
+
+    /** True if this chunk ends the package. */
+    public boolean isLast() {
+        return offset + (data != null ? data.length : 0) >= totalSize;
+    }
+}
@@ -0,0 +1,31 @@
+package common.dto;
+
+import java.io.Serializable;
+
+/**
+ * Payload of GET_MAP_PACKAGE_CHUNK: the next chunk of a package, starting at the number of
+ * bytes the client already has (so an interrupted download resumes where it stopped).
+ */
+public class MapPackageChunkRequest implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private int cityId;
+    private String hash;
+    private long offset;
+
+    public MapPackageChunkRequest() {
+    }
+
+    public MapPackageChunkRequest(int cityId, String hash, long offset) {
+        this.cityId = cityId;
+        this.hash = hash;
+        this.offset = offset;
+    }
+
+    public int getCityId() { return cityId; }
+    public void setCityId(int cityId) { this.cityId = cityId; }
+    public String getHash() { return hash; }
+    public void setHash(String hash) { this.hash = hash; }
+    public long getOffset() { return offset; }
+    public void setOffset(long offset) { this.offset = offset; }
+}
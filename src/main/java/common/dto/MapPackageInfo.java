@@ -0,0 +1,35 @@
+package common.dto;
+
+import java.io.Serializable;
+
+/**
+ * Response of DOWNLOAD_MAP_VERSION: the city's offline package, identified by the SHA-256 of
+ * its bytes, and the size of the chunks it is served in (GET_MAP_PACKAGE_CHUNK).
+ */
+public class MapPackageInfo implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private int cityId;
+    private String hash;
+    private long sizeBytes;
+    private int chunkSize;
+
+    public MapPackageInfo() {
+    }
+
+    public MapPackageInfo(int cityId, String hash, long sizeBytes, int chunkSize) {
+        this.cityId = cityId;
+        this.hash = hash;
+        this.sizeBytes = sizeBytes;
+        this.chunkSize = chunkSize;
+    }
+
+    public int getCityId() { return cityId; }
+    public void setCityId(int cityId) { this.cityId = cityId; }
+    public String getHash() { return hash; }
+    public void setHash(String hash) { this.hash = hash; }
+    public long getSizeBytes() { return sizeBytes; }
+    public void setSizeBytes(long sizeBytes) { this.sizeBytes = sizeBytes; }
+    public int getChunkSize() { return chunkSize; }
+    public void setChunkSize(int chunkSize) { this.chunkSize = chunkSize; }
+}
@@ -5,6 +5,10 @@ import java.io.Serializable;
 /**
  * Request wrapper for paginated list queries.
  * Phase 14: Efficiency - Pagination support.
+ *
+ * Supports keyset pagination: when afterId > 0 the server returns the rows that
+ * sort after (afterKey, afterId) instead of using OFFSET. Copy the cursor from
+ * the previous PaginatedResponse via {@link #nextPage(PaginatedResponse)}.
  */
 public class PaginatedRequest implements Serializable {
     private static final long serialVersionUID = 1L;
@@ -12,6 +16,8 @@ public class PaginatedRequest implements Serializable {
     private int pageNumber = 1; // 1-indexed
     private int pageSize = 20; // Default page size
     private Object filter; // Optional filter criteria
+    private String afterKey; // Keyset cursor: sort key of the last item on the previous page
+    private int afterId; // Keyset cursor: id of the last item on the previous page (0 = first page)
 
     public PaginatedRequest() {
     }
@@ -50,6 +56,39 @@ public class PaginatedRequest implements Serializable {
         this.filter = filter;
     }
 
+    /**
+     * Build the request for the page following the given response (same size and filter).
+     */
+    public PaginatedRequest nextPage(PaginatedResponse<?> previous) {
+        PaginatedRequest next = new PaginatedRequest(pageNumber + 1, pageSize, filter);
+        next.afterKey = previous.getNextAfterKey();
+        next.afterId = previous.getNextAfterId();
+        return next;
+    }
+
+    public String getAfterKey() {
+        return afterKey;
+    }
+
+    public void setAfterKey(String afterKey) {
+        this.afterKey = afterKey;
+    }
+
+    public int getAfterId() {
+        return afterId;
+    }
+
+    public void setAfterId(int afterId) {
+        this.afterId = afterId;
+    }
+
+    /**
+     * True when a keyset cursor is set (i.e. this is not the first page).
+     */
+    public boolean hasCursor() {
+        return afterId > 0;
+    }
+
     /**
      * Get SQL OFFSET value.
      */
@@ -59,6 +98,7 @@ public class PaginatedRequest implements Serializable {
 
     @Override
     public String toString() {
-        return "PaginatedRequest[page=" + pageNumber + ", size=" + pageSize + "]";
+        return "PaginatedRequest[page=" + pageNumber + ", size=" + pageSize +
+                (hasCursor() ? ", after=" + afterKey + "#" + afterId : "") + "]";
     }
 }
@@ -17,6 +17,14 @@ public class PaginatedResponse<T> implements Serializable {
     private int currentPage;
     private int pageSize;
 
+    // Keyset pagination (see PaginatedRequest.nextPage)
+    private boolean hasMore;
+    private String nextAfterKey;
+    private int nextAfterId;
+
+    // Facet counts over the whole result set (search responses only; first page)
+    private SearchFacets facets;
+
     public PaginatedResponse() {
         this.items = Collections.emptyList();
     }
@@ -54,6 +62,18 @@ public class PaginatedResponse<T> implements Serializable {
         return new PaginatedResponse<>(allItems.subList(start, end), allItems.size(), page, pageSize);
     }
 
+    /**
+     * Create a keyset page. totalCount may be -1 when it was not computed (pages after the first).
+     */
+    public static <T> PaginatedResponse<T> keyset(List<T> items, int totalCount, int page, int pageSize,
+            boolean hasMore, String nextAfterKey, int nextAfterId) {
+        PaginatedResponse<T> response = new PaginatedResponse<>(items, totalCount, page, pageSize);
+        response.hasMore = hasMore;
+        response.nextAfterKey = nextAfterKey;
+        response.nextAfterId = nextAfterId;
+        return response;
+    }
+
     // Getters
     public List<T> getItems() {
         return items;
@@ -75,6 +95,18 @@ public class PaginatedResponse<T> implements Serializable {
         return pageSize;
     }
 
+    public String getNextAfterKey() {
+        return nextAfterKey;
+    }
+
+    public int getNextAfterId() {
+        return nextAfterId;
+    }
+
+    public SearchFacets getFacets() {
+        return facets;
+    }
+
     // Setters
     public void setItems(List<T> items) {
         this.items = items != null ? items : Collections.emptyList();
@@ -96,9 +128,13 @@ public class PaginatedResponse<T> implements Serializable {
         this.pageSize = pageSize;
     }
 
+    public void setFacets(SearchFacets facets) {
+        this.facets = facets;
+    }
+
     // Convenience methods
     public boolean hasNextPage() {
-        return currentPage < totalPages;
+        return hasMore || currentPage < totalPages;
     }
 
     public boolean hasPreviousPage() {
@@ -0,0 +1,160 @@
+package common.dto;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * DTO for geospatial POI search parameters.
+ * Used as payload in SEARCH_POIS_NEAR (center + radius) and
+ * SEARCH_POIS_IN_BBOX (bounding box) requests.
+ */
+public class PoiGeoSearchRequest implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    public static final int DEFAULT_LIMIT = 50;
+    public static final int MAX_LIMIT = 500;
+
+    /** Center point (SEARCH_POIS_NEAR) */
+    private double latitude;
+    private double longitude;
+    private double radiusMeters;
+
+    /**
+     * Bounding box (SEARCH_POIS_IN_BBOX). minLongitude > maxLongitude means the
+     * box crosses the antimeridian.
+     */
+    private double minLatitude;
+    private double minLongitude;
+    private double maxLatitude;
+    private double maxLongitude;
+
+    /** Optional category filter (case-insensitive); empty = all categories */
+    private List<String> categories = new ArrayList<>();
+
+    /** Maximum number of results (capped at MAX_LIMIT) */
+    private int limit = DEFAULT_LIMIT;
+
+    public PoiGeoSearchRequest() {
+    }
+
+    /**
+     * Creates a radius search around a point.
+     */
+    public static PoiGeoSearchRequest near(double latitude, double longitude, double radiusMeters) {
+        PoiGeoSearchRequest req = new PoiGeoSearchRequest();
+        req.latitude = latitude;
+        req.longitude = longitude;
+        req.radiusMeters = radiusMeters;
+        return req;
+    }
+
+    /**
+     * Creates a bounding-box search.
+     */
+    public static PoiGeoSearchRequest inBoundingBox(double minLatitude, double minLongitude,
+            double maxLatitude, double maxLongitude) {
+        PoiGeoSearchRequest req = new PoiGeoSearchRequest();
+        req.minLatitude = minLatitude;
+        req.minLongitude = minLongitude;
+        req.maxLatitude = maxLatitude;
+        req.maxLongitude = maxLongitude;
+        return req;
+    }
+
+    /**
+     * Restrict results to the given categories.
+     */
+    public PoiGeoSearchRequest withCategories(List<String> categories) {
+        setCategories(categories);
+        return this;
+    }
+
+    /**
+     * Set the maximum number of results.
+     */
+    public PoiGeoSearchRequest withLimit(int limit) {
+        setLimit(limit);
+        return this;
+    }
+
+    // Getters and Setters
+    public double getLatitude() {
+        return latitude;
+    }
+
+    public void setLatitude(double latitude) {
+        this.latitude = latitude;
+    }
+
+    public double getLongitude() {
+        return longitude;
+    }
+
+    public void setLongitude(double longitude) {
+        this.longitude = longitude;
+    }
+
+    public double getRadiusMeters() {
+        return radiusMeters;
+    }
+
+    public void setRadiusMeters(double radiusMeters) {
+        this.radiusMeters = radiusMeters;
+    }
+
+    public double getMinLatitude() {
+        return minLatitude;
+    }
+
+    public void setMinLatitude(double minLatitude) {
+        this.minLatitude = minLatitude;
+    }
+
+    public double getMinLongitude() {
+        return minLongitude;
+    }
+
+    public void setMinLongitude(double minLongitude) {
+        this.minLongitude = minLongitude;
+    }
+
+    public double getMaxLatitude() {
+        return maxLatitude;
+    }
+
+    public void setMaxLatitude(double maxLatitude) {
+        this.maxLatitude = maxLatitude;
+    }
+
+    public double getMaxLongitude() {
+        return maxLongitude;
+    }
+
+    public void setMaxLongitude(double maxLongitude) {
+        this.maxLongitude = maxLongitude;
+    }
+
+    public List<String> getCategories() {
+        return categories;
+    }
+
+    public void setCategories(List<String> categories) {
+        this.categories = categories != null ? categories : new ArrayList<>();
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public void setLimit(int limit) {
+        this.limit = Math.max(1, Math.min(MAX_LIMIT, limit));
+    }
+
+    @Override
+    public String toString() {
+        return "PoiGeoSearchRequest{center=(" + latitude + "," + longitude + "), radius=" + radiusMeters +
+                ", bbox=[" + minLatitude + "," + minLongitude + " - " + maxLatitude + "," + maxLongitude + "]" +
+                ", categories=" + categories + ", limit=" + limit + "}";
+    }
+}
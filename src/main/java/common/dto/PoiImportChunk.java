@@ -0,0 +1,53 @@
+package common.dto;
+
+import common.Poi;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Payload of IMPORT_POIS: the next rows of a CSV/GeoJSON file being imported into a map.
+ * Chunks of one import share the import id and are numbered from 0; the client sends the
+ * next chunk after the server answered the previous one (a repeated chunk is not applied twice).
+ */
+public class PoiImportChunk implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private String importId;
+    private int cityId;
+    private int mapId;
+    private int sequence;
+    /** File row (1-based, after any header) of the first POI, for error messages. */
+    private int firstRow;
+    private List<Poi> pois = new ArrayList<>();
+    private boolean last;
+
+    public PoiImportChunk() {
+    }
+
+    public PoiImportChunk(String importId, int cityId, int mapId, int sequence, int firstRow, List<Poi> pois, boolean last) {
+        this.importId = importId;
+        this.cityId = cityId;
+        this.mapId = mapId;
+        this.sequence = sequence;
+        this.firstRow = firstRow;
+        this.pois = pois != null ? pois : new ArrayList<>();
+        this.last = last;
+    }
+
+    public String getImportId() { return importId; }
+    public void setImportId(String importId) { this.importId = importId; }
+    public int getCityId() { return cityId; }
+    public void setCityId(int cityId) { this.cityId = cityId; }
+    public int getMapId() { return mapId; }
+    public void setMapId(int mapId) { this.mapId = mapId; }
+    public int getSequence() { return sequence; }
+    public void setSequence(int sequence) { this.sequence = sequence; }
+    public int getFirstRow() { return firstRow; }
+    public void setFirstRow(int firstRow) { this.firstRow = firstRow; }
+    public List<Poi> getPois() { return pois; }
+    public void setPois(List<Poi> pois) { this.pois = pois; }
+    public boolean isLast() { return last; }
+    public void setLast(boolean last) { this.last = last; }
+}
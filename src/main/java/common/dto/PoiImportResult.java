@@ -0,0 +1,56 @@
+package common.dto;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Progress of a POI import (response of IMPORT_POIS), totals over all chunks applied so far.
+ */
+public class PoiImportResult implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    /** Row errors kept per import; further ones are only counted. */
+    public static final int MAX_ERRORS = 50;
+
+    private String importId;
+    /** Last chunk applied. */
+    private int sequence;
+    private int imported;
+    private int duplicates;
+    private int rejected;
+    private List<String> errors = new ArrayList<>();
+    private boolean complete;
+    /** Edit request created for the imported POIs (when complete and anything was imported). */
+    private Integer editRequestId;
+
+    public PoiImportResult() {
+    }
+
+    public PoiImportResult(String importId) {
+        this.importId = importId;
+    }
+
+    public String getImportId() { return importId; }
+    public void setImportId(String importId) { this.importId = importId; }
+    public int getSequence() { return sequence; }
+    public void setSequence(int sequence) { this.sequence = sequence; }
+    public int getImported() { return imported; }
+    public void setImported(int imported) { this.imported = imported; }
+    public int getDuplicates() { return duplicates; }
+    public void setDuplicates(int duplicates) { this.duplicates = duplicates; }
+    public int getRejected() { return rejected; }
+    public void setRejected(int rejected) { this.rejected = rejected; }
+    public List<String> getErrors() { return errors; }
+    public void setErrors(List<String> errors) { this.errors = errors; }
+    public boolean isComplete() { return complete; }
+    public void setComplete(boolean complete) { this.complete = complete; }
+    public Integer getEditRequestId() { return editRequestId; }
+    public void setEditRequestId(Integer editRequestId) { this.editRequestId = editRequestId; }
+
+    @Override
+    public String toString() {
+        return "PoiImportResult{importId=" + importId + ", sequence=" + sequence + ", imported=" + imported
+                + ", duplicates=" + duplicates + ", rejected=" + rejected + ", complete=" + complete + "}";
+    }
+}
@@ -0,0 +1,46 @@
+package common.dto;
+
+import common.Poi;
+
+import java.io.Serializable;
+
+/**
+ * A single geospatial POI search hit: the POI and its great-circle distance
+ * from the query point (or bounding-box center) in meters.
+ */
+public class PoiSearchResult implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private Poi poi;
+    private double distanceMeters;
+
+    public PoiSearchResult() {
+    }
+
+    public PoiSearchResult(Poi poi, double distanceMeters) {
+        this.poi = poi;
+        this.distanceMeters = distanceMeters;
+    }
+
+    public Poi getPoi() {
+        return poi;
+    }
+
+    public void setPoi(Poi poi) {
+        this.poi = poi;
+    }
+
+    public double getDistanceMeters() {
+        return distanceMeters;
+    }
+
+    public void setDistanceMeters(double distanceMeters) {
+        this.distanceMeters = distanceMeters;
+    }
+
+    @Override
+    public String toString() {
+        return "PoiSearchResult{poi=" + (poi != null ? poi.getName() : null) +
+                ", distanceMeters=" + Math.round(distanceMeters) + "}";
+    }
+}
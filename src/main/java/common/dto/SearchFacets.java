@@ -0,0 +1,86 @@
+package common.dto;
+
+import java.io.Serializable;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Facet counts over published POIs: per category and per accessibility flag.
+ * Returned per city (CitySearchResult) and for the whole result set (PaginatedResponse).
+ * Category counts apply the accessibility filter and vice versa, so each facet
+ * shows how many POIs selecting that value would leave.
+ */
+public class SearchFacets implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    /** Category name -> POI count, sorted by name. */
+    private Map<String, Integer> categoryCounts;
+    private int accessibleCount;
+    private int notAccessibleCount;
+    /** POIs matching both the category and accessibility filters. */
+    private int matchingPoiCount;
+
+    public SearchFacets() {
+        this.categoryCounts = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+    }
+
+    /**
+     * Add another set of counts to this one (used to aggregate city facets).
+     */
+    public void merge(SearchFacets other) {
+        if (other == null)
+            return;
+        for (Map.Entry<String, Integer> e : other.categoryCounts.entrySet()) {
+            categoryCounts.merge(e.getKey(), e.getValue(), Integer::sum);
+        }
+        accessibleCount += other.accessibleCount;
+        notAccessibleCount += other.notAccessibleCount;
+        matchingPoiCount += other.matchingPoiCount;
+    }
+
+    public void addCategoryCount(String category, int count) {
+        if (count > 0) {
+            categoryCounts.merge(category, count, Integer::sum);
+        }
+    }
+
+    // Getters and Setters
+    public Map<String, Integer> getCategoryCounts() {
+        return categoryCounts;
+    }
+
+    public int getCategoryCount(String category) {
+        Integer count = categoryCounts.get(category);
+        return count != null ? count : 0;
+    }
+
+    public int getAccessibleCount() {
+        return accessibleCount;
+    }
+
+    public void setAccessibleCount(int accessibleCount) {
+        this.accessibleCount = accessibleCount;
+    }
+
+    public int getNotAccessibleCount() {
+        return notAccessibleCount;
+    }
+
+    public void setNotAccessibleCount(int notAccessibleCount) {
+        this.notAccessibleCount = notAccessibleCount;
+    }
+
+    public int getMatchingPoiCount() {
+        return matchingPoiCount;
+    }
+
+    public void setMatchingPoiCount(int matchingPoiCount) {
+        this.matchingPoiCount = matchingPoiCount;
+    }
+
+    @Override
+    public String toString() {
+        return "SearchFacets{categories=" + categoryCounts + ", accessible=" + accessibleCount +
+                ", notAccessible=" + notAccessibleCount + ", matching=" + matchingPoiCount + "}";
+    }
+}
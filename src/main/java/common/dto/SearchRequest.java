@@ -1,6 +1,7 @@
 package common.dto;
 
 import java.io.Serializable;
+import java.util.List;
 
 /**
  * DTO for search request parameters.
@@ -21,6 +22,17 @@ public class SearchRequest implements Serializable {
      */
     private String poiName;
 
+    /**
+     * Facet filter: only cities with published POIs in one of these categories
+     * (case-insensitive). Null or empty means any category.
+     */
+    private List<String> categories;
+
+    /**
+     * Facet filter: TRUE = accessible POIs only, FALSE = non-accessible only, null = any.
+     */
+    private Boolean accessible;
+
     public SearchRequest() {
     }
 
@@ -52,6 +64,22 @@ public class SearchRequest implements Serializable {
         return req;
     }
 
+    /**
+     * Restrict results to the given facet values (see categories / accessible).
+     */
+    public SearchRequest withFacetFilter(List<String> categories, Boolean accessible) {
+        this.categories = categories;
+        this.accessible = accessible;
+        return this;
+    }
+
+    /**
+     * True if any facet filter is set.
+     */
+    public boolean hasFacetFilter() {
+        return (categories != null && !categories.isEmpty()) || accessible != null;
+    }
+
     // Getters and Setters
     public String getCityName() {
         return cityName;
@@ -69,8 +97,25 @@ public class SearchRequest implements Serializable {
         this.poiName = poiName;
     }
 
+    public List<String> getCategories() {
+        return categories;
+    }
+
+    public void setCategories(List<String> categories) {
+        this.categories = categories;
+    }
+
+    public Boolean getAccessible() {
+        return accessible;
+    }
+
+    public void setAccessible(Boolean accessible) {
+        this.accessible = accessible;
+    }
+
     @Override
     public String toString() {
-        return "SearchRequest{cityName='" + cityName + "', poiName='" + poiName + "'}";
+        return "SearchRequest{cityName='" + cityName + "', poiName='" + poiName + "'" +
+                (hasFacetFilter() ? ", categories=" + categories + ", accessible=" + accessible : "") + "}";
     }
 }
@@ -24,6 +24,8 @@ public class TourDTO implements Serializable {
     private boolean waitingForApproval;
     /** True when tour is pending deletion, awaiting manager approval. */
     private boolean pendingDeletion;
+    /** Row version when loaded (base version of edits; see MapChanges). */
+    private int version;
 
     public TourDTO() {
         this.stops = new ArrayList<>();
@@ -117,6 +119,14 @@ public class TourDTO implements Serializable {
         this.pendingDeletion = pendingDeletion;
     }
 
+    public int getVersion() {
+        return version;
+    }
+
+    public void setVersion(int version) {
+        this.version = version;
+    }
+
     @Override
     public String toString() {
         String dist = totalDistanceMeters != null ? String.format("%.0f m", totalDistanceMeters) : "? m";
@@ -0,0 +1,61 @@
+package common.dto;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Payload of OPTIMIZE_TOUR: the stops to reorder, either an existing tour (its current
+ * stop order) or an explicit list of POI ids in their current order.
+ */
+public class TourOptimizationRequest implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private int tourId;
+    private List<Integer> poiIds = new ArrayList<>();
+    private boolean fixedStart;
+    private boolean fixedEnd;
+    private long timeBudgetMillis;
+
+    public TourOptimizationRequest() {
+    }
+
+    /** Reorder the stops of a saved tour. */
+    public static TourOptimizationRequest forTour(int tourId) {
+        TourOptimizationRequest r = new TourOptimizationRequest();
+        r.tourId = tourId;
+        return r;
+    }
+
+    /** Reorder an explicit list of POIs (e.g. a tour still being edited). */
+    public static TourOptimizationRequest forPois(List<Integer> poiIds) {
+        TourOptimizationRequest r = new TourOptimizationRequest();
+        r.poiIds = poiIds != null ? new ArrayList<>(poiIds) : new ArrayList<>();
+        return r;
+    }
+
+    /** Keep the first and/or last stop of the current order in place. */
+    public TourOptimizationRequest withFixedEnds(boolean fixedStart, boolean fixedEnd) {
+        this.fixedStart = fixedStart;
+        this.fixedEnd = fixedEnd;
+        return this;
+    }
+
+    public int getTourId() { return tourId; }
+    public void setTourId(int tourId) { this.tourId = tourId; }
+    public List<Integer> getPoiIds() { return poiIds; }
+    public void setPoiIds(List<Integer> poiIds) { this.poiIds = poiIds; }
+    public boolean isFixedStart() { return fixedStart; }
+    public void setFixedStart(boolean fixedStart) { this.fixedStart = fixedStart; }
+    public boolean isFixedEnd() { return fixedEnd; }
+    public void setFixedEnd(boolean fixedEnd) { this.fixedEnd = fixedEnd; }
+    /** Search time limit; 0 uses the server default. */
+    public long getTimeBudgetMillis() { return timeBudgetMillis; }
+    public void setTimeBudgetMillis(long timeBudgetMillis) { this.timeBudgetMillis = timeBudgetMillis; }
+
+    @Override
+    public String toString() {
+        return "TourOptimizationRequest{tourId=" + tourId + ", poiIds=" + poiIds + ", fixedStart=" + fixedStart
+                + ", fixedEnd=" + fixedEnd + ", timeBudgetMillis=" + timeBudgetMillis + "}";
+    }
+}
@@ -0,0 +1,53 @@
+package common.dto;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Result of OPTIMIZE_TOUR: the suggested stop order and how much shorter it is than the
+ * current order. Distances are consecutive legs only (no circle-back), like tour totals.
+ */
+public class TourOptimizationResult implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private int tourId;
+    private List<Integer> orderedPoiIds = new ArrayList<>();
+    private List<Double> legDistancesMeters = new ArrayList<>();
+    private double originalDistanceMeters;
+    private double optimizedDistanceMeters;
+    private boolean timeBudgetReached;
+    private long elapsedMillis;
+
+    public TourOptimizationResult() {
+    }
+
+    public int getTourId() { return tourId; }
+    public void setTourId(int tourId) { this.tourId = tourId; }
+    /** POI ids in the suggested visiting order. */
+    public List<Integer> getOrderedPoiIds() { return orderedPoiIds; }
+    public void setOrderedPoiIds(List<Integer> orderedPoiIds) { this.orderedPoiIds = orderedPoiIds; }
+    /** legDistancesMeters[i] is the distance from stop i to stop i + 1 of the suggested order. */
+    public List<Double> getLegDistancesMeters() { return legDistancesMeters; }
+    public void setLegDistancesMeters(List<Double> legDistancesMeters) { this.legDistancesMeters = legDistancesMeters; }
+    public double getOriginalDistanceMeters() { return originalDistanceMeters; }
+    public void setOriginalDistanceMeters(double originalDistanceMeters) { this.originalDistanceMeters = originalDistanceMeters; }
+    public double getOptimizedDistanceMeters() { return optimizedDistanceMeters; }
+    public void setOptimizedDistanceMeters(double optimizedDistanceMeters) { this.optimizedDistanceMeters = optimizedDistanceMeters; }
+    /** True if the search stopped at the time budget instead of a local optimum. */
+    public boolean isTimeBudgetReached() { return timeBudgetReached; }
+    public void setTimeBudgetReached(boolean timeBudgetReached) { this.timeBudgetReached = timeBudgetReached; }
+    public long getElapsedMillis() { return elapsedMillis; }
+    public void setElapsedMillis(long elapsedMillis) { this.elapsedMillis = elapsedMillis; }
+
+    public double getDistanceSavedMeters() {
+        return Math.max(0, originalDistanceMeters - optimizedDistanceMeters);
+    }
+
+    @Override
+    public String toString() {
+        return "TourOptimizationResult{tourId=" + tourId + ", stops=" + orderedPoiIds.size()
+                + ", original=" + Math.round(originalDistanceMeters) + "m, optimized="
+                + Math.round(optimizedDistanceMeters) + "m, saved=" + Math.round(getDistanceSavedMeters()) + "m}";
+    }
+}
@@ -71,6 +71,10 @@ public class DBConnector {
             config.addDataSourceProperty("prepStmtCacheSize", "250");
             config.addDataSourceProperty("prepStmtCacheSqlLimit", "2048");
             config.addDataSourceProperty("useServerPrepStmts", "true");
+            // Send JDBC batches (addBatch/executeBatch) as multi-row statements
+            config.addDataSourceProperty("rewriteBatchedStatements", "true");
+            // Statements with a fetch size (catalog export) read through a server-side cursor
+            config.addDataSourceProperty("useCursorFetch", "true");
 
             dataSource = new HikariDataSource(config);
             poolInitialized = true;
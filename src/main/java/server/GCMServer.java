@@ -7,6 +7,8 @@ import common.Response;
 import ocsf.server.AbstractServer;
 import ocsf.server.ConnectionToClient;
 import server.dao.CityDAO;
+import server.dao.DistanceJobDAO;
+import server.dao.MapChangeLogDAO;
 import server.handler.MapEditHandler;
 import server.handler.SearchHandler;
 import server.handler.ApprovalHandler;
@@ -17,12 +19,20 @@ import server.handler.NotificationHandler;
 import server.handler.PricingHandler;
 import server.handler.SupportHandler;
 import server.handler.UserManagementHandler;
+import server.scheduler.DistanceJobWorker;
 import server.scheduler.SubscriptionScheduler;
+import server.service.CitySearchIndex;
+import server.service.ContentTags;
+import server.service.DistanceCache;
+import server.service.PoiFacetIndex;
+import server.service.PoiSpatialIndex;
+import server.service.SearchResultCache;
 
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -40,6 +50,10 @@ public class GCMServer extends AbstractServer {
     private static final int THREAD_POOL_SIZE = 10;
     private final ExecutorService requestExecutor;
 
+    // Periodic metrics log (pool, sessions, search cache); interval via gcm.metrics.intervalMinutes
+    private static final long METRICS_INTERVAL_MINUTES = Long.getLong("gcm.metrics.intervalMinutes", 5L);
+    private ScheduledExecutorService metricsExecutor;
+
     public GCMServer(int port) {
         super(port);
 
@@ -123,6 +137,33 @@ public class GCMServer extends AbstractServer {
         return client.getInetAddress().getHostAddress() + ":" + client.hashCode();
     }
 
+    /**
+     * Invalidate catalog ETags (ContentTags) after a successful city, map, approval or pricing
+     * write. Reads (GET_*) leave them alone; drafts, requests and rejections leave the published
+     * catalog alone (a manager's publish through SUBMIT_MAP_CHANGES bumps it in the handler).
+     */
+    private static Response afterCatalogWrite(MessageType type, Response response) {
+        if (response.isOk() && !type.name().startsWith("GET_")) {
+            if (isUnpublishedWrite(type)) {
+                ContentTags.getInstance().draftsChanged();
+            } else {
+                ContentTags.getInstance().catalogChanged();
+            }
+        }
+        return response;
+    }
+
+    private static boolean isUnpublishedWrite(MessageType type) {
+        return type == MessageType.SAVE_MAP_CHANGES ||
+                type == MessageType.SUBMIT_MAP_CHANGES ||
+                type == MessageType.REJECT_MAP_EDIT ||
+                type == MessageType.REJECT_MAP_VERSION ||
+                type == MessageType.SUBMIT_PRICING_REQUEST ||
+                type == MessageType.REJECT_PRICING_REQUEST ||
+                type == MessageType.OPTIMIZE_TOUR ||
+                type.name().startsWith("LIST_PENDING_");
+    }
+
     /**
      * Dispatch a Request to the appropriate handler.
      * Phase 13: Pass clientId for session-connection linking.
@@ -137,12 +178,12 @@ public class GCMServer extends AbstractServer {
 
         // Map editing handlers
         if (MapEditHandler.canHandle(type)) {
-            return MapEditHandler.handle(request);
+            return afterCatalogWrite(type, MapEditHandler.handle(request));
         }
 
         // Version approval handlers (Phase 3)
         if (ApprovalHandler.canHandle(type)) {
-            return ApprovalHandler.handle(request);
+            return afterCatalogWrite(type, ApprovalHandler.handle(request));
         }
 
         // Authentication handlers (Phase 4)
@@ -186,7 +227,7 @@ public class GCMServer extends AbstractServer {
 
         // Pricing handlers (Phase 8)
         if (PricingHandler.canHandle(type)) {
-            return PricingHandler.handle(request);
+            return afterCatalogWrite(type, PricingHandler.handle(request));
         }
 
         // Support handlers (Phase 9)
@@ -281,6 +322,8 @@ public class GCMServer extends AbstractServer {
                 boolean success = MySQLController.updateCityPrice(cityId, newPrice);
 
                 if (success) {
+                    SearchResultCache.getInstance().invalidateCity(cityId);
+                    ContentTags.getInstance().catalogChanged();
                     client.sendToClient("Success: Price updated!");
                     client.sendToClient(MySQLController.getAllCities());
                 } else {
@@ -305,13 +348,58 @@ public class GCMServer extends AbstractServer {
         // Ensure cities table has approved/created_by columns (migration)
         CityDAO.ensureCitiesApprovalColumns();
 
+        // Build in-memory geospatial index for SEARCH_POIS_NEAR / SEARCH_POIS_IN_BBOX
+        PoiSpatialIndex.getInstance().rebuild();
+
+        // Build per-city category/accessibility bitsets for search facet counts and filters
+        PoiFacetIndex.getInstance().rebuild();
+
+        // Build in-memory BM25 index used to rank search results
+        CitySearchIndex.getInstance().rebuild();
+
         // Start subscription expiry scheduler (Phase 7)
         SubscriptionScheduler.getInstance().start();
+
+        // Process queued POI distance / tour length computations in the background
+        DistanceJobWorker.getInstance().start();
+
+        // Drop map content change log entries older than the delta sync retention
+        MapChangeLogDAO.pruneOldEntries();
+        // Drop finished distance jobs older than their retention
+        DistanceJobDAO.pruneFinishedJobs();
+
+        // Log server metrics periodically
+        if (METRICS_INTERVAL_MINUTES > 0) {
+            metricsExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "GCM-Metrics");
+                t.setDaemon(true);
+                return t;
+            });
+            metricsExecutor.scheduleAtFixedRate(GCMServer::logServerMetrics,
+                    METRICS_INTERVAL_MINUTES, METRICS_INTERVAL_MINUTES, TimeUnit.MINUTES);
+        }
+    }
+
+    /**
+     * Connection pool, session and search cache statistics on one line.
+     */
+    public static String getServerMetrics() {
+        return DBConnector.getPoolStats() + " " + SessionManager.getInstance().getStats() + " "
+                + SearchResultCache.getInstance().getStats() + " " + DistanceCache.getInstance().getStats();
+    }
+
+    private static void logServerMetrics() {
+        System.out.println("📊 Metrics: " + getServerMetrics());
     }
 
     @Override
     protected void serverStopped() {
         System.out.println("Server stopping...");
+        logServerMetrics();
+        if (metricsExecutor != null) {
+            metricsExecutor.shutdownNow();
+        }
+        DistanceJobWorker.getInstance().stop();
 
         // Shutdown request executor (Phase 12)
         requestExecutor.shutdown();
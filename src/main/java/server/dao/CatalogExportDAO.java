@@ -0,0 +1,81 @@
+package server.dao;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Read-only queries of the catalog export (see CatalogExportService).
+ *
+ * Every query runs forward-only and read-only with a small fetch size, so with useCursorFetch
+ * (DBConnector) MySQL hands rows over a server-side cursor in batches and the export never holds
+ * more than one batch, whatever the size of the catalog. Rows are passed to the handler as they
+ * are read; the handler must not keep the ResultSet.
+ *
+ * Only approved content is read: approved cities, their approved maps, POIs linked (approved) to
+ * one of those maps, and the tours of approved cities.
+ */
+public class CatalogExportDAO {
+
+    /** Rows per round trip (gcm.export.fetchSize, default 500). */
+    public static final int FETCH_SIZE = Integer.getInteger("gcm.export.fetchSize", 500);
+
+    /** Receives one row of a streamed query. */
+    public interface RowHandler {
+        void row(ResultSet rs) throws SQLException, java.io.IOException;
+    }
+
+    /** Columns: id, name, description, price. */
+    public static void streamCities(Connection conn, RowHandler handler) throws SQLException, java.io.IOException {
+        stream(conn, "SELECT id, name, description, price FROM cities WHERE approved = 1 ORDER BY id", handler);
+    }
+
+    /** Columns: id, city_id, name, short_description. */
+    public static void streamMaps(Connection conn, RowHandler handler) throws SQLException, java.io.IOException {
+        stream(conn, "SELECT m.id, m.city_id, m.name, m.short_description FROM maps m " +
+                "JOIN cities c ON c.id = m.city_id " +
+                "WHERE m.approved = 1 AND c.approved = 1 ORDER BY m.id", handler);
+    }
+
+    /**
+     * Columns: id, city_id, name, location, latitude, longitude, category, short_explanation,
+     * is_accessible, map_ids (comma-separated approved maps showing the POI).
+     */
+    public static void streamPois(Connection conn, RowHandler handler) throws SQLException, java.io.IOException {
+        stream(conn, "SELECT p.id, p.city_id, p.name, p.location, p.latitude, p.longitude, p.category, " +
+                "p.short_explanation, p.is_accessible, " +
+                "GROUP_CONCAT(mp.map_id ORDER BY mp.map_id SEPARATOR ',') AS map_ids " +
+                "FROM pois p " +
+                "JOIN map_pois mp ON mp.poi_id = p.id AND mp.approved = 1 " +
+                "JOIN maps m ON m.id = mp.map_id AND m.approved = 1 " +
+                "JOIN cities c ON c.id = p.city_id AND c.approved = 1 " +
+                "GROUP BY p.id ORDER BY p.id", handler);
+    }
+
+    /**
+     * One row per tour stop in stop order, grouped by tour (a tour without stops has one row with
+     * a NULL poi_id). Columns: tour_id, city_id, name, general_description,
+     * total_distance_meters, poi_id, latitude, longitude.
+     */
+    public static void streamTourStops(Connection conn, RowHandler handler) throws SQLException, java.io.IOException {
+        stream(conn, "SELECT t.id AS tour_id, t.city_id, t.name, t.general_description, t.total_distance_meters, " +
+                "ts.poi_id, p.latitude, p.longitude " +
+                "FROM tours t " +
+                "JOIN cities c ON c.id = t.city_id AND c.approved = 1 " +
+                "LEFT JOIN tour_stops ts ON ts.tour_id = t.id " +
+                "LEFT JOIN pois p ON p.id = ts.poi_id " +
+                "ORDER BY t.id, ts.stop_order", handler);
+    }
+
+    private static void stream(Connection conn, String sql, RowHandler handler) throws SQLException, java.io.IOException {
+        try (PreparedStatement stmt = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            stmt.setFetchSize(FETCH_SIZE);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    handler.row(rs);
+                }
+            }
+        }
+    }
+}
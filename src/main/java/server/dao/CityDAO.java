@@ -214,6 +214,7 @@ public class CityDAO {
             stmt.setInt(4, cityId);
 
             int affected = stmt.executeUpdate();
+            if (affected > 0) MapChangeLogDAO.record(conn, cityId, null, MapChangeLogDAO.ENTITY_MAP, 0);
             System.out.println("CityDAO: Updated city " + cityId + ", affected: " + affected);
             return affected > 0;
 
@@ -197,6 +197,34 @@ public class DailyStatsDAO {
         return results;
     }
 
+    /**
+     * Popularity per city over the last N days: views + downloads, with purchases,
+     * subscriptions and renewals counted 5x. Used as a ranking boost in search.
+     * If cityId is null all cities are returned.
+     */
+    public static java.util.Map<Integer, Long> getPopularityByCity(int days, Integer cityId) {
+        java.util.Map<Integer, Long> results = new java.util.HashMap<>();
+        String query = "SELECT city_id, " +
+                "SUM(views + downloads + 5 * (one_time_purchases + subscriptions + renewals)) as popularity " +
+                "FROM daily_stats WHERE stat_date >= ? AND city_id > 0" +
+                (cityId != null ? " AND city_id = ?" : "") +
+                " GROUP BY city_id";
+        try (Connection conn = DBConnector.getConnection()) {
+            if (conn == null) return results;
+            try (PreparedStatement stmt = conn.prepareStatement(query)) {
+                stmt.setDate(1, Date.valueOf(LocalDate.now().minusDays(days)));
+                if (cityId != null) stmt.setInt(2, cityId);
+                ResultSet rs = stmt.executeQuery();
+                while (rs.next()) {
+                    results.put(rs.getInt("city_id"), rs.getLong("popularity"));
+                }
+            }
+        } catch (SQLException e) {
+            System.out.println("Error getting city popularity: " + e.getMessage());
+        }
+        return results;
+    }
+
     /**
      * Per-city totals over a date range for "all cities" report (histogram grouped by city).
      * Returns one DailyStat per city with summed metrics; date is set to from for display.
@@ -0,0 +1,271 @@
+package server.dao;
+
+import server.DBConnector;
+
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Persistent queue of POI distance computations (poi_distances, tours.total_distance_meters).
+ *
+ * Jobs are enqueued inside the map-edit transaction, so they exist exactly when the
+ * edit commits, and are processed by DistanceJobWorker outside of it. Jobs of one
+ * approval share a batch id so the user is notified once when all of them are done.
+ *
+ * Status flow: PENDING -> RUNNING -> DONE, or back to PENDING on failure until
+ * MAX_ATTEMPTS is reached (then FAILED). RUNNING jobs left over from a crash are
+ * reset to PENDING at startup. DONE and FAILED jobs are deleted at startup once
+ * they are older than the retention (gcm.distanceJobs.retentionDays, default 7).
+ */
+public class DistanceJobDAO {
+
+    public static final String TYPE_MAP = "MAP";
+    public static final String TYPE_TOUR = "TOUR";
+    public static final String TYPE_POI = "POI";
+
+    public static final String STATUS_PENDING = "PENDING";
+    public static final String STATUS_RUNNING = "RUNNING";
+    public static final String STATUS_DONE = "DONE";
+    public static final String STATUS_FAILED = "FAILED";
+
+    public static final int MAX_ATTEMPTS = 3;
+
+    private static final int RETENTION_DAYS = Integer.getInteger("gcm.distanceJobs.retentionDays", 7);
+
+    static {
+        createTable();
+    }
+
+    private static void createTable() {
+        String sql = "CREATE TABLE IF NOT EXISTS distance_jobs (" +
+                "id INT AUTO_INCREMENT PRIMARY KEY, " +
+                "batch_id VARCHAR(36) NOT NULL, " +
+                "job_type VARCHAR(10) NOT NULL, " +
+                "target_id INT NOT NULL, " +
+                "requested_by INT NULL, " +
+                "status VARCHAR(20) NOT NULL DEFAULT 'PENDING', " +
+                "attempts INT NOT NULL DEFAULT 0, " +
+                "last_error VARCHAR(500) NULL, " +
+                "created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP, " +
+                "updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP, " +
+                "INDEX idx_distance_jobs_status (status, id), " +
+                "INDEX idx_distance_jobs_batch (batch_id)" +
+                ")";
+
+        try (Connection conn = DBConnector.getConnection();
+                Statement stmt = conn.createStatement()) {
+            stmt.execute(sql);
+        } catch (SQLException e) {
+            System.err.println("Error creating distance_jobs table: " + e.getMessage());
+        }
+    }
+
+    /**
+     * A queued distance computation.
+     */
+    public static class DistanceJob {
+        public final int id;
+        public final String batchId;
+        public final String jobType;
+        public final int targetId;
+        public final int requestedBy;
+        public final int attempts;
+
+        public DistanceJob(int id, String batchId, String jobType, int targetId, int requestedBy, int attempts) {
+            this.id = id;
+            this.batchId = batchId;
+            this.jobType = jobType;
+            this.targetId = targetId;
+            this.requestedBy = requestedBy;
+            this.attempts = attempts;
+        }
+
+        @Override
+        public String toString() {
+            return "DistanceJob#" + id + "[" + jobType + " " + targetId + ", attempt " + attempts + "]";
+        }
+    }
+
+    /**
+     * Enqueue a job on the caller's connection (part of the caller's transaction).
+     *
+     * @param jobType     TYPE_MAP (all POI pairs of a map, then its tours), TYPE_POI (pairs of one
+     *                    added or moved POI with the POIs sharing a map with it, then its tours)
+     *                    or TYPE_TOUR
+     * @param requestedBy user to notify when the batch is done (0 = nobody)
+     */
+    public static void enqueue(Connection conn, String batchId, String jobType, int targetId, int requestedBy)
+            throws SQLException {
+        String sql = "INSERT INTO distance_jobs (batch_id, job_type, target_id, requested_by) VALUES (?, ?, ?, ?)";
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setString(1, batchId);
+            stmt.setString(2, jobType);
+            stmt.setInt(3, targetId);
+            if (requestedBy > 0) stmt.setInt(4, requestedBy); else stmt.setNull(4, Types.INTEGER);
+            stmt.executeUpdate();
+        }
+    }
+
+    /**
+     * Enqueue one job per target with one batched INSERT.
+     */
+    public static void enqueueAll(Connection conn, String batchId, String jobType, java.util.Collection<Integer> targetIds,
+            int requestedBy) throws SQLException {
+        if (targetIds == null || targetIds.isEmpty()) return;
+        String sql = "INSERT INTO distance_jobs (batch_id, job_type, target_id, requested_by) VALUES (?, ?, ?, ?)";
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            for (int targetId : targetIds) {
+                stmt.setString(1, batchId);
+                stmt.setString(2, jobType);
+                stmt.setInt(3, targetId);
+                if (requestedBy > 0) stmt.setInt(4, requestedBy); else stmt.setNull(4, Types.INTEGER);
+                stmt.addBatch();
+            }
+            stmt.executeBatch();
+        }
+    }
+
+    /**
+     * Claim up to limit pending jobs (oldest first) by moving them to RUNNING.
+     * A job another worker claimed in between is skipped.
+     */
+    public static List<DistanceJob> claimPending(int limit) {
+        List<DistanceJob> claimed = new ArrayList<>();
+        if (limit <= 0) return claimed;
+
+        String select = "SELECT id, batch_id, job_type, target_id, requested_by, attempts FROM distance_jobs " +
+                "WHERE status = 'PENDING' ORDER BY id LIMIT ?";
+        String claim = "UPDATE distance_jobs SET status = 'RUNNING', attempts = attempts + 1 " +
+                "WHERE id = ? AND status = 'PENDING'";
+
+        try (Connection conn = DBConnector.getConnection()) {
+            if (conn == null) return claimed;
+            List<DistanceJob> candidates = new ArrayList<>();
+            try (PreparedStatement stmt = conn.prepareStatement(select)) {
+                stmt.setInt(1, limit);
+                ResultSet rs = stmt.executeQuery();
+                while (rs.next()) {
+                    candidates.add(new DistanceJob(rs.getInt("id"), rs.getString("batch_id"),
+                            rs.getString("job_type"), rs.getInt("target_id"), rs.getInt("requested_by"),
+                            rs.getInt("attempts") + 1));
+                }
+            }
+            try (PreparedStatement stmt = conn.prepareStatement(claim)) {
+                for (DistanceJob job : candidates) {
+                    stmt.setInt(1, job.id);
+                    if (stmt.executeUpdate() == 1) claimed.add(job);
+                }
+            }
+        } catch (SQLException e) {
+            System.err.println("DistanceJobDAO: Failed to claim jobs: " + e.getMessage());
+        }
+        return claimed;
+    }
+
+    public static void markDone(int jobId) {
+        updateStatus(jobId, STATUS_DONE, null);
+    }
+
+    /**
+     * Record a failure: back to PENDING for another attempt, or FAILED after MAX_ATTEMPTS.
+     *
+     * @return true if the job will not be retried
+     */
+    public static boolean markFailed(DistanceJob job, String error) {
+        boolean giveUp = job.attempts >= MAX_ATTEMPTS;
+        updateStatus(job.id, giveUp ? STATUS_FAILED : STATUS_PENDING, error);
+        return giveUp;
+    }
+
+    private static void updateStatus(int jobId, String status, String error) {
+        String sql = "UPDATE distance_jobs SET status = ?, last_error = ? WHERE id = ?";
+        try (Connection conn = DBConnector.getConnection()) {
+            if (conn == null) return;
+            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                stmt.setString(1, status);
+                stmt.setString(2, error != null && error.length() > 500 ? error.substring(0, 500) : error);
+                stmt.setInt(3, jobId);
+                stmt.executeUpdate();
+            }
+        } catch (SQLException e) {
+            System.err.println("DistanceJobDAO: Failed to update job " + jobId + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Number of jobs in the batch that are still PENDING or RUNNING.
+     */
+    public static int countOpenJobs(String batchId) {
+        String sql = "SELECT COUNT(*) FROM distance_jobs WHERE batch_id = ? AND status IN ('PENDING', 'RUNNING')";
+        try (Connection conn = DBConnector.getConnection()) {
+            if (conn == null) return 0;
+            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                stmt.setString(1, batchId);
+                ResultSet rs = stmt.executeQuery();
+                return rs.next() ? rs.getInt(1) : 0;
+            }
+        } catch (SQLException e) {
+            System.err.println("DistanceJobDAO: Failed to count open jobs: " + e.getMessage());
+            return 0;
+        }
+    }
+
+    /**
+     * Number of jobs in the batch that ended FAILED.
+     */
+    public static int countFailedJobs(String batchId) {
+        String sql = "SELECT COUNT(*) FROM distance_jobs WHERE batch_id = ? AND status = 'FAILED'";
+        try (Connection conn = DBConnector.getConnection()) {
+            if (conn == null) return 0;
+            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                stmt.setString(1, batchId);
+                ResultSet rs = stmt.executeQuery();
+                return rs.next() ? rs.getInt(1) : 0;
+            }
+        } catch (SQLException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Put jobs left RUNNING by a previous server process back in the queue.
+     *
+     * @return number of jobs reset
+     */
+    public static int resetInterruptedJobs() {
+        String sql = "UPDATE distance_jobs SET status = 'PENDING' WHERE status = 'RUNNING'";
+        try (Connection conn = DBConnector.getConnection()) {
+            if (conn == null) return 0;
+            try (Statement stmt = conn.createStatement()) {
+                return stmt.executeUpdate(sql);
+            }
+        } catch (SQLException e) {
+            System.err.println("DistanceJobDAO: Failed to reset interrupted jobs: " + e.getMessage());
+            return 0;
+        }
+    }
+
+    /**
+     * Delete DONE and FAILED jobs last updated before the retention period.
+     *
+     * @return number of jobs deleted
+     */
+    public static int pruneFinishedJobs() {
+        return pruneFinishedJobs(RETENTION_DAYS);
+    }
+
+    static int pruneFinishedJobs(int retentionDays) {
+        String sql = "DELETE FROM distance_jobs WHERE status IN ('DONE', 'FAILED') AND updated_at < NOW() - INTERVAL ? DAY";
+        try (Connection conn = DBConnector.getConnection();
+                PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setInt(1, retentionDays);
+            int deleted = stmt.executeUpdate();
+            System.out.println("DistanceJobDAO: Pruned " + deleted + " finished jobs older than " + retentionDays + " days");
+            return deleted;
+        } catch (SQLException e) {
+            System.err.println("DistanceJobDAO: prune failed: " + e.getMessage());
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,271 @@
+package server.dao;
+
+import common.Poi;
+import common.dto.EditConflict;
+import common.dto.MapChanges;
+import common.dto.TourDTO;
+import common.dto.TourStopDTO;
+import server.DBConnector;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Row versions of maps, POIs and tours for optimistic concurrency control of map edits.
+ *
+ * Publishing or approving MapChanges first claims every existing entity the changes write:
+ * UPDATE ... SET version = version + 1 WHERE id = ? AND version = ?, with the version the editor
+ * loaded (MapChanges base versions). A claim that matches no row means someone else changed or
+ * deleted the entity since; the caller rolls back and answers with an EditConflict instead of
+ * overwriting. The claims are single-row updates in the writer's own transaction, so there is
+ * no long transaction to serialize edits and no waiting beyond the row being written.
+ *
+ * Entities without a base version (older clients, requests saved before versions existed) are
+ * still bumped, but not checked. Writes outside MapChanges bump as well, in the same statement
+ * (PoiDAO.updatePoi, TourDAO.updateTour) or transaction (tour stop writes bump their tour), so
+ * a claim based on an older version always fails.
+ */
+public class EntityVersionDAO {
+
+    public static final String MAPS = "maps";
+    public static final String POIS = "pois";
+    public static final String TOURS = "tours";
+
+    static {
+        ensureVersionColumns();
+    }
+
+    private static void ensureVersionColumns() {
+        try (Connection conn = DBConnector.getConnection()) {
+            if (conn == null) return;
+            for (String table : new String[] { MAPS, POIS, TOURS }) {
+                try (Statement stmt = conn.createStatement()) {
+                    stmt.executeUpdate("ALTER TABLE " + table + " ADD COLUMN version INT NOT NULL DEFAULT 0");
+                } catch (SQLException e) {
+                    if (e.getErrorCode() != 1060 && (e.getMessage() == null || !e.getMessage().toLowerCase().contains("duplicate column")))
+                        throw e;
+                }
+            }
+        } catch (SQLException e) {
+            System.out.println("EntityVersionDAO: migration skipped or failed: " + e.getMessage());
+        }
+    }
+
+    /** One entity written by a change set. */
+    private static class Claim {
+        final String table;
+        final int id;
+        final Integer baseVersion;
+        /** Deleted by the changes: gone already is not a conflict. */
+        final boolean delete;
+
+        Claim(String table, int id, Integer baseVersion, boolean delete) {
+            this.table = table;
+            this.id = id;
+            this.baseVersion = baseVersion;
+            this.delete = delete;
+        }
+    }
+
+    /**
+     * Current version of a map, POI or tour (-1 if the row does not exist).
+     */
+    public static int getVersion(Connection conn, String table, int id) throws SQLException {
+        Map<Integer, Integer> versions = getVersions(conn, table, List.of(id));
+        return versions.getOrDefault(id, -1);
+    }
+
+    /**
+     * Current versions of several rows of one table; ids without a row are missing from the map.
+     */
+    public static Map<Integer, Integer> getVersions(Connection conn, String table, Collection<Integer> ids) throws SQLException {
+        Map<Integer, Integer> versions = new HashMap<>();
+        if (ids == null || ids.isEmpty()) return versions;
+        StringBuilder placeholders = new StringBuilder();
+        for (int i = 0; i < ids.size(); i++) {
+            placeholders.append(i == 0 ? "?" : ",?");
+        }
+        String sql = "SELECT id, version FROM " + table + " WHERE id IN (" + placeholders + ")";
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            int index = 1;
+            for (Integer id : ids) {
+                stmt.setInt(index++, id);
+            }
+            ResultSet rs = stmt.executeQuery();
+            while (rs.next()) {
+                versions.put(rs.getInt("id"), rs.getInt("version"));
+            }
+        }
+        return versions;
+    }
+
+    /**
+     * Bump the version of a row written outside MapChanges (e.g. a tour whose stop is edited).
+     * Call in the same transaction as the write, before it, so the row stays locked until commit.
+     */
+    public static void bump(Connection conn, String table, int id) throws SQLException {
+        bumpAll(conn, table, List.of(id));
+    }
+
+    /**
+     * Bump the versions of several rows of one table, in id order (see claim).
+     */
+    public static void bumpAll(Connection conn, String table, Collection<Integer> ids) throws SQLException {
+        if (ids == null || ids.isEmpty()) return;
+        try (PreparedStatement stmt = conn.prepareStatement("UPDATE " + table + " SET version = version + 1 WHERE id = ?")) {
+            for (Integer id : new TreeSet<>(ids)) {
+                stmt.setInt(1, id);
+                stmt.addBatch();
+            }
+            stmt.executeBatch();
+        }
+    }
+
+    /**
+     * Claim the map, POIs and tours written by the changes (compare-and-set on their base
+     * versions). Must run in the writer's transaction, before the changes are applied; if the
+     * result is not empty the caller must roll back. Rows are claimed in (table, id) order, so
+     * approvals writing overlapping entities wait for each other instead of deadlocking.
+     *
+     * @return the conflicting entities (empty if every claim matched)
+     */
+    public static List<EditConflict.Entity> claim(Connection conn, MapChanges changes) throws SQLException {
+        List<Claim> claims = collectClaims(conn, changes);
+        claims.sort(Comparator.comparing((Claim c) -> c.table).thenComparingInt(c -> c.id));
+        List<Claim> failed = new ArrayList<>();
+        Map<String, PreparedStatement> casByTable = new HashMap<>();
+        Map<String, PreparedStatement> bumpByTable = new HashMap<>();
+        try {
+            for (Claim c : claims) {
+                if (c.baseVersion != null) {
+                    PreparedStatement stmt = statement(conn, casByTable, c.table, " AND version = ?");
+                    stmt.setInt(1, c.id);
+                    stmt.setInt(2, c.baseVersion);
+                    if (stmt.executeUpdate() == 0) failed.add(c);
+                } else {
+                    PreparedStatement stmt = statement(conn, bumpByTable, c.table, "");
+                    stmt.setInt(1, c.id);
+                    stmt.executeUpdate();
+                }
+            }
+        } finally {
+            for (PreparedStatement stmt : casByTable.values()) stmt.close();
+            for (PreparedStatement stmt : bumpByTable.values()) stmt.close();
+        }
+        return describeConflicts(conn, failed);
+    }
+
+    private static PreparedStatement statement(Connection conn, Map<String, PreparedStatement> byTable, String table,
+            String condition) throws SQLException {
+        PreparedStatement stmt = byTable.get(table);
+        if (stmt == null) {
+            stmt = conn.prepareStatement("UPDATE " + table + " SET version = version + 1 WHERE id = ?" + condition);
+            byTable.put(table, stmt);
+        }
+        return stmt;
+    }
+
+    /** Read back the current versions of failed claims; deleting what is already gone is fine. */
+    private static List<EditConflict.Entity> describeConflicts(Connection conn, List<Claim> failed) throws SQLException {
+        List<EditConflict.Entity> conflicts = new ArrayList<>();
+        if (failed.isEmpty()) return conflicts;
+        Map<String, List<Integer>> idsByTable = new LinkedHashMap<>();
+        for (Claim c : failed) {
+            idsByTable.computeIfAbsent(c.table, t -> new ArrayList<>()).add(c.id);
+        }
+        Map<String, Map<Integer, Integer>> current = new HashMap<>();
+        for (Map.Entry<String, List<Integer>> e : idsByTable.entrySet()) {
+            current.put(e.getKey(), getVersions(conn, e.getKey(), e.getValue()));
+        }
+        for (Claim c : failed) {
+            int version = current.get(c.table).getOrDefault(c.id, -1);
+            if (version < 0 && c.delete) continue;
+            conflicts.add(new EditConflict.Entity(entityType(c.table), c.id, c.baseVersion, version));
+        }
+        return conflicts;
+    }
+
+    private static String entityType(String table) {
+        if (MAPS.equals(table)) return EditConflict.MAP;
+        if (POIS.equals(table)) return EditConflict.POI;
+        return EditConflict.TOUR;
+    }
+
+    /**
+     * Existing entities written by the changes, each once: the map when its name/description
+     * changes or it is deleted; updated, deleted and unlinked POIs; updated and deleted tours and
+     * the tours whose stops change. New entities (no id yet) have nothing to conflict with.
+     */
+    private static List<Claim> collectClaims(Connection conn, MapChanges changes) throws SQLException {
+        Map<String, Claim> claims = new LinkedHashMap<>();
+        Integer mapId = changes.getMapId();
+        if (mapId != null && mapId > 0) {
+            boolean deleted = changes.getDeletedMapIds() != null && changes.getDeletedMapIds().contains(mapId);
+            if (deleted || changes.getNewMapName() != null || changes.getNewMapDescription() != null) {
+                add(claims, new Claim(MAPS, mapId, changes.getBaseMapVersion(), deleted));
+            }
+        }
+        if (changes.getDeletedMapIds() != null) {
+            for (Integer id : changes.getDeletedMapIds()) {
+                if (id != null && id > 0) add(claims, new Claim(MAPS, id, null, true));
+            }
+        }
+
+        Map<Integer, Integer> poiBase = changes.getBasePoiVersions();
+        for (Integer id : changes.getDeletedPoiIds()) {
+            if (id != null && id > 0) add(claims, new Claim(POIS, id, poiBase.get(id), true));
+        }
+        for (Poi p : changes.getUpdatedPois()) {
+            if (p.getId() > 0) add(claims, new Claim(POIS, p.getId(), poiBase.get(p.getId()), false));
+        }
+        for (MapChanges.PoiMapLink link : changes.getPoiMapUnlinks()) {
+            if (link.poiId > 0) add(claims, new Claim(POIS, link.poiId, poiBase.get(link.poiId), true));
+        }
+
+        Map<Integer, Integer> tourBase = changes.getBaseTourVersions();
+        for (Integer id : changes.getDeletedTourIds()) {
+            if (id != null && id > 0) add(claims, new Claim(TOURS, id, tourBase.get(id), true));
+        }
+        for (TourDTO t : changes.getUpdatedTours()) {
+            if (t.getId() > 0) add(claims, new Claim(TOURS, t.getId(), tourBase.get(t.getId()), false));
+        }
+        Set<Integer> stopTourIds = new LinkedHashSet<>();
+        for (TourStopDTO s : changes.getAddedStops()) {
+            if (s.getTourId() > 0) stopTourIds.add(s.getTourId());
+        }
+        for (TourStopDTO s : changes.getUpdatedStops()) {
+            if (s.getTourId() > 0) stopTourIds.add(s.getTourId());
+        }
+        if (!changes.getDeletedStopIds().isEmpty()) {
+            stopTourIds.addAll(TourDAO.getTourIdsForStops(conn, changes.getDeletedStopIds()));
+        }
+        for (Integer id : stopTourIds) {
+            add(claims, new Claim(TOURS, id, tourBase.get(id), false));
+        }
+        return new ArrayList<>(claims.values());
+    }
+
+    /** One claim per entity: checked if any of its writes has a base version, a delete if any is. */
+    private static void add(Map<String, Claim> claims, Claim claim) {
+        String key = claim.table + "/" + claim.id;
+        Claim existing = claims.get(key);
+        if (existing != null) {
+            Integer base = existing.baseVersion != null ? existing.baseVersion : claim.baseVersion;
+            claim = new Claim(claim.table, claim.id, base, existing.delete || claim.delete);
+        }
+        claims.put(key, claim);
+    }
+}
@@ -0,0 +1,375 @@
+package server.dao;
+
+import server.DBConnector;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Per-city content versions and the change log behind delta sync of map content
+ * (GET_MAP_CONTENT_DELTA).
+ *
+ * Every write to POIs, map links, tours, stops, maps or edit requests records which entity
+ * it touched, inside the writer's transaction (or a transaction of its own on an autocommit
+ * connection). Recording allocates versions by bumping the city's content_versions row, so
+ * writers of one city are serialized and a version is never visible before its entries.
+ * Readers take the version before loading content, so a delta from that version never misses
+ * a change (it may re-send one that was already loaded).
+ *
+ * Entries only say what was touched, not how; the delta is rebuilt from the current content.
+ * Entries without a map (POIs, tours) apply to every map of the city. Entries older than
+ * gcm.mapChangeLog.retentionDays (default 7) are pruned; clients with an older version get
+ * a full reload.
+ */
+public class MapChangeLogDAO {
+
+    /** Map name/description/approval changed: clients reload the full content. */
+    public static final String ENTITY_MAP = "MAP";
+    /** POI row or map link changed; entity id 0 means all POIs of the map. */
+    public static final String ENTITY_POI = "POI";
+    /** Tour or its stops/distance changed; entity id 0 means all tours of the city. */
+    public static final String ENTITY_TOUR = "TOUR";
+    /** DRAFT request of a user (entity id) for the map changed. */
+    public static final String ENTITY_DRAFT = "DRAFT";
+    /** PENDING requests of a user (entity id) changed ("waiting for approval" markers). */
+    public static final String ENTITY_REQUEST = "REQUEST";
+
+    private static final int RETENTION_DAYS = Integer.getInteger("gcm.mapChangeLog.retentionDays", 7);
+
+    static {
+        createTables();
+    }
+
+    private static void createTables() {
+        String versions = "CREATE TABLE IF NOT EXISTS content_versions (" +
+                "city_id INT PRIMARY KEY, " +
+                "version BIGINT NOT NULL" +
+                ")";
+        String log = "CREATE TABLE IF NOT EXISTS map_change_log (" +
+                "city_id INT NOT NULL, " +
+                "version BIGINT NOT NULL, " +
+                "map_id INT NULL, " +
+                "entity_type VARCHAR(10) NOT NULL, " +
+                "entity_id INT NOT NULL, " +
+                "created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP, " +
+                "PRIMARY KEY (city_id, version), " +
+                "INDEX idx_map_change_log_created (created_at)" +
+                ")";
+        try (Connection conn = DBConnector.getConnection();
+                Statement stmt = conn.createStatement()) {
+            stmt.execute(versions);
+            stmt.execute(log);
+        } catch (SQLException e) {
+            System.err.println("Error creating map change log tables: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Entities touched between two versions of a city, as seen by one map.
+     */
+    public static class ChangeSet {
+        /** False if the log no longer covers the range (pruned, or the version is unknown). */
+        public boolean complete = true;
+        public boolean mapChanged;
+        public boolean allPois;
+        public boolean allTours;
+        public final Set<Integer> poiIds = new HashSet<>();
+        public final Set<Integer> tourIds = new HashSet<>();
+        public final Set<Integer> draftUserIds = new HashSet<>();
+        public final Set<Integer> requestUserIds = new HashSet<>();
+    }
+
+    /**
+     * Record that an entity of the city changed; mapId null means all maps of the city.
+     * Errors are logged and swallowed (the change itself must not fail; clients fall back to
+     * full reload), except deadlocks and lock wait timeouts: the database has rolled back the
+     * caller's transaction (or statement) then, so they are rethrown.
+     */
+    public static void record(Connection conn, int cityId, Integer mapId, String entityType, int entityId) throws SQLException {
+        if (cityId <= 0) return;
+        recordAll(conn, cityId, mapId, entityType, List.of(entityId));
+    }
+
+    /**
+     * Record that several entities of one type changed, with one version bump for all of them
+     * (the entries get consecutive versions). Errors are handled like record().
+     *
+     * The versions are allocated atomically (LAST_INSERT_ID of the bump), and bump and entries
+     * are committed together: on an autocommit connection they run in their own transaction,
+     * otherwise in the caller's, which holds the city's row lock until it commits. A reader
+     * therefore never sees a version whose entries are missing.
+     */
+    public static void recordAll(Connection conn, int cityId, Integer mapId, String entityType, Collection<Integer> entityIds) throws SQLException {
+        if (cityId <= 0 || entityIds == null || entityIds.isEmpty()) return;
+        List<Integer> ids = new ArrayList<>(new LinkedHashSet<>(entityIds));
+        boolean ownTransaction = conn.getAutoCommit();
+        try {
+            if (ownTransaction) conn.setAutoCommit(false);
+            long last;
+            try (PreparedStatement bump = conn.prepareStatement(
+                    "INSERT INTO content_versions (city_id, version) VALUES (?, LAST_INSERT_ID(?)) " +
+                            "ON DUPLICATE KEY UPDATE version = LAST_INSERT_ID(version + VALUES(version))")) {
+                bump.setInt(1, cityId);
+                bump.setLong(2, ids.size());
+                bump.executeUpdate();
+            }
+            try (Statement stmt = conn.createStatement();
+                    ResultSet rs = stmt.executeQuery("SELECT LAST_INSERT_ID()")) {
+                if (!rs.next()) throw new SQLException("No version allocated for city " + cityId);
+                last = rs.getLong(1);
+            }
+            long first = last - ids.size() + 1;
+
+            try (PreparedStatement insert = conn.prepareStatement(
+                    "INSERT INTO map_change_log (city_id, version, map_id, entity_type, entity_id) VALUES (?, ?, ?, ?, ?)")) {
+                for (int i = 0; i < ids.size(); i++) {
+                    insert.setInt(1, cityId);
+                    insert.setLong(2, first + i);
+                    insert.setObject(3, mapId != null && mapId > 0 ? mapId : null, java.sql.Types.INTEGER);
+                    insert.setString(4, entityType);
+                    insert.setInt(5, ids.get(i));
+                    insert.addBatch();
+                }
+                insert.executeBatch();
+            }
+            if (ownTransaction) conn.commit();
+        } catch (SQLException e) {
+            if (ownTransaction) rollbackQuietly(conn);
+            if (isLockFailure(e)) throw e;
+            System.err.println("MapChangeLogDAO: record " + ids.size() + " " + entityType + " entries failed: " + e.getMessage());
+        } finally {
+            if (ownTransaction) conn.setAutoCommit(true);
+        }
+    }
+
+    /** Deadlock (1213) or lock wait timeout (1205): the caller's work was rolled back. */
+    private static boolean isLockFailure(SQLException e) {
+        return e.getErrorCode() == 1213 || e.getErrorCode() == 1205 || "40001".equals(e.getSQLState());
+    }
+
+    private static void rollbackQuietly(Connection conn) {
+        try {
+            conn.rollback();
+        } catch (SQLException ignored) {
+            // the original error is reported
+        }
+    }
+
+    /** Batch form of recordPoi: one city lookup for all POIs. Call before deleting them. */
+    public static void recordPois(Connection conn, Collection<Integer> poiIds) throws SQLException {
+        for (Map.Entry<Integer, List<Integer>> city : byCity(conn, "pois", poiIds).entrySet()) {
+            recordAll(conn, city.getKey(), null, ENTITY_POI, city.getValue());
+        }
+    }
+
+    /** Batch form of recordTour: one city lookup for all tours. Call before deleting them. */
+    public static void recordTours(Connection conn, Collection<Integer> tourIds) throws SQLException {
+        for (Map.Entry<Integer, List<Integer>> city : byCity(conn, "tours", tourIds).entrySet()) {
+            recordAll(conn, city.getKey(), null, ENTITY_TOUR, city.getValue());
+        }
+    }
+
+    /** Ids of the table's rows grouped by their city_id. */
+    private static Map<Integer, List<Integer>> byCity(Connection conn, String table, Collection<Integer> ids) {
+        Map<Integer, List<Integer>> byCity = new LinkedHashMap<>();
+        if (ids == null || ids.isEmpty()) return byCity;
+        Set<Integer> distinct = new LinkedHashSet<>(ids);
+        StringBuilder placeholders = new StringBuilder();
+        for (int i = 0; i < distinct.size(); i++) {
+            placeholders.append(i == 0 ? "?" : ",?");
+        }
+        try (PreparedStatement stmt = conn.prepareStatement(
+                "SELECT id, city_id FROM " + table + " WHERE id IN (" + placeholders + ")")) {
+            int index = 1;
+            for (Integer id : distinct) {
+                stmt.setInt(index++, id);
+            }
+            ResultSet rs = stmt.executeQuery();
+            while (rs.next()) {
+                byCity.computeIfAbsent(rs.getInt("city_id"), k -> new ArrayList<>()).add(rs.getInt("id"));
+            }
+        } catch (SQLException e) {
+            System.err.println("MapChangeLogDAO: city lookup failed: " + e.getMessage());
+        }
+        return byCity;
+    }
+
+    /** Record a change of a POI row (all maps of its city). Call before deleting the POI. */
+    public static void recordPoi(Connection conn, int poiId) throws SQLException {
+        record(conn, cityOf(conn, "SELECT city_id FROM pois WHERE id = ?", poiId), null, ENTITY_POI, poiId);
+    }
+
+    /** Record a change on one map (MAP, a POI link, or a user's DRAFT). */
+    public static void recordForMap(Connection conn, int mapId, String entityType, int entityId) throws SQLException {
+        record(conn, cityOf(conn, "SELECT city_id FROM maps WHERE id = ?", mapId), mapId, entityType, entityId);
+    }
+
+    /** Batch form of recordForMap for several entities of one type on one map. */
+    public static void recordAllForMap(Connection conn, int mapId, String entityType, Collection<Integer> entityIds) throws SQLException {
+        if (entityIds == null || entityIds.isEmpty()) return;
+        recordAll(conn, cityOf(conn, "SELECT city_id FROM maps WHERE id = ?", mapId), mapId, entityType, entityIds);
+    }
+
+    /** Record a change of a tour or its stops. Call before deleting the tour. */
+    public static void recordTour(Connection conn, int tourId) throws SQLException {
+        record(conn, cityOf(conn, "SELECT city_id FROM tours WHERE id = ?", tourId), null, ENTITY_TOUR, tourId);
+    }
+
+    /** Record a change of the tour a stop belongs to. Call before deleting the stop. */
+    public static void recordTourOfStop(Connection conn, int stopId) throws SQLException {
+        int cityId = 0;
+        int tourId = 0;
+        try (PreparedStatement stmt = conn.prepareStatement(
+                "SELECT t.city_id, t.id FROM tour_stops ts JOIN tours t ON t.id = ts.tour_id WHERE ts.id = ?")) {
+            stmt.setInt(1, stopId);
+            ResultSet rs = stmt.executeQuery();
+            if (rs.next()) {
+                cityId = rs.getInt(1);
+                tourId = rs.getInt(2);
+            }
+        } catch (SQLException e) {
+            System.err.println("MapChangeLogDAO: tour of stop " + stopId + " not found: " + e.getMessage());
+        }
+        record(conn, cityId, null, ENTITY_TOUR, tourId);
+    }
+
+    private static int cityOf(Connection conn, String query, int id) {
+        try (PreparedStatement stmt = conn.prepareStatement(query)) {
+            stmt.setInt(1, id);
+            ResultSet rs = stmt.executeQuery();
+            return rs.next() ? rs.getInt(1) : 0;
+        } catch (SQLException e) {
+            System.err.println("MapChangeLogDAO: city lookup failed: " + e.getMessage());
+            return 0;
+        }
+    }
+
+    /**
+     * Current content version of the map's city (0 if nothing was recorded yet), or -1 if the
+     * map does not exist or versions are unavailable. Read it before loading content.
+     */
+    public static long getVersionForMap(Connection conn, int mapId) {
+        String sql = "SELECT COALESCE(v.version, 0) FROM maps m LEFT JOIN content_versions v ON v.city_id = m.city_id WHERE m.id = ?";
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setInt(1, mapId);
+            ResultSet rs = stmt.executeQuery();
+            return rs.next() ? rs.getLong(1) : -1;
+        } catch (SQLException e) {
+            System.err.println("MapChangeLogDAO: getVersionForMap failed: " + e.getMessage());
+            return -1;
+        }
+    }
+
+    /**
+     * Current content version of the city (0 if nothing was recorded yet), or -1 if unavailable.
+     */
+    public static long getVersionForCity(Connection conn, int cityId) {
+        try (PreparedStatement stmt = conn.prepareStatement("SELECT version FROM content_versions WHERE city_id = ?")) {
+            stmt.setInt(1, cityId);
+            ResultSet rs = stmt.executeQuery();
+            return rs.next() ? rs.getLong(1) : 0;
+        } catch (SQLException e) {
+            System.err.println("MapChangeLogDAO: getVersionForCity failed: " + e.getMessage());
+            return -1;
+        }
+    }
+
+    /**
+     * Whether customer-visible content of the city (MAP, POI or TOUR entries, not drafts or
+     * requests) changed after the version. True as well if the log no longer covers the range.
+     */
+    public static boolean hasPublishedChanges(Connection conn, int cityId, long sinceVersion) throws SQLException {
+        String sql = "SELECT (SELECT MIN(version) FROM map_change_log WHERE city_id = ?) AS oldest_entry, " +
+                "EXISTS (SELECT 1 FROM map_change_log WHERE city_id = ? AND version > ? " +
+                "AND entity_type IN ('" + ENTITY_MAP + "', '" + ENTITY_POI + "', '" + ENTITY_TOUR + "')) AS changed";
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setInt(1, cityId);
+            stmt.setInt(2, cityId);
+            stmt.setLong(3, sinceVersion);
+            ResultSet rs = stmt.executeQuery();
+            if (!rs.next()) return true;
+            long oldest = rs.getLong("oldest_entry");
+            if (rs.wasNull()) return sinceVersion != getVersionForCity(conn, cityId);
+            return oldest > sinceVersion + 1 || rs.getBoolean("changed");
+        }
+    }
+
+    /**
+     * Entities touched in (sinceVersion, untilVersion] that concern the map.
+     */
+    public static ChangeSet getChanges(Connection conn, int mapId, long sinceVersion, long untilVersion) throws SQLException {
+        ChangeSet changes = new ChangeSet();
+        if (untilVersion <= sinceVersion) {
+            changes.complete = untilVersion == sinceVersion;
+            return changes;
+        }
+        // Pruning removes the oldest entries of the city; the range is covered only if entry sinceVersion + 1 remains
+        String oldestSql = "SELECT MIN(l.version) FROM map_change_log l JOIN maps m ON m.city_id = l.city_id WHERE m.id = ?";
+        try (PreparedStatement stmt = conn.prepareStatement(oldestSql)) {
+            stmt.setInt(1, mapId);
+            ResultSet rs = stmt.executeQuery();
+            long oldest = rs.next() ? rs.getLong(1) : 0;
+            if (rs.wasNull() || oldest > sinceVersion + 1) {
+                changes.complete = false;
+                return changes;
+            }
+        }
+
+        String sql = "SELECT l.entity_type, l.entity_id FROM map_change_log l " +
+                "JOIN maps m ON m.city_id = l.city_id AND m.id = ? " +
+                "WHERE l.version > ? AND l.version <= ? AND (l.map_id IS NULL OR l.map_id = ?)";
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setInt(1, mapId);
+            stmt.setLong(2, sinceVersion);
+            stmt.setLong(3, untilVersion);
+            stmt.setInt(4, mapId);
+            ResultSet rs = stmt.executeQuery();
+            while (rs.next()) {
+                String type = rs.getString("entity_type");
+                int id = rs.getInt("entity_id");
+                if (ENTITY_MAP.equals(type)) {
+                    changes.mapChanged = true;
+                } else if (ENTITY_POI.equals(type)) {
+                    if (id > 0) changes.poiIds.add(id); else changes.allPois = true;
+                } else if (ENTITY_TOUR.equals(type)) {
+                    if (id > 0) changes.tourIds.add(id); else changes.allTours = true;
+                } else if (ENTITY_DRAFT.equals(type)) {
+                    changes.draftUserIds.add(id);
+                } else if (ENTITY_REQUEST.equals(type)) {
+                    changes.requestUserIds.add(id);
+                }
+            }
+        }
+        return changes;
+    }
+
+    /**
+     * Delete entries older than the retention period.
+     *
+     * @return number of entries deleted
+     */
+    public static int pruneOldEntries() {
+        String sql = "DELETE FROM map_change_log WHERE created_at < NOW() - INTERVAL ? DAY";
+        try (Connection conn = DBConnector.getConnection();
+                PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setInt(1, RETENTION_DAYS);
+            int deleted = stmt.executeUpdate();
+            System.out.println("MapChangeLogDAO: Pruned " + deleted + " change log entries older than " + RETENTION_DAYS + " days");
+            return deleted;
+        } catch (SQLException e) {
+            System.err.println("MapChangeLogDAO: prune failed: " + e.getMessage());
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,316 @@
+package server.dao;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import common.Poi;
+import common.dto.MapChanges;
+import common.dto.MapContent;
+import common.dto.MapContentDelta;
+import common.dto.MapEditRequestDTO;
+import common.dto.TourDTO;
+import common.dto.TourSegmentDTO;
+import common.dto.TourStopDTO;
+import server.service.MapContentSync;
+
+/**
+ * Builds the MapContent shown in the map editor on a single connection with a fixed set of
+ * batched queries, independent of the number of POIs, tours and stops:
+ * <ol>
+ * <li>the city's content version</li>
+ * <li>the map row (with tour_id when the column exists)</li>
+ * <li>the map's POIs (approved, plus the requesting user's drafts)</li>
+ * <li>the city's tours</li>
+ * <li>the stops of all those tours, with each stop's POI</li>
+ * <li>the stops' leg distances (only those not cached yet)</li>
+ * <li>the user's DRAFT request for the map</li>
+ * <li>the user's PENDING requests for the city</li>
+ * </ol>
+ * Schema fallbacks (older databases without tour_id / approval columns) add at most a retry
+ * per query. Leg distances that were never stored are still computed on read.
+ */
+public class MapContentLoader {
+
+    /**
+     * Load the content of a map for editing; null if the map does not exist.
+     * When requestUserId is set (> 0), includes that user's draft POIs and restores their draft changes.
+     */
+    public static MapContent load(Connection conn, int mapId, Integer requestUserId) throws SQLException {
+        // Version first: changes committed while loading are re-sent by the next delta, never missed
+        return load(conn, mapId, requestUserId, MapChangeLogDAO.getVersionForMap(conn, mapId));
+    }
+
+    /**
+     * Changes of the map's content since the client's version, or null when the client must
+     * reload the full content: the log no longer covers the range, the map itself or the
+     * user's own draft changed (the restored draft changes would need merging), or the
+     * version is unknown.
+     */
+    public static MapContentDelta loadDelta(Connection conn, int mapId, Integer requestUserId, long sinceVersion) throws SQLException {
+        boolean forUser = requestUserId != null && requestUserId > 0;
+        long version = MapChangeLogDAO.getVersionForMap(conn, mapId);
+        if (version < 0 || sinceVersion < 0 || sinceVersion > version) return null;
+        if (sinceVersion == version) return MapContentDelta.unchanged(mapId, version);
+
+        MapChangeLogDAO.ChangeSet changes = MapChangeLogDAO.getChanges(conn, mapId, sinceVersion, version);
+        if (!changes.complete || changes.mapChanged || (forUser && changes.draftUserIds.contains(requestUserId))) {
+            return null;
+        }
+        MapContent content = load(conn, mapId, requestUserId, version);
+        if (content == null) return null;
+        // "Waiting for approval" markers of this user's tours changed
+        boolean allTours = changes.allTours || (forUser && changes.requestUserIds.contains(requestUserId));
+        return MapContentSync.buildDelta(content, sinceVersion, changes.poiIds, changes.allPois, changes.tourIds, allTours);
+    }
+
+    private static MapContent load(Connection conn, int mapId, Integer requestUserId, long version) throws SQLException {
+        boolean forUser = requestUserId != null && requestUserId > 0;
+
+        MapContent content = loadMap(conn, mapId);
+        if (content == null) {
+            System.out.println("MapContentLoader: map not found, mapId=" + mapId);
+            return null;
+        }
+        content.setContentVersion(version);
+        content.setMapVersion(Math.max(0, EntityVersionDAO.getVersion(conn, EntityVersionDAO.MAPS, mapId)));
+
+        List<Poi> pois = forUser
+                ? PoiDAO.getPoisForMapForEditor(conn, mapId, requestUserId)
+                : PoiDAO.getPoisForMap(conn, mapId);
+
+        Map<Integer, Poi> stopPois = new HashMap<>();
+        List<TourDTO> tours = TourDAO.getToursForCity(conn, content.getCityId(), stopPois);
+
+        // Tour route map: segments of the map's tour; without tour_id (migration not run) match the map name to a tour
+        TourDTO mapTour = null;
+        for (TourDTO t : tours) {
+            if (content.getTourId() != null ? t.getId() == content.getTourId()
+                    : t.getName() != null && content.getMapName() != null && !content.getMapName().trim().isEmpty()
+                            && t.getName().trim().equalsIgnoreCase(content.getMapName().trim())) {
+                mapTour = t;
+                break;
+            }
+        }
+        if (mapTour == null && content.getTourId() != null) {
+            // Tour of another city (should not happen): load it on its own
+            mapTour = TourDAO.getTourById(conn, content.getTourId());
+            if (mapTour != null) {
+                List<Integer> ids = new ArrayList<>();
+                for (TourStopDTO stop : mapTour.getStops()) ids.add(stop.getPoiId());
+                for (Poi p : PoiDAO.getPoisByIds(conn, ids)) stopPois.put(p.getId(), p);
+            }
+        }
+        if (mapTour != null) {
+            content.setTourId(mapTour.getId());
+            content.setTourSegments(buildTourSegments(mapTour, stopPois));
+            // For tour maps, if map_pois was empty (e.g. tour has 2 stops but wasn't synced yet), fill from tour stops so circles and count show
+            if (pois == null || pois.isEmpty()) {
+                List<Poi> fromTour = new ArrayList<>();
+                for (TourStopDTO stop : mapTour.getStops()) {
+                    Poi p = stopPois.get(stop.getPoiId());
+                    if (p != null) fromTour.add(p);
+                }
+                if (!fromTour.isEmpty()) pois = fromTour;
+            }
+        }
+        content.setPois(pois);
+
+        // DRAFT request for this map+user restores pending unlinks/deletes/tours (awaiting manager approval)
+        MapEditRequestDTO draftReq = forUser ? MapEditRequestDAO.getDraftRequestForMapUser(conn, mapId, requestUserId) : null;
+        if (draftReq != null && draftReq.getChanges() != null) {
+            applyDraft(content, draftReq.getChanges(), mapId, pois, tours);
+        }
+        if (forUser) {
+            content.setDraftSequence(MapDraftOpDAO.getLastSequence(conn, mapId, requestUserId));
+        }
+
+        // Mark tours that appear in a PENDING request by this user so UI can show "(waiting for approval)"
+        if (forUser && content.getCityId() > 0) {
+            Set<Integer> pendingTourIds = MapEditRequestDAO.getTourIdsWithPendingRequestByUser(conn, requestUserId, content.getCityId());
+            for (TourDTO t : tours) {
+                if (pendingTourIds.contains(t.getId())) t.setWaitingForApproval(true);
+            }
+        }
+
+        content.setTours(tours);
+        return content;
+    }
+
+    /** Map row with city; tour_id is read when the column exists (after migration_tour_maps.sql). */
+    private static MapContent loadMap(Connection conn, int mapId) throws SQLException {
+        String columns = "SELECT m.id, m.city_id, c.name as city_name, c.description as city_description, m.name, m.short_description, " +
+                "m.created_at, m.updated_at";
+        String from = " FROM maps m JOIN cities c ON c.id = m.city_id WHERE m.id = ?";
+        try {
+            return loadMap(conn, columns + ", m.tour_id" + from, mapId, true);
+        } catch (SQLException e) {
+            if (e.getMessage() == null || !e.getMessage().contains("tour_id")) throw e;
+            return loadMap(conn, columns + from, mapId, false);
+        }
+    }
+
+    private static MapContent loadMap(Connection conn, String query, int mapId, boolean withTourId) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(query)) {
+            stmt.setInt(1, mapId);
+            ResultSet rs = stmt.executeQuery();
+            if (!rs.next()) return null;
+            MapContent content = new MapContent(
+                    rs.getInt("id"),
+                    rs.getInt("city_id"),
+                    rs.getString("city_name"),
+                    rs.getString("name"),
+                    rs.getString("short_description"));
+            content.setCityDescription(rs.getString("city_description"));
+            content.setCreatedAt(rs.getString("created_at"));
+            content.setUpdatedAt(rs.getString("updated_at"));
+            if (withTourId) {
+                int tourId = rs.getInt("tour_id");
+                if (!rs.wasNull()) content.setTourId(tourId);
+            }
+            return content;
+        }
+    }
+
+    /**
+     * Segments of a tour (consecutive legs only; no circle-back from last to first POI).
+     * Stops already carry distanceToNextMeters.
+     */
+    private static List<TourSegmentDTO> buildTourSegments(TourDTO tour, Map<Integer, Poi> stopPois) {
+        List<TourSegmentDTO> segments = new ArrayList<>();
+        List<TourStopDTO> stops = tour.getStops();
+        if (stops == null || stops.size() < 2) return segments;
+        for (int i = 0; i < stops.size() - 1; i++) {
+            Poi fromPoi = stopPois.get(stops.get(i).getPoiId());
+            Poi toPoi = stopPois.get(stops.get(i + 1).getPoiId());
+            if (fromPoi == null || toPoi == null || fromPoi.getLatitude() == null || fromPoi.getLongitude() == null
+                    || toPoi.getLatitude() == null || toPoi.getLongitude() == null) continue;
+            segments.add(new TourSegmentDTO(fromPoi.getId(), toPoi.getId(),
+                    fromPoi.getLatitude(), fromPoi.getLongitude(),
+                    toPoi.getLatitude(), toPoi.getLongitude(),
+                    stops.get(i).getDistanceToNextMeters()));
+        }
+        return segments;
+    }
+
+    /** Apply the user's saved draft (pending unlinks, deletes and tour changes) to the loaded content. */
+    private static void applyDraft(MapContent content, MapChanges dc, int mapId, List<Poi> pois, List<TourDTO> tours) {
+        if (dc.getPoiMapUnlinks() != null && !dc.getPoiMapUnlinks().isEmpty()) {
+            content.setPendingPoiMapUnlinks(dc.getPoiMapUnlinks());
+            Set<Integer> pendingUnlinkIds = new HashSet<>();
+            for (MapChanges.PoiMapLink link : dc.getPoiMapUnlinks()) {
+                if (link.mapId == mapId) pendingUnlinkIds.add(link.poiId);
+            }
+            for (Poi p : pois) {
+                if (pendingUnlinkIds.contains(p.getId())) p.setPendingRemoval(true);
+            }
+        }
+        if (dc.getDeletedPoiIds() != null && !dc.getDeletedPoiIds().isEmpty()) {
+            content.setPendingDeletedPoiIds(dc.getDeletedPoiIds());
+            Set<Integer> pendingDeleteIds = new HashSet<>(dc.getDeletedPoiIds());
+            for (Poi p : pois) {
+                if (pendingDeleteIds.contains(p.getId())) p.setPendingDeletion(true);
+            }
+        }
+        content.setDraftChangesToRestore(dc); // full changes for client to restore pendingChanges
+
+        // Dedupe: if a draft added tour matches a tour already in DB (same name), mark that one as draft instead of adding a duplicate.
+        if (dc.getAddedTours() != null && !dc.getAddedTours().isEmpty()) {
+            content.setPendingAddedTours(dc.getAddedTours());
+            for (TourDTO t : dc.getAddedTours()) {
+                t.setDraft(true);
+                String name = t.getName() != null ? t.getName().trim() : "";
+                TourDTO existing = tours.stream().filter(tour -> name.equals(tour.getName() != null ? tour.getName().trim() : "")).findFirst().orElse(null);
+                if (existing != null) {
+                    existing.setDraft(true);
+                    if (t.getId() == 0) t.setId(existing.getId());
+                } else {
+                    tours.add(t);
+                }
+            }
+        }
+        if (dc.getDeletedTourIds() != null && !dc.getDeletedTourIds().isEmpty()) {
+            content.setPendingDeletedTourIds(dc.getDeletedTourIds());
+            Set<Integer> pendingDeleteIds = new HashSet<>(dc.getDeletedTourIds());
+            for (TourDTO t : tours) {
+                if (pendingDeleteIds.contains(t.getId())) t.setPendingDeletion(true);
+            }
+        }
+        if (dc.getUpdatedTours() != null && !dc.getUpdatedTours().isEmpty()) {
+            Map<Integer, TourDTO> updatedById = new HashMap<>();
+            for (TourDTO t : dc.getUpdatedTours()) updatedById.put(t.getId(), t);
+            for (int i = 0; i < tours.size(); i++) {
+                TourDTO updated = updatedById.get(tours.get(i).getId());
+                if (updated != null) tours.set(i, updated);
+            }
+        }
+        // Merge draft addedStops into tours so the new POI (saved as draft) appears in the tour until Publish
+        if (dc.getAddedStops() != null || dc.getUpdatedStops() != null || (dc.getDeletedStopIds() != null && !dc.getDeletedStopIds().isEmpty())) {
+            mergeDraftStopsIntoTours(tours, dc, pois);
+        }
+    }
+
+    /**
+     * Merge draft addedStops/updatedStops/deletedStopIds into the loaded tours so that after Save (draft),
+     * the tour list shows the new POI as a stop (with [Draft] on the client via the POI's draft flag).
+     */
+    private static void mergeDraftStopsIntoTours(List<TourDTO> tours, MapChanges dc, List<Poi> pois) {
+        if (tours == null || dc == null) return;
+        List<Poi> poilist = pois != null ? pois : new ArrayList<>();
+        // Resolve draft addedPois (id=0) to real POI ids by name so addedStops with poiId=0 can be resolved
+        Map<String, Integer> newPoiNameToId = new HashMap<>();
+        if (dc.getAddedPois() != null) {
+            for (Poi ap : dc.getAddedPois()) {
+                if (ap.getId() != 0) continue;
+                String name = ap.getName() != null ? ap.getName().trim() : "";
+                if (name.isEmpty()) continue;
+                for (Poi p : poilist) {
+                    String pName = p.getName() != null ? p.getName().trim() : "";
+                    if (name.equals(pName) && ap.getCityId() == p.getCityId()) {
+                        newPoiNameToId.put(name, p.getId());
+                        break;
+                    }
+                }
+            }
+        }
+        List<Integer> deletedIds = dc.getDeletedStopIds() != null ? dc.getDeletedStopIds() : new ArrayList<>();
+        Set<Integer> deletedPoiIds = (dc.getDeletedPoiIds() != null && !dc.getDeletedPoiIds().isEmpty())
+                ? new HashSet<>(dc.getDeletedPoiIds()) : Collections.emptySet();
+        Map<Integer, TourStopDTO> updatedById = new HashMap<>();
+        if (dc.getUpdatedStops() != null) {
+            for (TourStopDTO s : dc.getUpdatedStops()) {
+                if (s.getId() > 0) updatedById.put(s.getId(), s);
+            }
+        }
+        for (TourDTO tour : tours) {
+            List<TourStopDTO> stops = tour.getStops();
+            if (stops == null) stops = new ArrayList<>();
+            else stops = new ArrayList<>(stops);
+            stops.removeIf(s -> deletedIds.contains(s.getId()));
+            for (int i = 0; i < stops.size(); i++) {
+                TourStopDTO updated = updatedById.get(stops.get(i).getId());
+                if (updated != null) stops.set(i, updated);
+            }
+            if (dc.getAddedStops() != null) {
+                for (TourStopDTO stop : dc.getAddedStops()) {
+                    if (stop.getTourId() != tour.getId()) continue;
+                    String stopPoiName = stop.getPoiName() != null ? stop.getPoiName().trim() : "";
+                    int resolvedPoiId = stop.getPoiId() > 0 ? stop.getPoiId() : (stopPoiName.isEmpty() ? 0 : newPoiNameToId.getOrDefault(stopPoiName, 0));
+                    if (resolvedPoiId <= 0 || deletedPoiIds.contains(resolvedPoiId)) continue;
+                    TourStopDTO copy = new TourStopDTO(0, tour.getId(), resolvedPoiId, stop.getPoiName(), stop.getPoiCategory(), stop.getStopOrder(), stop.getNotes() != null ? stop.getNotes() : "");
+                    stops.add(copy);
+                }
+            }
+            stops.sort((a, b) -> Integer.compare(a.getStopOrder(), b.getStopOrder()));
+            tour.setStops(stops);
+        }
+    }
+}
@@ -8,12 +8,10 @@ import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.List;
 
-import common.Poi;
-import common.dto.MapChanges;
 import common.dto.MapContent;
+import common.dto.MapContentDelta;
 import common.dto.MapSummary;
 import common.dto.TourDTO;
-import common.dto.TourSegmentDTO;
 import common.dto.TourStopDTO;
 import server.DBConnector;
 
@@ -169,76 +167,6 @@ public class MapDAO {
         PoiDAO.deleteApprovedLinksForMapNotIn(conn, mapId, tourStopPoiIds);
     }
 
-    /** Get POIs in tour stop order (for tour map content when map_pois is empty). */
-    private static List<Poi> getPoisFromTourStops(Connection conn, int tourId) throws SQLException {
-        List<Poi> out = new ArrayList<>();
-        TourDTO tour = TourDAO.getTourById(conn, tourId);
-        if (tour == null || tour.getStops() == null) return out;
-        for (TourStopDTO stop : tour.getStops()) {
-            if (stop.getPoiId() > 0) {
-                Poi p = PoiDAO.getPoiById(conn, stop.getPoiId());
-                if (p != null) out.add(p);
-            }
-        }
-        return out;
-    }
-
-    /**
-     * Merge draft addedStops/updatedStops/deletedStopIds into the loaded tours so that after Save (draft),
-     * the tour list shows the new POI as a stop (with [Draft] on the client via the POI's draft flag).
-     */
-    private static void mergeDraftStopsIntoTours(List<TourDTO> tours, MapChanges dc, List<Poi> pois) {
-        if (tours == null || dc == null) return;
-        List<Poi> poilist = pois != null ? pois : new ArrayList<>();
-        // Resolve draft addedPois (id=0) to real POI ids by name so addedStops with poiId=0 can be resolved
-        java.util.Map<String, Integer> newPoiNameToId = new java.util.HashMap<>();
-        if (dc.getAddedPois() != null) {
-            for (Poi ap : dc.getAddedPois()) {
-                if (ap.getId() != 0) continue;
-                String name = ap.getName() != null ? ap.getName().trim() : "";
-                if (name.isEmpty()) continue;
-                for (Poi p : poilist) {
-                    String pName = p.getName() != null ? p.getName().trim() : "";
-                    if (name.equals(pName) && ap.getCityId() == p.getCityId()) {
-                        newPoiNameToId.put(name, p.getId());
-                        break;
-                    }
-                }
-            }
-        }
-        java.util.List<Integer> deletedIds = dc.getDeletedStopIds() != null ? dc.getDeletedStopIds() : new ArrayList<>();
-        java.util.Set<Integer> deletedPoiIds = (dc.getDeletedPoiIds() != null && !dc.getDeletedPoiIds().isEmpty())
-                ? new java.util.HashSet<>(dc.getDeletedPoiIds()) : java.util.Collections.emptySet();
-        java.util.Map<Integer, TourStopDTO> updatedById = new java.util.HashMap<>();
-        if (dc.getUpdatedStops() != null) {
-            for (TourStopDTO s : dc.getUpdatedStops()) {
-                if (s.getId() > 0) updatedById.put(s.getId(), s);
-            }
-        }
-        for (TourDTO tour : tours) {
-            List<TourStopDTO> stops = tour.getStops();
-            if (stops == null) stops = new ArrayList<>();
-            else stops = new ArrayList<>(stops);
-            stops.removeIf(s -> deletedIds.contains(s.getId()));
-            for (int i = 0; i < stops.size(); i++) {
-                TourStopDTO updated = updatedById.get(stops.get(i).getId());
-                if (updated != null) stops.set(i, updated);
-            }
-            if (dc.getAddedStops() != null) {
-                for (TourStopDTO stop : dc.getAddedStops()) {
-                    if (stop.getTourId() != tour.getId()) continue;
-                    String stopPoiName = stop.getPoiName() != null ? stop.getPoiName().trim() : "";
-                    int resolvedPoiId = stop.getPoiId() > 0 ? stop.getPoiId() : (stopPoiName.isEmpty() ? 0 : newPoiNameToId.getOrDefault(stopPoiName, 0));
-                    if (resolvedPoiId <= 0 || deletedPoiIds.contains(resolvedPoiId)) continue;
-                    TourStopDTO copy = new TourStopDTO(0, tour.getId(), resolvedPoiId, stop.getPoiName(), stop.getPoiCategory(), stop.getStopOrder(), stop.getNotes() != null ? stop.getNotes() : "");
-                    stops.add(copy);
-                }
-            }
-            stops.sort((a, b) -> Integer.compare(a.getStopOrder(), b.getStopOrder()));
-            tour.setStops(stops);
-        }
-    }
-
     /** Legacy: no approved/created_by on maps; poi count without map_pois.approved so it works when column missing. */
     private static List<MapSummary> getMapsForCityLegacy(int cityId) throws SQLException {
         List<MapSummary> maps = new ArrayList<>();
@@ -280,168 +208,15 @@ public class MapDAO {
      * Get complete map content for editing. When requestUserId != null and > 0, POI list includes that user's draft POIs.
      */
     public static MapContent getMapContent(int mapId, Integer requestUserId) {
-        System.err.println("[MapDAO.getMapContent] ENTER mapId=" + mapId + " requestUserId=" + requestUserId);
         System.out.println("MapDAO.getMapContent: mapId=" + mapId + ", requestUserId=" + requestUserId);
         MapContent content = null;
-
-        // Main query without tour_id so maps load even when migration_tour_maps.sql has not been run
-        String mapQuery = "SELECT m.id, m.city_id, c.name as city_name, c.description as city_description, m.name, m.short_description, " +
-                "m.created_at, m.updated_at " +
-                "FROM maps m JOIN cities c ON c.id = m.city_id WHERE m.id = ?";
-
-        System.err.println("[MapDAO.getMapContent] getting connection...");
+        long start = System.nanoTime();
         try (Connection conn = DBConnector.getConnection()) {
-            System.err.println("[MapDAO.getMapContent] conn=" + (conn != null));
             if (conn == null) {
-                System.err.println("[MapDAO.getMapContent] conn is null, returning null");
+                System.err.println("MapDAO.getMapContent: no connection, mapId=" + mapId);
                 return null;
             }
-
-            PreparedStatement stmt = conn.prepareStatement(mapQuery);
-            stmt.setInt(1, mapId);
-            ResultSet rs = stmt.executeQuery();
-            if (!rs.next()) {
-                System.out.println("MapDAO.getMapContent: map not found, mapId=" + mapId);
-                return null;
-            }
-            content = new MapContent(
-                    rs.getInt("id"),
-                    rs.getInt("city_id"),
-                    rs.getString("city_name"),
-                    rs.getString("name"),
-                    rs.getString("short_description"));
-            content.setCityDescription(rs.getString("city_description"));
-            content.setCreatedAt(rs.getString("created_at"));
-            content.setUpdatedAt(rs.getString("updated_at"));
-
-            // Optional: load tour_id and route segments if column exists (after migration_tour_maps.sql)
-            try (PreparedStatement tourStmt = conn.prepareStatement("SELECT tour_id FROM maps WHERE id = ?")) {
-                tourStmt.setInt(1, mapId);
-                ResultSet tourRs = tourStmt.executeQuery();
-                if (tourRs.next()) {
-                    Integer tourId = (Integer) tourRs.getObject("tour_id");
-                    if (tourId != null) {
-                        content.setTourId(tourId);
-                        List<TourSegmentDTO> segments = buildTourSegments(conn, tourId);
-                        content.setTourSegments(segments);
-                    }
-                }
-            } catch (SQLException ignored) { /* tour_id column may not exist */ }
-
-            // If no tour_id (e.g. migration not run), try to match map name to a tour in this city so route lines still show
-            if (content.getTourId() == null && content.getMapName() != null && !content.getMapName().trim().isEmpty()) {
-                List<TourDTO> cityTours = TourDAO.getToursForCity(conn, content.getCityId());
-                for (TourDTO t : cityTours) {
-                    if (t.getName() != null && t.getName().trim().equalsIgnoreCase(content.getMapName().trim())) {
-                        content.setTourId(t.getId());
-                        List<TourSegmentDTO> segments = buildTourSegments(conn, t.getId());
-                        content.setTourSegments(segments);
-                        break;
-                    }
-                }
-            }
-
-                // Get POIs: include requestor's draft POIs when userId is set so the employee sees their own drafts
-                List<Poi> pois = (requestUserId != null && requestUserId > 0)
-                        ? PoiDAO.getPoisForMapForEditor(mapId, requestUserId)
-                        : PoiDAO.getPoisForMap(mapId);
-                // For tour maps, if map_pois was empty (e.g. tour has 2 stops but wasn't synced yet), fill from tour stops so circles and count show
-                if (content.getTourId() != null && (pois == null || pois.isEmpty())) {
-                    List<Poi> fromTour = getPoisFromTourStops(conn, content.getTourId());
-                    if (!fromTour.isEmpty()) pois = fromTour;
-                }
-                content.setPois(pois);
-                System.err.println("[MapDAO.getMapContent] pois set, count=" + (pois != null ? pois.size() : 0));
-
-                // Fetch DRAFT request for this map+user to restore pending unlinks/deletes/tours (awaiting manager approval)
-                common.dto.MapEditRequestDTO draftReq = (requestUserId != null && requestUserId > 0)
-                        ? MapEditRequestDAO.getDraftRequestForMapUser(mapId, requestUserId) : null;
-                if (requestUserId != null && requestUserId > 0 && draftReq != null && draftReq.getChanges() != null) {
-                    common.dto.MapChanges dc = draftReq.getChanges();
-                    if (dc.getPoiMapUnlinks() != null && !dc.getPoiMapUnlinks().isEmpty()) {
-                        content.setPendingPoiMapUnlinks(dc.getPoiMapUnlinks());
-                        java.util.Set<Integer> pendingUnlinkIds = new java.util.HashSet<>();
-                        for (common.dto.MapChanges.PoiMapLink link : dc.getPoiMapUnlinks()) {
-                            if (link.mapId == mapId) pendingUnlinkIds.add(link.poiId);
-                        }
-                        for (common.Poi p : pois) {
-                            if (pendingUnlinkIds.contains(p.getId())) p.setPendingRemoval(true);
-                        }
-                    }
-                    if (dc.getDeletedPoiIds() != null && !dc.getDeletedPoiIds().isEmpty()) {
-                        content.setPendingDeletedPoiIds(dc.getDeletedPoiIds());
-                        java.util.Set<Integer> pendingDeleteIds = new java.util.HashSet<>(dc.getDeletedPoiIds());
-                        for (common.Poi p : pois) {
-                            if (pendingDeleteIds.contains(p.getId())) p.setPendingDeletion(true);
-                        }
-                    }
-                    content.setDraftChangesToRestore(dc); // full changes for client to restore pendingChanges
-                }
-
-                // Get tours for this city
-                System.err.println("[MapDAO.getMapContent] loading tours for cityId=" + content.getCityId());
-                List<TourDTO> tours = TourDAO.getToursForCity(content.getCityId());
-                System.err.println("[MapDAO.getMapContent] tours loaded, count=" + (tours != null ? tours.size() : 0));
-
-                // Merge pending tours from DRAFT request (awaiting manager approval).
-                // Dedupe: if a draft added tour matches a tour already in DB (same name), mark that one as draft instead of adding a duplicate.
-                if (draftReq != null && draftReq.getChanges() != null) {
-                    common.dto.MapChanges dc = draftReq.getChanges();
-                    if (dc.getAddedTours() != null && !dc.getAddedTours().isEmpty()) {
-                        content.setPendingAddedTours(dc.getAddedTours());
-                        for (TourDTO t : dc.getAddedTours()) {
-                            t.setDraft(true);
-                            String name = t.getName() != null ? t.getName().trim() : "";
-                            TourDTO existing = tours.stream().filter(tour -> name.equals(tour.getName() != null ? tour.getName().trim() : "")).findFirst().orElse(null);
-                            if (existing != null) {
-                                existing.setDraft(true);
-                                if (t.getId() == 0) t.setId(existing.getId());
-                            } else {
-                                tours.add(t);
-                            }
-                        }
-                    }
-                    if (dc.getDeletedTourIds() != null && !dc.getDeletedTourIds().isEmpty()) {
-                        content.setPendingDeletedTourIds(dc.getDeletedTourIds());
-                        java.util.Set<Integer> pendingDeleteIds = new java.util.HashSet<>(dc.getDeletedTourIds());
-                        for (TourDTO t : tours) {
-                            if (pendingDeleteIds.contains(t.getId())) t.setPendingDeletion(true);
-                        }
-                    }
-                    if (dc.getUpdatedTours() != null && !dc.getUpdatedTours().isEmpty()) {
-                        java.util.Map<Integer, TourDTO> updatedById = new java.util.HashMap<>();
-                        for (TourDTO t : dc.getUpdatedTours()) updatedById.put(t.getId(), t);
-                        for (int i = 0; i < tours.size(); i++) {
-                            TourDTO updated = updatedById.get(tours.get(i).getId());
-                            if (updated != null) tours.set(i, updated);
-                        }
-                    }
-                    // Merge draft addedStops into tours so the new POI (saved as draft) appears in the tour until Publish
-                    if (dc.getAddedStops() != null || dc.getUpdatedStops() != null || (dc.getDeletedStopIds() != null && !dc.getDeletedStopIds().isEmpty())) {
-                        mergeDraftStopsIntoTours(tours, dc, pois);
-                    }
-                }
-
-                // Mark tours that appear in a PENDING request by this user so UI can show "(waiting for approval)"
-                if (requestUserId != null && requestUserId > 0 && content.getCityId() > 0) {
-                    try {
-                        System.err.println("[MapDAO.getMapContent] getTourIdsWithPendingRequestByUser...");
-                        java.util.Set<Integer> pendingTourIds = MapEditRequestDAO.getTourIdsWithPendingRequestByUser(requestUserId, content.getCityId());
-                        System.err.println("[MapDAO.getMapContent] pendingTourIds=" + (pendingTourIds != null ? pendingTourIds.size() : 0));
-                        if (pendingTourIds != null) {
-                            for (TourDTO t : tours) {
-                                if (pendingTourIds.contains(t.getId())) t.setWaitingForApproval(true);
-                            }
-                        }
-                    } catch (Exception e) {
-                        System.err.println("MapDAO: getTourIdsWithPendingRequestByUser failed (non-fatal): " + e.getMessage());
-                    }
-                }
-
-                content.setTours(tours);
-
-                System.out.println("MapDAO.getMapContent: loaded mapId=" + mapId + ", pois=" + (pois != null ? pois.size() : 0) + ", tours=" + (tours != null ? tours.size() : 0));
-
+            content = MapContentLoader.load(conn, mapId, requestUserId);
         } catch (SQLException e) {
             System.err.println("MapDAO.getMapContent: SQLException mapId=" + mapId + " - " + e.getMessage());
             e.printStackTrace();
@@ -452,10 +227,29 @@ public class MapDAO {
             if (content.getPois() == null) content.setPois(new ArrayList<>());
             if (content.getTours() == null) content.setTours(new ArrayList<>());
         }
-        System.out.println("MapDAO.getMapContent: returning content=" + (content != null) + (content != null ? ", pois=" + content.getPois().size() + ", tours=" + content.getTours().size() : ""));
+        System.out.println("MapDAO.getMapContent: returning content=" + (content != null) + (content != null ? ", pois=" + content.getPois().size() + ", tours=" + content.getTours().size() : "")
+                + " in " + (System.nanoTime() - start) / 1_000_000 + " ms");
         return content;
     }
 
+    /**
+     * Changes of the map's content since the client's content version (see MapContentLoader.loadDelta);
+     * null when the client must reload the full content.
+     */
+    public static MapContentDelta getMapContentDelta(int mapId, Integer requestUserId, long sinceVersion) {
+        long start = System.nanoTime();
+        try (Connection conn = DBConnector.getConnection()) {
+            if (conn == null) return null;
+            MapContentDelta delta = MapContentLoader.loadDelta(conn, mapId, requestUserId, sinceVersion);
+            System.out.println("MapDAO.getMapContentDelta: mapId=" + mapId + ", since=" + sinceVersion + " -> "
+                    + (delta != null ? delta : "full reload") + " in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+            return delta;
+        } catch (SQLException e) {
+            System.err.println("MapDAO.getMapContentDelta: SQLException mapId=" + mapId + " - " + e.getMessage());
+            return null;
+        }
+    }
+
     /**
      * Create a new map.
      * @param createdBy user who created it; unapproved maps visible only to this user until approved.
@@ -557,7 +351,9 @@ public class MapDAO {
             String sql = "UPDATE maps SET approved = 1 WHERE id = ?";
             PreparedStatement stmt = conn.prepareStatement(sql);
             stmt.setInt(1, mapId);
-            return stmt.executeUpdate() > 0;
+            boolean updated = stmt.executeUpdate() > 0;
+            if (updated) MapChangeLogDAO.recordForMap(conn, mapId, MapChangeLogDAO.ENTITY_MAP, mapId);
+            return updated;
         } catch (SQLException e) {
             if (e.getMessage() != null && e.getMessage().contains("approved")) return false;
             throw e;
@@ -575,6 +371,7 @@ public class MapDAO {
         stmt.setInt(3, mapId);
         int affected = stmt.executeUpdate();
         System.out.println("MapDAO: Updated map " + mapId + ", affected: " + affected);
+        if (affected > 0) MapChangeLogDAO.recordForMap(conn, mapId, MapChangeLogDAO.ENTITY_MAP, mapId);
         return affected > 0;
     }
 
@@ -739,30 +536,6 @@ public class MapDAO {
         return false;
     }
 
-    /**
-     * Build segment list for a tour (consecutive legs only; no circle-back from last to first POI).
-     */
-    private static List<TourSegmentDTO> buildTourSegments(Connection conn, int tourId) throws SQLException {
-        List<TourSegmentDTO> segments = new ArrayList<>();
-        TourDTO tour = TourDAO.getTourById(conn, tourId);
-        if (tour == null || tour.getStops() == null || tour.getStops().size() < 2) return segments;
-        List<TourStopDTO> stops = tour.getStops();
-        for (int i = 0; i < stops.size() - 1; i++) {
-            int fromPoiId = stops.get(i).getPoiId();
-            int toPoiId = stops.get(i + 1).getPoiId();
-            Poi fromPoi = PoiDAO.getPoiById(conn, fromPoiId);
-            Poi toPoi = PoiDAO.getPoiById(conn, toPoiId);
-            if (fromPoi == null || toPoi == null || fromPoi.getLatitude() == null || fromPoi.getLongitude() == null
-                    || toPoi.getLatitude() == null || toPoi.getLongitude() == null) continue;
-            Double dist = PoiDistanceDAO.getDistance(conn, fromPoiId, toPoiId);
-            segments.add(new TourSegmentDTO(fromPoiId, toPoiId,
-                    fromPoi.getLatitude(), fromPoi.getLongitude(),
-                    toPoi.getLatitude(), toPoi.getLongitude(),
-                    dist));
-        }
-        return segments;
-    }
-
     /**
      * Get map ID for a tour's dedicated route map, or null if none.
      */
@@ -799,7 +572,7 @@ public class MapDAO {
             try (PreparedStatement u = conn.prepareStatement("UPDATE maps SET tour_id = ? WHERE id = ?")) {
                 u.setInt(1, tour.getId());
                 u.setInt(2, mapId);
-                u.executeUpdate();
+                if (u.executeUpdate() > 0) MapChangeLogDAO.recordForMap(conn, mapId, MapChangeLogDAO.ENTITY_MAP, mapId);
             } catch (SQLException ignored) { /* tour_id column may not exist */ }
         }
         if (mapId <= 0) return -1;
@@ -0,0 +1,131 @@
+package server.dao;
+
+import common.dto.MapChanges;
+import common.dto.MapChangesCodec;
+import server.DBConnector;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Numbered edits (ops) of a user's map draft saved since the draft request was last written
+ * in full (SAVE_MAP_CHANGES with a MapChangesPatch).
+ *
+ * An autosave appends one small row instead of rewriting the DRAFT request; readers fold the
+ * ops into the request (MapEditRequestDAO#getDraftRequestForMapUser). Writing the draft in full
+ * folds the ops away but keeps a row with the last sequence (empty changes), so the numbering
+ * of the editor stays valid.
+ */
+public class MapDraftOpDAO {
+
+    private static final byte[] EMPTY = MapChangesCodec.encode(new MapChanges());
+
+    static {
+        createTable();
+    }
+
+    private static void createTable() {
+        String sql = "CREATE TABLE IF NOT EXISTS map_draft_ops (" +
+                "map_id INT NOT NULL, " +
+                "user_id INT NOT NULL, " +
+                "sequence INT NOT NULL, " +
+                "changes_blob MEDIUMBLOB NOT NULL, " +
+                "created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP, " +
+                "PRIMARY KEY (map_id, user_id, sequence)" +
+                ")";
+        try (Connection conn = DBConnector.getConnection();
+                Statement stmt = conn.createStatement()) {
+            stmt.execute(sql);
+        } catch (SQLException e) {
+            System.err.println("Error creating map_draft_ops table: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Sequence of the last op saved for the draft (0 if none).
+     */
+    public static int getLastSequence(Connection conn, int mapId, int userId) throws SQLException {
+        String sql = "SELECT MAX(sequence) FROM map_draft_ops WHERE map_id = ? AND user_id = ?";
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setInt(1, mapId);
+            stmt.setInt(2, userId);
+            ResultSet rs = stmt.executeQuery();
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    /**
+     * Number of op rows of the draft (compaction threshold).
+     */
+    public static int countOps(Connection conn, int mapId, int userId) throws SQLException {
+        String sql = "SELECT COUNT(*) FROM map_draft_ops WHERE map_id = ? AND user_id = ?";
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setInt(1, mapId);
+            stmt.setInt(2, userId);
+            ResultSet rs = stmt.executeQuery();
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    /**
+     * Append an op. Fails with a duplicate key if the sequence was saved concurrently.
+     */
+    public static void append(Connection conn, int mapId, int userId, int sequence, MapChanges changes) throws SQLException {
+        insert(conn, mapId, userId, sequence, MapChangesCodec.encode(changes));
+    }
+
+    /**
+     * Ops of the draft in sequence order.
+     */
+    public static List<MapChanges> getOps(Connection conn, int mapId, int userId) throws SQLException {
+        String sql = "SELECT changes_blob FROM map_draft_ops WHERE map_id = ? AND user_id = ? ORDER BY sequence";
+        List<MapChanges> ops = new ArrayList<>();
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setInt(1, mapId);
+            stmt.setInt(2, userId);
+            ResultSet rs = stmt.executeQuery();
+            while (rs.next()) {
+                ops.add(MapChangesCodec.decode(rs.getBytes("changes_blob")));
+            }
+        }
+        return ops;
+    }
+
+    /**
+     * Drop the ops after the draft was written in full; an empty row keeps the sequence.
+     *
+     * @param sequence last sequence of the draft (0: keep none)
+     */
+    public static void reset(Connection conn, int mapId, int userId, int sequence) throws SQLException {
+        deleteOps(conn, mapId, userId);
+        if (sequence > 0) insert(conn, mapId, userId, sequence, EMPTY);
+    }
+
+    /**
+     * Delete all ops of the draft (draft deleted or sent for approval).
+     */
+    public static void deleteOps(Connection conn, int mapId, int userId) throws SQLException {
+        String sql = "DELETE FROM map_draft_ops WHERE map_id = ? AND user_id = ?";
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setInt(1, mapId);
+            stmt.setInt(2, userId);
+            stmt.executeUpdate();
+        }
+    }
+
+    private static void insert(Connection conn, int mapId, int userId, int sequence, byte[] blob) throws SQLException {
+        String sql = "INSERT INTO map_draft_ops (map_id, user_id, sequence, changes_blob) VALUES (?, ?, ?, ?)";
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setInt(1, mapId);
+            stmt.setInt(2, userId);
+            stmt.setInt(3, sequence);
+            stmt.setBytes(4, blob);
+            stmt.executeUpdate();
+        }
+    }
+}
@@ -1,6 +1,5 @@
 package server.dao;
 
-import java.lang.reflect.Type;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
@@ -12,23 +11,23 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
-import com.google.gson.Gson;
-import com.google.gson.JsonObject;
-import com.google.gson.reflect.TypeToken;
-
 import common.Poi;
 import common.dto.MapChanges;
+import common.dto.MapChangesCodec;
+import common.dto.MapChangesPatch;
+import common.dto.MapChangesSummary;
 import common.dto.MapEditRequestDTO;
 import common.dto.TourDTO;
-import common.dto.TourStopDTO;
 import server.DBConnector;
 
 public class MapEditRequestDAO {
 
-    private static final Gson gson = new Gson();
-    private static final Type LIST_POI = new TypeToken<List<Poi>>(){}.getType();
-    private static final Type LIST_TOUR = new TypeToken<List<TourDTO>>(){}.getType();
-    private static final Type LIST_TOUR_STOP = new TypeToken<List<TourStopDTO>>(){}.getType();
+    /** Operations recorded in map_edit_request_entities. */
+    static final String OP_ADD = "ADD";
+    static final String OP_UPDATE = "UPDATE";
+    static final String OP_DELETE = "DELETE";
+    static final String OP_LINK = "LINK";
+    static final String OP_UNLINK = "UNLINK";
 
     static {
         createTable();
@@ -41,19 +40,206 @@ public class MapEditRequestDAO {
                 "city_id INT, " +
                 "user_id INT, " +
                 "changes_json MEDIUMTEXT, " +
+                "changes_blob MEDIUMBLOB, " +
                 "status VARCHAR(20) DEFAULT 'PENDING', " +
                 "created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP, " +
                 "INDEX (status)" +
                 ")";
 
+        // Entity ids touched by each request, so lookups by user/status/entity do not parse changes_json
+        String entities = "CREATE TABLE IF NOT EXISTS map_edit_request_entities (" +
+                "request_id INT NOT NULL, " +
+                "entity_type VARCHAR(10) NOT NULL, " +
+                "operation VARCHAR(10) NOT NULL, " +
+                "entity_id INT NOT NULL, " +
+                "PRIMARY KEY (request_id, entity_type, operation, entity_id), " +
+                "INDEX idx_map_edit_request_entities_entity (entity_type, entity_id), " +
+                "FOREIGN KEY (request_id) REFERENCES map_edit_requests(id) ON DELETE CASCADE" +
+                ")";
+
         try (Connection conn = DBConnector.getConnection();
                 Statement stmt = conn.createStatement()) {
             stmt.execute(sql);
+            try {
+                stmt.execute("ALTER TABLE map_edit_requests ADD COLUMN changes_blob MEDIUMBLOB AFTER changes_json");
+            } catch (SQLException e) {
+                if (e.getErrorCode() != 1060) throw e; // duplicate column: already migrated
+            }
+            stmt.execute(entities);
+            try {
+                stmt.execute("CREATE INDEX idx_map_edit_requests_user ON map_edit_requests (user_id, status, city_id)");
+            } catch (SQLException e) {
+                if (e.getErrorCode() != 1061) throw e; // duplicate key name: already created
+            }
+            backfillEntities(conn);
+            migrateJsonChanges(conn);
         } catch (SQLException e) {
             System.err.println("Error creating map_edit_requests table: " + e.getMessage());
         }
     }
 
+    /**
+     * Index requests stored before map_edit_request_entities existed (only PENDING / REJECTED ones are looked up).
+     */
+    private static void backfillEntities(Connection conn) throws SQLException {
+        String sql = "SELECT r.id, r.map_id, r.city_id, r.changes_json, r.changes_blob FROM map_edit_requests r " +
+                "WHERE r.status IN ('PENDING', 'REJECTED') " +
+                "AND NOT EXISTS (SELECT 1 FROM map_edit_request_entities e WHERE e.request_id = r.id)";
+        int indexed = 0;
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            ResultSet rs = stmt.executeQuery();
+            while (rs.next()) {
+                MapChanges ch = readChanges(rs);
+                if (ch != null && indexEntities(conn, rs.getInt("id"), rs.getInt("map_id"), rs.getInt("city_id"), ch) > 0) {
+                    indexed++;
+                }
+            }
+        }
+        if (indexed > 0) {
+            System.out.println("MapEditRequestDAO: Indexed entities of " + indexed + " existing requests");
+        }
+    }
+
+    /**
+     * Re-encode requests stored as JSON text (before changes_blob existed) in batches.
+     */
+    private static void migrateJsonChanges(Connection conn) throws SQLException {
+        String select = "SELECT id, changes_json FROM map_edit_requests " +
+                "WHERE changes_blob IS NULL AND changes_json IS NOT NULL AND id > ? ORDER BY id LIMIT 200";
+        String update = "UPDATE map_edit_requests SET changes_blob = ?, changes_json = NULL WHERE id = ?";
+        int migrated = 0;
+        int lastId = 0;
+        try (PreparedStatement sel = conn.prepareStatement(select);
+                PreparedStatement upd = conn.prepareStatement(update)) {
+            int rows;
+            do {
+                sel.setInt(1, lastId);
+                ResultSet rs = sel.executeQuery();
+                rows = 0;
+                int batch = 0;
+                while (rs.next()) {
+                    rows++;
+                    lastId = rs.getInt("id");
+                    String json = rs.getString("changes_json");
+                    MapChanges ch;
+                    try {
+                        ch = json.isEmpty() ? null : MapChangesCodec.fromJson(json);
+                    } catch (RuntimeException e) {
+                        System.err.println("MapEditRequestDAO: request " + lastId + " has unreadable changes, kept as JSON: " + e.getMessage());
+                        continue;
+                    }
+                    if (ch == null) continue;
+                    upd.setBytes(1, MapChangesCodec.encode(ch));
+                    upd.setInt(2, lastId);
+                    upd.addBatch();
+                    batch++;
+                }
+                if (batch > 0) {
+                    upd.executeBatch();
+                    migrated += batch;
+                }
+            } while (rows > 0);
+        }
+        if (migrated > 0) {
+            System.out.println("MapEditRequestDAO: Encoded changes of " + migrated + " requests stored as JSON");
+        }
+    }
+
+    /**
+     * Write the tour, POI, map and city ids touched by a request (with the operation) to map_edit_request_entities.
+     *
+     * @return number of entries written
+     */
+    private static int indexEntities(Connection conn, int requestId, int mapId, int cityId, MapChanges changes) throws SQLException {
+        List<RequestEntity> entries = entities(mapId, changes);
+        if (entries.isEmpty()) return 0;
+        String sql = "INSERT IGNORE INTO map_edit_request_entities (request_id, entity_type, operation, entity_id) VALUES (?, ?, ?, ?)";
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            for (RequestEntity entry : entries) {
+                stmt.setInt(1, requestId);
+                stmt.setString(2, entry.type);
+                stmt.setString(3, entry.operation);
+                stmt.setInt(4, entry.id);
+                stmt.addBatch();
+            }
+            stmt.executeBatch();
+        }
+        return entries.size();
+    }
+
+    /** Row of map_edit_request_entities. */
+    static final class RequestEntity {
+        final String type;
+        final String operation;
+        final int id;
+
+        RequestEntity(String type, String operation, int id) {
+            this.type = type;
+            this.operation = operation;
+            this.id = id;
+        }
+    }
+
+    /** Every existing entity a request touches (new entities have no id yet). */
+    static List<RequestEntity> entities(int mapId, MapChanges ch) {
+        List<RequestEntity> out = new ArrayList<>();
+        if (ch.getAddedTours() != null)
+            for (TourDTO t : ch.getAddedTours()) addEntity(out, "TOUR", OP_ADD, t.getId());
+        if (ch.getUpdatedTours() != null)
+            for (TourDTO t : ch.getUpdatedTours()) addEntity(out, "TOUR", OP_UPDATE, t.getId());
+        if (ch.getDeletedTourIds() != null)
+            for (Integer id : ch.getDeletedTourIds()) addEntity(out, "TOUR", OP_DELETE, id);
+        if (ch.getAddedPois() != null)
+            for (Poi p : ch.getAddedPois()) addEntity(out, "POI", OP_ADD, p.getId());
+        if (ch.getUpdatedPois() != null)
+            for (Poi p : ch.getUpdatedPois()) addEntity(out, "POI", OP_UPDATE, p.getId());
+        if (ch.getDeletedPoiIds() != null)
+            for (Integer id : ch.getDeletedPoiIds()) addEntity(out, "POI", OP_DELETE, id);
+        if (ch.getPoiMapLinks() != null)
+            for (MapChanges.PoiMapLink link : ch.getPoiMapLinks()) addEntity(out, "POI", OP_LINK, link.poiId);
+        if (ch.getPoiMapUnlinks() != null)
+            for (MapChanges.PoiMapLink link : ch.getPoiMapUnlinks()) addEntity(out, "POI", OP_UNLINK, link.poiId);
+        if (ch.getNewMapName() != null || ch.getNewMapDescription() != null)
+            addEntity(out, "MAP", OP_UPDATE, mapId);
+        if (ch.getDeletedMapIds() != null)
+            for (Integer id : ch.getDeletedMapIds()) addEntity(out, "MAP", OP_DELETE, id);
+        if (ch.getDeletedCityIds() != null)
+            for (Integer id : ch.getDeletedCityIds()) addEntity(out, "CITY", OP_DELETE, id);
+        return out;
+    }
+
+    private static void addEntity(List<RequestEntity> out, String type, String operation, Integer id) {
+        if (id != null && id > 0) out.add(new RequestEntity(type, operation, id));
+    }
+
+    /**
+     * Ids of one entity type touched (with one of the given operations) by this user's requests in a status and scope.
+     * A null mapId matches any map of the city.
+     */
+    private static Set<Integer> getEntityIds(Connection conn, int userId, String status, Integer mapId, int cityId,
+            String entityType, String... operations) throws SQLException {
+        Set<Integer> out = new HashSet<>();
+        StringBuilder sql = new StringBuilder("SELECT DISTINCT e.entity_id FROM map_edit_requests r " +
+                "JOIN map_edit_request_entities e ON e.request_id = r.id " +
+                "WHERE r.user_id = ? AND r.status = ? AND ");
+        sql.append(mapId == null ? "r.city_id = ?" : "COALESCE(r.map_id, 0) = ? AND COALESCE(r.city_id, 0) = ?");
+        sql.append(" AND e.entity_type = ? AND e.operation IN (");
+        for (int i = 0; i < operations.length; i++) sql.append(i > 0 ? ", ?" : "?");
+        sql.append(")");
+        try (PreparedStatement stmt = conn.prepareStatement(sql.toString())) {
+            int idx = 1;
+            stmt.setInt(idx++, userId);
+            stmt.setString(idx++, status);
+            if (mapId != null) stmt.setInt(idx++, mapId > 0 ? mapId : 0);
+            stmt.setInt(idx++, cityId > 0 ? cityId : 0);
+            stmt.setString(idx++, entityType);
+            for (String op : operations) stmt.setString(idx++, op);
+            ResultSet rs = stmt.executeQuery();
+            while (rs.next()) out.add(rs.getInt(1));
+        }
+        return out;
+    }
+
     public static int createRequest(Connection conn, int mapId, int cityId, int userId, MapChanges changes)
             throws SQLException {
         return createRequest(conn, mapId, cityId, userId, changes, changes.isDraft() ? "DRAFT" : "PENDING");
@@ -70,21 +256,25 @@ public class MapEditRequestDAO {
             String name = getMapName(conn, mapId);
             if (name != null) changes.setDisplayMapName(name);
         }
-        String json = gson.toJson(changes);
-        String sql = "INSERT INTO map_edit_requests (map_id, city_id, user_id, changes_json, status) VALUES (?, ?, ?, ?, ?)";
+        byte[] encoded = MapChangesCodec.encode(changes);
+        String sql = "INSERT INTO map_edit_requests (map_id, city_id, user_id, changes_blob, status) VALUES (?, ?, ?, ?, ?)";
 
         try (PreparedStatement stmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
             stmt.setObject(1, mapId > 0 ? mapId : null, Types.INTEGER);
             stmt.setObject(2, cityId > 0 ? cityId : null, Types.INTEGER);
             stmt.setInt(3, userId);
-            stmt.setString(4, json);
+            stmt.setBytes(4, encoded);
             stmt.setString(5, status != null ? status : "PENDING");
 
             int affected = stmt.executeUpdate();
             if (affected > 0) {
+                MapChangeLogDAO.record(conn, cityId, mapId, "DRAFT".equals(status)
+                        ? MapChangeLogDAO.ENTITY_DRAFT : MapChangeLogDAO.ENTITY_REQUEST, userId);
                 ResultSet keys = stmt.getGeneratedKeys();
                 if (keys.next()) {
-                    return keys.getInt(1);
+                    int requestId = keys.getInt(1);
+                    indexEntities(conn, requestId, mapId, cityId, changes);
+                    return requestId;
                 }
             }
         }
@@ -180,34 +370,26 @@ public class MapEditRequestDAO {
      * Used to show "(waiting for approval)" in the map editor for the employee.
      */
     public static Set<Integer> getTourIdsWithPendingRequestByUser(int userId, int cityId) {
-        Set<Integer> tourIds = new HashSet<>();
-        if (userId <= 0) return tourIds;
-        String sql = "SELECT changes_json FROM map_edit_requests WHERE user_id = ? AND status = 'PENDING' AND city_id = ?";
-        try (Connection conn = DBConnector.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
-            stmt.setInt(1, userId);
-            stmt.setInt(2, cityId);
-            ResultSet rs = stmt.executeQuery();
-            while (rs.next()) {
-                String json = rs.getString("changes_json");
-                if (json == null || json.isEmpty()) continue;
-                MapChanges ch = deserializeMapChanges(json);
-                if (ch == null) continue;
-                if (ch.getAddedTours() != null) {
-                    for (common.dto.TourDTO t : ch.getAddedTours()) {
-                        if (t.getId() > 0) tourIds.add(t.getId());
-                    }
-                }
-                if (ch.getUpdatedTours() != null) {
-                    for (common.dto.TourDTO t : ch.getUpdatedTours()) {
-                        if (t.getId() > 0) tourIds.add(t.getId());
-                    }
-                }
-            }
+        if (userId <= 0) return new HashSet<>();
+        try (Connection conn = DBConnector.getConnection()) {
+            return getTourIdsWithPendingRequestByUser(conn, userId, cityId);
         } catch (SQLException e) {
             System.err.println("MapEditRequestDAO: getTourIdsWithPendingRequestByUser failed: " + e.getMessage());
+            return new HashSet<>();
+        }
+    }
+
+    /**
+     * Tour IDs in this user's PENDING requests for the city (uses given connection; never throws).
+     */
+    public static Set<Integer> getTourIdsWithPendingRequestByUser(Connection conn, int userId, int cityId) {
+        if (userId <= 0) return new HashSet<>();
+        try {
+            return getEntityIds(conn, userId, "PENDING", null, cityId, "TOUR", OP_ADD, OP_UPDATE);
+        } catch (SQLException e) {
+            System.err.println("MapEditRequestDAO: getTourIdsWithPendingRequestByUser failed: " + e.getMessage());
+            return new HashSet<>();
         }
-        return tourIds;
     }
 
     /**
@@ -215,6 +397,18 @@ public class MapEditRequestDAO {
      * Used to restore pending unlinks/deletes when loading map content for the editor.
      */
     public static MapEditRequestDTO getDraftRequestForMapUser(int mapId, int userId) {
+        try (Connection conn = DBConnector.getConnection()) {
+            return getDraftRequestForMapUser(conn, mapId, userId);
+        } catch (SQLException e) {
+            System.err.println("Error getting draft request: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * DRAFT request for this map and user using the given connection (null if none or on error).
+     */
+    public static MapEditRequestDTO getDraftRequestForMapUser(Connection conn, int mapId, int userId) {
         String sql = "SELECT r.*, u.username, m.name as map_name, c.name as city_name " +
                 "FROM map_edit_requests r " +
                 "LEFT JOIN users u ON r.user_id = u.id " +
@@ -223,13 +417,14 @@ public class MapEditRequestDAO {
                 "WHERE r.map_id = ? AND r.user_id = ? AND r.status = 'DRAFT' " +
                 "ORDER BY r.created_at DESC LIMIT 1";
 
-        try (Connection conn = DBConnector.getConnection();
-                PreparedStatement stmt = conn.prepareStatement(sql)) {
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
             stmt.setInt(1, mapId);
             stmt.setInt(2, userId);
             ResultSet rs = stmt.executeQuery();
             if (rs.next()) {
-                return mapResultSetToDTO(rs);
+                MapEditRequestDTO draft = mapResultSetToDTO(rs);
+                foldDraftOps(conn, draft, mapId, userId);
+                return draft;
             }
         } catch (SQLException e) {
             System.err.println("Error getting draft request: " + e.getMessage());
@@ -237,6 +432,31 @@ public class MapEditRequestDAO {
         return null;
     }
 
+    /**
+     * Merge the autosaved ops (map_draft_ops) into the changes of the DRAFT request.
+     */
+    private static void foldDraftOps(Connection conn, MapEditRequestDTO draft, int mapId, int userId) throws SQLException {
+        List<MapChanges> ops = MapDraftOpDAO.getOps(conn, mapId, userId);
+        if (ops.isEmpty()) return;
+        MapChanges changes = draft.getChanges() != null ? draft.getChanges() : new MapChanges();
+        for (MapChanges op : ops) {
+            MapChangesPatch.merge(changes, op);
+        }
+        draft.setChanges(changes);
+    }
+
+    /**
+     * True if this map+user has a DRAFT request (base that autosaved ops are merged into).
+     */
+    public static boolean hasDraftRequestForMapUser(Connection conn, int mapId, int userId) throws SQLException {
+        String sql = "SELECT 1 FROM map_edit_requests WHERE map_id = ? AND user_id = ? AND status = 'DRAFT' LIMIT 1";
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setInt(1, mapId);
+            stmt.setInt(2, userId);
+            return stmt.executeQuery().next();
+        }
+    }
+
     /**
      * Delete any existing DRAFT for this map+user, then insert a new one if there are pending unlinks/deletes.
      * Used when employee saves as draft with pending unlinks/deletes.
@@ -246,8 +466,10 @@ public class MapEditRequestDAO {
         try (PreparedStatement stmt = conn.prepareStatement(deleteSql)) {
             stmt.setInt(1, mapId);
             stmt.setInt(2, userId);
-            stmt.executeUpdate();
+            if (stmt.executeUpdate() > 0) MapChangeLogDAO.record(conn, cityId, mapId, MapChangeLogDAO.ENTITY_DRAFT, userId);
         }
+        // The changes are the whole draft: autosaved ops are part of them now
+        MapDraftOpDAO.reset(conn, mapId, userId, MapDraftOpDAO.getLastSequence(conn, mapId, userId));
         boolean hasUnlinks = changes.getPoiMapUnlinks() != null && !changes.getPoiMapUnlinks().isEmpty();
         boolean hasDeletes = changes.getDeletedPoiIds() != null && !changes.getDeletedPoiIds().isEmpty();
         boolean hasTourAdds = changes.getAddedTours() != null && !changes.getAddedTours().isEmpty();
@@ -326,8 +548,9 @@ public class MapEditRequestDAO {
         try (PreparedStatement stmt = conn.prepareStatement(sql)) {
             stmt.setInt(1, mapId);
             stmt.setInt(2, userId);
-            stmt.executeUpdate();
+            if (stmt.executeUpdate() > 0) MapChangeLogDAO.recordForMap(conn, mapId, MapChangeLogDAO.ENTITY_DRAFT, userId);
         }
+        MapDraftOpDAO.deleteOps(conn, mapId, userId);
     }
 
     public static MapEditRequestDTO getRequest(int id) {
@@ -357,8 +580,17 @@ public class MapEditRequestDAO {
         try (PreparedStatement stmt = conn.prepareStatement(sql)) {
             stmt.setString(1, status);
             stmt.setInt(2, id);
-            return stmt.executeUpdate() > 0;
+            if (stmt.executeUpdate() == 0) return false;
         }
+        // The requester's "waiting for approval" markers change
+        try (PreparedStatement stmt = conn.prepareStatement("SELECT city_id, map_id, user_id FROM map_edit_requests WHERE id = ?")) {
+            stmt.setInt(1, id);
+            ResultSet rs = stmt.executeQuery();
+            if (rs.next()) {
+                MapChangeLogDAO.record(conn, rs.getInt("city_id"), rs.getInt("map_id"), MapChangeLogDAO.ENTITY_REQUEST, rs.getInt("user_id"));
+            }
+        }
+        return true;
     }
 
     /**
@@ -366,25 +598,7 @@ public class MapEditRequestDAO {
      * Used so we block resubmitting the same delete-tour request until the employee performs the action again.
      */
     public static Set<Integer> getRejectedDeletedTourIdsForUserAndScope(Connection conn, int userId, int mapId, int cityId) throws SQLException {
-        Set<Integer> out = new HashSet<>();
-        String sql = "SELECT changes_json FROM map_edit_requests WHERE user_id = ? AND status = 'REJECTED' AND COALESCE(map_id, 0) = ? AND COALESCE(city_id, 0) = ?";
-        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
-            stmt.setInt(1, userId);
-            stmt.setInt(2, mapId > 0 ? mapId : 0);
-            stmt.setInt(3, cityId > 0 ? cityId : 0);
-            ResultSet rs = stmt.executeQuery();
-            while (rs.next()) {
-                String json = rs.getString("changes_json");
-                if (json == null || json.isEmpty()) continue;
-                MapChanges ch = deserializeMapChanges(json);
-                if (ch != null && ch.getDeletedTourIds() != null) {
-                    for (Integer tid : ch.getDeletedTourIds()) {
-                        if (tid != null && tid > 0) out.add(tid);
-                    }
-                }
-            }
-        }
-        return out;
+        return getEntityIds(conn, userId, "REJECTED", mapId, cityId, "TOUR", OP_DELETE);
     }
 
     /**
@@ -392,25 +606,7 @@ public class MapEditRequestDAO {
      * Used so we block resubmitting the same delete-POI request until the employee performs the action again.
      */
     public static Set<Integer> getRejectedDeletedPoiIdsForUserAndScope(Connection conn, int userId, int mapId, int cityId) throws SQLException {
-        Set<Integer> out = new HashSet<>();
-        String sql = "SELECT changes_json FROM map_edit_requests WHERE user_id = ? AND status = 'REJECTED' AND COALESCE(map_id, 0) = ? AND COALESCE(city_id, 0) = ?";
-        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
-            stmt.setInt(1, userId);
-            stmt.setInt(2, mapId > 0 ? mapId : 0);
-            stmt.setInt(3, cityId > 0 ? cityId : 0);
-            ResultSet rs = stmt.executeQuery();
-            while (rs.next()) {
-                String json = rs.getString("changes_json");
-                if (json == null || json.isEmpty()) continue;
-                MapChanges ch = deserializeMapChanges(json);
-                if (ch != null && ch.getDeletedPoiIds() != null) {
-                    for (Integer pid : ch.getDeletedPoiIds()) {
-                        if (pid != null && pid > 0) out.add(pid);
-                    }
-                }
-            }
-        }
-        return out;
+        return getEntityIds(conn, userId, "REJECTED", mapId, cityId, "POI", OP_DELETE);
     }
 
     /**
@@ -433,7 +629,13 @@ public class MapEditRequestDAO {
                 stmt.setInt(idx++, mapIds.get(i) != null && mapIds.get(i) > 0 ? mapIds.get(i) : 0);
                 stmt.setInt(idx++, cityIds.get(i) != null && cityIds.get(i) > 0 ? cityIds.get(i) : 0);
             }
-            stmt.executeUpdate();
+            if (stmt.executeUpdate() > 0) {
+                for (int i = 0; i < mapIds.size(); i++) {
+                    if (cityIds.get(i) != null) {
+                        MapChangeLogDAO.record(conn, cityIds.get(i), mapIds.get(i), MapChangeLogDAO.ENTITY_REQUEST, userId);
+                    }
+                }
+            }
         }
     }
 
@@ -476,81 +678,38 @@ public class MapEditRequestDAO {
         dto.setMapName(mapName);
         dto.setCityName(cityName);
 
-        String json = rs.getString("changes_json");
-        if (json != null && !json.isEmpty()) {
-            try {
-                MapChanges ch = deserializeMapChanges(json);
-                dto.setChanges(ch);
-                // Use display names from stored JSON when JOIN returned null (e.g. city/map already deleted)
-                if ((cityName == null || cityName.isEmpty()) && ch != null && ch.getDisplayCityName() != null && !ch.getDisplayCityName().isEmpty())
-                    dto.setCityName(ch.getDisplayCityName());
-                if ((mapName == null || mapName.isEmpty()) && ch != null && ch.getDisplayMapName() != null && !ch.getDisplayMapName().isEmpty())
-                    dto.setMapName(ch.getDisplayMapName());
-            } catch (Exception e) {
-                System.err.println("Error deserializing map changes: " + e.getMessage());
-                e.printStackTrace();
+        try {
+            byte[] blob = rs.getBytes("changes_blob");
+            if (MapChangesCodec.isEncoded(blob)) {
+                dto.setEncodedChanges(blob); // decoded only when the changes are read
+            } else {
+                dto.setChanges(readChanges(rs));
             }
+            // Use display names from the stored changes when JOIN returned null (e.g. city/map already deleted)
+            MapChangesSummary summary = dto.getSummary();
+            if (summary != null) {
+                if ((cityName == null || cityName.isEmpty()) && summary.getDisplayCityName() != null && !summary.getDisplayCityName().isEmpty())
+                    dto.setCityName(summary.getDisplayCityName());
+                if ((mapName == null || mapName.isEmpty()) && summary.getDisplayMapName() != null && !summary.getDisplayMapName().isEmpty())
+                    dto.setMapName(summary.getDisplayMapName());
+            }
+        } catch (Exception e) {
+            System.err.println("Error deserializing map changes: " + e.getMessage());
+            e.printStackTrace();
         }
 
         return dto;
     }
 
     /**
-     * Deserialize MapChanges from JSON with correct types for List&lt;Poi&gt; so POI details
-     * (name, category, description, etc.) are preserved for the manager approval view.
+     * Changes of a request row: changes_blob (MapChangesCodec) or, for rows not migrated yet, changes_json.
      */
-    private static MapChanges deserializeMapChanges(String json) {
-        MapChanges changes = gson.fromJson(json, MapChanges.class);
-        if (changes == null) return null;
-        try {
-            JsonObject obj = gson.fromJson(json, JsonObject.class);
-            if (obj != null) {
-                if (obj.has("addedPois") && obj.get("addedPois").isJsonArray()) {
-                    List<Poi> added = gson.fromJson(obj.get("addedPois"), LIST_POI);
-                    if (added != null) {
-                        changes.getAddedPois().clear();
-                        changes.getAddedPois().addAll(added);
-                    }
-                }
-                if (obj.has("updatedPois") && obj.get("updatedPois").isJsonArray()) {
-                    List<Poi> updated = gson.fromJson(obj.get("updatedPois"), LIST_POI);
-                    if (updated != null) {
-                        changes.getUpdatedPois().clear();
-                        changes.getUpdatedPois().addAll(updated);
-                    }
-                }
-                if (obj.has("addedTours") && obj.get("addedTours").isJsonArray()) {
-                    List<TourDTO> added = gson.fromJson(obj.get("addedTours"), LIST_TOUR);
-                    if (added != null) {
-                        changes.getAddedTours().clear();
-                        changes.getAddedTours().addAll(added);
-                    }
-                }
-                if (obj.has("updatedTours") && obj.get("updatedTours").isJsonArray()) {
-                    List<TourDTO> updated = gson.fromJson(obj.get("updatedTours"), LIST_TOUR);
-                    if (updated != null) {
-                        changes.getUpdatedTours().clear();
-                        changes.getUpdatedTours().addAll(updated);
-                    }
-                }
-                if (obj.has("addedStops") && obj.get("addedStops").isJsonArray()) {
-                    List<TourStopDTO> added = gson.fromJson(obj.get("addedStops"), LIST_TOUR_STOP);
-                    if (added != null) {
-                        changes.getAddedStops().clear();
-                        changes.getAddedStops().addAll(added);
-                    }
-                }
-                if (obj.has("updatedStops") && obj.get("updatedStops").isJsonArray()) {
-                    List<TourStopDTO> updated = gson.fromJson(obj.get("updatedStops"), LIST_TOUR_STOP);
-                    if (updated != null) {
-                        changes.getUpdatedStops().clear();
-                        changes.getUpdatedStops().addAll(updated);
-                    }
-                }
-            }
-        } catch (Exception e) {
-            System.err.println("MapEditRequestDAO: Fallback list deserialization failed: " + e.getMessage());
+    private static MapChanges readChanges(ResultSet rs) throws SQLException {
+        byte[] blob = rs.getBytes("changes_blob");
+        if (MapChangesCodec.isEncoded(blob)) {
+            return MapChangesCodec.decode(blob);
         }
-        return changes;
+        String json = rs.getString("changes_json");
+        return json != null && !json.isEmpty() ? MapChangesCodec.fromJson(json) : null;
     }
 }
@@ -0,0 +1,103 @@
+package server.dao;
+
+import server.DBConnector;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Current offline package of each city (map_packages). The package files themselves live on
+ * disk, named by the SHA-256 of their bytes (see MapPackageService). The previous package of a
+ * city stays downloadable so a download in progress can finish after a rebuild.
+ */
+public class MapPackageDAO {
+
+    static {
+        createTable();
+    }
+
+    private static void createTable() {
+        String sql = "CREATE TABLE IF NOT EXISTS map_packages (" +
+                "city_id INT PRIMARY KEY, " +
+                "package_hash CHAR(64) NOT NULL, " +
+                "previous_hash CHAR(64) NULL, " +
+                "size_bytes BIGINT NOT NULL, " +
+                "content_version BIGINT NOT NULL, " +
+                "built_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP, " +
+                "FOREIGN KEY (city_id) REFERENCES cities(id) ON DELETE CASCADE" +
+                ")";
+        try (Connection conn = DBConnector.getConnection();
+                Statement stmt = conn.createStatement()) {
+            stmt.execute(sql);
+        } catch (SQLException e) {
+            System.err.println("Error creating map_packages table: " + e.getMessage());
+        }
+    }
+
+    /** A city's package row. */
+    public static class PackageRecord {
+        public final int cityId;
+        public final String hash;
+        public final String previousHash;
+        public final long sizeBytes;
+        /** City content version the package was built from. */
+        public final long contentVersion;
+
+        PackageRecord(int cityId, String hash, String previousHash, long sizeBytes, long contentVersion) {
+            this.cityId = cityId;
+            this.hash = hash;
+            this.previousHash = previousHash;
+            this.sizeBytes = sizeBytes;
+            this.contentVersion = contentVersion;
+        }
+    }
+
+    /**
+     * The city's current package, or null if none was built yet.
+     */
+    public static PackageRecord getPackage(Connection conn, int cityId) throws SQLException {
+        String sql = "SELECT package_hash, previous_hash, size_bytes, content_version FROM map_packages WHERE city_id = ?";
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setInt(1, cityId);
+            ResultSet rs = stmt.executeQuery();
+            if (!rs.next()) return null;
+            return new PackageRecord(cityId, rs.getString("package_hash"), rs.getString("previous_hash"),
+                    rs.getLong("size_bytes"), rs.getLong("content_version"));
+        }
+    }
+
+    /**
+     * Make the package the city's current one; the former current package becomes the previous one.
+     * Rebuilding identical content (same hash) only updates the content version.
+     */
+    public static void savePackage(Connection conn, int cityId, String hash, long sizeBytes, long contentVersion)
+            throws SQLException {
+        String sql = "INSERT INTO map_packages (city_id, package_hash, size_bytes, content_version) VALUES (?, ?, ?, ?) " +
+                "ON DUPLICATE KEY UPDATE " +
+                "previous_hash = IF(package_hash = VALUES(package_hash), previous_hash, package_hash), " +
+                "package_hash = VALUES(package_hash), size_bytes = VALUES(size_bytes), " +
+                "content_version = VALUES(content_version)";
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setInt(1, cityId);
+            stmt.setString(2, hash);
+            stmt.setLong(3, sizeBytes);
+            stmt.setLong(4, contentVersion);
+            stmt.executeUpdate();
+        }
+    }
+
+    /**
+     * True if any city still serves the package as its current or previous one.
+     */
+    public static boolean isReferenced(Connection conn, String hash) throws SQLException {
+        String sql = "SELECT 1 FROM map_packages WHERE package_hash = ? OR previous_hash = ? LIMIT 1";
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setString(1, hash);
+            stmt.setString(2, hash);
+            return stmt.executeQuery().next();
+        }
+    }
+}
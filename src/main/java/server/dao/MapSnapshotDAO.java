@@ -0,0 +1,219 @@
+package server.dao;
+
+import common.dto.MapContent;
+import server.DBConnector;
+import server.service.MapPackageService;
+import server.service.MapSnapshotCodec;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Immutable, compressed snapshots of published map content (what customers see: approved
+ * POIs, tours, stops and segments, no drafts).
+ *
+ * Approving a map version stores the content as approved in that version; rows are never
+ * updated. Customer reads take the latest snapshot of the map with one keyed read, which also
+ * checks the change log for customer-visible changes (MAP, POI, TOUR entries) made after the
+ * snapshot - shared POIs and tours edited through another map, direct edits, or distances
+ * computed after the approval. Then the read returns the live content and the city's package
+ * build is scheduled, which stores it as a refresh snapshot in the background (replacing older
+ * refresh snapshots of the map); approval snapshots are kept as version history.
+ */
+public class MapSnapshotDAO {
+
+    static {
+        createTable();
+    }
+
+    private static void createTable() {
+        String sql = "CREATE TABLE IF NOT EXISTS map_version_snapshots (" +
+                "id INT AUTO_INCREMENT PRIMARY KEY, " +
+                "map_id INT NOT NULL, " +
+                "city_id INT NOT NULL, " +
+                "version_id INT NULL, " +
+                "content_version BIGINT NOT NULL, " +
+                "refreshed TINYINT(1) NOT NULL DEFAULT 0, " +
+                "content MEDIUMBLOB NOT NULL, " +
+                "created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP, " +
+                "INDEX idx_map_version_snapshots_map (map_id, id), " +
+                "INDEX idx_map_version_snapshots_version (version_id), " +
+                "FOREIGN KEY (map_id) REFERENCES maps(id) ON DELETE CASCADE, " +
+                "FOREIGN KEY (version_id) REFERENCES map_versions(id) ON DELETE SET NULL" +
+                ")";
+        try (Connection conn = DBConnector.getConnection();
+                Statement stmt = conn.createStatement()) {
+            stmt.execute(sql);
+        } catch (SQLException e) {
+            System.err.println("Error creating map_version_snapshots table: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Store the published content of the map as approved in the given version. Call inside the
+     * approval transaction after all changes are applied. Errors are logged and swallowed
+     * (customers then read the live tables until the next snapshot).
+     *
+     * @return snapshot id, or -1 if none was stored
+     */
+    public static int createSnapshot(Connection conn, int mapId, int versionId) {
+        try {
+            MapContent content = MapContentLoader.load(conn, mapId, null);
+            if (content == null) return -1;
+            return insert(conn, content, versionId > 0 ? versionId : null, false);
+        } catch (SQLException e) {
+            System.err.println("MapSnapshotDAO: snapshot of map " + mapId + " failed: " + e.getMessage());
+            return -1;
+        }
+    }
+
+    /**
+     * Published content of the map: the latest snapshot when it is still current, otherwise the
+     * live content. Null if the map does not exist. Never writes: a stale snapshot is refreshed
+     * in the background by the city's package build (see refreshPublishedContent).
+     */
+    public static MapContent getPublishedContent(int mapId) {
+        try (Connection conn = DBConnector.getConnection()) {
+            return getPublishedContent(conn, mapId);
+        } catch (SQLException e) {
+            System.err.println("MapSnapshotDAO: getPublishedContent failed for map " + mapId + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    public static MapContent getPublishedContent(Connection conn, int mapId) throws SQLException {
+        Latest latest = getLatest(conn, mapId);
+        if (latest.current != null) return latest.current;
+        MapContent live = MapContentLoader.load(conn, mapId, null);
+        // Without a known content version the refresh could never be validated
+        if (live != null && live.getContentVersion() >= 0) {
+            MapPackageService.getInstance().scheduleBuild(live.getCityId());
+        }
+        return live;
+    }
+
+    /**
+     * Like getPublishedContent, but a stale snapshot is replaced by the live content as a refresh
+     * snapshot (older refresh snapshots of the map are deleted). Called from the package builder,
+     * which runs one build at a time, so readers never write and refreshes are not duplicated.
+     */
+    public static MapContent refreshPublishedContent(Connection conn, int mapId) throws SQLException {
+        Latest latest = getLatest(conn, mapId);
+        if (latest.current != null) return latest.current;
+        MapContent live = MapContentLoader.load(conn, mapId, null);
+        if (live != null && live.getContentVersion() >= 0) {
+            try {
+                int id = insert(conn, live, latest.versionId, true);
+                deleteOlderRefreshes(conn, mapId, id);
+            } catch (SQLException e) {
+                System.err.println("MapSnapshotDAO: refresh of map " + mapId + " failed: " + e.getMessage());
+            }
+        }
+        return live;
+    }
+
+    /** Latest snapshot of a map: its content if still current, and the version it belongs to. */
+    private static final class Latest {
+        MapContent current;
+        Integer versionId;
+    }
+
+    private static Latest getLatest(Connection conn, int mapId) throws SQLException {
+        String sql = "SELECT s.version_id, s.content_version, s.content, COALESCE(v.version, 0) AS current_version, " +
+                "(SELECT MIN(l.version) FROM map_change_log l WHERE l.city_id = s.city_id) AS oldest_entry, " +
+                "EXISTS (SELECT 1 FROM map_change_log l WHERE l.city_id = s.city_id AND l.version > s.content_version " +
+                "AND l.entity_type IN ('" + MapChangeLogDAO.ENTITY_MAP + "', '" + MapChangeLogDAO.ENTITY_POI + "', '"
+                + MapChangeLogDAO.ENTITY_TOUR + "') AND (l.map_id IS NULL OR l.map_id = s.map_id)) AS changed " +
+                "FROM map_version_snapshots s LEFT JOIN content_versions v ON v.city_id = s.city_id " +
+                "WHERE s.map_id = ? ORDER BY s.id DESC LIMIT 1";
+        Latest latest = new Latest();
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setInt(1, mapId);
+            ResultSet rs = stmt.executeQuery();
+            if (rs.next()) {
+                int vid = rs.getInt("version_id");
+                latest.versionId = rs.wasNull() ? null : vid;
+                long snapshotVersion = rs.getLong("content_version");
+                long currentVersion = rs.getLong("current_version");
+                long oldestEntry = rs.getLong("oldest_entry");
+                boolean logCovers = !rs.wasNull() && oldestEntry <= snapshotVersion + 1;
+                boolean current = snapshotVersion >= 0 && (snapshotVersion == currentVersion
+                        || (logCovers && !rs.getBoolean("changed")));
+                if (current) {
+                    try {
+                        latest.current = MapSnapshotCodec.decode(rs.getBytes("content"));
+                    } catch (IOException e) {
+                        System.err.println("MapSnapshotDAO: unreadable snapshot of map " + mapId + ": " + e.getMessage());
+                    }
+                }
+            }
+        }
+        return latest;
+    }
+
+    /**
+     * Ids of the city's approved maps, by name.
+     */
+    public static List<Integer> getPublishedMapIds(Connection conn, int cityId) throws SQLException {
+        List<Integer> mapIds = new ArrayList<>();
+        try (PreparedStatement stmt = conn.prepareStatement(
+                "SELECT id FROM maps WHERE city_id = ? AND approved = 1 ORDER BY name")) {
+            stmt.setInt(1, cityId);
+            ResultSet rs = stmt.executeQuery();
+            while (rs.next()) mapIds.add(rs.getInt("id"));
+        }
+        return mapIds;
+    }
+
+    /**
+     * Content of the map as approved in the given version; null if no snapshot was stored for it.
+     */
+    public static MapContent getVersionContent(Connection conn, int versionId) throws SQLException {
+        String sql = "SELECT content FROM map_version_snapshots WHERE version_id = ? AND refreshed = 0 ORDER BY id LIMIT 1";
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setInt(1, versionId);
+            ResultSet rs = stmt.executeQuery();
+            if (!rs.next()) return null;
+            return MapSnapshotCodec.decode(rs.getBytes("content"));
+        } catch (IOException e) {
+            System.err.println("MapSnapshotDAO: unreadable snapshot of version " + versionId + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    private static int insert(Connection conn, MapContent content, Integer versionId, boolean refreshed) throws SQLException {
+        byte[] data = MapSnapshotCodec.encode(content);
+        String sql = "INSERT INTO map_version_snapshots (map_id, city_id, version_id, content_version, refreshed, content) " +
+                "VALUES (?, ?, ?, ?, ?, ?)";
+        try (PreparedStatement stmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+            stmt.setInt(1, content.getMapId());
+            stmt.setInt(2, content.getCityId());
+            stmt.setObject(3, versionId, java.sql.Types.INTEGER);
+            stmt.setLong(4, content.getContentVersion());
+            stmt.setBoolean(5, refreshed);
+            stmt.setBytes(6, data);
+            stmt.executeUpdate();
+            ResultSet keys = stmt.getGeneratedKeys();
+            int id = keys.next() ? keys.getInt(1) : -1;
+            System.out.println("MapSnapshotDAO: Stored " + (refreshed ? "refresh" : "version " + versionId)
+                    + " snapshot " + id + " of map " + content.getMapId() + " (" + data.length + " bytes)");
+            return id;
+        }
+    }
+
+    private static void deleteOlderRefreshes(Connection conn, int mapId, int keepId) throws SQLException {
+        if (keepId <= 0) return;
+        try (PreparedStatement stmt = conn.prepareStatement(
+                "DELETE FROM map_version_snapshots WHERE map_id = ? AND refreshed = 1 AND id < ?")) {
+            stmt.setInt(1, mapId);
+            stmt.setInt(2, keepId);
+            stmt.executeUpdate();
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package server.dao;
 
 import common.Poi;
+import common.dto.MapChanges;
 import server.DBConnector;
 
 import java.sql.*;
@@ -37,6 +38,19 @@ public class PoiDAO {
      * Draft POIs (approved=0) are not returned, so they do not appear on the map until the manager approves or the manager publishes.
      */
     public static List<Poi> getPoisForMap(int mapId) {
+        try (Connection conn = DBConnector.getConnection()) {
+            if (conn == null)
+                return new ArrayList<>();
+            return getPoisForMap(conn, mapId);
+        } catch (SQLException e) {
+            return new ArrayList<>();
+        }
+    }
+
+    /**
+     * Get approved POIs linked to a map (uses given connection).
+     */
+    public static List<Poi> getPoisForMap(Connection conn, int mapId) throws SQLException {
         List<Poi> pois = new ArrayList<>();
 
         String query = "SELECT p.* FROM pois p " +
@@ -44,11 +58,7 @@ public class PoiDAO {
                 "WHERE mp.approved = 1 " +
                 "ORDER BY mp.display_order";
 
-        try (Connection conn = DBConnector.getConnection()) {
-            if (conn == null)
-                return pois;
-
-            PreparedStatement stmt = conn.prepareStatement(query);
+        try (PreparedStatement stmt = conn.prepareStatement(query)) {
             stmt.setInt(1, mapId);
             ResultSet rs = stmt.executeQuery();
 
@@ -57,7 +67,7 @@ public class PoiDAO {
             }
 
         } catch (SQLException e) {
-            return getPoisForMapLegacy(mapId);
+            return getPoisForMapLegacy(conn, mapId);
         }
 
         return pois;
@@ -69,38 +79,40 @@ public class PoiDAO {
      * Each POI has draft=true when unapproved on this map (for UI tagging).
      */
     public static List<Poi> getPoisForMapForEditor(int mapId, int userId) {
-        if (userId <= 0) return getPoisForMap(mapId);
+        try (Connection conn = DBConnector.getConnection()) {
+            if (conn == null) return new ArrayList<>();
+            return getPoisForMapForEditor(conn, mapId, userId);
+        } catch (SQLException e) {
+            return new ArrayList<>();
+        }
+    }
+
+    /**
+     * Editor POIs for a map (see getPoisForMapForEditor(int, int)) using the given connection.
+     */
+    public static List<Poi> getPoisForMapForEditor(Connection conn, int mapId, int userId) throws SQLException {
+        if (userId <= 0) return getPoisForMap(conn, mapId);
         List<Poi> pois = new ArrayList<>();
         // Include approved POIs and draft POIs (approved=0) for this user; also include draft where linked_by_user_id IS NULL so manager's draft shows even if column wasn't set
         String query = "SELECT p.*, mp.approved as map_approved FROM pois p " +
                 "JOIN map_pois mp ON mp.poi_id = p.id AND mp.map_id = ? " +
                 "WHERE mp.approved = 1 OR (mp.approved = 0 AND (mp.linked_by_user_id = ? OR mp.linked_by_user_id IS NULL)) " +
                 "ORDER BY mp.display_order";
-        try (Connection conn = DBConnector.getConnection()) {
-            if (conn == null) return pois;
-            PreparedStatement stmt = conn.prepareStatement(query);
+        try (PreparedStatement stmt = conn.prepareStatement(query)) {
             stmt.setInt(1, mapId);
             stmt.setInt(2, userId);
             ResultSet rs = stmt.executeQuery();
             while (rs.next()) {
                 Poi poi = extractPoi(rs);
-                int mapApproved = 0;
-                try {
-                    Object a = rs.getObject("map_approved");
-                    if (a != null) {
-                        if (a instanceof Number) mapApproved = ((Number) a).intValue();
-                        else if (a instanceof Boolean) mapApproved = Boolean.TRUE.equals(a) ? 1 : 0;
-                    }
-                } catch (SQLException ignored) { }
-                poi.setDraft(mapApproved == 0);
+                poi.setDraft(mapApproved(rs, 0) == 0);
                 pois.add(poi);
             }
         } catch (SQLException e) {
             if (e.getMessage() != null && e.getMessage().contains("linked_by_user_id")) {
                 // DB has approved but not linked_by_user_id: still return draft POIs (approved=0) so new POIs show with [Draft]
-                return getPoisForMapIncludingDrafts(mapId);
+                return getPoisForMapIncludingDrafts(conn, mapId);
             }
-            return getPoisForMapLegacy(mapId);
+            return getPoisForMapLegacy(conn, mapId);
         }
         return pois;
     }
@@ -109,49 +121,45 @@ public class PoiDAO {
      * Get all POIs for a map (approved and draft) with draft flag set. Used when linked_by_user_id column is missing
      * so that newly saved POIs (approved=0) still appear in the editor with [Draft].
      */
-    private static List<Poi> getPoisForMapIncludingDrafts(int mapId) {
+    private static List<Poi> getPoisForMapIncludingDrafts(Connection conn, int mapId) {
         List<Poi> pois = new ArrayList<>();
         String query = "SELECT p.*, mp.approved as map_approved FROM pois p " +
                 "JOIN map_pois mp ON mp.poi_id = p.id AND mp.map_id = ? " +
                 "ORDER BY mp.display_order";
-        try (Connection conn = DBConnector.getConnection()) {
-            if (conn == null) return pois;
-            try (PreparedStatement stmt = conn.prepareStatement(query)) {
-                stmt.setInt(1, mapId);
-                ResultSet rs = stmt.executeQuery();
-                while (rs.next()) {
-                    Poi poi = extractPoi(rs);
-                    int mapApproved = 1;
-                    try {
-                        Object a = rs.getObject("map_approved");
-                        if (a != null) {
-                            if (a instanceof Number) mapApproved = ((Number) a).intValue();
-                            else if (a instanceof Boolean) mapApproved = Boolean.TRUE.equals(a) ? 1 : 0;
-                        }
-                    } catch (SQLException ignored) { }
-                    poi.setDraft(mapApproved == 0);
-                    pois.add(poi);
-                }
+        try (PreparedStatement stmt = conn.prepareStatement(query)) {
+            stmt.setInt(1, mapId);
+            ResultSet rs = stmt.executeQuery();
+            while (rs.next()) {
+                Poi poi = extractPoi(rs);
+                poi.setDraft(mapApproved(rs, 1) == 0);
+                pois.add(poi);
             }
         } catch (SQLException e) {
-            return getPoisForMapLegacy(mapId);
+            return getPoisForMapLegacy(conn, mapId);
         }
         return pois;
     }
 
+    /** map_pois.approved selected as map_approved (number or boolean depending on driver), or fallback if unreadable. */
+    private static int mapApproved(ResultSet rs, int fallback) {
+        try {
+            Object a = rs.getObject("map_approved");
+            if (a instanceof Number) return ((Number) a).intValue();
+            if (a instanceof Boolean) return Boolean.TRUE.equals(a) ? 1 : 0;
+        } catch (SQLException ignored) { }
+        return fallback;
+    }
+
     /** Fallback: try approved=1 only. Never returns draft POIs; if approved column missing, returns empty list. */
-    private static List<Poi> getPoisForMapLegacy(int mapId) {
+    private static List<Poi> getPoisForMapLegacy(Connection conn, int mapId) {
         List<Poi> pois = new ArrayList<>();
         String queryWithApproved = "SELECT p.* FROM pois p " +
                 "JOIN map_pois mp ON mp.poi_id = p.id AND mp.map_id = ? AND mp.approved = 1 " +
                 "ORDER BY mp.display_order";
-        try (Connection conn = DBConnector.getConnection()) {
-            if (conn == null) return pois;
-            try (PreparedStatement stmt = conn.prepareStatement(queryWithApproved)) {
-                stmt.setInt(1, mapId);
-                ResultSet rs = stmt.executeQuery();
-                while (rs.next()) pois.add(extractPoi(rs));
-            }
+        try (PreparedStatement stmt = conn.prepareStatement(queryWithApproved)) {
+            stmt.setInt(1, mapId);
+            ResultSet rs = stmt.executeQuery();
+            while (rs.next()) pois.add(extractPoi(rs));
         } catch (SQLException e) {
             // Column may not exist; do not return all POIs (would include draft). Return empty.
         }
@@ -211,6 +219,7 @@ public class PoiDAO {
             if (keys.next()) {
                 int poiId = keys.getInt(1);
                 System.out.println("PoiDAO: Created POI with ID " + poiId);
+                MapChangeLogDAO.record(conn, poi.getCityId(), null, MapChangeLogDAO.ENTITY_POI, poiId);
                 return poiId;
             }
         }
@@ -233,11 +242,55 @@ public class PoiDAO {
     }
 
     /**
-     * Update an existing POI.
+     * Create several POIs with one batched INSERT.
+     *
+     * @return generated ids, in the order of the given POIs
+     */
+    public static List<Integer> createPois(Connection conn, List<Poi> pois) throws SQLException {
+        List<Integer> ids = new ArrayList<>();
+        if (pois == null || pois.isEmpty()) return ids;
+        String query = "INSERT INTO pois (city_id, name, location, latitude, longitude, category, short_explanation, is_accessible) " +
+                "VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+
+        try (PreparedStatement stmt = conn.prepareStatement(query, Statement.RETURN_GENERATED_KEYS)) {
+            for (Poi poi : pois) {
+                stmt.setInt(1, poi.getCityId());
+                stmt.setString(2, poi.getName());
+                stmt.setString(3, poi.getLocation());
+                setDoubleOrNull(stmt, 4, poi.getLatitude());
+                setDoubleOrNull(stmt, 5, poi.getLongitude());
+                stmt.setString(6, poi.getCategory());
+                stmt.setString(7, poi.getShortExplanation());
+                stmt.setBoolean(8, poi.isAccessible());
+                stmt.addBatch();
+            }
+            stmt.executeBatch();
+            ResultSet keys = stmt.getGeneratedKeys();
+            while (keys.next()) {
+                ids.add(keys.getInt(1));
+            }
+        }
+        if (ids.size() != pois.size()) {
+            throw new SQLException("Batch insert of " + pois.size() + " POIs returned " + ids.size() + " ids");
+        }
+
+        java.util.Map<Integer, List<Integer>> idsByCity = new java.util.LinkedHashMap<>();
+        for (int i = 0; i < pois.size(); i++) {
+            idsByCity.computeIfAbsent(pois.get(i).getCityId(), k -> new ArrayList<>()).add(ids.get(i));
+        }
+        for (java.util.Map.Entry<Integer, List<Integer>> city : idsByCity.entrySet()) {
+            MapChangeLogDAO.recordAll(conn, city.getKey(), null, MapChangeLogDAO.ENTITY_POI, city.getValue());
+        }
+        System.out.println("PoiDAO: Created " + ids.size() + " POIs in one batch");
+        return ids;
+    }
+
+    /**
+     * Update an existing POI (bumps its row version, see EntityVersionDAO).
      */
     public static boolean updatePoi(Connection conn, Poi poi) throws SQLException {
         String query = "UPDATE pois SET name = ?, location = ?, latitude = ?, longitude = ?, category = ?, " +
-                "short_explanation = ?, is_accessible = ? WHERE id = ?";
+                "short_explanation = ?, is_accessible = ?, version = version + 1 WHERE id = ?";
 
         PreparedStatement stmt = conn.prepareStatement(query);
         stmt.setString(1, poi.getName());
@@ -251,9 +304,38 @@ public class PoiDAO {
 
         int affected = stmt.executeUpdate();
         System.out.println("PoiDAO: Updated POI " + poi.getId() + ", affected: " + affected);
+        if (affected > 0) MapChangeLogDAO.recordPoi(conn, poi.getId());
         return affected > 0;
     }
 
+    /**
+     * Update several POIs with one batched UPDATE.
+     */
+    public static void updatePois(Connection conn, List<Poi> pois) throws SQLException {
+        if (pois == null || pois.isEmpty()) return;
+        String query = "UPDATE pois SET name = ?, location = ?, latitude = ?, longitude = ?, category = ?, " +
+                "short_explanation = ?, is_accessible = ?, version = version + 1 WHERE id = ?";
+
+        List<Integer> ids = new ArrayList<>();
+        try (PreparedStatement stmt = conn.prepareStatement(query)) {
+            for (Poi poi : pois) {
+                stmt.setString(1, poi.getName());
+                stmt.setString(2, poi.getLocation());
+                setDoubleOrNull(stmt, 3, poi.getLatitude());
+                setDoubleOrNull(stmt, 4, poi.getLongitude());
+                stmt.setString(5, poi.getCategory());
+                stmt.setString(6, poi.getShortExplanation());
+                stmt.setBoolean(7, poi.isAccessible());
+                stmt.setInt(8, poi.getId());
+                stmt.addBatch();
+                ids.add(poi.getId());
+            }
+            stmt.executeBatch();
+        }
+        System.out.println("PoiDAO: Updated " + ids.size() + " POIs in one batch");
+        MapChangeLogDAO.recordPois(conn, ids);
+    }
+
     /**
      * Update an existing POI (standalone).
      */
@@ -295,8 +377,10 @@ public class PoiDAO {
             throw new SQLException("Cannot delete POI " + poiId + " - it is used in a tour");
         }
 
-        // First unlink from all maps
+        // First unlink from all maps and drop its stored distances
+        MapChangeLogDAO.recordPoi(conn, poiId);
         unlinkPoiFromAllMaps(conn, poiId);
+        PoiDistanceDAO.deleteDistancesForPoi(conn, poiId);
 
         // Then delete the POI
         String query = "DELETE FROM pois WHERE id = ?";
@@ -308,6 +392,42 @@ public class PoiDAO {
         return affected > 0;
     }
 
+    /**
+     * Delete several POIs with a constant number of statements.
+     * NOTE: Like deletePoi, this fails (before deleting anything) if any of them is referenced by a tour stop.
+     *
+     * @return number of POIs deleted
+     */
+    public static int deletePois(Connection conn, java.util.Collection<Integer> poiIds) throws SQLException {
+        if (poiIds == null || poiIds.isEmpty()) return 0;
+        java.util.Set<Integer> ids = new java.util.LinkedHashSet<>(poiIds);
+        StringBuilder placeholders = new StringBuilder();
+        for (int i = 0; i < ids.size(); i++) {
+            placeholders.append(i == 0 ? "?" : ",?");
+        }
+
+        PreparedStatement used = conn.prepareStatement(
+                "SELECT poi_id FROM tour_stops WHERE poi_id IN (" + placeholders + ") LIMIT 1");
+        setIds(used, 1, ids);
+        ResultSet rs = used.executeQuery();
+        if (rs.next()) {
+            throw new SQLException("Cannot delete POI " + rs.getInt(1) + " - it is used in a tour");
+        }
+
+        // First unlink from all maps and drop their stored distances
+        MapChangeLogDAO.recordPois(conn, ids);
+        PreparedStatement unlink = conn.prepareStatement("DELETE FROM map_pois WHERE poi_id IN (" + placeholders + ")");
+        setIds(unlink, 1, ids);
+        unlink.executeUpdate();
+        PoiDistanceDAO.deleteDistancesForPois(conn, ids);
+
+        PreparedStatement stmt = conn.prepareStatement("DELETE FROM pois WHERE id IN (" + placeholders + ")");
+        setIds(stmt, 1, ids);
+        int affected = stmt.executeUpdate();
+        System.out.println("PoiDAO: Deleted " + affected + " of " + ids.size() + " POIs");
+        return affected;
+    }
+
     /**
      * Check if a POI is used in any tour.
      */
@@ -367,6 +487,7 @@ public class PoiDAO {
             stmt.setObject(5, (!approved && linkedByUserId > 0) ? linkedByUserId : null, java.sql.Types.INTEGER);
             int affected = stmt.executeUpdate();
             System.out.println("PoiDAO: Linked POI " + poiId + " to map " + mapId + " (approved=" + approved + ", linkedBy=" + linkedByUserId + ")");
+            MapChangeLogDAO.recordForMap(conn, mapId, MapChangeLogDAO.ENTITY_POI, poiId);
             return affected > 0;
         } catch (SQLException e) {
             if (e.getMessage() != null && (e.getMessage().contains("approved") || e.getMessage().contains("linked_by_user_id"))) {
@@ -377,12 +498,63 @@ public class PoiDAO {
                 stmt.setInt(2, poiId);
                 stmt.setInt(3, displayOrder);
                 stmt.setInt(4, approved ? 1 : 0);
-                return stmt.executeUpdate() > 0;
+                int affected = stmt.executeUpdate();
+                MapChangeLogDAO.recordForMap(conn, mapId, MapChangeLogDAO.ENTITY_POI, poiId);
+                return affected > 0;
             }
             throw e;
         }
     }
 
+    /**
+     * Batch form of linkPoiToMap: upsert several map_pois links with one batched INSERT.
+     */
+    public static void linkPoisToMaps(Connection conn, List<MapChanges.PoiMapLink> links, boolean approved, int linkedByUserId)
+            throws SQLException {
+        if (links == null || links.isEmpty()) return;
+        try {
+            String query = "INSERT INTO map_pois (map_id, poi_id, display_order, approved, linked_by_user_id) VALUES (?, ?, ?, ?, ?) " +
+                    "ON DUPLICATE KEY UPDATE display_order = VALUES(display_order), approved = VALUES(approved), linked_by_user_id = VALUES(linked_by_user_id)";
+            try (PreparedStatement stmt = conn.prepareStatement(query)) {
+                for (MapChanges.PoiMapLink link : links) {
+                    stmt.setInt(1, link.mapId);
+                    stmt.setInt(2, link.poiId);
+                    stmt.setInt(3, link.displayOrder);
+                    stmt.setInt(4, approved ? 1 : 0);
+                    stmt.setObject(5, (!approved && linkedByUserId > 0) ? linkedByUserId : null, java.sql.Types.INTEGER);
+                    stmt.addBatch();
+                }
+                stmt.executeBatch();
+            }
+        } catch (SQLException e) {
+            if (e.getMessage() != null && (e.getMessage().contains("approved") || e.getMessage().contains("linked_by_user_id"))) {
+                // Fallback when linked_by_user_id column missing: still honour approved so draft stays draft
+                try (PreparedStatement stmt = conn.prepareStatement(
+                        "INSERT INTO map_pois (map_id, poi_id, display_order, approved) VALUES (?, ?, ?, ?) ON DUPLICATE KEY UPDATE display_order = VALUES(display_order), approved = VALUES(approved)")) {
+                    for (MapChanges.PoiMapLink link : links) {
+                        stmt.setInt(1, link.mapId);
+                        stmt.setInt(2, link.poiId);
+                        stmt.setInt(3, link.displayOrder);
+                        stmt.setInt(4, approved ? 1 : 0);
+                        stmt.addBatch();
+                    }
+                    stmt.executeBatch();
+                }
+            } else {
+                throw e;
+            }
+        }
+        System.out.println("PoiDAO: Linked " + links.size() + " POIs in one batch (approved=" + approved + ", linkedBy=" + linkedByUserId + ")");
+
+        java.util.Map<Integer, List<Integer>> poiIdsByMap = new java.util.LinkedHashMap<>();
+        for (MapChanges.PoiMapLink link : links) {
+            poiIdsByMap.computeIfAbsent(link.mapId, k -> new ArrayList<>()).add(link.poiId);
+        }
+        for (java.util.Map.Entry<Integer, List<Integer>> map : poiIdsByMap.entrySet()) {
+            MapChangeLogDAO.recordAllForMap(conn, map.getKey(), MapChangeLogDAO.ENTITY_POI, map.getValue());
+        }
+    }
+
     /**
      * Approve all draft POI links on a map (set approved=1, linked_by_user_id=NULL).
      * Call when manager publishes so POIs they saved as draft become visible.
@@ -393,7 +565,10 @@ public class PoiDAO {
             PreparedStatement stmt = conn.prepareStatement(sql);
             stmt.setInt(1, mapId);
             int n = stmt.executeUpdate();
-            if (n > 0) System.out.println("PoiDAO: Approved " + n + " draft link(s) for map " + mapId);
+            if (n > 0) {
+                System.out.println("PoiDAO: Approved " + n + " draft link(s) for map " + mapId);
+                MapChangeLogDAO.recordForMap(conn, mapId, MapChangeLogDAO.ENTITY_POI, 0);
+            }
             return n;
         } catch (SQLException e) {
             if (e.getMessage() != null && (e.getMessage().contains("approved") || e.getMessage().contains("linked_by_user_id")))
@@ -409,7 +584,9 @@ public class PoiDAO {
         String query = "DELETE FROM map_pois WHERE map_id = ?";
         PreparedStatement stmt = conn.prepareStatement(query);
         stmt.setInt(1, mapId);
-        return stmt.executeUpdate();
+        int n = stmt.executeUpdate();
+        if (n > 0) MapChangeLogDAO.recordForMap(conn, mapId, MapChangeLogDAO.ENTITY_POI, 0);
+        return n;
     }
 
     /**
@@ -422,7 +599,9 @@ public class PoiDAO {
                 String sql = "DELETE FROM map_pois WHERE map_id = ? AND approved = 1";
                 PreparedStatement stmt = conn.prepareStatement(sql);
                 stmt.setInt(1, mapId);
-                return stmt.executeUpdate();
+                int n = stmt.executeUpdate();
+                if (n > 0) MapChangeLogDAO.recordForMap(conn, mapId, MapChangeLogDAO.ENTITY_POI, 0);
+                return n;
             } catch (SQLException e) {
                 if (e.getMessage() != null && e.getMessage().contains("approved")) return 0;
                 throw e;
@@ -441,7 +620,9 @@ public class PoiDAO {
             for (Integer id : keepPoiIds) {
                 stmt.setInt(idx++, id);
             }
-            return stmt.executeUpdate();
+            int n = stmt.executeUpdate();
+            if (n > 0) MapChangeLogDAO.recordForMap(conn, mapId, MapChangeLogDAO.ENTITY_POI, 0);
+            return n;
         } catch (SQLException e) {
             if (e.getMessage() != null && e.getMessage().contains("approved")) return 0;
             throw e;
@@ -460,6 +641,7 @@ public class PoiDAO {
 
         int affected = stmt.executeUpdate();
         System.out.println("PoiDAO: Unlinked POI " + poiId + " from map " + mapId);
+        if (affected > 0) MapChangeLogDAO.recordForMap(conn, mapId, MapChangeLogDAO.ENTITY_POI, poiId);
         return affected > 0;
     }
 
@@ -486,6 +668,27 @@ public class PoiDAO {
         stmt.executeUpdate();
     }
 
+    /**
+     * Get the published POIs on any map the given POI is linked to, excluding the POI itself.
+     * These are the POIs a tour through this POI can visit (used for incremental distances).
+     */
+    public static List<Poi> getPoisSharingMapWith(Connection conn, int poiId) throws SQLException {
+        List<Poi> pois = new ArrayList<>();
+        String query = "SELECT DISTINCT p.* FROM pois p " +
+                "JOIN map_pois mp ON mp.poi_id = p.id AND mp.approved = 1 " +
+                "WHERE mp.map_id IN (SELECT self.map_id FROM map_pois self WHERE self.poi_id = ?) " +
+                "AND p.id <> ?";
+        try (PreparedStatement stmt = conn.prepareStatement(query)) {
+            stmt.setInt(1, poiId);
+            stmt.setInt(2, poiId);
+            ResultSet rs = stmt.executeQuery();
+            while (rs.next()) {
+                pois.add(extractPoi(rs));
+            }
+        }
+        return pois;
+    }
+
     /**
      * Get all POI IDs linked to a map (from map_pois). Used when deleting a map so we can delete those POIs everywhere.
      */
@@ -505,6 +708,11 @@ public class PoiDAO {
      * Delete all tour stops that reference this POI (so the POI can be removed from the system).
      */
     public static int deleteTourStopsForPoi(Connection conn, int poiId) throws SQLException {
+        List<Integer> tourIds = TourDAO.getTourIdsForPois(conn, java.util.Collections.singletonList(poiId));
+        EntityVersionDAO.bumpAll(conn, EntityVersionDAO.TOURS, tourIds);
+        for (Integer tourId : tourIds) {
+            MapChangeLogDAO.recordTour(conn, tourId);
+        }
         String query = "DELETE FROM tour_stops WHERE poi_id = ?";
         PreparedStatement stmt = conn.prepareStatement(query);
         stmt.setInt(1, poiId);
@@ -512,12 +720,14 @@ public class PoiDAO {
     }
 
     /**
-     * Delete a POI completely: remove from tour_stops, unlink from all maps, then delete the POI row.
+     * Delete a POI completely: remove from tour_stops, unlink from all maps, drop its distances, then delete the POI row.
      * Use when deleting a map so its POIs are removed everywhere (including from tours).
      */
     public static boolean deletePoiCompletely(Connection conn, int poiId) throws SQLException {
+        MapChangeLogDAO.recordPoi(conn, poiId);
         deleteTourStopsForPoi(conn, poiId);
         unlinkPoiFromAllMaps(conn, poiId);
+        PoiDistanceDAO.deleteDistancesForPoi(conn, poiId);
         String query = "DELETE FROM pois WHERE id = ?";
         PreparedStatement stmt = conn.prepareStatement(query);
         stmt.setInt(1, poiId);
@@ -528,6 +738,87 @@ public class PoiDAO {
         return affected > 0;
     }
 
+    /**
+     * Get all published POIs (at least one approved map link).
+     * Used to build the in-memory search indexes at startup.
+     */
+    public static List<Poi> getApprovedPois() {
+        List<Poi> pois = new ArrayList<>();
+        String query = "SELECT p.* FROM pois p " +
+                "WHERE EXISTS (SELECT 1 FROM map_pois mp WHERE mp.poi_id = p.id AND mp.approved = 1)";
+
+        try (Connection conn = DBConnector.getConnection()) {
+            if (conn == null)
+                return pois;
+
+            PreparedStatement stmt = conn.prepareStatement(query);
+            ResultSet rs = stmt.executeQuery();
+            while (rs.next()) {
+                pois.add(extractPoi(rs));
+            }
+        } catch (SQLException e) {
+            System.out.println("PoiDAO: Failed to load approved POIs - " + e.getMessage());
+        }
+        return pois;
+    }
+
+    /**
+     * Get the subset of the given POIs that are published (approved link).
+     * POIs missing from the result were deleted, unlinked or never published.
+     */
+    public static List<Poi> getApprovedPois(Connection conn, java.util.Collection<Integer> poiIds)
+            throws SQLException {
+        List<Poi> pois = new ArrayList<>();
+        if (poiIds == null || poiIds.isEmpty())
+            return pois;
+
+        StringBuilder placeholders = new StringBuilder();
+        for (int i = 0; i < poiIds.size(); i++) {
+            placeholders.append(i == 0 ? "?" : ",?");
+        }
+        String query = "SELECT p.* FROM pois p " +
+                "WHERE p.id IN (" + placeholders + ") " +
+                "AND EXISTS (SELECT 1 FROM map_pois mp WHERE mp.poi_id = p.id AND mp.approved = 1)";
+
+        PreparedStatement stmt = conn.prepareStatement(query);
+        int index = 1;
+        for (Integer id : poiIds) {
+            stmt.setInt(index++, id != null ? id : 0);
+        }
+        ResultSet rs = stmt.executeQuery();
+        while (rs.next()) {
+            pois.add(extractPoi(rs));
+        }
+        return pois;
+    }
+
+    /**
+     * Get the POIs with the given IDs (any approval state). Missing IDs are skipped.
+     */
+    public static List<Poi> getPoisByIds(Connection conn, java.util.Collection<Integer> poiIds) throws SQLException {
+        List<Poi> pois = new ArrayList<>();
+        if (poiIds == null || poiIds.isEmpty())
+            return pois;
+
+        java.util.Set<Integer> ids = new java.util.LinkedHashSet<>(poiIds);
+        StringBuilder placeholders = new StringBuilder();
+        for (int i = 0; i < ids.size(); i++) {
+            placeholders.append(i == 0 ? "?" : ",?");
+        }
+        String query = "SELECT * FROM pois WHERE id IN (" + placeholders + ")";
+        try (PreparedStatement stmt = conn.prepareStatement(query)) {
+            int index = 1;
+            for (Integer id : ids) {
+                stmt.setInt(index++, id != null ? id : 0);
+            }
+            ResultSet rs = stmt.executeQuery();
+            while (rs.next()) {
+                pois.add(extractPoi(rs));
+            }
+        }
+        return pois;
+    }
+
     /**
      * Get a POI by ID (uses its own connection).
      */
@@ -553,9 +844,9 @@ public class PoiDAO {
     }
 
     /**
-     * Extract POI from ResultSet.
+     * Extract POI from ResultSet (the POI's columns under their own names, e.g. p.*).
      */
-    private static Poi extractPoi(ResultSet rs) throws SQLException {
+    static Poi extractPoi(ResultSet rs) throws SQLException {
         Double lat = null, lng = null;
         try {
             double d = rs.getDouble("latitude");
@@ -565,7 +856,7 @@ public class PoiDAO {
         } catch (SQLException ignored) {
             // columns may not exist in older DB
         }
-        return new Poi(
+        Poi poi = new Poi(
                 rs.getInt("id"),
                 rs.getInt("city_id"),
                 rs.getString("name"),
@@ -575,6 +866,12 @@ public class PoiDAO {
                 rs.getString("category"),
                 rs.getString("short_explanation"),
                 rs.getBoolean("is_accessible"));
+        try {
+            poi.setVersion(rs.getInt("version"));
+        } catch (SQLException ignored) {
+            // column may not exist before migration (EntityVersionDAO)
+        }
+        return poi;
     }
 
     private static void setDoubleOrNull(PreparedStatement stmt, int index, Double value) throws SQLException {
@@ -584,4 +881,11 @@ public class PoiDAO {
             stmt.setNull(index, java.sql.Types.DOUBLE);
         }
     }
+
+    private static void setIds(PreparedStatement stmt, int firstIndex, java.util.Collection<Integer> ids) throws SQLException {
+        int index = firstIndex;
+        for (Integer id : ids) {
+            stmt.setInt(index++, id);
+        }
+    }
 }
@@ -2,16 +2,26 @@ package server.dao;
 
 import common.Poi;
 import server.DBConnector;
-import server.service.OsrmClient;
+import server.service.DistanceCache;
+import server.service.RoutingEngine;
 
 import java.sql.*;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * Stores and retrieves distances between POI pairs (for tour planning).
- * Uses OSRM public API for road-network distance; falls back to haversine if OSRM fails.
+ * Uses the configured RoutingEngine (OSRM API or the offline road graph) for road-network
+ * distance; falls back to haversine if routing fails.
  * We store only one direction: poi_id_a < poi_id_b.
+ *
+ * Reads go through DistanceCache: a tour or map loads its pairs with one query
+ * ({@link #preloadDistances}) and every write is written through to the cache.
  */
 public class PoiDistanceDAO {
 
@@ -22,6 +32,8 @@ public class PoiDistanceDAO {
         int a = Math.min(poiId1, poiId2);
         int b = Math.max(poiId1, poiId2);
         if (a == b) return 0.0;
+        Double cached = DistanceCache.getInstance().get(a, b);
+        if (cached != null) return cached;
 
         String query = "SELECT distance_meters FROM poi_distances WHERE poi_id_a = ? AND poi_id_b = ?";
         try (Connection conn = DBConnector.getConnection()) {
@@ -31,7 +43,9 @@ public class PoiDistanceDAO {
             stmt.setInt(2, b);
             ResultSet rs = stmt.executeQuery();
             if (rs.next()) {
-                return rs.getDouble("distance_meters");
+                double meters = rs.getDouble("distance_meters");
+                DistanceCache.getInstance().put(a, b, meters);
+                return meters;
             }
         } catch (SQLException e) {
             e.printStackTrace();
@@ -48,6 +62,7 @@ public class PoiDistanceDAO {
 
         try (Connection conn = DBConnector.getConnection()) {
             if (conn == null) return out;
+            preloadDistances(conn, poiIds);
             for (int i = 0; i < poiIds.size(); i++) {
                 for (int j = i + 1; j < poiIds.size(); j++) {
                     int a = Math.min(poiIds.get(i), poiIds.get(j));
@@ -74,21 +89,180 @@ public class PoiDistanceDAO {
         return getDistanceInternal(conn, a, b);
     }
 
+    /**
+     * Distances of consecutive legs (poiIds[i] to poiIds[i + 1]) of a tour in stop order.
+     * Loads the tour's pairs with a single query unless every leg is cached already;
+     * legs that are not stored at all are computed (see getDistance). Entries are null
+     * when a leg cannot be computed.
+     */
+    public static List<Double> getLegDistances(Connection conn, List<Integer> poiIds) throws SQLException {
+        List<Double> legs = new ArrayList<>();
+        if (poiIds == null || poiIds.size() < 2) return legs;
+        DistanceCache cache = DistanceCache.getInstance();
+        for (int i = 1; i < poiIds.size(); i++) {
+            int a = poiIds.get(i - 1);
+            int b = poiIds.get(i);
+            if (a != b && !cache.contains(a, b)) {
+                preloadDistances(conn, poiIds);
+                break;
+            }
+        }
+        for (int i = 1; i < poiIds.size(); i++) {
+            legs.add(getDistance(conn, poiIds.get(i - 1), poiIds.get(i)));
+        }
+        return legs;
+    }
+
+    /**
+     * Full distance matrix between the given POIs (matrix[i][j] for poiIds i and j), e.g. for
+     * tour optimization. Stored pairs come from the cache / one bulk query; missing pairs are
+     * computed with one routing-engine matrix call and stored. Cells are NaN when a POI does
+     * not exist or has no coordinates.
+     */
+    public static double[][] getDistanceMatrix(Connection conn, List<Integer> poiIds) throws SQLException {
+        int n = poiIds.size();
+        double[][] matrix = new double[n][n];
+        for (double[] row : matrix) {
+            java.util.Arrays.fill(row, Double.NaN);
+        }
+        preloadDistances(conn, poiIds);
+        DistanceCache cache = DistanceCache.getInstance();
+        boolean missing = false;
+        for (int i = 0; i < n; i++) {
+            matrix[i][i] = 0.0;
+            for (int j = i + 1; j < n; j++) {
+                Double d = poiIds.get(i).equals(poiIds.get(j)) ? Double.valueOf(0.0) : cache.get(poiIds.get(i), poiIds.get(j));
+                if (d != null) {
+                    matrix[i][j] = d;
+                    matrix[j][i] = d;
+                } else {
+                    missing = true;
+                }
+            }
+        }
+        if (!missing) {
+            return matrix;
+        }
+
+        Map<Integer, Poi> byId = new HashMap<>();
+        for (Poi poi : PoiDAO.getPoisByIds(conn, poiIds)) {
+            byId.put(poi.getId(), poi);
+        }
+        List<Poi> pois = new ArrayList<>(n);
+        for (Integer id : poiIds) {
+            Poi poi = byId.get(id);
+            pois.add(poi != null ? poi : new Poi());
+        }
+        double[][] computed = RoutingEngine.getInstance().getDistanceMatrix(pois);
+        double[][] newPairs = new double[n][n];
+        for (int i = 0; i < n; i++) {
+            java.util.Arrays.fill(newPairs[i], Double.NaN);
+            for (int j = i + 1; j < n; j++) {
+                if (Double.isNaN(matrix[i][j])) {
+                    matrix[i][j] = computed[i][j];
+                    matrix[j][i] = computed[i][j];
+                    newPairs[i][j] = computed[i][j];
+                }
+            }
+        }
+        storeDistances(conn, pois, newPairs);
+        return matrix;
+    }
+
+    /**
+     * Load all stored distances between the given POIs into the cache with one query.
+     *
+     * @return number of pairs loaded
+     */
+    public static int preloadDistances(Connection conn, Collection<Integer> poiIds) throws SQLException {
+        Set<Integer> ids = new LinkedHashSet<>(poiIds);
+        if (ids.size() < 2) return 0;
+        StringBuilder placeholders = new StringBuilder();
+        for (int i = 0; i < ids.size(); i++) {
+            placeholders.append(i == 0 ? "?" : ",?");
+        }
+        String query = "SELECT poi_id_a, poi_id_b, distance_meters FROM poi_distances " +
+                "WHERE poi_id_a IN (" + placeholders + ") AND poi_id_b IN (" + placeholders + ")";
+        DistanceCache cache = DistanceCache.getInstance();
+        int loaded = 0;
+        try (PreparedStatement stmt = conn.prepareStatement(query)) {
+            int index = 1;
+            for (int round = 0; round < 2; round++) {
+                for (Integer id : ids) {
+                    stmt.setInt(index++, id != null ? id : 0);
+                }
+            }
+            ResultSet rs = stmt.executeQuery();
+            while (rs.next()) {
+                cache.put(rs.getInt("poi_id_a"), rs.getInt("poi_id_b"), rs.getDouble("distance_meters"));
+                loaded++;
+            }
+        }
+        return loaded;
+    }
+
+    /**
+     * Load the stored distances of all consecutive legs of the given tours (POI ids in stop order)
+     * that are not cached yet, with one query for all tours.
+     *
+     * @return number of pairs loaded
+     */
+    public static int preloadLegDistances(Connection conn, List<List<Integer>> toursPoiIds) throws SQLException {
+        DistanceCache cache = DistanceCache.getInstance();
+        Set<Long> seen = new java.util.HashSet<>();
+        List<int[]> pairs = new ArrayList<>();
+        for (List<Integer> poiIds : toursPoiIds) {
+            for (int i = 1; i < poiIds.size(); i++) {
+                int a = Math.min(poiIds.get(i - 1), poiIds.get(i));
+                int b = Math.max(poiIds.get(i - 1), poiIds.get(i));
+                if (a == b || cache.contains(a, b) || !seen.add(((long) a << 32) | (b & 0xffffffffL))) continue;
+                pairs.add(new int[] { a, b });
+            }
+        }
+        if (pairs.isEmpty()) return 0;
+        StringBuilder placeholders = new StringBuilder();
+        for (int i = 0; i < pairs.size(); i++) {
+            placeholders.append(i == 0 ? "(?,?)" : ",(?,?)");
+        }
+        String query = "SELECT poi_id_a, poi_id_b, distance_meters FROM poi_distances " +
+                "WHERE (poi_id_a, poi_id_b) IN (" + placeholders + ")";
+        int loaded = 0;
+        try (PreparedStatement stmt = conn.prepareStatement(query)) {
+            int index = 1;
+            for (int[] pair : pairs) {
+                stmt.setInt(index++, pair[0]);
+                stmt.setInt(index++, pair[1]);
+            }
+            ResultSet rs = stmt.executeQuery();
+            while (rs.next()) {
+                cache.put(rs.getInt("poi_id_a"), rs.getInt("poi_id_b"), rs.getDouble("distance_meters"));
+                loaded++;
+            }
+        }
+        return loaded;
+    }
+
     private static Double getDistanceInternal(Connection conn, int a, int b) throws SQLException {
+        Double cached = DistanceCache.getInstance().get(a, b);
+        if (cached != null) return cached;
         String query = "SELECT distance_meters FROM poi_distances WHERE poi_id_a = ? AND poi_id_b = ?";
         PreparedStatement stmt = conn.prepareStatement(query);
         stmt.setInt(1, a);
         stmt.setInt(2, b);
         ResultSet rs = stmt.executeQuery();
-        if (rs.next()) return rs.getDouble("distance_meters");
-        // Not stored: compute via OSRM (road distance) and store
+        if (rs.next()) {
+            double meters = rs.getDouble("distance_meters");
+            DistanceCache.getInstance().put(a, b, meters);
+            return meters;
+        }
+        // Not stored: compute via the routing engine (road distance) and store
         Double meters = computeAndStoreDistance(conn, a, b);
         return meters;
     }
 
     /**
-     * Compute road distance between two POIs using OSRM, store in DB, and return.
-     * Falls back to haversine if POIs lack coordinates or OSRM fails.
+     * Compute road distance between two POIs using the routing engine, store in DB, and return.
+     * Falls back to haversine if routing fails; returns null if POIs lack coordinates.
      */
     private static Double computeAndStoreDistance(Connection conn, int poiId1, int poiId2) throws SQLException {
         int a = Math.min(poiId1, poiId2);
@@ -100,7 +274,7 @@ public class PoiDistanceDAO {
                 || p2.getLatitude() == null || p2.getLongitude() == null) {
             return null;
         }
-        Double meters = OsrmClient.getInstance().getDistanceMeters(
+        Double meters = RoutingEngine.getInstance().getDistanceMeters(
                 p1.getLatitude(), p1.getLongitude(),
                 p2.getLatitude(), p2.getLongitude());
         if (meters == null) {
@@ -125,35 +299,146 @@ public class PoiDistanceDAO {
         stmt.setInt(2, b);
         stmt.setDouble(3, distanceMeters);
         stmt.executeUpdate();
+        DistanceCache.getInstance().put(a, b, distanceMeters);
     }
 
     /**
-     * Recompute and store distances for all pairs in the given POI list using OSRM (road network).
-     * Falls back to haversine if OSRM fails. POIs without lat/lon are skipped.
+     * Recompute and store distances for all pairs in the given POI list (road network).
+     * One matrix call replaces the per-pair route calls; cells the engine cannot route
+     * fall back to haversine. POIs without lat/lon are skipped.
      */
     public static void recomputeAndStoreDistances(Connection conn, java.util.List<Poi> pois) throws SQLException {
         if (pois == null || pois.size() < 2) return;
-        OsrmClient osrm = OsrmClient.getInstance();
+        double[][] matrix = RoutingEngine.getInstance().getDistanceMatrix(pois);
+        storeDistances(conn, pois, matrix);
+    }
 
+    /**
+     * Upsert every pair of the matrix (matrix[i][j] is the distance between pois i and j)
+     * in a single JDBC batch. NaN cells and POIs without an id are skipped.
+     *
+     * @return number of pairs written
+     */
+    public static int storeDistances(Connection conn, java.util.List<Poi> pois, double[][] matrix) throws SQLException {
+        String query = "INSERT INTO poi_distances (poi_id_a, poi_id_b, distance_meters) VALUES (?, ?, ?) " +
+                "ON DUPLICATE KEY UPDATE distance_meters = VALUES(distance_meters)";
+        int pairs = 0;
+        try (PreparedStatement stmt = conn.prepareStatement(query)) {
+            for (int i = 0; i < pois.size(); i++) {
+                int id1 = pois.get(i).getId();
+                if (id1 <= 0) continue;
+                for (int j = i + 1; j < pois.size(); j++) {
+                    int id2 = pois.get(j).getId();
+                    if (id2 <= 0 || id1 == id2 || Double.isNaN(matrix[i][j])) continue;
+                    stmt.setInt(1, Math.min(id1, id2));
+                    stmt.setInt(2, Math.max(id1, id2));
+                    stmt.setDouble(3, matrix[i][j]);
+                    stmt.addBatch();
+                    pairs++;
+                }
+            }
+            if (pairs > 0) {
+                stmt.executeBatch();
+            }
+        }
+        DistanceCache cache = DistanceCache.getInstance();
         for (int i = 0; i < pois.size(); i++) {
-            Poi p1 = pois.get(i);
-            if (p1.getLatitude() == null || p1.getLongitude() == null || p1.getId() <= 0) continue;
             for (int j = i + 1; j < pois.size(); j++) {
-                Poi p2 = pois.get(j);
-                if (p2.getLatitude() == null || p2.getLongitude() == null || p2.getId() <= 0) continue;
-                Double meters = osrm.getDistanceMeters(
-                        p1.getLatitude(), p1.getLongitude(),
-                        p2.getLatitude(), p2.getLongitude());
-                if (meters == null) {
-                    meters = haversineMeters(
-                            p1.getLatitude(), p1.getLongitude(),
-                            p2.getLatitude(), p2.getLongitude());
+                cache.put(pois.get(i).getId(), pois.get(j).getId(), matrix[i][j]);
+            }
+        }
+        return pairs;
+    }
+
+    // ==================== Incremental maintenance ====================
+
+    /**
+     * Recompute the distances between one added or moved POI and the given other POIs
+     * (one matrix row instead of every pair of the map) and upsert them in one batch.
+     *
+     * @return number of pairs written
+     */
+    public static int recomputeDistancesForPoi(Connection conn, Poi poi, java.util.List<Poi> others) throws SQLException {
+        if (poi == null || poi.getId() <= 0 || others == null || others.isEmpty()) return 0;
+        double[] row = RoutingEngine.getInstance().getDistancesFrom(poi, others);
+
+        String query = "INSERT INTO poi_distances (poi_id_a, poi_id_b, distance_meters) VALUES (?, ?, ?) " +
+                "ON DUPLICATE KEY UPDATE distance_meters = VALUES(distance_meters)";
+        int pairs = 0;
+        try (PreparedStatement stmt = conn.prepareStatement(query)) {
+            for (int k = 0; k < others.size(); k++) {
+                int otherId = others.get(k).getId();
+                if (otherId <= 0 || otherId == poi.getId() || Double.isNaN(row[k])) continue;
+                stmt.setInt(1, Math.min(poi.getId(), otherId));
+                stmt.setInt(2, Math.max(poi.getId(), otherId));
+                stmt.setDouble(3, row[k]);
+                stmt.addBatch();
+                pairs++;
+            }
+            if (pairs > 0) {
+                stmt.executeBatch();
+            }
+        }
+        // A moved POI may keep stale pairs with POIs it no longer shares a map with
+        DistanceCache cache = DistanceCache.getInstance();
+        cache.removePoi(poi.getId());
+        for (int k = 0; k < others.size(); k++) {
+            cache.put(poi.getId(), others.get(k).getId(), row[k]);
+        }
+        return pairs;
+    }
+
+    /**
+     * Drop every stored distance involving the POI (call before deleting it).
+     *
+     * @return number of rows removed
+     */
+    public static int deleteDistancesForPoi(Connection conn, int poiId) throws SQLException {
+        DistanceCache.getInstance().removePoi(poiId);
+        String query = "DELETE FROM poi_distances WHERE poi_id_a = ? OR poi_id_b = ?";
+        try (PreparedStatement stmt = conn.prepareStatement(query)) {
+            stmt.setInt(1, poiId);
+            stmt.setInt(2, poiId);
+            return stmt.executeUpdate();
+        }
+    }
+
+    /**
+     * Drop every stored distance involving any of the POIs in one statement (call before deleting them).
+     *
+     * @return number of rows removed
+     */
+    public static int deleteDistancesForPois(Connection conn, Collection<Integer> poiIds) throws SQLException {
+        if (poiIds == null || poiIds.isEmpty()) return 0;
+        Set<Integer> ids = new LinkedHashSet<>(poiIds);
+        DistanceCache cache = DistanceCache.getInstance();
+        StringBuilder placeholders = new StringBuilder();
+        for (Integer id : ids) {
+            cache.removePoi(id);
+            placeholders.append(placeholders.length() == 0 ? "?" : ",?");
+        }
+        String query = "DELETE FROM poi_distances WHERE poi_id_a IN (" + placeholders + ") OR poi_id_b IN (" + placeholders + ")";
+        try (PreparedStatement stmt = conn.prepareStatement(query)) {
+            int index = 1;
+            for (int pass = 0; pass < 2; pass++) {
+                for (Integer id : ids) {
+                    stmt.setInt(index++, id);
                 }
-                setDistance(conn, p1.getId(), p2.getId(), meters);
             }
+            return stmt.executeUpdate();
         }
     }
 
+    /**
+     * True if an update moves the POI, i.e. its stored distances are no longer valid.
+     * Name, category and other edits keep the stored distances.
+     */
+    public static boolean coordinatesChanged(Poi stored, Poi updated) {
+        if (stored == null || updated == null) return true;
+        return !java.util.Objects.equals(stored.getLatitude(), updated.getLatitude())
+                || !java.util.Objects.equals(stored.getLongitude(), updated.getLongitude());
+    }
+
     /**
      * Haversine formula: distance in meters between two (lat, lon) points.
      */
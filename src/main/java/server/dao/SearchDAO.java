@@ -3,6 +3,8 @@ package server.dao;
 import common.Poi;
 import common.dto.CitySearchResult;
 import common.dto.MapSummary;
+import common.dto.PaginatedRequest;
+import common.dto.PaginatedResponse;
 import server.DBConnector;
 
 import java.sql.*;
@@ -365,6 +367,341 @@ public class SearchDAO {
         return results;
     }
 
+    // ==================== Paginated search (keyset) ====================
+
+    /**
+     * One page of catalog / search results ordered by (city name, city id).
+     * Uses keyset pagination (no OFFSET) and loads maps and tour counts for the
+     * page's cities with one query each instead of per city.
+     *
+     * Both criteria empty = full catalog; cityName only = city search; poiName set =
+     * cities with maps containing a matching approved POI (optionally also matching cityName).
+     * The total count is only computed for the first page (-1 afterwards).
+     */
+    public static PaginatedResponse<CitySearchResult> searchPage(String cityName, String poiName,
+            PaginatedRequest page) {
+        return searchPage(cityName, poiName, page, null);
+    }
+
+    /**
+     * Same as {@link #searchPage(String, String, PaginatedRequest)}, restricted to the given
+     * city ids (e.g. cities matching a facet filter). Null = no restriction.
+     */
+    public static PaginatedResponse<CitySearchResult> searchPage(String cityName, String poiName,
+            PaginatedRequest page, java.util.Collection<Integer> restrictToCityIds) {
+        if (restrictToCityIds != null && restrictToCityIds.isEmpty())
+            return PaginatedResponse.empty();
+        String cityPattern = (cityName == null || cityName.trim().isEmpty()) ? null
+                : "%" + cityName.trim().toLowerCase() + "%";
+        String poiPattern = (poiName == null || poiName.trim().isEmpty()) ? null
+                : "%" + poiName.trim().toLowerCase() + "%";
+
+        List<Object> params = new ArrayList<>();
+        StringBuilder where = new StringBuilder(" FROM cities c WHERE ");
+        if (poiPattern == null) {
+            where.append("(c.approved = 1 OR c.approved IS NULL) " +
+                    "AND EXISTS (SELECT 1 FROM maps m WHERE m.city_id = c.id AND m.approved = 1)");
+        } else {
+            where.append("EXISTS (SELECT 1 FROM maps m " +
+                    "JOIN map_pois mp ON mp.map_id = m.id AND mp.approved = 1 " +
+                    "JOIN pois p ON p.id = mp.poi_id " +
+                    "WHERE m.city_id = c.id AND LOWER(TRIM(p.name)) LIKE ?)");
+            params.add(poiPattern);
+        }
+        if (cityPattern != null) {
+            where.append(" AND LOWER(TRIM(c.name)) LIKE ?");
+            params.add(cityPattern);
+        }
+        if (restrictToCityIds != null) {
+            StringBuilder placeholders = new StringBuilder();
+            for (Integer id : restrictToCityIds) {
+                placeholders.append(placeholders.length() == 0 ? "?" : ",?");
+                params.add(id);
+            }
+            where.append(" AND c.id IN (").append(placeholders).append(")");
+        }
+
+        try (Connection conn = DBConnector.getConnection()) {
+            if (conn == null)
+                return PaginatedResponse.empty();
+
+            int totalCount = -1;
+            if (!page.hasCursor()) {
+                try (PreparedStatement stmt = conn.prepareStatement("SELECT COUNT(*)" + where)) {
+                    bindAll(stmt, params, 1);
+                    ResultSet rs = stmt.executeQuery();
+                    totalCount = rs.next() ? rs.getInt(1) : 0;
+                }
+            }
+
+            String pageQuery = "SELECT c.id, c.name, c.description, c.price" + where +
+                    (page.hasCursor() ? " AND (c.name > ? OR (c.name = ? AND c.id > ?))" : "") +
+                    " ORDER BY c.name, c.id LIMIT ?";
+            List<CitySearchResult> cities = new ArrayList<>();
+            try (PreparedStatement stmt = conn.prepareStatement(pageQuery)) {
+                int index = bindAll(stmt, params, 1);
+                if (page.hasCursor()) {
+                    String afterKey = page.getAfterKey() != null ? page.getAfterKey() : "";
+                    stmt.setString(index++, afterKey);
+                    stmt.setString(index++, afterKey);
+                    stmt.setInt(index++, page.getAfterId());
+                }
+                // Fetch one extra row to know whether another page exists
+                stmt.setInt(index, page.getPageSize() + 1);
+                ResultSet rs = stmt.executeQuery();
+                while (rs.next()) {
+                    cities.add(new CitySearchResult(
+                            rs.getInt("id"),
+                            rs.getString("name"),
+                            rs.getString("description"),
+                            rs.getDouble("price")));
+                }
+            }
+
+            boolean hasMore = cities.size() > page.getPageSize();
+            if (hasMore) {
+                cities = new ArrayList<>(cities.subList(0, page.getPageSize()));
+            }
+            attachMaps(conn, cities, poiPattern);
+
+            CitySearchResult last = cities.isEmpty() ? null : cities.get(cities.size() - 1);
+            System.out.println("SearchDAO: Page " + page + " -> " + cities.size() + " cities (more=" + hasMore + ")");
+            return PaginatedResponse.keyset(cities, totalCount, page.getPageNumber(), page.getPageSize(), hasMore,
+                    last != null ? last.getCityName() : null, last != null ? last.getCityId() : 0);
+
+        } catch (SQLException e) {
+            // Fallback when approved columns don't exist (no migration run yet): paginate in memory
+            System.out.println("SearchDAO: Keyset page failed, using in-memory fallback - " + e.getMessage());
+            List<CitySearchResult> all = (cityPattern == null && poiPattern == null) ? getCitiesCatalog()
+                    : searchByCityAndPoi(cityName, poiName);
+            if (restrictToCityIds != null) {
+                all.removeIf(c -> !restrictToCityIds.contains(c.getCityId()));
+            }
+            return PaginatedResponse.fromList(all, page.getPageNumber(), page.getPageSize());
+        }
+    }
+
+    /**
+     * Load maps (and tour counts) for all cities of a page in two queries.
+     * With a POI pattern only maps containing a matching approved POI are attached.
+     */
+    private static void attachMaps(Connection conn, List<CitySearchResult> cities, String poiPattern)
+            throws SQLException {
+        if (cities.isEmpty())
+            return;
+        Map<Integer, CitySearchResult> byId = new HashMap<>();
+        StringBuilder placeholders = new StringBuilder();
+        for (CitySearchResult city : cities) {
+            byId.put(city.getCityId(), city);
+            placeholders.append(placeholders.length() == 0 ? "?" : ",?");
+        }
+
+        Map<Integer, Integer> tourCounts = new HashMap<>();
+        String tourQuery = "SELECT t.city_id, COUNT(*) FROM tours t WHERE t.city_id IN (" + placeholders + ") " +
+                "AND EXISTS (SELECT 1 FROM tour_stops ts WHERE ts.tour_id = t.id) GROUP BY t.city_id";
+        try (PreparedStatement stmt = conn.prepareStatement(tourQuery)) {
+            int index = 1;
+            for (CitySearchResult city : cities) {
+                stmt.setInt(index++, city.getCityId());
+            }
+            ResultSet rs = stmt.executeQuery();
+            while (rs.next()) {
+                tourCounts.put(rs.getInt(1), rs.getInt(2));
+            }
+        }
+
+        String poiCountExpr = "(SELECT COUNT(*) FROM map_pois mp2 WHERE mp2.map_id = m.id AND mp2.approved = 1)";
+        String mapQuery = poiPattern == null
+                ? "SELECT m.city_id, m.id, m.name, m.short_description, COALESCE(m.tour_id, 0) as tour_id, " +
+                        poiCountExpr + " as poi_count " +
+                        "FROM maps m WHERE m.city_id IN (" + placeholders + ") AND m.approved = 1 ORDER BY m.name"
+                : "SELECT DISTINCT m.city_id, m.id, m.name, m.short_description, COALESCE(m.tour_id, 0) as tour_id, " +
+                        poiCountExpr + " as poi_count " +
+                        "FROM maps m " +
+                        "JOIN map_pois mp ON mp.map_id = m.id AND mp.approved = 1 " +
+                        "JOIN pois p ON p.id = mp.poi_id " +
+                        "WHERE m.city_id IN (" + placeholders + ") AND LOWER(TRIM(p.name)) LIKE ? ORDER BY m.name";
+        try (PreparedStatement stmt = conn.prepareStatement(mapQuery)) {
+            int index = 1;
+            for (CitySearchResult city : cities) {
+                stmt.setInt(index++, city.getCityId());
+            }
+            if (poiPattern != null) {
+                stmt.setString(index, poiPattern);
+            }
+            ResultSet rs = stmt.executeQuery();
+            while (rs.next()) {
+                int cityId = rs.getInt("city_id");
+                MapSummary s = new MapSummary(
+                        rs.getInt("id"),
+                        rs.getString("name"),
+                        rs.getString("short_description"),
+                        rs.getInt("poi_count"),
+                        tourCounts.getOrDefault(cityId, 0));
+                int tid = rs.getInt("tour_id");
+                s.setTourId(tid > 0 ? tid : null);
+                byId.get(cityId).addMap(s);
+            }
+        }
+    }
+
+    /**
+     * Load catalog results for the given city ids, preserving their order (used for
+     * relevance-ranked results). With a POI name only maps containing a matching
+     * approved POI are attached, like searchByPoiName.
+     */
+    public static List<CitySearchResult> getCitiesByIds(List<Integer> cityIds, String poiName) {
+        List<CitySearchResult> results = new ArrayList<>();
+        if (cityIds == null || cityIds.isEmpty())
+            return results;
+        String poiPattern = (poiName == null || poiName.trim().isEmpty()) ? null
+                : "%" + poiName.trim().toLowerCase() + "%";
+
+        StringBuilder placeholders = new StringBuilder();
+        for (int i = 0; i < cityIds.size(); i++) {
+            placeholders.append(i == 0 ? "?" : ",?");
+        }
+        String query = "SELECT c.id, c.name, c.description, c.price FROM cities c WHERE c.id IN (" + placeholders + ")";
+
+        try (Connection conn = DBConnector.getConnection()) {
+            if (conn == null)
+                return results;
+
+            Map<Integer, CitySearchResult> byId = new HashMap<>();
+            try (PreparedStatement stmt = conn.prepareStatement(query)) {
+                int index = 1;
+                for (Integer id : cityIds) {
+                    stmt.setInt(index++, id);
+                }
+                ResultSet rs = stmt.executeQuery();
+                while (rs.next()) {
+                    byId.put(rs.getInt("id"), new CitySearchResult(
+                            rs.getInt("id"),
+                            rs.getString("name"),
+                            rs.getString("description"),
+                            rs.getDouble("price")));
+                }
+            }
+            for (Integer id : cityIds) {
+                CitySearchResult city = byId.get(id);
+                if (city != null)
+                    results.add(city);
+            }
+            attachMaps(conn, results, poiPattern);
+            results.removeIf(city -> city.getMaps().isEmpty());
+        } catch (SQLException e) {
+            System.out.println("SearchDAO: Error loading cities by id");
+            e.printStackTrace();
+        }
+        return results;
+    }
+
+    private static int bindAll(PreparedStatement stmt, List<Object> params, int startIndex) throws SQLException {
+        int index = startIndex;
+        for (Object param : params) {
+            stmt.setObject(index++, param);
+        }
+        return index;
+    }
+
+    // ==================== Search index documents ====================
+
+    /**
+     * Text of one published city for the in-memory ranking index: the city plus its
+     * approved maps and the names/explanations of their approved POIs.
+     */
+    public static class CityDocument {
+        public final int cityId;
+        public final String name;
+        public final String description;
+        public final List<MapDocument> maps = new ArrayList<>();
+
+        public CityDocument(int cityId, String name, String description) {
+            this.cityId = cityId;
+            this.name = name;
+            this.description = description;
+        }
+    }
+
+    /** Text of one approved map (see CityDocument). */
+    public static class MapDocument {
+        public final int mapId;
+        public final String name;
+        public final String description;
+        public final List<String> poiNames = new ArrayList<>();
+        public final List<String> poiExplanations = new ArrayList<>();
+
+        public MapDocument(int mapId, String name, String description) {
+            this.mapId = mapId;
+            this.name = name;
+            this.description = description;
+        }
+    }
+
+    /**
+     * Load index documents for all published cities (cityId == null) or a single city.
+     * Three queries in total regardless of the number of cities.
+     */
+    public static List<CityDocument> getSearchDocuments(Integer cityId) {
+        List<CityDocument> docs = new ArrayList<>();
+        String cityFilter = cityId != null ? " AND c.id = ?" : "";
+        String cityQuery = "SELECT c.id, c.name, c.description FROM cities c " +
+                "WHERE (c.approved = 1 OR c.approved IS NULL) " +
+                "AND EXISTS (SELECT 1 FROM maps m WHERE m.city_id = c.id AND m.approved = 1)" + cityFilter;
+        String mapQuery = "SELECT m.id, m.city_id, m.name, m.short_description FROM maps m " +
+                "JOIN cities c ON c.id = m.city_id WHERE m.approved = 1" + cityFilter;
+        String poiQuery = "SELECT mp.map_id, p.name, p.short_explanation FROM map_pois mp " +
+                "JOIN pois p ON p.id = mp.poi_id " +
+                "JOIN maps m ON m.id = mp.map_id " +
+                "JOIN cities c ON c.id = m.city_id " +
+                "WHERE mp.approved = 1 AND m.approved = 1" + cityFilter;
+
+        try (Connection conn = DBConnector.getConnection()) {
+            if (conn == null)
+                return docs;
+
+            Map<Integer, CityDocument> cities = new HashMap<>();
+            try (PreparedStatement stmt = conn.prepareStatement(cityQuery)) {
+                if (cityId != null) stmt.setInt(1, cityId);
+                ResultSet rs = stmt.executeQuery();
+                while (rs.next()) {
+                    CityDocument doc = new CityDocument(rs.getInt("id"), rs.getString("name"),
+                            rs.getString("description"));
+                    cities.put(doc.cityId, doc);
+                    docs.add(doc);
+                }
+            }
+
+            Map<Integer, MapDocument> maps = new HashMap<>();
+            try (PreparedStatement stmt = conn.prepareStatement(mapQuery)) {
+                if (cityId != null) stmt.setInt(1, cityId);
+                ResultSet rs = stmt.executeQuery();
+                while (rs.next()) {
+                    CityDocument city = cities.get(rs.getInt("city_id"));
+                    if (city == null) continue;
+                    MapDocument map = new MapDocument(rs.getInt("id"), rs.getString("name"),
+                            rs.getString("short_description"));
+                    city.maps.add(map);
+                    maps.put(map.mapId, map);
+                }
+            }
+
+            try (PreparedStatement stmt = conn.prepareStatement(poiQuery)) {
+                if (cityId != null) stmt.setInt(1, cityId);
+                ResultSet rs = stmt.executeQuery();
+                while (rs.next()) {
+                    MapDocument map = maps.get(rs.getInt("map_id"));
+                    if (map == null) continue;
+                    map.poiNames.add(rs.getString("name"));
+                    map.poiExplanations.add(rs.getString("short_explanation"));
+                }
+            }
+        } catch (SQLException e) {
+            System.out.println("SearchDAO: Error loading search documents - " + e.getMessage());
+        }
+        return docs;
+    }
+
     // ==================== Helper Methods ====================
 
     /**
@@ -1,12 +1,15 @@
 package server.dao;
 
+import common.Poi;
 import common.dto.TourDTO;
 import common.dto.TourStopDTO;
 import server.DBConnector;
 
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Data Access Object for Tour operations.
@@ -30,16 +33,66 @@ public class TourDAO {
      * Get all tours for a city with their stops (uses given connection).
      */
     public static List<TourDTO> getToursForCity(Connection conn, int cityId) throws SQLException {
+        return getToursForCity(conn, cityId, null);
+    }
+
+    /**
+     * Get all tours for a city with their stops, loading the stops of all tours with one query
+     * and the leg distances with one bulk distance load (no per-tour queries).
+     *
+     * @param stopPois if not null, receives the POI of every stop by id (e.g. for route segments)
+     */
+    public static List<TourDTO> getToursForCity(Connection conn, int cityId, Map<Integer, Poi> stopPois)
+            throws SQLException {
         List<TourDTO> tours = new ArrayList<>();
+        Map<Integer, TourDTO> toursById = new HashMap<>();
         String query = "SELECT * FROM tours WHERE city_id = ? ORDER BY name";
         PreparedStatement stmt = conn.prepareStatement(query);
         stmt.setInt(1, cityId);
         ResultSet rs = stmt.executeQuery();
         while (rs.next()) {
             TourDTO tour = extractTour(rs);
-            List<TourStopDTO> stops = getTourStops(conn, tour.getId());
-            tour.setStops(stops);
+            tour.setStops(new ArrayList<>());
             tours.add(tour);
+            toursById.put(tour.getId(), tour);
+        }
+        if (tours.isEmpty()) return tours;
+
+        String stopsQuery = "SELECT ts.id AS stop_id, ts.tour_id, ts.poi_id, ts.stop_order, ts.notes, p.* " +
+                "FROM tour_stops ts " +
+                "JOIN tours t ON t.id = ts.tour_id " +
+                "JOIN pois p ON p.id = ts.poi_id " +
+                "WHERE t.city_id = ? " +
+                "ORDER BY ts.tour_id, ts.stop_order";
+        PreparedStatement stopsStmt = conn.prepareStatement(stopsQuery);
+        stopsStmt.setInt(1, cityId);
+        ResultSet stopsRs = stopsStmt.executeQuery();
+        while (stopsRs.next()) {
+            TourDTO tour = toursById.get(stopsRs.getInt("tour_id"));
+            if (tour == null) continue;
+            Poi poi = PoiDAO.extractPoi(stopsRs);
+            tour.getStops().add(new TourStopDTO(
+                    stopsRs.getInt("stop_id"),
+                    tour.getId(),
+                    poi.getId(),
+                    poi.getName(),
+                    poi.getCategory(),
+                    stopsRs.getInt("stop_order"),
+                    stopsRs.getString("notes")));
+            if (stopPois != null) stopPois.put(poi.getId(), poi);
+        }
+
+        List<List<Integer>> stopPoiIdsPerTour = new ArrayList<>();
+        for (TourDTO tour : tours) {
+            stopPoiIdsPerTour.add(stopPoiIds(tour.getStops()));
+        }
+        PoiDistanceDAO.preloadLegDistances(conn, stopPoiIdsPerTour);
+        for (int t = 0; t < tours.size(); t++) {
+            List<TourStopDTO> stops = tours.get(t).getStops();
+            List<Double> legs = PoiDistanceDAO.getLegDistances(conn, stopPoiIdsPerTour.get(t));
+            for (int i = 0; i < legs.size(); i++) {
+                stops.get(i).setDistanceToNextMeters(legs.get(i));
+            }
         }
         return tours;
     }
@@ -126,9 +179,9 @@ public class TourDAO {
                     rs.getString("notes")));
         }
 
-        for (int i = 0; i < stops.size() - 1; i++) {
-            Double d = PoiDistanceDAO.getDistance(conn, stops.get(i).getPoiId(), stops.get(i + 1).getPoiId());
-            stops.get(i).setDistanceToNextMeters(d);
+        List<Double> legs = PoiDistanceDAO.getLegDistances(conn, stopPoiIds(stops));
+        for (int i = 0; i < legs.size(); i++) {
+            stops.get(i).setDistanceToNextMeters(legs.get(i));
         }
         // Last stop has no "next" segment (no circle-back to first POI)
         return stops;
@@ -156,6 +209,7 @@ public class TourDAO {
             if (keys.next()) {
                 int tourId = keys.getInt(1);
                 System.out.println("TourDAO: Created tour with ID " + tourId);
+                MapChangeLogDAO.record(conn, tour.getCityId(), null, MapChangeLogDAO.ENTITY_TOUR, tourId);
                 // Caller must add stops (with valid poi_id) to avoid FK violation on tour_stops.poi_id
                 return tourId;
             }
@@ -179,10 +233,11 @@ public class TourDAO {
     }
 
     /**
-     * Update an existing tour (metadata only, not stops).
+     * Update an existing tour (metadata only, not stops). Bumps its row version.
      */
     public static boolean updateTour(Connection conn, TourDTO tour) throws SQLException {
-        String query = "UPDATE tours SET name = ?, general_description = ?, total_distance_meters = ? WHERE id = ?";
+        String query = "UPDATE tours SET name = ?, general_description = ?, total_distance_meters = ?, " +
+                "version = version + 1 WHERE id = ?";
 
         PreparedStatement stmt = conn.prepareStatement(query);
         stmt.setString(1, tour.getName());
@@ -192,6 +247,7 @@ public class TourDAO {
 
         int affected = stmt.executeUpdate();
         System.out.println("TourDAO: Updated tour " + tour.getId() + ", affected: " + affected);
+        if (affected > 0) MapChangeLogDAO.recordTour(conn, tour.getId());
         return affected > 0;
     }
 
@@ -199,6 +255,7 @@ public class TourDAO {
      * Delete a tour and all its stops.
      */
     public static boolean deleteTour(Connection conn, int tourId) throws SQLException {
+        MapChangeLogDAO.recordTour(conn, tourId);
         // Stops will be deleted by CASCADE
         String query = "DELETE FROM tours WHERE id = ?";
 
@@ -214,9 +271,12 @@ public class TourDAO {
      * Add a stop to a tour. Uses ON DUPLICATE KEY UPDATE so Save-then-Publish does not fail when
      * the same (tour_id, stop_order) was already inserted on a prior Save (draft).
      *
+     * Bumps the tour's row version first; call in a transaction so both commit together.
+     *
      * @return created stop ID, or existing stop ID on update, or -1 on failure
      */
     public static int addTourStop(Connection conn, TourStopDTO stop) throws SQLException {
+        EntityVersionDAO.bump(conn, EntityVersionDAO.TOURS, stop.getTourId());
         String query = "INSERT INTO tour_stops (tour_id, poi_id, stop_order, notes) VALUES (?, ?, ?, ?) " +
                 "ON DUPLICATE KEY UPDATE poi_id = VALUES(poi_id), notes = VALUES(notes)";
 
@@ -229,6 +289,7 @@ public class TourDAO {
         int affected = stmt.executeUpdate();
 
         if (affected > 0) {
+            MapChangeLogDAO.recordTour(conn, stop.getTourId());
             ResultSet keys = stmt.getGeneratedKeys();
             if (keys.next()) {
                 int stopId = keys.getInt(1);
@@ -256,9 +317,38 @@ public class TourDAO {
     }
 
     /**
-     * Update a tour stop.
+     * Batch form of addTourStop: upsert several stops (by tour and stop order) with one batched INSERT.
+     */
+    public static void addTourStops(Connection conn, List<TourStopDTO> stops) throws SQLException {
+        if (stops == null || stops.isEmpty()) return;
+        String query = "INSERT INTO tour_stops (tour_id, poi_id, stop_order, notes) VALUES (?, ?, ?, ?) " +
+                "ON DUPLICATE KEY UPDATE poi_id = VALUES(poi_id), notes = VALUES(notes)";
+
+        java.util.Set<Integer> tourIds = new java.util.LinkedHashSet<>();
+        for (TourStopDTO stop : stops) {
+            tourIds.add(stop.getTourId());
+        }
+        EntityVersionDAO.bumpAll(conn, EntityVersionDAO.TOURS, tourIds);
+        try (PreparedStatement stmt = conn.prepareStatement(query)) {
+            for (TourStopDTO stop : stops) {
+                stmt.setInt(1, stop.getTourId());
+                stmt.setInt(2, stop.getPoiId());
+                stmt.setInt(3, stop.getStopOrder());
+                stmt.setString(4, stop.getNotes() != null ? stop.getNotes() : "");
+                stmt.addBatch();
+            }
+            stmt.executeBatch();
+        }
+        System.out.println("TourDAO: Added/updated " + stops.size() + " stops of " + tourIds.size() + " tours in one batch");
+        MapChangeLogDAO.recordTours(conn, tourIds);
+    }
+
+    /**
+     * Update a tour stop. Bumps the tour's row version first; call in a transaction.
      */
     public static boolean updateTourStop(Connection conn, TourStopDTO stop) throws SQLException {
+        Integer tourId = getTourIdForStop(conn, stop.getId());
+        if (tourId != null) EntityVersionDAO.bump(conn, EntityVersionDAO.TOURS, tourId);
         String query = "UPDATE tour_stops SET poi_id = ?, stop_order = ?, notes = ? WHERE id = ?";
 
         PreparedStatement stmt = conn.prepareStatement(query);
@@ -269,13 +359,44 @@ public class TourDAO {
 
         int affected = stmt.executeUpdate();
         System.out.println("TourDAO: Updated stop " + stop.getId() + ", affected: " + affected);
+        if (affected > 0) MapChangeLogDAO.recordTourOfStop(conn, stop.getId());
         return affected > 0;
     }
 
     /**
-     * Remove a tour stop.
+     * Batch form of updateTourStop; stops are updated in list order.
+     */
+    public static void updateTourStops(Connection conn, List<TourStopDTO> stops) throws SQLException {
+        if (stops == null || stops.isEmpty()) return;
+        String query = "UPDATE tour_stops SET poi_id = ?, stop_order = ?, notes = ? WHERE id = ?";
+
+        java.util.Set<Integer> stopIds = new java.util.LinkedHashSet<>();
+        for (TourStopDTO stop : stops) {
+            stopIds.add(stop.getId());
+        }
+        java.util.Set<Integer> tourIds = getTourIdsForStops(conn, stopIds);
+        EntityVersionDAO.bumpAll(conn, EntityVersionDAO.TOURS, tourIds);
+        try (PreparedStatement stmt = conn.prepareStatement(query)) {
+            for (TourStopDTO stop : stops) {
+                stmt.setInt(1, stop.getPoiId());
+                stmt.setInt(2, stop.getStopOrder());
+                stmt.setString(3, stop.getNotes());
+                stmt.setInt(4, stop.getId());
+                stmt.addBatch();
+            }
+            stmt.executeBatch();
+        }
+        System.out.println("TourDAO: Updated " + stops.size() + " stops in one batch");
+        MapChangeLogDAO.recordTours(conn, tourIds);
+    }
+
+    /**
+     * Remove a tour stop. Bumps the tour's row version first; call in a transaction.
      */
     public static boolean removeTourStop(Connection conn, int stopId) throws SQLException {
+        Integer tourId = getTourIdForStop(conn, stopId);
+        if (tourId != null) EntityVersionDAO.bump(conn, EntityVersionDAO.TOURS, tourId);
+        MapChangeLogDAO.recordTourOfStop(conn, stopId);
         String query = "DELETE FROM tour_stops WHERE id = ?";
 
         PreparedStatement stmt = conn.prepareStatement(query);
@@ -286,6 +407,55 @@ public class TourDAO {
         return affected > 0;
     }
 
+    /**
+     * Remove several tour stops with one DELETE.
+     *
+     * @return ids of the tours the removed stops belonged to
+     */
+    public static java.util.Set<Integer> removeTourStops(Connection conn, java.util.Collection<Integer> stopIds) throws SQLException {
+        java.util.Set<Integer> tourIds = getTourIdsForStops(conn, stopIds);
+        if (tourIds.isEmpty()) return tourIds;
+        EntityVersionDAO.bumpAll(conn, EntityVersionDAO.TOURS, tourIds);
+        MapChangeLogDAO.recordTours(conn, tourIds);
+
+        java.util.Set<Integer> ids = new java.util.LinkedHashSet<>(stopIds);
+        StringBuilder placeholders = new StringBuilder();
+        for (int i = 0; i < ids.size(); i++) {
+            placeholders.append(i == 0 ? "?" : ",?");
+        }
+        PreparedStatement stmt = conn.prepareStatement("DELETE FROM tour_stops WHERE id IN (" + placeholders + ")");
+        int index = 1;
+        for (Integer id : ids) {
+            stmt.setInt(index++, id);
+        }
+        int affected = stmt.executeUpdate();
+        System.out.println("TourDAO: Removed " + affected + " stops of " + tourIds.size() + " tours");
+        return tourIds;
+    }
+
+    /**
+     * Ids of the tours the given stops belong to.
+     */
+    public static java.util.Set<Integer> getTourIdsForStops(Connection conn, java.util.Collection<Integer> stopIds)
+            throws SQLException {
+        java.util.Set<Integer> tourIds = new java.util.LinkedHashSet<>();
+        if (stopIds == null || stopIds.isEmpty()) return tourIds;
+        java.util.Set<Integer> ids = new java.util.LinkedHashSet<>(stopIds);
+        StringBuilder placeholders = new StringBuilder();
+        for (int i = 0; i < ids.size(); i++) {
+            placeholders.append(i == 0 ? "?" : ",?");
+        }
+        PreparedStatement stmt = conn.prepareStatement(
+                "SELECT DISTINCT tour_id FROM tour_stops WHERE id IN (" + placeholders + ")");
+        int index = 1;
+        for (Integer id : ids) {
+            stmt.setInt(index++, id);
+        }
+        ResultSet rs = stmt.executeQuery();
+        while (rs.next()) tourIds.add(rs.getInt("tour_id"));
+        return tourIds;
+    }
+
     /**
      * Extract TourDTO from ResultSet.
      */
@@ -299,6 +469,9 @@ public class TourDAO {
             double d = rs.getDouble("total_distance_meters");
             if (!rs.wasNull()) t.setTotalDistanceMeters(d);
         } catch (SQLException ignored) { /* column may not exist before migration */ }
+        try {
+            t.setVersion(rs.getInt("version"));
+        } catch (SQLException ignored) { /* column may not exist before migration (EntityVersionDAO) */ }
         return t;
     }
 
@@ -313,6 +486,50 @@ public class TourDAO {
         return rs.next() ? rs.getInt("tour_id") : null;
     }
 
+    /**
+     * Ids of tours that have a stop on any of the given POIs.
+     */
+    public static List<Integer> getTourIdsForPois(Connection conn, java.util.Collection<Integer> poiIds)
+            throws SQLException {
+        List<Integer> tourIds = new ArrayList<>();
+        if (poiIds == null || poiIds.isEmpty()) return tourIds;
+        StringBuilder placeholders = new StringBuilder();
+        for (int i = 0; i < poiIds.size(); i++) {
+            placeholders.append(i == 0 ? "?" : ",?");
+        }
+        String sql = "SELECT DISTINCT tour_id FROM tour_stops WHERE poi_id IN (" + placeholders + ")";
+        PreparedStatement stmt = conn.prepareStatement(sql);
+        int index = 1;
+        for (Integer poiId : poiIds) {
+            stmt.setInt(index++, poiId);
+        }
+        ResultSet rs = stmt.executeQuery();
+        while (rs.next()) tourIds.add(rs.getInt("tour_id"));
+        return tourIds;
+    }
+
+    /**
+     * Which of the given POI ids exist (one query instead of poiExists per id).
+     */
+    public static java.util.Set<Integer> getExistingPoiIds(Connection conn, java.util.Collection<Integer> poiIds)
+            throws SQLException {
+        java.util.Set<Integer> existing = new java.util.HashSet<>();
+        if (poiIds == null || poiIds.isEmpty()) return existing;
+        java.util.Set<Integer> ids = new java.util.LinkedHashSet<>(poiIds);
+        StringBuilder placeholders = new StringBuilder();
+        for (int i = 0; i < ids.size(); i++) {
+            placeholders.append(i == 0 ? "?" : ",?");
+        }
+        PreparedStatement stmt = conn.prepareStatement("SELECT id FROM pois WHERE id IN (" + placeholders + ")");
+        int index = 1;
+        for (Integer id : ids) {
+            stmt.setInt(index++, id);
+        }
+        ResultSet rs = stmt.executeQuery();
+        while (rs.next()) existing.add(rs.getInt("id"));
+        return existing;
+    }
+
     /**
      * Check if a POI exists.
      */
@@ -339,16 +556,21 @@ public class TourDAO {
             return;
         }
         double total = 0;
-        for (int i = 1; i < stops.size(); i++) {
-            int a = stops.get(i - 1).getPoiId();
-            int b = stops.get(i).getPoiId();
-            Double d = PoiDistanceDAO.getDistance(conn, a, b);
+        for (Double d : PoiDistanceDAO.getLegDistances(conn, stopPoiIds(stops))) {
             if (d != null) total += d;
         }
         // No circle-back: total is sum of consecutive legs only
         updateTourDistance(conn, tourId, total);
     }
 
+    private static List<Integer> stopPoiIds(List<TourStopDTO> stops) {
+        List<Integer> ids = new ArrayList<>(stops.size());
+        for (TourStopDTO stop : stops) {
+            ids.add(stop.getPoiId());
+        }
+        return ids;
+    }
+
     /**
      * Set total_distance_meters for a tour (used after recomputing from stops).
      */
@@ -357,6 +579,6 @@ public class TourDAO {
         PreparedStatement stmt = conn.prepareStatement(sql);
         setDistanceParam(stmt, 1, totalMeters);
         stmt.setInt(2, tourId);
-        stmt.executeUpdate();
+        if (stmt.executeUpdate() > 0) MapChangeLogDAO.recordTour(conn, tourId);
     }
 }
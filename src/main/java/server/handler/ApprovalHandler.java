@@ -6,6 +6,7 @@ import common.Response;
 import common.dto.*;
 import server.DBConnector;
 import server.dao.*;
+import server.service.MapPackageService;
 
 import java.sql.Connection;
 import java.sql.SQLException;
@@ -135,6 +136,9 @@ public class ApprovalHandler {
                     "mapId", String.valueOf(version.getMapId()),
                     "mapName", version.getMapName());
 
+            // 3.2 Keep the content as approved in this version for customer reads
+            MapSnapshotDAO.createSnapshot(conn, version.getMapId(), versionId);
+
             // 3.5 Apply any pending delete-city edits stored as map_edit_requests.
             // The edit-approval UI approves map_versions, but actual city deletion lives in
             // MapEditHandler.applyMapChanges. Since we don't call that path here, we must apply it.
@@ -146,6 +150,7 @@ public class ApprovalHandler {
             System.out.println("ApprovalHandler: Created " + notificationCount + " customer notifications");
 
             conn.commit();
+            MapPackageService.getInstance().scheduleBuild(version.getCityId());
 
             // Return updated version
             MapVersionDTO updatedVersion = MapVersionDAO.getVersionById(versionId);
@@ -286,7 +291,8 @@ public class ApprovalHandler {
         List<Integer> toApproveRequestIds = new ArrayList<>();
 
         for (MapEditRequestDTO req : pending) {
-            if (req == null) continue;
+            // The summary header tells whether a city is deleted without decoding the changes
+            if (req == null || req.getSummary() == null || req.getSummary().getDeletedCityCount() == 0) continue;
             MapChanges changes = req.getChanges();
             if (changes == null || changes.getDeletedCityIds() == null || changes.getDeletedCityIds().isEmpty()) continue;
             deletedCityIds.addAll(changes.getDeletedCityIds());
@@ -329,9 +335,7 @@ public class ApprovalHandler {
 
         List<Integer> toRejectRequestIds = new ArrayList<>();
         for (MapEditRequestDTO req : pending) {
-            if (req == null) continue;
-            MapChanges changes = req.getChanges();
-            if (changes == null || changes.getDeletedCityIds() == null || changes.getDeletedCityIds().isEmpty()) continue;
+            if (req == null || req.getSummary() == null || req.getSummary().getDeletedCityCount() == 0) continue;
             toRejectRequestIds.add(req.getId());
         }
 
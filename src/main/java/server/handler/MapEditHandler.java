@@ -8,6 +8,15 @@ import common.dto.*;
 import server.DBConnector;
 import server.SessionManager;
 import server.dao.*;
+import server.scheduler.DistanceJobWorker;
+import server.service.CitySearchIndex;
+import server.service.ContentTags;
+import server.service.MapPackageService;
+import server.service.PoiImportService;
+import server.service.PoiFacetIndex;
+import server.service.PoiSpatialIndex;
+import server.service.SearchResultCache;
+import server.service.TourOptimizer;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
@@ -42,6 +51,9 @@ public class MapEditHandler {
                 case GET_MAP_CONTENT:
                     return handleGetMapContent(request);
 
+                case GET_MAP_CONTENT_DELTA:
+                    return handleGetMapContentDelta(request);
+
                 case GET_POIS_FOR_CITY:
                     return handleGetPoisForCity(request);
 
@@ -98,6 +110,12 @@ public class MapEditHandler {
                 case REMOVE_TOUR_STOP:
                     return handleRemoveTourStop(request);
 
+                case OPTIMIZE_TOUR:
+                    return handleOptimizeTour(request);
+
+                case IMPORT_POIS:
+                    return handleImportPois(request);
+
                 default:
                     return Response.error(request, Response.ERR_INTERNAL,
                             "Unknown map edit message type: " + type);
@@ -113,10 +131,15 @@ public class MapEditHandler {
     // ==================== GET Operations ====================
 
     private static Response handleGetCities(Request request) {
+        String etag = ContentTags.getInstance().catalogTag();
+        Response notModified = ContentTags.notModified(request, etag);
+        if (notModified != null) {
+            return notModified;
+        }
         int userId = resolveUserId(request);
         System.out.println("MapEditHandler: Getting all cities for user " + userId);
         List<CityDTO> cities = CityDAO.getAllCities(userId);
-        return Response.success(request, cities);
+        return Response.success(request, cities, etag);
     }
 
     private static Response handleGetMapsForCity(Request request) {
@@ -124,12 +147,17 @@ public class MapEditHandler {
             return Response.error(request, Response.ERR_VALIDATION, "City ID required");
         }
 
+        String etag = ContentTags.getInstance().catalogTag();
+        Response notModified = ContentTags.notModified(request, etag);
+        if (notModified != null) {
+            return notModified;
+        }
         int cityId = (Integer) request.getPayload();
         int userId = resolveUserId(request);
         System.out.println("MapEditHandler: Getting maps for city " + cityId + " for user " + userId);
 
         List<MapSummary> maps = MapDAO.getMapsForCity(cityId, userId);
-        return Response.success(request, maps);
+        return Response.success(request, maps, etag);
     }
 
     private static Response handleGetMapContent(Request request) {
@@ -143,7 +171,18 @@ public class MapEditHandler {
         System.out.flush();
         System.err.println("[MapEditHandler] ABOUT TO CALL MapDAO.getMapContent(" + mapId + ", " + (userId > 0 ? userId : "null") + ")");
 
-        MapContent content = MapDAO.getMapContent(mapId, userId > 0 ? userId : null);
+        boolean customer = isCustomerRequest(request);
+        String etag = ContentTags.getInstance().mapContentTag(mapId, getContentVersion(mapId), customer);
+        Response notModified = ContentTags.notModified(request, etag);
+        if (notModified != null) {
+            System.out.println("MapEditHandler.GET_MAP_CONTENT: not modified mapId=" + mapId);
+            return notModified;
+        }
+
+        // Customers only see published content: served from the map's snapshot, not the editor tables
+        MapContent content = customer
+                ? MapSnapshotDAO.getPublishedContent(mapId)
+                : MapDAO.getMapContent(mapId, userId > 0 ? userId : null);
 
         System.out.println("MapEditHandler.GET_MAP_CONTENT: getMapContent returned, content=" + (content != null));
         System.out.flush();
@@ -154,6 +193,40 @@ public class MapEditHandler {
         }
 
         System.out.println("MapEditHandler.GET_MAP_CONTENT: success mapId=" + mapId + ", pois=" + (content.getPois() != null ? content.getPois().size() : 0) + ", tours=" + (content.getTours() != null ? content.getTours().size() : 0));
+        return Response.success(request, content, etag);
+    }
+
+    /**
+     * Content version of the map's city, or -1 if unavailable.
+     */
+    private static long getContentVersion(int mapId) {
+        try (Connection conn = DBConnector.getConnection()) {
+            return MapChangeLogDAO.getVersionForMap(conn, mapId);
+        } catch (SQLException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Changes since the client's content version; the full content when a delta cannot be built.
+     */
+    private static Response handleGetMapContentDelta(Request request) {
+        if (!(request.getPayload() instanceof MapContentSyncRequest)) {
+            return Response.error(request, Response.ERR_VALIDATION, "Map content sync request required");
+        }
+        MapContentSyncRequest sync = (MapContentSyncRequest) request.getPayload();
+        int userId = resolveUserId(request);
+        Integer requestUserId = userId > 0 ? userId : null;
+
+        MapContentDelta delta = MapDAO.getMapContentDelta(sync.getMapId(), requestUserId, sync.getSinceVersion());
+        if (delta != null) {
+            return Response.success(request, delta);
+        }
+        MapContent content = MapDAO.getMapContent(sync.getMapId(), requestUserId);
+        if (content == null) {
+            return Response.error(request, Response.ERR_NOT_FOUND, "Map not found");
+        }
+        System.out.println("MapEditHandler.GET_MAP_CONTENT_DELTA: full reload mapId=" + sync.getMapId() + ", since=" + sync.getSinceVersion());
         return Response.success(request, content);
     }
 
@@ -207,6 +280,8 @@ public class MapEditHandler {
 
         // Update
         if (CityDAO.updateCity(city.getId(), city.getName(), city.getDescription(), city.getPrice())) {
+            CitySearchIndex.getInstance().refreshCity(city.getId());
+            SearchResultCache.getInstance().invalidateCity(city.getId());
             return Response.success(request, ValidationResult.success("City updated successfully"));
         }
 
@@ -278,7 +353,12 @@ public class MapEditHandler {
         }
 
         // Update
+        // Bumps the row version in the same UPDATE, so a concurrent approval conflicts
         if (PoiDAO.updatePoi(poi)) {
+            PoiSpatialIndex.getInstance().refreshPois(Collections.singletonList(poi.getId()));
+            PoiFacetIndex.getInstance().refreshPois(Collections.singletonList(poi.getId()));
+            CitySearchIndex.getInstance().refreshCity(poi.getCityId());
+            SearchResultCache.getInstance().invalidateCity(poi.getCityId());
             return Response.success(request, ValidationResult.success("POI updated successfully"));
         }
 
@@ -300,7 +380,14 @@ public class MapEditHandler {
         }
 
         try (Connection conn = DBConnector.getConnection()) {
+            Poi existing = PoiDAO.getPoiById(conn, poiId);
             if (PoiDAO.deletePoi(conn, poiId)) {
+                PoiSpatialIndex.getInstance().refreshPois(Collections.singletonList(poiId));
+                PoiFacetIndex.getInstance().refreshPois(Collections.singletonList(poiId));
+                if (existing != null) {
+                    CitySearchIndex.getInstance().refreshCity(existing.getCityId());
+                    SearchResultCache.getInstance().invalidateCity(existing.getCityId());
+                }
                 return Response.success(request, ValidationResult.success("POI deleted successfully"));
             }
         } catch (SQLException e) {
@@ -391,10 +478,18 @@ public class MapEditHandler {
             if (stop.getPoiId() <= 0 || !TourDAO.poiExists(conn, stop.getPoiId())) {
                 return Response.error(request, Response.ERR_VALIDATION, "Invalid or non-existent POI for tour stop");
             }
-            int stopId = TourDAO.addTourStop(conn, stop);
-            if (stopId > 0) {
-                ValidationResult result = ValidationResult.success("Tour stop added successfully");
-                return Response.success(request, result);
+            // Tour version bump and stop write commit together
+            conn.setAutoCommit(false);
+            try {
+                int stopId = TourDAO.addTourStop(conn, stop);
+                conn.commit();
+                if (stopId > 0) {
+                    ValidationResult result = ValidationResult.success("Tour stop added successfully");
+                    return Response.success(request, result);
+                }
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
             }
         } catch (SQLException e) {
             return Response.error(request, Response.ERR_DATABASE, e.getMessage());
@@ -414,8 +509,16 @@ public class MapEditHandler {
             if (stop.getPoiId() <= 0 || !TourDAO.poiExists(conn, stop.getPoiId())) {
                 return Response.error(request, Response.ERR_VALIDATION, "Invalid or non-existent POI for tour stop");
             }
-            if (TourDAO.updateTourStop(conn, stop)) {
-                return Response.success(request, ValidationResult.success("Tour stop updated successfully"));
+            conn.setAutoCommit(false);
+            try {
+                boolean updated = TourDAO.updateTourStop(conn, stop);
+                conn.commit();
+                if (updated) {
+                    return Response.success(request, ValidationResult.success("Tour stop updated successfully"));
+                }
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
             }
         } catch (SQLException e) {
             return Response.error(request, Response.ERR_DATABASE, e.getMessage());
@@ -432,8 +535,16 @@ public class MapEditHandler {
         int stopId = (Integer) request.getPayload();
 
         try (Connection conn = DBConnector.getConnection()) {
-            if (TourDAO.removeTourStop(conn, stopId)) {
-                return Response.success(request, ValidationResult.success("Tour stop removed successfully"));
+            conn.setAutoCommit(false);
+            try {
+                boolean removed = TourDAO.removeTourStop(conn, stopId);
+                conn.commit();
+                if (removed) {
+                    return Response.success(request, ValidationResult.success("Tour stop removed successfully"));
+                }
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
             }
         } catch (SQLException e) {
             return Response.error(request, Response.ERR_DATABASE, e.getMessage());
@@ -442,6 +553,197 @@ public class MapEditHandler {
         return Response.error(request, Response.ERR_DATABASE, "Failed to remove tour stop");
     }
 
+    // ==================== Tour Optimization ====================
+
+    private static final int MAX_OPTIMIZE_STOPS = 500;
+    private static final long MAX_OPTIMIZE_BUDGET_MILLIS = 10_000;
+
+    /**
+     * Suggest the stop order with the shortest total distance (does not change the tour).
+     * Payload: TourOptimizationRequest, or an Integer tour ID.
+     */
+    private static Response handleOptimizeTour(Request request) {
+        TourOptimizationRequest req;
+        if (request.getPayload() instanceof TourOptimizationRequest) {
+            req = (TourOptimizationRequest) request.getPayload();
+        } else if (request.getPayload() instanceof Integer) {
+            req = TourOptimizationRequest.forTour((Integer) request.getPayload());
+        } else {
+            return Response.error(request, Response.ERR_VALIDATION, "TourOptimizationRequest or tour ID required");
+        }
+
+        long startNanos = System.nanoTime();
+        try (Connection conn = DBConnector.getConnection()) {
+            List<Integer> poiIds = new ArrayList<>();
+            if (req.getTourId() > 0) {
+                TourDTO tour = TourDAO.getTourById(conn, req.getTourId());
+                if (tour == null) {
+                    return Response.error(request, Response.ERR_NOT_FOUND, "Tour not found: " + req.getTourId());
+                }
+                if (tour.getStops() != null) {
+                    for (TourStopDTO stop : tour.getStops()) {
+                        poiIds.add(stop.getPoiId());
+                    }
+                }
+            } else if (req.getPoiIds() != null) {
+                poiIds.addAll(req.getPoiIds());
+            }
+            if (poiIds.size() < 2) {
+                return Response.error(request, Response.ERR_VALIDATION, "At least 2 stops are required to optimize");
+            }
+            if (poiIds.size() > MAX_OPTIMIZE_STOPS) {
+                return Response.error(request, Response.ERR_VALIDATION,
+                        "Too many stops to optimize (" + poiIds.size() + ", max " + MAX_OPTIMIZE_STOPS + ")");
+            }
+
+            double[][] dist = PoiDistanceDAO.getDistanceMatrix(conn, poiIds);
+            // A POI without coordinates has no distance to any other stop
+            int worst = -1, worstMissing = 0;
+            for (int i = 0; i < poiIds.size(); i++) {
+                int missing = 0;
+                for (int j = 0; j < poiIds.size(); j++) {
+                    if (i != j && Double.isNaN(dist[i][j])) missing++;
+                }
+                if (missing > worstMissing) {
+                    worst = i;
+                    worstMissing = missing;
+                }
+            }
+            if (worst >= 0) {
+                return Response.error(request, Response.ERR_VALIDATION,
+                        "POI " + poiIds.get(worst) + " does not exist or has no coordinates");
+            }
+
+            long budgetMillis = req.getTimeBudgetMillis() > 0 ? req.getTimeBudgetMillis()
+                    : Long.getLong("gcm.tourOptimizer.timeBudgetMillis", 2000L);
+            budgetMillis = Math.min(budgetMillis, MAX_OPTIMIZE_BUDGET_MILLIS);
+            TourOptimizer.Result optimized = TourOptimizer.optimize(dist, req.isFixedStart(), req.isFixedEnd(),
+                    budgetMillis * 1_000_000L);
+
+            TourOptimizationResult result = new TourOptimizationResult();
+            result.setTourId(req.getTourId());
+            int[] identity = new int[poiIds.size()];
+            for (int i = 0; i < identity.length; i++) identity[i] = i;
+            result.setOriginalDistanceMeters(TourOptimizer.pathLength(dist, identity));
+            result.setOptimizedDistanceMeters(optimized.length);
+            for (int k = 0; k < optimized.order.length; k++) {
+                result.getOrderedPoiIds().add(poiIds.get(optimized.order[k]));
+                if (k > 0) {
+                    result.getLegDistancesMeters().add(dist[optimized.order[k - 1]][optimized.order[k]]);
+                }
+            }
+            result.setTimeBudgetReached(optimized.timeBudgetReached);
+            result.setElapsedMillis((System.nanoTime() - startNanos) / 1_000_000L);
+            System.out.println("MapEditHandler: " + result + " in " + result.getElapsedMillis() + " ms");
+            return Response.success(request, result);
+        } catch (SQLException e) {
+            return Response.error(request, Response.ERR_DATABASE, e.getMessage());
+        }
+    }
+
+    // ==================== POI Import ====================
+
+    /**
+     * Import one chunk of a POI file into a map. Valid rows that are not already in the city (same
+     * name and coordinates) are written as draft POIs of the map with batch inserts, one
+     * transaction per chunk. After the last chunk a single edit request with all imported POIs is
+     * sent for approval; distances are queued for the background worker when it is approved.
+     */
+    private static Response handleImportPois(Request request) {
+        if (!(request.getPayload() instanceof PoiImportChunk)) {
+            return Response.error(request, Response.ERR_VALIDATION, "PoiImportChunk required");
+        }
+        PoiImportChunk chunk = (PoiImportChunk) request.getPayload();
+        String token = request.getSessionToken();
+        SessionManager.SessionInfo session = token != null ? SessionManager.getInstance().validateSession(token) : null;
+        if (session == null || session.userId <= 0) {
+            return Response.error(request, Response.ERR_AUTHENTICATION, "Login required to import POIs");
+        }
+        if ("CUSTOMER".equals(session.role) || "ANONYMOUS".equals(session.role)) {
+            return Response.error(request, Response.ERR_FORBIDDEN, "Only content editors can import POIs");
+        }
+        if (chunk.getImportId() == null || chunk.getImportId().isEmpty()) {
+            return Response.error(request, Response.ERR_VALIDATION, "Import ID required");
+        }
+
+        PoiImportService imports = PoiImportService.getInstance();
+        try (Connection conn = DBConnector.getConnection()) {
+            if (conn == null) {
+                return Response.error(request, Response.ERR_DATABASE, "Database connection failed");
+            }
+            PoiImportService.ImportSession importSession = imports.get(chunk.getImportId(), session.userId);
+            if (importSession == null) {
+                if (chunk.getSequence() != 0) {
+                    return Response.error(request, Response.ERR_NOT_FOUND, "Import expired, please start again");
+                }
+                if (chunk.getMapId() <= 0 || MapDAO.getCityIdForMap(conn, chunk.getMapId()) != chunk.getCityId()) {
+                    return Response.error(request, Response.ERR_VALIDATION, "Map " + chunk.getMapId()
+                            + " does not belong to city " + chunk.getCityId());
+                }
+                importSession = imports.start(chunk.getImportId(), session.userId, chunk.getCityId(), chunk.getMapId(),
+                        PoiDAO.getPoisForCity(chunk.getCityId()),
+                        PoiDAO.getPoiIdsLinkedToMap(conn, chunk.getMapId()).size());
+            }
+
+            synchronized (importSession) {
+                if (chunk.getSequence() < importSession.getNextSequence()) {
+                    // Repeated chunk (e.g. resent after a lost response): already applied
+                    return Response.success(request, importSession.getResult());
+                }
+                if (chunk.getSequence() > importSession.getNextSequence()) {
+                    return Response.error(request, Response.ERR_VALIDATION, "Expected chunk "
+                            + importSession.getNextSequence() + " but got " + chunk.getSequence());
+                }
+
+                PoiImportService.Plan plan = importSession.plan(chunk, poi -> {
+                    ValidationResult v = validatePoi(poi);
+                    return v.isValid() ? null : v.getErrors().get(0).getMessage();
+                });
+                conn.setAutoCommit(false);
+                try {
+                    List<Integer> createdIds = PoiDAO.createPois(conn, plan.getAccepted());
+                    List<MapChanges.PoiMapLink> links = new ArrayList<>();
+                    int displayOrder = importSession.getNextDisplayOrder();
+                    for (Integer poiId : createdIds) {
+                        links.add(new MapChanges.PoiMapLink(importSession.getMapId(), poiId, displayOrder++));
+                    }
+                    PoiDAO.linkPoisToMaps(conn, links, false, session.userId);
+
+                    int requestId = 0;
+                    int importedBefore = importSession.getCreatedPoiIds().size();
+                    if (chunk.isLast() && importedBefore + createdIds.size() > 0) {
+                        List<Integer> allIds = new ArrayList<>(importSession.getCreatedPoiIds());
+                        allIds.addAll(createdIds);
+                        MapChanges changes = new MapChanges();
+                        changes.setMapId(importSession.getMapId());
+                        changes.setCityId(importSession.getCityId());
+                        changes.setDraft(false);
+                        changes.setAddedPois(PoiDAO.getPoisByIds(conn, allIds));
+                        requestId = MapEditRequestDAO.createRequest(conn, importSession.getMapId(),
+                                importSession.getCityId(), session.userId, changes);
+                    }
+                    conn.commit();
+
+                    PoiImportResult result = importSession.commit(chunk, plan, createdIds);
+                    if (requestId > 0) {
+                        importSession.setEditRequestId(requestId);
+                        result.setEditRequestId(requestId);
+                    }
+                    if (chunk.isLast()) {
+                        imports.finish(chunk.getImportId());
+                        System.out.println("MapEditHandler: POI import " + result);
+                    }
+                    return Response.success(request, result);
+                } catch (SQLException e) {
+                    conn.rollback();
+                    return Response.error(request, Response.ERR_DATABASE, "Import failed: " + e.getMessage());
+                }
+            }
+        } catch (SQLException e) {
+            return Response.error(request, Response.ERR_DATABASE, e.getMessage());
+        }
+    }
+
     // ==================== Batch Submit ====================
 
     private static Response handleGetMyDraft(Request request) {
@@ -482,6 +784,9 @@ public class MapEditHandler {
      * (avoids Java deserialization issues where draft arrives as false).
      */
     private static Response handleSaveMapChanges(Request request) {
+        if (request.getPayload() instanceof MapChangesPatch) {
+            return handleSaveMapChangesPatch(request, (MapChangesPatch) request.getPayload());
+        }
         if (!(request.getPayload() instanceof MapChanges)) {
             return Response.error(request, Response.ERR_VALIDATION, "MapChanges required");
         }
@@ -491,6 +796,92 @@ public class MapEditHandler {
         return applyMapChangesAsDraftOrSubmit(request, changes, true);
     }
 
+    /** Autosaved ops kept per draft before they are folded into the DRAFT request. */
+    private static final int DRAFT_COMPACT_OPS = Integer.getInteger("gcm.draft.compactOps", 50);
+
+    /**
+     * Autosave: apply the ops of a MapChangesPatch to the user's draft of one map. Only the new
+     * ops are applied and stored (map_draft_ops); ops the server already has are skipped, so a
+     * resent patch is harmless. A full op, or the first op of a draft, writes the DRAFT request.
+     */
+    private static Response handleSaveMapChangesPatch(Request request, MapChangesPatch patch) {
+        String token = request.getSessionToken();
+        SessionManager.SessionInfo session = token != null ? SessionManager.getInstance().validateSession(token) : null;
+        int userId = (session != null ? session.userId : request.getUserId()) > 0
+                ? (session != null ? session.userId : request.getUserId()) : 1;
+        int mapId = patch.getMapId();
+        int cityId = patch.getCityId();
+        if (mapId <= 0 || cityId <= 0 || patch.getOps().isEmpty()) {
+            return Response.error(request, Response.ERR_VALIDATION, "Map, city and at least one op required");
+        }
+        ValidationResult validation = ValidationResult.success("Draft saved.");
+        try (Connection conn = DBConnector.getConnection()) {
+            if (conn == null) {
+                return Response.error(request, Response.ERR_DATABASE, "Database connection failed");
+            }
+            conn.setAutoCommit(false);
+            try {
+                int sequence = MapDraftOpDAO.getLastSequence(conn, mapId, userId);
+                int startSequence = sequence;
+                boolean reload = false;
+                Set<Integer> affectedPoiIds = new HashSet<>();
+                List<MapChangesPatch.Op> ops = new ArrayList<>(patch.getOps());
+                ops.sort((a, b) -> Integer.compare(a.getSequence(), b.getSequence()));
+                for (MapChangesPatch.Op op : ops) {
+                    if (op.getSequence() <= sequence) continue; // already applied (resent patch)
+                    if (op.getSequence() != sequence + 1 || op.getChanges() == null) {
+                        conn.rollback();
+                        return Response.success(request, new MapChangesPatchResult(mapId, startSequence,
+                                ValidationResult.error("sequence", "The draft was changed elsewhere. Reload the map.")));
+                    }
+                    MapChanges changes = op.getChanges();
+                    changes.setMapId(mapId);
+                    changes.setCityId(cityId);
+                    changes.setDraft(true);
+                    ValidationResult opValidation = validateAllChanges(changes);
+                    if (!opValidation.isValid()) {
+                        conn.rollback();
+                        return Response.success(request, new MapChangesPatchResult(mapId, startSequence, opValidation));
+                    }
+                    affectedPoiIds.addAll(collectChangedPoiIds(changes));
+                    applyMapChanges(conn, changes, userId, userId, 0, validation, true);
+                    reload |= op.isFull() || !changes.getAddedPois().isEmpty() || !changes.getPoiMapLinks().isEmpty();
+                    if (op.isFull() || !MapEditRequestDAO.hasDraftRequestForMapUser(conn, mapId, userId)) {
+                        MapEditRequestDAO.upsertDraftRequest(conn, mapId, cityId, userId, changes);
+                        MapDraftOpDAO.reset(conn, mapId, userId, op.getSequence());
+                    } else {
+                        MapDraftOpDAO.append(conn, mapId, userId, op.getSequence(), changes);
+                        MapChangeLogDAO.record(conn, cityId, mapId, MapChangeLogDAO.ENTITY_DRAFT, userId);
+                    }
+                    sequence = op.getSequence();
+                }
+                if (MapDraftOpDAO.countOps(conn, mapId, userId) > DRAFT_COMPACT_OPS) {
+                    MapEditRequestDTO draft = MapEditRequestDAO.getDraftRequestForMapUser(conn, mapId, userId);
+                    if (draft != null && draft.getChanges() != null) {
+                        MapEditRequestDAO.upsertDraftRequest(conn, mapId, cityId, userId, draft.getChanges());
+                    }
+                }
+                conn.commit();
+                System.out.println("MapEditHandler: SAVE_MAP_CHANGES patch mapId=" + mapId + " ops "
+                        + startSequence + " -> " + sequence);
+                MapChanges scope = new MapChanges().forMap(mapId).forCity(cityId);
+                refreshSearchIndexes(affectedPoiIds, scope, validation);
+                MapChangesPatchResult result = new MapChangesPatchResult(mapId, sequence, validation);
+                result.setReloadRequired(reload || !validation.getCreatedPoiIds().isEmpty());
+                return Response.success(request, result);
+            } catch (SQLException e) {
+                conn.rollback();
+                if (e.getErrorCode() == 1062) { // duplicate op sequence: another save of this draft won
+                    return Response.success(request, new MapChangesPatchResult(mapId, MapDraftOpDAO.getLastSequence(conn, mapId, userId),
+                            ValidationResult.error("sequence", "The draft was changed elsewhere. Reload the map.")));
+                }
+                return Response.error(request, Response.ERR_DATABASE, "Transaction failed: " + e.getMessage());
+            }
+        } catch (SQLException e) {
+            return Response.error(request, Response.ERR_DATABASE, e.getMessage());
+        }
+    }
+
     /**
      * Apply map changes as draft (applyAsDraft=true) or publish (applyAsDraft=false).
      * Non-managers must only call with applyAsDraft=true; only content managers may publish.
@@ -516,8 +907,16 @@ public class MapEditHandler {
             if (conn == null) {
                 return Response.error(request, Response.ERR_DATABASE, "Database connection failed");
             }
+            Set<Integer> affectedPoiIds = collectAffectedPoiIds(conn, changes);
             conn.setAutoCommit(false);
             try {
+                if (!applyAsDraft) {
+                    List<EditConflict.Entity> conflicts = EntityVersionDAO.claim(conn, changes);
+                    if (!conflicts.isEmpty()) {
+                        conn.rollback();
+                        return conflictResponse(request, changes, conflicts);
+                    }
+                }
                 applyMapChanges(conn, changes, userId, userId, 0, validation, applyAsDraft);
                 if (applyAsDraft) {
                     Integer mapId = changes.getMapId();
@@ -530,12 +929,19 @@ public class MapEditHandler {
                     validation.setSuccessMessage("Changes saved. They are stored as draft and visible only to you until sent for approval.");
                 } else {
                     validation.setSuccessMessage("Changes applied and released. Customers can see the new version.");
-                    Integer cityId = changes.getCityId();
-                    if (cityId != null && cityId > 0) {
-                        notifyCustomersAboutMapUpdate(cityId, changes);
-                    }
                 }
                 conn.commit();
+                DistanceJobWorker.getInstance().wakeUp();
+                if (!applyAsDraft) {
+                    ContentTags.getInstance().catalogChanged();
+                }
+                if (!applyAsDraft && changes.getCityId() != null) {
+                    MapPackageService.getInstance().scheduleBuild(changes.getCityId());
+                    if (changes.getCityId() > 0) {
+                        notifyCustomersAboutMapUpdate(changes.getCityId(), changes);
+                    }
+                }
+                refreshSearchIndexes(affectedPoiIds, changes, validation);
                 return Response.success(request, validation);
             } catch (SQLException e) {
                 conn.rollback();
@@ -661,6 +1067,9 @@ public class MapEditHandler {
 
             // Split into granular requests so manager can approve/reject each POI and tour individually
             List<MapChanges> granular = splitIntoGranularRequests(changes);
+            // Parts writing the same entity (e.g. a POI update and its unlink) must not conflict with each other
+            EditConflict.keepBaseVersionsInFirstPart(granular,
+                    TourDAO.getTourIdsForStops(conn, changes.getDeletedStopIds()));
 
             // Collect (mapId, cityId) scope so we replace any existing PENDING requests from this user for same scope
             Set<String> scopePairs = new HashSet<>();
@@ -861,6 +1270,14 @@ public class MapEditHandler {
         return Response.error(request, Response.ERR_DATABASE, "Failed to submit request");
     }
 
+    /** True for customers and anonymous users (no draft or pending content to show). */
+    private static boolean isCustomerRequest(Request request) {
+        String token = request.getSessionToken();
+        SessionManager.SessionInfo session = token != null ? SessionManager.getInstance().validateSession(token) : null;
+        if (session == null) return request.getUserId() <= 0;
+        return "CUSTOMER".equals(session.role) || "ANONYMOUS".equals(session.role);
+    }
+
     private static int resolveUserId(Request request) {
         String token = request.getSessionToken();
         SessionManager.SessionInfo session = token != null ? SessionManager.getInstance().validateSession(token) : null;
@@ -896,6 +1313,10 @@ public class MapEditHandler {
             c.setMapId(mapId);
             c.setCityId(cityId);
             c.setDraft(false);
+            // Approval of each part is checked against the versions the editor saw (see keepBaseVersionsInFirstPart)
+            c.setBaseMapVersion(changes.getBaseMapVersion());
+            c.getBasePoiVersions().putAll(changes.getBasePoiVersions());
+            c.getBaseTourVersions().putAll(changes.getBaseTourVersions());
             return c;
         };
 
@@ -1177,15 +1598,25 @@ public class MapEditHandler {
                 return Response.error(request, Response.ERR_DATABASE, "Database connection failed");
             }
 
+            int creatorId = reqDTO.getUserId() > 0 ? reqDTO.getUserId() : 2;
+            // approved_by must reference a valid user (FK); avoid 0
+            int approverId = request.getUserId() > 0 ? request.getUserId() : creatorId;
+            // Reads before the transaction; the transaction only claims versions and writes
+            Set<Integer> affectedPoiIds = collectAffectedPoiIds(conn, changes);
             conn.setAutoCommit(false);
 
             try {
-                int creatorId = reqDTO.getUserId() > 0 ? reqDTO.getUserId() : 2;
-                // approved_by must reference a valid user (FK); avoid 0
-                int approverId = request.getUserId() > 0 ? request.getUserId() : creatorId;
+                List<EditConflict.Entity> conflicts = EntityVersionDAO.claim(conn, changes);
+                if (!conflicts.isEmpty()) {
+                    conn.rollback();
+                    System.out.println("MapEditHandler: Request " + reqId + " conflicts with newer edits");
+                    return conflictResponse(request, changes, conflicts);
+                }
                 applyMapChanges(conn, changes, creatorId, approverId, reqId, validation);
+                conn.commit();
+                conn.setAutoCommit(true);
 
-                // Create tour route maps for any approved tours (added or updated)
+                // Create tour route maps for any approved tours (added or updated); derived, so after commit
                 java.util.Set<Integer> tourIds = new java.util.HashSet<>();
                 tourIds.addAll(validation.getCreatedTourIds());
                 for (TourDTO t : changes.getUpdatedTours()) tourIds.add(t.getId());
@@ -1204,7 +1635,11 @@ public class MapEditHandler {
                     }
                 }
 
-                conn.commit();
+                DistanceJobWorker.getInstance().wakeUp();
+                if (changes.getCityId() != null) {
+                    MapPackageService.getInstance().scheduleBuild(changes.getCityId());
+                }
+                refreshSearchIndexes(affectedPoiIds, changes, validation);
                 validation.setSuccessMessage("Request approved and changes applied successfully.");
                 System.out.println("MapEditHandler: Approved request " + reqId);
 
@@ -1229,6 +1664,80 @@ public class MapEditHandler {
         return Response.success(request, validation);
     }
 
+    /**
+     * CONFLICT answer for changes whose base versions are outdated; nothing was written.
+     */
+    private static Response conflictResponse(Request request, MapChanges changes, List<EditConflict.Entity> conflicts) {
+        EditConflict conflict = new EditConflict(changes.getMapId() != null ? changes.getMapId() : 0, conflicts);
+        return Response.conflict(request,
+                "Someone else changed this content in the meantime: " + conflict.describe(), conflict);
+    }
+
+    /**
+     * POIs named by the changes themselves (updated, deleted, linked, unlinked).
+     */
+    private static Set<Integer> collectChangedPoiIds(MapChanges changes) {
+        Set<Integer> ids = new HashSet<>();
+        for (Poi p : changes.getUpdatedPois()) ids.add(p.getId());
+        ids.addAll(changes.getDeletedPoiIds());
+        for (MapChanges.PoiMapLink link : changes.getPoiMapLinks()) ids.add(link.poiId);
+        for (MapChanges.PoiMapLink link : changes.getPoiMapUnlinks()) ids.add(link.poiId);
+        return ids;
+    }
+
+    /**
+     * Collect POI ids whose published state may change when the given changes are applied.
+     * Must run before applyMapChanges so links of maps that are about to be deleted are still visible.
+     */
+    private static Set<Integer> collectAffectedPoiIds(Connection conn, MapChanges changes) throws SQLException {
+        Set<Integer> ids = collectChangedPoiIds(changes);
+        if (changes.getMapId() != null && changes.getMapId() > 0) {
+            ids.addAll(PoiDAO.getPoiIdsLinkedToMap(conn, changes.getMapId()));
+        }
+        if (changes.getDeletedMapIds() != null) {
+            for (Integer mapId : changes.getDeletedMapIds()) {
+                if (mapId != null && mapId > 0) ids.addAll(PoiDAO.getPoiIdsLinkedToMap(conn, mapId));
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Bring the in-memory search indexes (geospatial POI grid, POI facets, BM25 city index)
+     * in line with committed changes (incremental, no full reload), then drop the cached
+     * search results of the affected cities.
+     */
+    private static void refreshSearchIndexes(Set<Integer> affectedPoiIds, MapChanges changes, ValidationResult validation) {
+        PoiSpatialIndex poiIndex = PoiSpatialIndex.getInstance();
+        PoiFacetIndex facetIndex = PoiFacetIndex.getInstance();
+        CitySearchIndex cityIndex = CitySearchIndex.getInstance();
+        if (changes.getDeletedCityIds() != null) {
+            for (Integer cityId : changes.getDeletedCityIds()) {
+                if (cityId != null && cityId > 0) {
+                    poiIndex.removeCity(cityId);
+                    facetIndex.removeCity(cityId);
+                    cityIndex.removeCity(cityId);
+                }
+            }
+        }
+        Set<Integer> ids = new HashSet<>(affectedPoiIds);
+        ids.addAll(validation.getCreatedPoiIds());
+        poiIndex.refreshPois(ids);
+        facetIndex.refreshPois(ids);
+
+        Set<Integer> cityIds = new HashSet<>();
+        if (changes.getCityId() != null) cityIds.add(changes.getCityId());
+        if (validation.getCreatedCityId() != null) cityIds.add(validation.getCreatedCityId());
+        if (changes.getNewMaps() != null) {
+            for (MapChanges.NewMapRequest m : changes.getNewMaps()) cityIds.add(m.getCityId());
+        }
+        for (Integer cityId : cityIds) {
+            if (cityId != null && cityId > 0) cityIndex.refreshCity(cityId);
+        }
+        if (changes.getDeletedCityIds() != null) cityIds.addAll(changes.getDeletedCityIds());
+        SearchResultCache.getInstance().invalidateCities(cityIds);
+    }
+
     /**
      * Applies map changes in a transaction (caller must commit).
      * Creates/updates city, map, POIs, POI-map links, tours, tour stops, and a map version (APPROVED).
@@ -1496,40 +2005,49 @@ public class MapEditHandler {
 
         // Add POIs: create only new ones (id==0); for existing draft POIs (id>0), just update map_pois to approved (draft save and publish both persist them)
         // Skip any POI that is in deletedPoiIds (user deleted the draft POI this save)
+        // Rows are written in batches (one INSERT for new POIs, one for all links); ids and display order follow list order.
         java.util.Set<Integer> deletedPoiIdSet = (changes.getDeletedPoiIds() != null && !changes.getDeletedPoiIds().isEmpty())
                 ? new java.util.HashSet<>(changes.getDeletedPoiIds()) : java.util.Collections.emptySet();
         boolean linkApproved = !asDraft;
         int linkedByUserId = linkApproved ? 0 : creatorUserId;
         int displayOrder = 0;
+        // POIs whose distances to their map neighbours must be (re)computed: added, newly linked or moved
+        java.util.Set<Integer> distancePoiIds = new java.util.LinkedHashSet<>();
         List<Poi> addedPoisList = changes.getAddedPois();
         if (addedPoisList == null) addedPoisList = java.util.Collections.emptyList();
+        List<Poi> newPois = new ArrayList<>();
+        for (Poi poi : addedPoisList) {
+            if (!deletedPoiIdSet.contains(poi.getId()) && poi.getId() <= 0) newPois.add(poi);
+        }
+        List<Integer> newPoiIds = PoiDAO.createPois(conn, newPois);
+        validation.getCreatedPoiIds().addAll(newPoiIds);
+        java.util.Iterator<Integer> nextNewPoiId = newPoiIds.iterator();
+        List<MapChanges.PoiMapLink> linksToWrite = new ArrayList<>();
         for (Poi poi : addedPoisList) {
             if (deletedPoiIdSet.contains(poi.getId())) continue;
-            int poiId;
-            if (poi.getId() > 0) {
-                // Existing draft POI: do NOT create duplicate; update map_pois link to approved
-                poiId = poi.getId();
-                if (changes.getMapId() != null && changes.getMapId() > 0) {
-                    PoiDAO.linkPoiToMap(conn, changes.getMapId(), poiId, displayOrder++, linkApproved, linkedByUserId);
-                }
-            } else {
-                // New POI: create and link
-                poiId = PoiDAO.createPoi(conn, poi);
-                if (poiId > 0) {
-                    validation.getCreatedPoiIds().add(poiId);
-                    if (changes.getMapId() != null && changes.getMapId() > 0) {
-                        PoiDAO.linkPoiToMap(conn, changes.getMapId(), poiId, displayOrder++, linkApproved, linkedByUserId);
-                    }
-                }
+            // Existing draft POI: do NOT create duplicate; update map_pois link to approved
+            int poiId = poi.getId() > 0 ? poi.getId() : nextNewPoiId.next();
+            distancePoiIds.add(poiId);
+            if (changes.getMapId() != null && changes.getMapId() > 0) {
+                linksToWrite.add(new MapChanges.PoiMapLink(changes.getMapId(), poiId, displayOrder++));
             }
         }
 
         // Update POIs (publish/approval only).
         // Draft saves must not mutate customer-visible POI fields.
-        if (!asDraft) {
+        if (!asDraft && !changes.getUpdatedPois().isEmpty()) {
+            // Only a move invalidates stored distances; compare before the rows are overwritten
+            java.util.Map<Integer, Poi> storedPois = new java.util.HashMap<>();
+            List<Integer> updatedPoiIds = changes.getUpdatedPois().stream().map(Poi::getId).collect(Collectors.toList());
+            for (Poi stored : PoiDAO.getPoisByIds(conn, updatedPoiIds)) {
+                storedPois.put(stored.getId(), stored);
+            }
             for (Poi poi : changes.getUpdatedPois()) {
-                PoiDAO.updatePoi(conn, poi);
+                if (PoiDistanceDAO.coordinatesChanged(storedPois.get(poi.getId()), poi)) {
+                    distancePoiIds.add(poi.getId());
+                }
             }
+            PoiDAO.updatePois(conn, changes.getUpdatedPois());
         }
 
         // Link/unlink POIs (POI can appear in multiple maps of the same city)
@@ -1540,9 +2058,11 @@ public class MapEditHandler {
         for (MapChanges.PoiMapLink link : changes.getPoiMapLinks()) {
             int poiId = link.poiId > 0 ? link.poiId : resolvePoiId(link.poiId, createdPoiIds, newPoiIndex);
             if (poiId <= 0 || deletedPoiIdSet.contains(poiId)) continue;
-            PoiDAO.linkPoiToMap(conn, link.mapId, poiId, link.displayOrder, linkApproved, linkedByUserId);
+            linksToWrite.add(new MapChanges.PoiMapLink(link.mapId, poiId, link.displayOrder));
+            distancePoiIds.add(poiId);
         }
         }
+        PoiDAO.linkPoisToMaps(conn, linksToWrite, linkApproved, linkedByUserId);
         // Unlink POIs from map – skip when asDraft (employee Save changes); requires manager approval
         if (!asDraft && changes.getPoiMapUnlinks() != null) {
             for (MapChanges.PoiMapLink link : changes.getPoiMapUnlinks()) {
@@ -1562,20 +2082,22 @@ public class MapEditHandler {
 
         // When manager publishes: approve all draft POI links on this map (so Save-then-Publish works) and the map itself
         if (!asDraft && changes.getMapId() != null && changes.getMapId() > 0) {
+            for (Poi draft : PoiDAO.getDraftPoisForMap(conn, changes.getMapId())) {
+                distancePoiIds.add(draft.getId());
+            }
             PoiDAO.approveAllDraftLinksForMap(conn, changes.getMapId());
             MapDAO.setMapApproved(conn, changes.getMapId());
         }
 
-        // Recompute and store distances between POIs on this map (for tour planning)
-        if (changes.getMapId() != null && changes.getMapId() > 0) {
-            List<Poi> mapPois = PoiDAO.getPoisForMap(changes.getMapId());
-            if (mapPois != null && mapPois.size() >= 2) {
-                try {
-                    PoiDistanceDAO.recomputeAndStoreDistances(conn, mapPois);
-                } catch (SQLException e) {
-                    System.err.println("MapEditHandler: Failed to recompute POI distances: " + e.getMessage());
-                }
-            }
+        // Distances between POIs on this map (for tour planning) are computed after commit
+        // by DistanceJobWorker; enqueue in this transaction so the jobs exist iff the edit commits.
+        // Only pairs involving added, linked or moved POIs change, so one job per such POI
+        // (O(n) pairs each) replaces recomputing every pair of the map. Drafts are not visible
+        // to tours, so their distances are computed when they are published.
+        String distanceBatchId = java.util.UUID.randomUUID().toString();
+        if (!asDraft) {
+            distancePoiIds.removeAll(deletedPoiIdSet);
+            DistanceJobDAO.enqueueAll(conn, distanceBatchId, DistanceJobDAO.TYPE_POI, distancePoiIds, approverUserId);
         }
 
         // Tour metadata/route changes should only be applied on Publish/approval.
@@ -1583,7 +2105,11 @@ public class MapEditHandler {
         if (!asDraft) {
         // Add/update tours and stops – apply on Publish.
         // Delete tours/stops – only when !asDraft (manager approval).
+        // Stops are resolved in request order (new POI ids are consumed in that order), checked against
+        // the POI table with one query and written in batches after the stop deletes.
         java.util.List<Integer> createdTourIds = validation.getCreatedTourIds();
+        List<TourStopDTO> stopsToAdd = new ArrayList<>();
+        List<TourStopDTO> stopsToUpdate = new ArrayList<>();
         for (TourDTO tour : changes.getAddedTours()) {
             int tourId;
             // Ensure tour has cityId from request so Save creates with correct city_id and Publish lookup finds it (avoids duplicate tour in catalogue).
@@ -1608,29 +2134,17 @@ public class MapEditHandler {
                     tourId = existingId;
                     tour.setId(tourId);
                     TourDAO.updateTour(conn, tour);
-                    createdTourIds.add(tourId);
-                    if (!asDraft && tour.getStops() != null && !tour.getStops().isEmpty()) {
-                        for (TourStopDTO stop : tour.getStops()) {
-                            int effectiveTourId = stop.getTourId() > 0 ? stop.getTourId() : tourId;
-                            int effectivePoiId = resolvePoiId(stop.getPoiId(), validation.getCreatedPoiIds(), newPoiIndex);
-                            if (effectivePoiId <= 0 || !TourDAO.poiExists(conn, effectivePoiId)) continue;
-                            TourStopDTO resolvedStop = new TourStopDTO(0, effectiveTourId, effectivePoiId,
-                                    stop.getPoiName(), stop.getPoiCategory(), stop.getStopOrder(), stop.getNotes());
-                            TourDAO.addTourStop(conn, resolvedStop);
-                        }
-                    }
                 } else {
                     tourId = TourDAO.createTour(conn, tour);
-                    createdTourIds.add(tourId);
-                    if (!asDraft && tour.getStops() != null && !tour.getStops().isEmpty()) {
-                        for (TourStopDTO stop : tour.getStops()) {
-                            int effectiveTourId = stop.getTourId() > 0 ? stop.getTourId() : tourId;
-                            int effectivePoiId = resolvePoiId(stop.getPoiId(), validation.getCreatedPoiIds(), newPoiIndex);
-                            if (effectivePoiId <= 0 || !TourDAO.poiExists(conn, effectivePoiId)) continue;
-                            TourStopDTO resolvedStop = new TourStopDTO(0, effectiveTourId, effectivePoiId,
-                                    stop.getPoiName(), stop.getPoiCategory(), stop.getStopOrder(), stop.getNotes());
-                            TourDAO.addTourStop(conn, resolvedStop);
-                        }
+                }
+                createdTourIds.add(tourId);
+                if (!asDraft && tour.getStops() != null && !tour.getStops().isEmpty()) {
+                    for (TourStopDTO stop : tour.getStops()) {
+                        int effectiveTourId = stop.getTourId() > 0 ? stop.getTourId() : tourId;
+                        int effectivePoiId = resolvePoiId(stop.getPoiId(), validation.getCreatedPoiIds(), newPoiIndex);
+                        if (effectivePoiId <= 0) continue;
+                        stopsToAdd.add(new TourStopDTO(0, effectiveTourId, effectivePoiId,
+                                stop.getPoiName(), stop.getPoiCategory(), stop.getStopOrder(), stop.getNotes()));
                     }
                 }
             }
@@ -1638,6 +2152,7 @@ public class MapEditHandler {
         for (TourDTO tour : changes.getUpdatedTours()) {
             TourDAO.updateTour(conn, tour);
         }
+        java.util.Set<Integer> removedTourIds = new java.util.HashSet<>();
         if (!asDraft && changes.getDeletedTourIds() != null) {
             java.util.Set<Integer> addedOrUpdatedTourIds = new java.util.HashSet<>();
             for (TourDTO t : changes.getAddedTours()) { if (t.getId() > 0) addedOrUpdatedTourIds.add(t.getId()); }
@@ -1646,35 +2161,42 @@ public class MapEditHandler {
             for (int tourId : changes.getDeletedTourIds()) {
                 if (addedOrUpdatedTourIds.contains(tourId)) continue; // same request adds/updates this tour – do not delete
                 TourDAO.deleteTour(conn, tourId);
+                removedTourIds.add(tourId);
             }
         }
         // Add/update/delete tour stops only on Publish – on Save (draft) we only persist POIs and store intent in draft; applying stops here would make the new POI appear published
         // Process deletes BEFORE updates so unique (tour_id, stop_order) is not violated when renumbering
+        java.util.Set<Integer> deletedStopTourIds = java.util.Collections.emptySet();
         if (!asDraft) {
             if (changes.getDeletedStopIds() != null) {
-                for (int stopId : changes.getDeletedStopIds()) {
-                    TourDAO.removeTourStop(conn, stopId);
-                }
+                deletedStopTourIds = TourDAO.removeTourStops(conn, changes.getDeletedStopIds());
             }
             if (changes.getAddedStops() != null) {
                 for (TourStopDTO stop : changes.getAddedStops()) {
                     if (stop.getTourId() <= 0) continue;
                     int effectivePoiId = resolvePoiId(stop.getPoiId(), validation.getCreatedPoiIds(), newPoiIndex);
-                    if (effectivePoiId <= 0 || !TourDAO.poiExists(conn, effectivePoiId)) continue;
-                    TourStopDTO toInsert = new TourStopDTO(0, stop.getTourId(), effectivePoiId, stop.getPoiName(),
-                            stop.getPoiCategory(), stop.getStopOrder(), stop.getNotes());
-                    TourDAO.addTourStop(conn, toInsert);
+                    if (effectivePoiId <= 0) continue;
+                    stopsToAdd.add(new TourStopDTO(0, stop.getTourId(), effectivePoiId, stop.getPoiName(),
+                            stop.getPoiCategory(), stop.getStopOrder(), stop.getNotes()));
                 }
             }
             if (changes.getUpdatedStops() != null) {
                 for (TourStopDTO stop : changes.getUpdatedStops()) {
                     int effectivePoiId = resolvePoiId(stop.getPoiId(), validation.getCreatedPoiIds(), newPoiIndex);
-                    if (effectivePoiId <= 0 || !TourDAO.poiExists(conn, effectivePoiId)) continue;
-                    TourStopDTO toUpdate = new TourStopDTO(stop.getId(), stop.getTourId(), effectivePoiId,
-                            stop.getPoiName(), stop.getPoiCategory(), stop.getStopOrder(), stop.getNotes());
-                    TourDAO.updateTourStop(conn, toUpdate);
+                    if (effectivePoiId <= 0) continue;
+                    stopsToUpdate.add(new TourStopDTO(stop.getId(), stop.getTourId(), effectivePoiId,
+                            stop.getPoiName(), stop.getPoiCategory(), stop.getStopOrder(), stop.getNotes()));
                 }
             }
+            // One existence check for every POI referenced by a stop
+            java.util.Set<Integer> referencedPoiIds = new java.util.HashSet<>();
+            for (TourStopDTO stop : stopsToAdd) referencedPoiIds.add(stop.getPoiId());
+            for (TourStopDTO stop : stopsToUpdate) referencedPoiIds.add(stop.getPoiId());
+            java.util.Set<Integer> existingPoiIds = TourDAO.getExistingPoiIds(conn, referencedPoiIds);
+            stopsToAdd.removeIf(stop -> !existingPoiIds.contains(stop.getPoiId()) || removedTourIds.contains(stop.getTourId()));
+            stopsToUpdate.removeIf(stop -> !existingPoiIds.contains(stop.getPoiId()));
+            TourDAO.addTourStops(conn, stopsToAdd);
+            TourDAO.updateTourStops(conn, stopsToUpdate);
         }
         Integer cityIdForTours = changes.getCityId();
         if (cityIdForTours != null && cityIdForTours > 0) {
@@ -1683,27 +2205,14 @@ public class MapEditHandler {
             for (TourDTO t : changes.getUpdatedTours()) tourIds.add(t.getId());
             for (TourStopDTO s : changes.getAddedStops()) if (s.getTourId() > 0) tourIds.add(s.getTourId());
             for (TourStopDTO s : changes.getUpdatedStops()) tourIds.add(s.getTourId());
-            if (!asDraft) {
-                for (int stopId : changes.getDeletedStopIds()) {
-                    Integer tid = TourDAO.getTourIdForStop(conn, stopId);
-                    if (tid != null) tourIds.add(tid);
-                }
-            }
-            for (int tourId : tourIds) {
-                try {
-                    TourDAO.recomputeAndUpdateTourDistance(conn, tourId);
-                } catch (SQLException e) {
-                    System.err.println("MapEditHandler: Failed to recompute tour distance for tour " + tourId + ": " + e.getMessage());
-                }
-            }
+            tourIds.addAll(deletedStopTourIds);
+            DistanceJobDAO.enqueueAll(conn, distanceBatchId, DistanceJobDAO.TYPE_TOUR, tourIds, approverUserId);
         }
         }
 
         // Delete POIs – skip when asDraft (employee Save changes); requires manager approval
         if (!asDraft && changes.getDeletedPoiIds() != null) {
-            for (int poiId : changes.getDeletedPoiIds()) {
-                PoiDAO.deletePoi(conn, poiId);
-            }
+            PoiDAO.deletePois(conn, changes.getDeletedPoiIds());
         }
 
         // Create map version — DRAFT (editor only) or APPROVED (customers can see)
@@ -1725,6 +2234,7 @@ public class MapEditHandler {
                 validation.setCreatedVersionId(versionId);
                 if (!asDraft) {
                     MapVersionDAO.updateStatus(conn, versionId, "APPROVED", approverUserId, null);
+                    MapSnapshotDAO.createSnapshot(conn, changes.getMapId(), versionId);
                     AuditLogDAO.log(conn, AuditLogDAO.ACTION_VERSION_PUBLISHED, approverUserId,
                             AuditLogDAO.ENTITY_MAP_VERSION, versionId,
                             "from_request", mapEditRequestId > 0 ? String.valueOf(mapEditRequestId) : "direct");
@@ -2056,6 +2566,14 @@ public class MapEditHandler {
             result.addError("cityId", "Valid city ID is required");
         }
 
+        if (poi.getLatitude() != null && (poi.getLatitude().isNaN() || Math.abs(poi.getLatitude()) > 90)) {
+            result.addError("latitude", "Latitude must be between -90 and 90");
+        }
+
+        if (poi.getLongitude() != null && (poi.getLongitude().isNaN() || Math.abs(poi.getLongitude()) > 180)) {
+            result.addError("longitude", "Longitude must be between -180 and 180");
+        }
+
         return result;
     }
 
@@ -2176,6 +2694,7 @@ public class MapEditHandler {
         return type == MessageType.GET_CITIES ||
                 type == MessageType.GET_MAPS_FOR_CITY ||
                 type == MessageType.GET_MAP_CONTENT ||
+                type == MessageType.GET_MAP_CONTENT_DELTA ||
                 type == MessageType.GET_POIS_FOR_CITY ||
                 type == MessageType.SAVE_MAP_CHANGES ||
                 type == MessageType.SUBMIT_MAP_CHANGES ||
@@ -2198,6 +2717,8 @@ public class MapEditHandler {
                 type == MessageType.DELETE_TOUR ||
                 type == MessageType.ADD_TOUR_STOP ||
                 type == MessageType.UPDATE_TOUR_STOP ||
-                type == MessageType.REMOVE_TOUR_STOP;
+                type == MessageType.REMOVE_TOUR_STOP ||
+                type == MessageType.OPTIMIZE_TOUR ||
+                type == MessageType.IMPORT_POIS;
     }
 }
@@ -8,6 +8,7 @@ import server.DBConnector;
 import server.dao.AuditLogDAO;
 import server.dao.NotificationDAO;
 import server.dao.PricingDAO;
+import server.service.SearchResultCache;
 
 import java.sql.Connection;
 import java.sql.SQLException;
@@ -214,6 +215,9 @@ public class PricingHandler {
 
             conn.commit();
 
+            // Cached search results still show the old city price
+            SearchResultCache.getInstance().invalidateCity(pricingRequest.getCityId());
+
             // Return updated request
             PricingRequestDTO updated = PricingDAO.getRequestById(requestId);
             System.out.println("PricingHandler: Approved pricing request #" + requestId);
@@ -309,6 +313,9 @@ public class PricingHandler {
 
             conn.commit();
 
+            // Cached search results still show the old city price
+            SearchResultCache.getInstance().invalidateCity(pricingRequest.getCityId());
+
             // Return updated request
             PricingRequestDTO updated = PricingDAO.getRequestById(requestId);
             System.out.println("PricingHandler: Rejected pricing request #" + requestId);
@@ -5,10 +5,15 @@ import common.Request;
 import common.Response;
 import common.dto.CityPriceInfo;
 import common.dto.EntitlementInfo;
+import common.dto.MapPackageChunk;
+import common.dto.MapPackageChunkRequest;
+import common.dto.MapPackageInfo;
 import common.dto.PurchaseRequest;
 import common.dto.PurchaseResponse;
 import server.dao.PurchaseDAO;
 import server.SessionManager;
+import server.service.ContentTags;
+import server.service.MapPackageService;
 
 import java.time.LocalDate;
 
@@ -26,6 +31,7 @@ public class PurchaseHandler {
             case CHECK_DISCOUNT_ELIGIBILITY:
             case CAN_DOWNLOAD:
             case DOWNLOAD_MAP_VERSION:
+            case GET_MAP_PACKAGE_CHUNK:
             case RECORD_VIEW_EVENT:
             case RECORD_DUMMY_MAP_DOWNLOAD:
             case GET_MY_PURCHASES:
@@ -51,6 +57,8 @@ public class PurchaseHandler {
                 return handleCanDownload(request);
             case DOWNLOAD_MAP_VERSION:
                 return handleDownloadMapVersion(request);
+            case GET_MAP_PACKAGE_CHUNK:
+                return handleGetMapPackageChunk(request);
             case RECORD_VIEW_EVENT:
                 return handleRecordViewEvent(request);
             case RECORD_DUMMY_MAP_DOWNLOAD:
@@ -69,8 +77,14 @@ public class PurchaseHandler {
             return Response.error(request, Response.ERR_UNAUTHORIZED, "Login required");
         }
 
+        String etag = ContentTags.getInstance().purchasesTag(userId, LocalDate.now());
+        Response notModified = ContentTags.notModified(request, etag);
+        if (notModified != null) {
+            return notModified;
+        }
+
         java.util.List<EntitlementInfo> purchases = PurchaseDAO.getUserPurchases(userId);
-        return Response.success(request, purchases);
+        return Response.success(request, purchases, etag);
     }
 
     private static Response handleGetCityPrice(Request request) {
@@ -113,6 +127,7 @@ public class PurchaseHandler {
         boolean success = PurchaseDAO.purchaseOneTime(userId, purchase.getCityId());
 
         if (success) {
+            ContentTags.getInstance().purchasesChanged(userId);
             // Save card if requested
             if (purchase.isSaveCard()) {
                 server.dao.UserDAO.updateProfile(userId, null, null, purchase.getCardLast4(), purchase.getCardExpiry());
@@ -147,6 +162,7 @@ public class PurchaseHandler {
         boolean success = PurchaseDAO.purchaseSubscription(userId, purchase.getCityId(), purchase.getMonths());
 
         if (success) {
+            ContentTags.getInstance().purchasesChanged(userId);
             // Save card if requested
             if (purchase.isSaveCard()) {
                 server.dao.UserDAO.updateProfile(userId, null, null, purchase.getCardLast4(), purchase.getCardExpiry());
@@ -256,13 +272,19 @@ public class PurchaseHandler {
         EntitlementInfo entitlement = PurchaseDAO.getEntitlement(userId, cityId);
 
         if (entitlement.isCanDownload()) {
+            // The city's prebuilt package; the client fetches it with GET_MAP_PACKAGE_CHUNK
+            MapPackageInfo packageInfo = MapPackageService.getInstance().getOrBuild(cityId);
+            if (packageInfo == null) {
+                return Response.error(request, Response.ERR_INTERNAL, "Offline package is not available right now");
+            }
             // Only record in download_events for one-time (so subscription downloads don't
             // use one-time slots)
             if (entitlement.getType() == EntitlementInfo.EntitlementType.ONE_TIME) {
                 PurchaseDAO.recordDownload(userId, cityId);
+                ContentTags.getInstance().purchasesChanged(userId);
             }
             // City report "Downloads" metric: demo download button in map viewer (RECORD_DUMMY_MAP_DOWNLOAD), not this call.
-            return Response.success(request, "Download authorized and recorded");
+            return Response.success(request, packageInfo);
         }
         if (entitlement.getType() == EntitlementInfo.EntitlementType.ONE_TIME) {
             return Response.error(request, Response.ERR_FORBIDDEN,
@@ -271,6 +293,34 @@ public class PurchaseHandler {
         return Response.error(request, Response.ERR_UNAUTHORIZED, "Purchase required to download");
     }
 
+    /**
+     * Chunk of an offline package handed out by DOWNLOAD_MAP_VERSION. Any purchase of the city
+     * may fetch chunks (a one-time purchase has used its download slot by then); resuming an
+     * interrupted download does not count as another download.
+     */
+    private static Response handleGetMapPackageChunk(Request request) {
+        Integer userId = getAuthenticatedUserId(request);
+        if (userId == null) {
+            return Response.error(request, Response.ERR_UNAUTHORIZED, "Login required");
+        }
+        if (!(request.getPayload() instanceof MapPackageChunkRequest)) {
+            return Response.error(request, Response.ERR_VALIDATION, "Invalid chunk request");
+        }
+        MapPackageChunkRequest chunkRequest = (MapPackageChunkRequest) request.getPayload();
+
+        EntitlementInfo entitlement = PurchaseDAO.getEntitlement(userId, chunkRequest.getCityId());
+        if (entitlement.getType() == EntitlementInfo.EntitlementType.NONE) {
+            return Response.error(request, Response.ERR_UNAUTHORIZED, "Purchase required to download");
+        }
+
+        MapPackageChunk chunk = MapPackageService.getInstance().readChunk(
+                chunkRequest.getCityId(), chunkRequest.getHash(), chunkRequest.getOffset());
+        if (chunk == null) {
+            return Response.error(request, Response.ERR_NOT_FOUND, "Package is no longer available, download it again");
+        }
+        return Response.success(request, chunk);
+    }
+
     /**
      * City report "views": user opened the purchased city's map viewer (My Purchases / post-purchase flow).
      * Payload: city id only (string or integer). One increment per open, not per map selection.
@@ -4,8 +4,13 @@ import common.DailyStat;
 import common.MessageType;
 import common.Request;
 import common.Response;
+import common.dto.CatalogExportChunk;
+import common.dto.CatalogExportChunkRequest;
+import common.dto.CatalogExportInfo;
 import common.dto.ReportRequest;
+import server.SessionManager;
 import server.service.AllCitiesReportGenerator;
+import server.service.CatalogExportService;
 import server.service.CityReportGenerator;
 import server.service.ReportGenerator;
 
@@ -14,10 +19,18 @@ import java.util.List;
 public class ReportHandler {
 
     public static boolean canHandle(MessageType type) {
-        return type == MessageType.GET_ACTIVITY_REPORT;
+        return type == MessageType.GET_ACTIVITY_REPORT ||
+                type == MessageType.EXPORT_CATALOG ||
+                type == MessageType.GET_CATALOG_EXPORT_CHUNK;
     }
 
     public static Response handle(Request request) {
+        if (request.getType() == MessageType.EXPORT_CATALOG) {
+            return handleExportCatalog(request);
+        }
+        if (request.getType() == MessageType.GET_CATALOG_EXPORT_CHUNK) {
+            return handleGetCatalogExportChunk(request);
+        }
         if (request.getType() != MessageType.GET_ACTIVITY_REPORT) {
             return Response.error(request, Response.ERR_INTERNAL, "Invalid message type for ReportHandler");
         }
@@ -46,4 +59,47 @@ public class ReportHandler {
             return Response.error(request, Response.ERR_DATABASE, "Error generating report: " + e.getMessage());
         }
     }
+
+    /**
+     * Export all approved content; the file is then fetched with GET_CATALOG_EXPORT_CHUNK.
+     */
+    private static Response handleExportCatalog(Request request) {
+        Response denied = requireManager(request);
+        if (denied != null) return denied;
+        CatalogExportInfo.Format format = request.getPayload() instanceof CatalogExportInfo.Format
+                ? (CatalogExportInfo.Format) request.getPayload() : CatalogExportInfo.Format.GEOJSON;
+        try {
+            return Response.success(request, CatalogExportService.getInstance().export(format));
+        } catch (Exception e) {
+            System.out.println("[Report] Catalog export failed: " + e.getMessage());
+            return Response.error(request, Response.ERR_DATABASE, "Export failed: " + e.getMessage());
+        }
+    }
+
+    private static Response handleGetCatalogExportChunk(Request request) {
+        Response denied = requireManager(request);
+        if (denied != null) return denied;
+        if (!(request.getPayload() instanceof CatalogExportChunkRequest)) {
+            return Response.error(request, Response.ERR_VALIDATION, "Invalid chunk request");
+        }
+        CatalogExportChunkRequest chunkRequest = (CatalogExportChunkRequest) request.getPayload();
+        CatalogExportChunk chunk = CatalogExportService.getInstance().readChunk(chunkRequest.getHash(), chunkRequest.getOffset());
+        if (chunk == null) {
+            return Response.error(request, Response.ERR_NOT_FOUND, "Export no longer available, please export again");
+        }
+        return Response.success(request, chunk);
+    }
+
+    /** Exports contain the whole catalog: managers only. */
+    private static Response requireManager(Request request) {
+        String token = request.getSessionToken();
+        SessionManager.SessionInfo session = token != null ? SessionManager.getInstance().validateSession(token) : null;
+        if (session == null) {
+            return Response.error(request, Response.ERR_UNAUTHORIZED, "Login required");
+        }
+        if (!"CONTENT_MANAGER".equals(session.role) && !"COMPANY_MANAGER".equals(session.role)) {
+            return Response.error(request, Response.ERR_FORBIDDEN, "Only managers can export the catalog");
+        }
+        return null;
+    }
 }
@@ -4,10 +4,23 @@ import common.MessageType;
 import common.Request;
 import common.Response;
 import common.dto.CitySearchResult;
+import common.dto.PaginatedRequest;
+import common.dto.PaginatedResponse;
+import common.dto.PoiGeoSearchRequest;
+import common.dto.PoiSearchResult;
+import common.dto.SearchFacets;
 import common.dto.SearchRequest;
 import server.dao.SearchDAO;
+import server.service.CitySearchIndex;
+import server.service.ContentTags;
+import server.service.PoiFacetIndex;
+import server.service.PoiSpatialIndex;
+import server.service.SearchResultCache;
 
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
 
 /**
  * Handler for all search-related message types.
@@ -25,23 +38,33 @@ public class SearchHandler {
         MessageType type = request.getType();
 
         try {
-            switch (type) {
-                case GET_CITIES_CATALOG:
-                    return handleGetCatalog(request);
-
-                case SEARCH_BY_CITY_NAME:
-                    return handleSearchByCityName(request);
-
-                case SEARCH_BY_POI_NAME:
-                    return handleSearchByPoiName(request);
+            // Catalog pages carry an ETag; the client's copy is answered with NOT_MODIFIED
+            String etag = type == MessageType.GET_CITIES_CATALOG ? ContentTags.getInstance().catalogTag() : null;
+            Response notModified = ContentTags.notModified(request, etag);
+            if (notModified != null) {
+                return notModified;
+            }
 
-                case SEARCH_BY_CITY_AND_POI:
-                    return handleSearchByCityAndPoi(request);
+            SearchResultCache cache = SearchResultCache.getInstance();
+            String cacheKey = SearchResultCache.keyFor(type, request.getPayload());
+            Object cached = cache.get(cacheKey);
+            if (cached != null) {
+                System.out.println("SearchHandler: Cache hit for " + cacheKey);
+                return Response.success(request, cached, etag);
+            }
 
-                default:
-                    return Response.error(request, Response.ERR_INTERNAL,
-                            "Unknown search message type: " + type);
+            Response response = dispatch(request);
+            if (cacheKey != null && response.isOk()) {
+                SearchRequest terms = searchTermsOf(request);
+                boolean catalog = type == MessageType.GET_CITIES_CATALOG;
+                cache.put(cacheKey, response.getPayload(),
+                        catalog || terms == null ? null : terms.getCityName(),
+                        catalog || terms == null ? null : terms.getPoiName());
             }
+            if (etag != null && response.isOk()) {
+                return Response.success(request, response.getPayload(), etag);
+            }
+            return response;
         } catch (Exception e) {
             System.out.println("SearchHandler: Error processing request - " + e.getMessage());
             e.printStackTrace();
@@ -50,12 +73,50 @@ public class SearchHandler {
         }
     }
 
+    /**
+     * Route a request to its search handler (bypasses the result cache).
+     */
+    private static Response dispatch(Request request) {
+        MessageType type = request.getType();
+
+        // Paginated variant: payload is a PaginatedRequest whose filter is a SearchRequest
+        if (request.getPayload() instanceof PaginatedRequest && type != MessageType.SEARCH_POIS_NEAR
+                && type != MessageType.SEARCH_POIS_IN_BBOX) {
+            return handlePagedSearch(request);
+        }
+
+        switch (type) {
+            case GET_CITIES_CATALOG:
+                return handleGetCatalog(request);
+
+            case SEARCH_BY_CITY_NAME:
+                return handleSearchByCityName(request);
+
+            case SEARCH_BY_POI_NAME:
+                return handleSearchByPoiName(request);
+
+            case SEARCH_BY_CITY_AND_POI:
+                return handleSearchByCityAndPoi(request);
+
+            case SEARCH_POIS_NEAR:
+                return handleSearchPoisNear(request);
+
+            case SEARCH_POIS_IN_BBOX:
+                return handleSearchPoisInBbox(request);
+
+            default:
+                return Response.error(request, Response.ERR_INTERNAL,
+                        "Unknown search message type: " + type);
+        }
+    }
+
     /**
      * Get all cities catalog.
      */
     private static Response handleGetCatalog(Request request) {
         System.out.println("SearchHandler: Getting cities catalog");
         List<CitySearchResult> results = SearchDAO.getCitiesCatalog();
+        applyFacets(results, getSearchRequest(request));
         return Response.success(request, results);
     }
 
@@ -70,7 +131,11 @@ public class SearchHandler {
         }
 
         System.out.println("SearchHandler: Searching by city name: " + searchReq.getCityName());
-        List<CitySearchResult> results = SearchDAO.searchByCityName(searchReq.getCityName());
+        List<CitySearchResult> results = searchRanked(searchReq.getCityName(), null, searchReq);
+        if (results == null) {
+            results = SearchDAO.searchByCityName(searchReq.getCityName());
+        }
+        applyFacets(results, searchReq);
         return Response.success(request, results);
     }
 
@@ -85,7 +150,11 @@ public class SearchHandler {
         }
 
         System.out.println("SearchHandler: Searching by POI name: " + searchReq.getPoiName());
-        List<CitySearchResult> results = SearchDAO.searchByPoiName(searchReq.getPoiName());
+        List<CitySearchResult> results = searchRanked(null, searchReq.getPoiName(), searchReq);
+        if (results == null) {
+            results = SearchDAO.searchByPoiName(searchReq.getPoiName());
+        }
+        applyFacets(results, searchReq);
         return Response.success(request, results);
     }
 
@@ -108,11 +177,259 @@ public class SearchHandler {
 
         System.out.println("SearchHandler: Searching by city='" + searchReq.getCityName() +
                 "' and POI='" + searchReq.getPoiName() + "'");
-        List<CitySearchResult> results = SearchDAO.searchByCityAndPoi(
-                searchReq.getCityName(), searchReq.getPoiName());
+        List<CitySearchResult> results = searchRanked(searchReq.getCityName(), searchReq.getPoiName(), searchReq);
+        if (results == null) {
+            results = SearchDAO.searchByCityAndPoi(searchReq.getCityName(), searchReq.getPoiName());
+        }
+        applyFacets(results, searchReq);
+        return Response.success(request, results);
+    }
+
+    /**
+     * Paginated catalog/search (keyset on city name). Returns PaginatedResponse&lt;CitySearchResult&gt;.
+     */
+    private static Response handlePagedSearch(Request request) {
+        PaginatedRequest page = (PaginatedRequest) request.getPayload();
+        SearchRequest searchReq = page.getFilter() instanceof SearchRequest ? (SearchRequest) page.getFilter()
+                : new SearchRequest();
+        String cityName = searchReq.getCityName();
+        String poiName = searchReq.getPoiName();
+        boolean hasCity = cityName != null && !cityName.trim().isEmpty();
+        boolean hasPoi = poiName != null && !poiName.trim().isEmpty();
+
+        switch (request.getType()) {
+            case GET_CITIES_CATALOG:
+                cityName = null;
+                poiName = null;
+                break;
+            case SEARCH_BY_CITY_NAME:
+                if (!hasCity) {
+                    return Response.error(request, Response.ERR_VALIDATION,
+                            "City name is required for city search");
+                }
+                poiName = null;
+                break;
+            case SEARCH_BY_POI_NAME:
+                if (!hasPoi) {
+                    return Response.error(request, Response.ERR_VALIDATION,
+                            "POI name is required for POI search");
+                }
+                cityName = null;
+                break;
+            default:
+                if (!hasCity && !hasPoi) {
+                    return Response.error(request, Response.ERR_VALIDATION,
+                            "At least city name or POI name must be provided");
+                }
+                break;
+        }
+
+        System.out.println("SearchHandler: Paged " + request.getType() + " " + page + " filter=" + searchReq);
+        boolean hasTerms = request.getType() != MessageType.GET_CITIES_CATALOG;
+        if (hasTerms && CitySearchIndex.getInstance().isLoaded()) {
+            return Response.success(request, searchRankedPage(cityName, poiName, page, searchReq));
+        }
+
+        // Name-ordered keyset page; a facet filter becomes an id restriction in SQL
+        PoiFacetIndex facetIndex = PoiFacetIndex.getInstance();
+        Set<Integer> allowed = searchReq.hasFacetFilter() && facetIndex.isLoaded()
+                ? facetIndex.matchingCities(searchReq.getCategories(), searchReq.getAccessible())
+                : null;
+        PaginatedResponse<CitySearchResult> results = SearchDAO.searchPage(cityName, poiName, page, allowed);
+        applyFacets(results.getItems(), searchReq);
+        if (facetIndex.isLoaded() && !page.hasCursor()) {
+            List<Integer> pageIds = new ArrayList<>();
+            for (CitySearchResult city : results.getItems()) {
+                pageIds.add(city.getCityId());
+            }
+            // The catalog result set is known up front; other fallbacks only know this page
+            results.setFacets(facetIndex.aggregate(hasTerms ? pageIds : allowed,
+                    searchReq.getCategories(), searchReq.getAccessible()));
+        }
         return Response.success(request, results);
     }
 
+    // ==================== Relevance ranking (BM25) ====================
+
+    /**
+     * Full result list ordered by relevance, or null if the ranking index is not built yet.
+     */
+    private static List<CitySearchResult> searchRanked(String cityName, String poiName, SearchRequest filter) {
+        CitySearchIndex index = CitySearchIndex.getInstance();
+        if (!index.isLoaded()) {
+            return null;
+        }
+        List<Integer> cityIds = new ArrayList<>();
+        for (CitySearchIndex.ScoredCity c : rankedMatching(cityName, poiName, filter)) {
+            cityIds.add(c.cityId);
+        }
+        List<CitySearchResult> results = SearchDAO.getCitiesByIds(cityIds, poiName);
+        sortMapsByRelevance(results, cityName, poiName);
+        return results;
+    }
+
+    /**
+     * One page of relevance-ranked results. The keyset cursor is (score, city id):
+     * afterKey holds the score of the last city on the previous page.
+     */
+    private static PaginatedResponse<CitySearchResult> searchRankedPage(String cityName, String poiName,
+            PaginatedRequest page, SearchRequest filter) {
+        List<CitySearchIndex.ScoredCity> ranked = rankedMatching(cityName, poiName, filter);
+
+        int start = 0;
+        if (page.hasCursor()) {
+            double afterScore;
+            try {
+                afterScore = Double.parseDouble(page.getAfterKey());
+            } catch (NumberFormatException | NullPointerException e) {
+                afterScore = Double.MAX_VALUE;
+            }
+            while (start < ranked.size()) {
+                CitySearchIndex.ScoredCity c = ranked.get(start);
+                boolean beforeCursor = c.score > afterScore
+                        || (c.score == afterScore && c.cityId <= page.getAfterId());
+                if (!beforeCursor)
+                    break;
+                start++;
+            }
+        }
+        int end = Math.min(ranked.size(), start + page.getPageSize());
+        List<CitySearchIndex.ScoredCity> slice = ranked.subList(start, end);
+
+        List<Integer> cityIds = new ArrayList<>();
+        for (CitySearchIndex.ScoredCity c : slice) {
+            cityIds.add(c.cityId);
+        }
+        List<CitySearchResult> items = SearchDAO.getCitiesByIds(cityIds, poiName);
+        sortMapsByRelevance(items, cityName, poiName);
+        applyFacets(items, filter);
+
+        CitySearchIndex.ScoredCity last = slice.isEmpty() ? null : slice.get(slice.size() - 1);
+        PaginatedResponse<CitySearchResult> response = PaginatedResponse.keyset(items,
+                page.hasCursor() ? -1 : ranked.size(), page.getPageNumber(), page.getPageSize(),
+                end < ranked.size(), last != null ? Double.toString(last.score) : null,
+                last != null ? last.cityId : 0);
+
+        PoiFacetIndex facetIndex = PoiFacetIndex.getInstance();
+        if (facetIndex.isLoaded() && !page.hasCursor()) {
+            List<Integer> allIds = new ArrayList<>();
+            for (CitySearchIndex.ScoredCity c : ranked) {
+                allIds.add(c.cityId);
+            }
+            response.setFacets(facetIndex.aggregate(allIds, filter.getCategories(), filter.getAccessible()));
+        }
+        return response;
+    }
+
+    /**
+     * Ranked matches with the facet filter applied (before paging, so pages stay full).
+     */
+    private static List<CitySearchIndex.ScoredCity> rankedMatching(String cityName, String poiName,
+            SearchRequest filter) {
+        List<CitySearchIndex.ScoredCity> ranked = CitySearchIndex.getInstance().search(cityName, poiName);
+        PoiFacetIndex facetIndex = PoiFacetIndex.getInstance();
+        if (filter != null && filter.hasFacetFilter() && facetIndex.isLoaded()) {
+            ranked.removeIf(c -> !facetIndex.matches(c.cityId, filter.getCategories(), filter.getAccessible()));
+        }
+        return ranked;
+    }
+
+    private static void sortMapsByRelevance(List<CitySearchResult> results, String cityName, String poiName) {
+        String query = (cityName != null ? cityName : "") + " " + (poiName != null ? poiName : "");
+        for (CitySearchResult city : results) {
+            CitySearchIndex.getInstance().sortMaps(city.getCityId(), city.getMaps(), query);
+        }
+    }
+
+    // ==================== Facets ====================
+
+    /**
+     * Drop cities without a published POI matching the request's facet filter and attach
+     * per-city facet counts. No-op while the facet index is not built.
+     */
+    private static void applyFacets(List<CitySearchResult> results, SearchRequest filter) {
+        PoiFacetIndex facetIndex = PoiFacetIndex.getInstance();
+        if (results == null || !facetIndex.isLoaded())
+            return;
+        List<String> categories = filter != null ? filter.getCategories() : null;
+        Boolean accessible = filter != null ? filter.getAccessible() : null;
+        boolean filtered = filter != null && filter.hasFacetFilter();
+
+        Iterator<CitySearchResult> it = results.iterator();
+        while (it.hasNext()) {
+            CitySearchResult city = it.next();
+            SearchFacets facets = facetIndex.facetsForCity(city.getCityId(), categories, accessible);
+            if (filtered && facets.getMatchingPoiCount() == 0) {
+                it.remove();
+            } else {
+                city.setFacets(facets);
+            }
+        }
+    }
+
+    /**
+     * Search published POIs within a radius of a point (spatial index, no DB round trip).
+     */
+    private static Response handleSearchPoisNear(Request request) {
+        if (!(request.getPayload() instanceof PoiGeoSearchRequest)) {
+            return Response.error(request, Response.ERR_VALIDATION, "Geo search request is required");
+        }
+        PoiGeoSearchRequest geoReq = (PoiGeoSearchRequest) request.getPayload();
+        if (!isValidLatitude(geoReq.getLatitude()) || !isValidLongitude(geoReq.getLongitude())) {
+            return Response.error(request, Response.ERR_VALIDATION, "Invalid latitude/longitude");
+        }
+        if (!(geoReq.getRadiusMeters() > 0)) {
+            return Response.error(request, Response.ERR_VALIDATION, "Radius must be greater than 0");
+        }
+
+        System.out.println("SearchHandler: Searching POIs near " + geoReq);
+        List<PoiSearchResult> results = PoiSpatialIndex.getInstance().searchNear(
+                geoReq.getLatitude(), geoReq.getLongitude(), geoReq.getRadiusMeters(),
+                geoReq.getCategories(), geoReq.getLimit());
+        return Response.success(request, results);
+    }
+
+    /**
+     * Search published POIs inside a bounding box (spatial index, no DB round trip).
+     */
+    private static Response handleSearchPoisInBbox(Request request) {
+        if (!(request.getPayload() instanceof PoiGeoSearchRequest)) {
+            return Response.error(request, Response.ERR_VALIDATION, "Geo search request is required");
+        }
+        PoiGeoSearchRequest geoReq = (PoiGeoSearchRequest) request.getPayload();
+        if (!isValidLatitude(geoReq.getMinLatitude()) || !isValidLatitude(geoReq.getMaxLatitude())
+                || !isValidLongitude(geoReq.getMinLongitude()) || !isValidLongitude(geoReq.getMaxLongitude())
+                || geoReq.getMinLatitude() > geoReq.getMaxLatitude()) {
+            return Response.error(request, Response.ERR_VALIDATION, "Invalid bounding box");
+        }
+
+        System.out.println("SearchHandler: Searching POIs in bbox " + geoReq);
+        List<PoiSearchResult> results = PoiSpatialIndex.getInstance().searchInBoundingBox(
+                geoReq.getMinLatitude(), geoReq.getMinLongitude(),
+                geoReq.getMaxLatitude(), geoReq.getMaxLongitude(),
+                geoReq.getCategories(), geoReq.getLimit());
+        return Response.success(request, results);
+    }
+
+    private static boolean isValidLatitude(double lat) {
+        return lat >= -90.0 && lat <= 90.0;
+    }
+
+    private static boolean isValidLongitude(double lon) {
+        return lon >= -180.0 && lon <= 180.0;
+    }
+
+    /**
+     * Search terms of a plain or paginated search request (null if none).
+     */
+    private static SearchRequest searchTermsOf(Request request) {
+        Object payload = request.getPayload();
+        if (payload instanceof PaginatedRequest && ((PaginatedRequest) payload).getFilter() instanceof SearchRequest) {
+            return (SearchRequest) ((PaginatedRequest) payload).getFilter();
+        }
+        return getSearchRequest(request);
+    }
+
     /**
      * Extract SearchRequest from request payload.
      */
@@ -131,6 +448,8 @@ public class SearchHandler {
         return type == MessageType.GET_CITIES_CATALOG ||
                 type == MessageType.SEARCH_BY_CITY_NAME ||
                 type == MessageType.SEARCH_BY_POI_NAME ||
-                type == MessageType.SEARCH_BY_CITY_AND_POI;
+                type == MessageType.SEARCH_BY_CITY_AND_POI ||
+                type == MessageType.SEARCH_POIS_NEAR ||
+                type == MessageType.SEARCH_POIS_IN_BBOX;
     }
 }
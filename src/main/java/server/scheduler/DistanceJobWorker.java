@@ -0,0 +1,243 @@
+package server.scheduler;
+
+import common.Poi;
+import server.DBConnector;
+import server.dao.DistanceJobDAO;
+import server.dao.DistanceJobDAO.DistanceJob;
+import server.dao.NotificationDAO;
+import server.dao.PoiDAO;
+import server.dao.PoiDistanceDAO;
+import server.dao.TourDAO;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Background workers for the persistent distance job queue (see DistanceJobDAO).
+ *
+ * Map edits only enqueue jobs inside their transaction; this worker computes the
+ * road distances (OSRM, haversine fallback) and tour totals afterwards on its own
+ * auto-commit connections, so approvals never wait on HTTP calls or hold row locks
+ * while they run. When every job of a batch has finished, the user who triggered it
+ * gets an in-app notification.
+ *
+ * Features:
+ * - Polls the queue periodically and immediately after {@link #wakeUp()}
+ * - Bounded number of concurrent jobs (gcm.distance.workers, default 2)
+ * - Failed jobs are retried up to DistanceJobDAO.MAX_ATTEMPTS times
+ * - Jobs interrupted by a shutdown are resumed on the next start
+ */
+public class DistanceJobWorker {
+
+    private static final int POLL_INTERVAL_SECONDS = 15;
+    private static final int WORKER_COUNT = Math.max(1, Integer.getInteger("gcm.distance.workers", 2));
+
+    private final ScheduledExecutorService poller;
+    private final ExecutorService workers;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    // Batches already notified (bounded; a batch finishes once)
+    private final Set<String> notifiedBatches = Collections.newSetFromMap(new LinkedHashMap<String, Boolean>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+            return size() > 1000;
+        }
+    });
+    private boolean isRunning = false;
+
+    private static DistanceJobWorker instance;
+
+    private DistanceJobWorker() {
+        this.poller = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "DistanceJobPoller");
+            t.setDaemon(true);
+            return t;
+        });
+        AtomicInteger threadNumber = new AtomicInteger(1);
+        this.workers = Executors.newFixedThreadPool(WORKER_COUNT, r -> {
+            Thread t = new Thread(r, "DistanceJobWorker-" + threadNumber.getAndIncrement());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Get singleton instance.
+     */
+    public static synchronized DistanceJobWorker getInstance() {
+        if (instance == null) {
+            instance = new DistanceJobWorker();
+        }
+        return instance;
+    }
+
+    /**
+     * Start polling the queue.
+     */
+    public synchronized void start() {
+        if (isRunning) {
+            System.out.println("⚠ DistanceJobWorker already running");
+            return;
+        }
+        int resumed = DistanceJobDAO.resetInterruptedJobs();
+
+        System.out.println("╔══════════════════════════════════════════════════════════╗");
+        System.out.println("║     DISTANCE JOB WORKER STARTED                          ║");
+        System.out.println("╠══════════════════════════════════════════════════════════╣");
+        System.out.println("║  Workers: " + WORKER_COUNT + ", poll every " + POLL_INTERVAL_SECONDS + " seconds");
+        System.out.println("║  Resumed interrupted jobs: " + resumed);
+        System.out.println("╚══════════════════════════════════════════════════════════╝");
+
+        poller.scheduleWithFixedDelay(this::poll, 5, POLL_INTERVAL_SECONDS, TimeUnit.SECONDS);
+        isRunning = true;
+    }
+
+    /**
+     * Stop polling; running jobs are abandoned and resumed on the next start.
+     */
+    public synchronized void stop() {
+        if (!isRunning) {
+            return;
+        }
+        System.out.println("Stopping DistanceJobWorker...");
+        poller.shutdownNow();
+        workers.shutdownNow();
+        isRunning = false;
+        System.out.println("✓ DistanceJobWorker stopped");
+    }
+
+    /**
+     * Check the queue now (call after committing a transaction that enqueued jobs).
+     */
+    public void wakeUp() {
+        if (isRunning) {
+            poller.execute(this::poll);
+        }
+    }
+
+    /**
+     * Claim as many jobs as there are idle workers and hand them out. Runs on the poller thread.
+     */
+    private void poll() {
+        try {
+            int free = WORKER_COUNT - inFlight.get();
+            if (free <= 0) {
+                return;
+            }
+            for (DistanceJob job : DistanceJobDAO.claimPending(free)) {
+                inFlight.incrementAndGet();
+                workers.execute(() -> {
+                    try {
+                        runJob(job);
+                    } finally {
+                        inFlight.decrementAndGet();
+                        wakeUp();
+                    }
+                });
+            }
+        } catch (Exception e) {
+            System.err.println("DistanceJobWorker: Poll failed: " + e.getMessage());
+        }
+    }
+
+    private void runJob(DistanceJob job) {
+        long start = System.currentTimeMillis();
+        try {
+            if (DistanceJobDAO.TYPE_MAP.equals(job.jobType)) {
+                recomputeMap(job.targetId);
+            } else if (DistanceJobDAO.TYPE_POI.equals(job.jobType)) {
+                recomputePoi(job.targetId);
+            } else if (DistanceJobDAO.TYPE_TOUR.equals(job.jobType)) {
+                recomputeTour(job.targetId);
+            } else {
+                throw new IllegalArgumentException("Unknown job type " + job.jobType);
+            }
+            DistanceJobDAO.markDone(job.id);
+            System.out.println("DistanceJobWorker: " + job + " done in " + (System.currentTimeMillis() - start) + " ms");
+        } catch (Exception e) {
+            boolean gaveUp = DistanceJobDAO.markFailed(job, e.getMessage());
+            System.err.println("DistanceJobWorker: " + job + (gaveUp ? " failed permanently: " : " failed, will retry: ")
+                    + e.getMessage());
+            if (!gaveUp) {
+                return;
+            }
+        }
+        notifyIfBatchFinished(job);
+    }
+
+    /**
+     * Distances between all published POIs of the map, then the totals of tours that visit them.
+     */
+    private static void recomputeMap(int mapId) throws SQLException {
+        List<Poi> mapPois = PoiDAO.getPoisForMap(mapId);
+        if (mapPois.size() < 2) {
+            return;
+        }
+        try (Connection conn = DBConnector.getConnection()) {
+            PoiDistanceDAO.recomputeAndStoreDistances(conn, mapPois);
+            List<Integer> poiIds = new ArrayList<>();
+            for (Poi poi : mapPois) {
+                poiIds.add(poi.getId());
+            }
+            for (int tourId : TourDAO.getTourIdsForPois(conn, poiIds)) {
+                TourDAO.recomputeAndUpdateTourDistance(conn, tourId);
+            }
+        }
+    }
+
+    /**
+     * Distances between one added or moved POI and the POIs sharing a map with it, then the
+     * totals of tours that visit it. A POI deleted since the job was queued is skipped.
+     */
+    private static void recomputePoi(int poiId) throws SQLException {
+        try (Connection conn = DBConnector.getConnection()) {
+            Poi poi = PoiDAO.getPoiById(conn, poiId);
+            if (poi == null) {
+                return;
+            }
+            PoiDistanceDAO.recomputeDistancesForPoi(conn, poi, PoiDAO.getPoisSharingMapWith(conn, poiId));
+            for (int tourId : TourDAO.getTourIdsForPois(conn, Collections.singletonList(poiId))) {
+                TourDAO.recomputeAndUpdateTourDistance(conn, tourId);
+            }
+        }
+    }
+
+    private static void recomputeTour(int tourId) throws SQLException {
+        try (Connection conn = DBConnector.getConnection()) {
+            TourDAO.recomputeAndUpdateTourDistance(conn, tourId);
+        }
+    }
+
+    /**
+     * Notify the requesting user once the last job of the batch is finished.
+     * Synchronized so two workers finishing together do not both send it.
+     */
+    private synchronized void notifyIfBatchFinished(DistanceJob job) {
+        if (job.requestedBy <= 0 || notifiedBatches.contains(job.batchId)
+                || DistanceJobDAO.countOpenJobs(job.batchId) > 0) {
+            return;
+        }
+        notifiedBatches.add(job.batchId);
+        int failed = DistanceJobDAO.countFailedJobs(job.batchId);
+        String title = failed == 0 ? "Distances Updated" : "Distance Update Incomplete";
+        String body = failed == 0
+                ? "Road distances and tour lengths for your latest map changes have been recalculated."
+                : failed + " distance calculation(s) for your latest map changes failed. "
+                        + "Tour lengths may be out of date until the map is saved again.";
+        try (Connection conn = DBConnector.getConnection()) {
+            NotificationDAO.createNotification(conn, job.requestedBy, title, body);
+        } catch (SQLException e) {
+            System.err.println("DistanceJobWorker: Failed to notify user " + job.requestedBy + ": " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,426 @@
+package server.service;
+
+import com.google.gson.stream.JsonWriter;
+import common.dto.CatalogExportChunk;
+import common.dto.CatalogExportInfo;
+import common.dto.CatalogExportInfo.Format;
+import server.DBConnector;
+import server.dao.CatalogExportDAO;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Export of all approved content (cities, maps, POIs and tours) as GeoJSON, for partners and
+ * analytics (EXPORT_CATALOG, or the main method for a local file).
+ *
+ * Every city, map, POI and tour is one Feature with a "kind" property; POIs are Points, tours
+ * LineStrings through their stops, cities and maps have no geometry. Rows are read from
+ * forward-only cursors (CatalogExportDAO) and written straight to the output, so memory use does
+ * not grow with the catalog: at most one fetch batch and the stops of one tour are held.
+ *
+ * Exports for clients are written gzipped to gcm.exports.dir (default "exports") as
+ * &lt;sha-256&gt;&lt;extension&gt; and served in chunks of gcm.export.chunkSize bytes (default
+ * 256 KB). An export is reused until the published catalog tag (ContentTags) changes, so drafts
+ * and edit requests do not regenerate it; the previous export of each format stays downloadable
+ * so a download in progress can finish. Exports are written without blocking chunk reads: only
+ * one export is built at a time, and the finished one is swapped in.
+ */
+public class CatalogExportService {
+
+    private static final class Export {
+        final CatalogExportInfo info;
+        final String catalogTag;
+        final CatalogExportInfo previous;
+
+        Export(CatalogExportInfo info, String catalogTag, CatalogExportInfo previous) {
+            this.info = info;
+            this.catalogTag = catalogTag;
+            this.previous = previous;
+        }
+    }
+
+    private final Path directory;
+    private final int chunkSize;
+    private final Map<Format, Export> exports = new ConcurrentHashMap<>();
+    /** Held while an export is written, so a format is not written twice at once. */
+    private final Object buildLock = new Object();
+
+    private static CatalogExportService instance;
+
+    private CatalogExportService() {
+        this(Paths.get(System.getProperty("gcm.exports.dir", "exports")),
+                Integer.getInteger("gcm.export.chunkSize", 256 * 1024));
+    }
+
+    /**
+     * Service storing exports in the given directory (e.g. a temporary one in tests).
+     */
+    public CatalogExportService(Path directory, int chunkSize) {
+        this.directory = directory;
+        this.chunkSize = Math.max(1024, chunkSize);
+    }
+
+    /**
+     * Get singleton instance.
+     */
+    public static synchronized CatalogExportService getInstance() {
+        if (instance == null) {
+            instance = new CatalogExportService();
+        }
+        return instance;
+    }
+
+    /**
+     * The current export in the format, written now if the catalog changed since the last one.
+     */
+    public CatalogExportInfo export(Format format) throws SQLException, IOException {
+        String tag = ContentTags.getInstance().publishedCatalogTag();
+        Export last = exports.get(format);
+        if (isCurrent(last, tag)) return last.info;
+        synchronized (buildLock) {
+            // Another request may have written it meanwhile
+            last = exports.get(format);
+            if (isCurrent(last, tag)) return last.info;
+            CatalogExportInfo info;
+            try (Connection conn = DBConnector.getConnection()) {
+                info = writeFile(conn, format);
+            }
+            CatalogExportInfo previous = null;
+            if (last != null && !last.info.getHash().equals(info.getHash())) {
+                previous = last.info;
+            } else if (last != null) {
+                previous = last.previous;
+            }
+            exports.put(format, new Export(info, tag, previous));
+            if (last != null && last.previous != null && last.previous != previous
+                    && !last.previous.getHash().equals(info.getHash())) {
+                Files.deleteIfExists(exportFile(last.previous));
+            }
+            return info;
+        }
+    }
+
+    private boolean isCurrent(Export export, String tag) {
+        return export != null && tag.equals(export.catalogTag) && Files.exists(exportFile(export.info));
+    }
+
+    /**
+     * Chunk of a current or previous export at the offset; null for any other hash or an offset
+     * past the end.
+     */
+    public CatalogExportChunk readChunk(String hash, long offset) {
+        CatalogExportInfo info = null;
+        for (Export export : exports.values()) {
+            if (export.info.getHash().equals(hash)) info = export.info;
+            else if (export.previous != null && export.previous.getHash().equals(hash)) info = export.previous;
+        }
+        if (info == null) return null;
+        try {
+            return readChunk(info, offset, chunkSize);
+        } catch (IOException e) {
+            System.err.println("CatalogExportService: export " + hash + " unreadable: " + e.getMessage());
+            return null;
+        }
+    }
+
+    CatalogExportChunk readChunk(CatalogExportInfo info, long offset, int length) throws IOException {
+        Path file = exportFile(info);
+        if (!Files.exists(file)) return null;
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "r")) {
+            long size = raf.length();
+            if (offset < 0 || offset > size) return null;
+            byte[] data = new byte[(int) Math.min(length, size - offset)];
+            raf.seek(offset);
+            raf.readFully(data);
+            return new CatalogExportChunk(info.getHash(), offset, size, data);
+        }
+    }
+
+    /**
+     * Write a gzipped export to a temporary file and move it to its content-addressed name.
+     */
+    CatalogExportInfo writeFile(Connection conn, Format format) throws SQLException, IOException {
+        long start = System.currentTimeMillis();
+        Files.createDirectories(directory);
+        Path temp = Files.createTempFile(directory, "export-", ".tmp");
+        try {
+            MessageDigest digest;
+            try {
+                digest = MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+            long features;
+            try (OutputStream out = new GZIPOutputStream(
+                    new DigestOutputStream(Files.newOutputStream(temp), digest), 8192)) {
+                features = write(conn, format, out);
+            }
+            String hash = toHex(digest.digest());
+            CatalogExportInfo info = new CatalogExportInfo(format, hash, Files.size(temp), chunkSize, features);
+            Path target = exportFile(info);
+            if (!Files.exists(target)) {
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+            }
+            System.out.println("CatalogExportService: Exported " + features + " features as " + format + " ("
+                    + info.getSizeBytes() + " bytes) in " + (System.currentTimeMillis() - start) + "ms");
+            return info;
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    Path exportFile(CatalogExportInfo info) {
+        return directory.resolve(info.getHash() + info.getFormat().getExtension());
+    }
+
+    /**
+     * Stream all approved content to the output (not closed).
+     *
+     * @return number of features written
+     */
+    public static long write(Connection conn, Format format, OutputStream out) throws SQLException, IOException {
+        FeatureWriter writer = new FeatureWriter(
+                new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8)), format);
+        CatalogExportDAO.streamCities(conn, rs -> writer.city(rs.getInt("id"), rs.getString("name"),
+                rs.getString("description"), rs.getDouble("price")));
+        CatalogExportDAO.streamMaps(conn, rs -> writer.map(rs.getInt("id"), rs.getInt("city_id"),
+                rs.getString("name"), rs.getString("short_description")));
+        CatalogExportDAO.streamPois(conn, rs -> writer.poi(rs.getInt("id"), rs.getInt("city_id"),
+                rs.getString("name"), rs.getString("location"), getDouble(rs, "latitude"), getDouble(rs, "longitude"),
+                rs.getString("category"), rs.getString("short_explanation"), rs.getBoolean("is_accessible"),
+                parseIds(rs.getString("map_ids"))));
+
+        // Rows arrive grouped by tour in stop order; only the tour being read is held
+        TourBuilder[] tour = {null};
+        CatalogExportDAO.streamTourStops(conn, rs -> {
+            int tourId = rs.getInt("tour_id");
+            if (tour[0] == null || tour[0].id != tourId) {
+                if (tour[0] != null) tour[0].writeTo(writer);
+                tour[0] = new TourBuilder(tourId, rs.getInt("city_id"), rs.getString("name"),
+                        rs.getString("general_description"), getDouble(rs, "total_distance_meters"));
+            }
+            int poiId = rs.getInt("poi_id");
+            if (!rs.wasNull()) tour[0].addStop(poiId, getDouble(rs, "latitude"), getDouble(rs, "longitude"));
+        });
+        if (tour[0] != null) tour[0].writeTo(writer);
+        return writer.finish();
+    }
+
+    private static Double getDouble(ResultSet rs, String column) throws SQLException {
+        double value = rs.getDouble(column);
+        return rs.wasNull() ? null : value;
+    }
+
+    private static List<Integer> parseIds(String csv) {
+        List<Integer> ids = new ArrayList<>();
+        if (csv == null || csv.isEmpty()) return ids;
+        for (String id : csv.split(",")) {
+            ids.add(Integer.parseInt(id.trim()));
+        }
+        return ids;
+    }
+
+    /** Stops of the tour currently being read. */
+    private static final class TourBuilder {
+        final int id;
+        final int cityId;
+        final String name;
+        final String description;
+        final Double distanceMeters;
+        final List<Integer> poiIds = new ArrayList<>();
+        final List<double[]> coordinates = new ArrayList<>();
+
+        TourBuilder(int id, int cityId, String name, String description, Double distanceMeters) {
+            this.id = id;
+            this.cityId = cityId;
+            this.name = name;
+            this.description = description;
+            this.distanceMeters = distanceMeters;
+        }
+
+        void addStop(int poiId, Double latitude, Double longitude) {
+            poiIds.add(poiId);
+            if (latitude != null && longitude != null) coordinates.add(new double[]{longitude, latitude});
+        }
+
+        void writeTo(FeatureWriter writer) throws IOException {
+            writer.tour(id, cityId, name, description, distanceMeters, poiIds, coordinates);
+        }
+    }
+
+    /**
+     * Writes features one at a time, as a FeatureCollection or one Feature per line.
+     */
+    static final class FeatureWriter {
+        private final Writer out;
+        private final JsonWriter json;
+        private final Format format;
+        private long count;
+
+        FeatureWriter(Writer out, Format format) throws IOException {
+            this.out = out;
+            this.format = format;
+            this.json = new JsonWriter(out);
+            if (format == Format.GEOJSON) {
+                json.beginObject();
+                json.name("type").value("FeatureCollection");
+                json.name("features").beginArray();
+            } else {
+                // Several top-level values, separated by newlines below
+                json.setLenient(true);
+            }
+        }
+
+        void city(int id, String name, String description, double price) throws IOException {
+            begin("city", id, null);
+            json.name("name").value(name);
+            json.name("description").value(description);
+            json.name("price").value(price);
+            end();
+        }
+
+        void map(int id, int cityId, String name, String description) throws IOException {
+            begin("map", id, null);
+            json.name("cityId").value(cityId);
+            json.name("name").value(name);
+            json.name("description").value(description);
+            end();
+        }
+
+        void poi(int id, int cityId, String name, String location, Double latitude, Double longitude,
+                 String category, String explanation, boolean accessible, List<Integer> mapIds) throws IOException {
+            begin("poi", id, latitude != null && longitude != null ? new double[]{longitude, latitude} : null);
+            json.name("cityId").value(cityId);
+            json.name("name").value(name);
+            json.name("location").value(location);
+            json.name("category").value(category);
+            json.name("description").value(explanation);
+            json.name("accessible").value(accessible);
+            json.name("mapIds").beginArray();
+            for (int mapId : mapIds) json.value(mapId);
+            json.endArray();
+            end();
+        }
+
+        void tour(int id, int cityId, String name, String description, Double distanceMeters,
+                  List<Integer> poiIds, List<double[]> coordinates) throws IOException {
+            beginFeature("tour", id);
+            if (coordinates.size() >= 2) {
+                json.name("geometry").beginObject();
+                json.name("type").value("LineString");
+                json.name("coordinates").beginArray();
+                for (double[] point : coordinates) {
+                    json.beginArray().value(point[0]).value(point[1]).endArray();
+                }
+                json.endArray();
+                json.endObject();
+            } else {
+                json.name("geometry").nullValue();
+            }
+            beginProperties("tour", id);
+            json.name("cityId").value(cityId);
+            json.name("name").value(name);
+            json.name("description").value(description);
+            json.name("distanceMeters").value(distanceMeters);
+            json.name("poiIds").beginArray();
+            for (int poiId : poiIds) json.value(poiId);
+            json.endArray();
+            end();
+        }
+
+        /** Close the collection and flush. */
+        long finish() throws IOException {
+            if (format == Format.GEOJSON) {
+                json.endArray();
+                json.endObject();
+            }
+            json.flush();
+            return count;
+        }
+
+        private void begin(String kind, int id, double[] point) throws IOException {
+            beginFeature(kind, id);
+            if (point != null) {
+                json.name("geometry").beginObject();
+                json.name("type").value("Point");
+                json.name("coordinates").beginArray().value(point[0]).value(point[1]).endArray();
+                json.endObject();
+            } else {
+                json.name("geometry").nullValue();
+            }
+            beginProperties(kind, id);
+        }
+
+        private void beginFeature(String kind, int id) throws IOException {
+            json.beginObject();
+            json.name("type").value("Feature");
+            json.name("id").value(kind + "/" + id);
+        }
+
+        private void beginProperties(String kind, int id) throws IOException {
+            json.name("properties").beginObject();
+            json.name("kind").value(kind);
+            json.name(kind + "Id").value(id);
+        }
+
+        private void end() throws IOException {
+            json.endObject(); // properties
+            json.endObject(); // feature
+            count++;
+            if (format == Format.NDJSON) {
+                json.flush();
+                out.write('\n');
+            }
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Export to a local file: CatalogExportService &lt;geojson|ndjson&gt; &lt;file&gt; (gzipped if the
+     * name ends with .gz).
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length != 2) {
+            System.err.println("Usage: CatalogExportService <geojson|ndjson> <file>");
+            System.exit(2);
+        }
+        Format format = Format.valueOf(args[0].toUpperCase(java.util.Locale.ROOT));
+        Path file = Paths.get(args[1]);
+        try (Connection conn = DBConnector.getConnection();
+             OutputStream out = file.toString().endsWith(".gz")
+                     ? new GZIPOutputStream(Files.newOutputStream(file), 8192)
+                     : Files.newOutputStream(file)) {
+            long features = write(conn, format, out);
+            System.out.println("Exported " + features + " features to " + file);
+        }
+        System.exit(0);
+    }
+}
@@ -0,0 +1,444 @@
+package server.service;
+
+import common.dto.MapSummary;
+import server.dao.DailyStatsDAO;
+import server.dao.SearchDAO;
+import server.dao.SearchDAO.CityDocument;
+import server.dao.SearchDAO.MapDocument;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory BM25 relevance index over published cities.
+ *
+ * A document is a city together with its approved maps and the names and short
+ * explanations of their approved POIs, split into weighted fields. Scores are the
+ * weighted sum of per-field BM25 scores, multiplied by a popularity boost from
+ * daily_stats (views, downloads, purchases over the last 30 days).
+ *
+ * Matching keeps the semantics of SearchDAO (case-insensitive substring on city
+ * and POI names); BM25 only decides the order. Query terms also match indexed terms
+ * they are a prefix of ("par" -> "paris"), at a reduced weight.
+ *
+ * Tuning via system properties: gcm.search.bm25.k1, gcm.search.bm25.b,
+ * gcm.search.weight.&lt;field&gt; (e.g. gcm.search.weight.cityName) and
+ * gcm.search.popularityWeight.
+ */
+public class CitySearchIndex {
+
+    /** Indexed fields and their default weights. */
+    public enum Field {
+        CITY_NAME("cityName", 3.0),
+        CITY_DESCRIPTION("cityDescription", 1.0),
+        MAP_NAME("mapName", 2.0),
+        MAP_DESCRIPTION("mapDescription", 1.0),
+        POI_NAME("poiName", 1.5),
+        POI_EXPLANATION("poiExplanation", 0.5);
+
+        private final String key;
+        private final double defaultWeight;
+
+        Field(String key, double defaultWeight) {
+            this.key = key;
+            this.defaultWeight = defaultWeight;
+        }
+
+        public double weight() {
+            return doubleProperty("gcm.search.weight." + key, defaultWeight);
+        }
+    }
+
+    private static final int FIELD_COUNT = Field.values().length;
+    private static final double K1 = doubleProperty("gcm.search.bm25.k1", 1.2);
+    private static final double B = doubleProperty("gcm.search.bm25.b", 0.75);
+    private static final double POPULARITY_WEIGHT = doubleProperty("gcm.search.popularityWeight", 0.3);
+    private static final double PREFIX_MATCH_WEIGHT = 0.7;
+    private static final int MAX_PREFIX_EXPANSIONS = 50;
+    private static final int POPULARITY_DAYS = 30;
+
+    /** One ranked city. */
+    public static final class ScoredCity {
+        public final int cityId;
+        public final double score;
+
+        ScoredCity(int cityId, double score) {
+            this.cityId = cityId;
+            this.score = score;
+        }
+    }
+
+    /** Indexed form of a CityDocument. */
+    private static final class Doc {
+        final int cityId;
+        final String nameLower;
+        final List<String> poiNamesLower = new ArrayList<>();
+        final int[] fieldLengths = new int[FIELD_COUNT];
+        final Map<String, int[]> termFreqs = new HashMap<>();
+        final Map<Integer, Map<String, int[]>> mapTermFreqs = new HashMap<>();
+        long popularity;
+
+        Doc(int cityId, String name) {
+            this.cityId = cityId;
+            this.nameLower = name != null ? name.trim().toLowerCase(Locale.ROOT) : "";
+        }
+    }
+
+    private final Map<Integer, Doc> docs = new HashMap<>();
+    private final TreeMap<String, Set<Integer>> postings = new TreeMap<>();
+    private final long[] fieldLengthTotals = new long[FIELD_COUNT];
+    private long maxPopularity = 0;
+    private final double[] weights = new double[FIELD_COUNT];
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private volatile boolean loaded = false;
+
+    private static CitySearchIndex instance;
+
+    CitySearchIndex() {
+        for (Field f : Field.values()) {
+            weights[f.ordinal()] = f.weight();
+        }
+    }
+
+    /**
+     * Build an index over fixed documents (no database access; used by tests and benchmarks).
+     */
+    CitySearchIndex(Collection<CityDocument> documents, Map<Integer, Long> popularity) {
+        this();
+        for (CityDocument d : documents) {
+            addDoc(d, popularity.getOrDefault(d.cityId, 0L));
+        }
+        recomputeMaxPopularity();
+        loaded = true;
+    }
+
+    /**
+     * Get singleton instance.
+     */
+    public static synchronized CitySearchIndex getInstance() {
+        if (instance == null) {
+            instance = new CitySearchIndex();
+        }
+        return instance;
+    }
+
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    // ==================== Loading / incremental updates ====================
+
+    /**
+     * (Re)build the whole index from the database.
+     */
+    public void rebuild() {
+        long start = System.currentTimeMillis();
+        List<CityDocument> documents = SearchDAO.getSearchDocuments(null);
+        Map<Integer, Long> popularity = DailyStatsDAO.getPopularityByCity(POPULARITY_DAYS, null);
+        lock.writeLock().lock();
+        try {
+            docs.clear();
+            postings.clear();
+            java.util.Arrays.fill(fieldLengthTotals, 0);
+            for (CityDocument d : documents) {
+                addDoc(d, popularity.getOrDefault(d.cityId, 0L));
+            }
+            recomputeMaxPopularity();
+            loaded = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        System.out.println("CitySearchIndex: Indexed " + documents.size() + " cities, " + postings.size()
+                + " terms in " + (System.currentTimeMillis() - start) + " ms");
+    }
+
+    /**
+     * True if the city currently satisfies the substring criteria of {@link #search}
+     * (ignoring scores). Conservatively true while the index is not built.
+     */
+    public boolean matches(int cityId, String cityName, String poiName) {
+        if (!loaded)
+            return true;
+        String cityNeedle = normalize(cityName);
+        String poiNeedle = normalize(poiName);
+        lock.readLock().lock();
+        try {
+            Doc doc = docs.get(cityId);
+            if (doc == null)
+                return false;
+            return (cityNeedle == null || doc.nameLower.contains(cityNeedle))
+                    && (poiNeedle == null || containsAny(doc.poiNamesLower, poiNeedle));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Re-read one city (its maps and POIs) from the database and replace its document.
+     * The city is dropped if it is no longer published.
+     */
+    public void refreshCity(int cityId) {
+        if (!loaded || cityId <= 0)
+            return;
+        List<CityDocument> documents = SearchDAO.getSearchDocuments(cityId);
+        Map<Integer, Long> popularity = DailyStatsDAO.getPopularityByCity(POPULARITY_DAYS, cityId);
+        lock.writeLock().lock();
+        try {
+            removeDoc(cityId);
+            for (CityDocument d : documents) {
+                addDoc(d, popularity.getOrDefault(d.cityId, 0L));
+            }
+            recomputeMaxPopularity();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Drop a city from the index (e.g. after it was deleted).
+     */
+    public void removeCity(int cityId) {
+        lock.writeLock().lock();
+        try {
+            removeDoc(cityId);
+            recomputeMaxPopularity();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** Caller must hold the write lock. */
+    private void addDoc(CityDocument d, long popularity) {
+        Doc doc = new Doc(d.cityId, d.name);
+        doc.popularity = popularity;
+        addText(doc, doc.termFreqs, Field.CITY_NAME, d.name);
+        addText(doc, doc.termFreqs, Field.CITY_DESCRIPTION, d.description);
+        for (MapDocument m : d.maps) {
+            Map<String, int[]> mapTf = new HashMap<>();
+            addText(doc, doc.termFreqs, Field.MAP_NAME, m.name);
+            addText(null, mapTf, Field.MAP_NAME, m.name);
+            addText(doc, doc.termFreqs, Field.MAP_DESCRIPTION, m.description);
+            addText(null, mapTf, Field.MAP_DESCRIPTION, m.description);
+            for (String poiName : m.poiNames) {
+                addText(doc, doc.termFreqs, Field.POI_NAME, poiName);
+                addText(null, mapTf, Field.POI_NAME, poiName);
+                if (poiName != null)
+                    doc.poiNamesLower.add(poiName.trim().toLowerCase(Locale.ROOT));
+            }
+            for (String explanation : m.poiExplanations) {
+                addText(doc, doc.termFreqs, Field.POI_EXPLANATION, explanation);
+                addText(null, mapTf, Field.POI_EXPLANATION, explanation);
+            }
+            doc.mapTermFreqs.put(m.mapId, mapTf);
+        }
+        docs.put(doc.cityId, doc);
+        for (int f = 0; f < FIELD_COUNT; f++) {
+            fieldLengthTotals[f] += doc.fieldLengths[f];
+        }
+        for (String term : doc.termFreqs.keySet()) {
+            postings.computeIfAbsent(term, k -> new HashSet<>()).add(doc.cityId);
+        }
+    }
+
+    /** Caller must hold the write lock. */
+    private void removeDoc(int cityId) {
+        Doc doc = docs.remove(cityId);
+        if (doc == null)
+            return;
+        for (int f = 0; f < FIELD_COUNT; f++) {
+            fieldLengthTotals[f] -= doc.fieldLengths[f];
+        }
+        for (String term : doc.termFreqs.keySet()) {
+            Set<Integer> ids = postings.get(term);
+            if (ids != null) {
+                ids.remove(cityId);
+                if (ids.isEmpty())
+                    postings.remove(term);
+            }
+        }
+    }
+
+    private static void addText(Doc doc, Map<String, int[]> tf, Field field, String text) {
+        for (String term : tokenize(text)) {
+            tf.computeIfAbsent(term, k -> new int[FIELD_COUNT])[field.ordinal()]++;
+            if (doc != null)
+                doc.fieldLengths[field.ordinal()]++;
+        }
+    }
+
+    private void recomputeMaxPopularity() {
+        long max = 0;
+        for (Doc doc : docs.values()) {
+            max = Math.max(max, doc.popularity);
+        }
+        maxPopularity = max;
+    }
+
+    // ==================== Queries ====================
+
+    /**
+     * Find cities matching the criteria (same semantics as SearchDAO) ordered by
+     * descending relevance, ties broken by city id.
+     *
+     * @param cityName case-insensitive substring of the city name, or null/empty
+     * @param poiName  case-insensitive substring of an approved POI name, or null/empty
+     */
+    public List<ScoredCity> search(String cityName, String poiName) {
+        String cityNeedle = normalize(cityName);
+        String poiNeedle = normalize(poiName);
+        List<String> queryTerms = tokenize((cityName != null ? cityName : "") + " " + (poiName != null ? poiName : ""));
+
+        List<ScoredCity> results = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            Map<String, Double> expanded = expandTerms(queryTerms);
+            for (Doc doc : docs.values()) {
+                if (cityNeedle != null && !doc.nameLower.contains(cityNeedle))
+                    continue;
+                if (poiNeedle != null && !containsAny(doc.poiNamesLower, poiNeedle))
+                    continue;
+                results.add(new ScoredCity(doc.cityId, score(doc, expanded)));
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        results.sort(Comparator.comparingDouble((ScoredCity c) -> -c.score).thenComparingInt(c -> c.cityId));
+        return results;
+    }
+
+    /**
+     * Order the maps of one city by their relevance to the query (stable for ties).
+     */
+    public void sortMaps(int cityId, List<MapSummary> maps, String query) {
+        if (maps == null || maps.size() < 2)
+            return;
+        Map<Integer, Double> mapScores = new HashMap<>();
+        lock.readLock().lock();
+        try {
+            Doc doc = docs.get(cityId);
+            if (doc == null)
+                return;
+            Map<String, Double> expanded = expandTerms(tokenize(query));
+            for (MapSummary map : maps) {
+                Map<String, int[]> tf = doc.mapTermFreqs.get(map.getId());
+                double s = 0;
+                if (tf != null) {
+                    for (Map.Entry<String, Double> e : expanded.entrySet()) {
+                        int[] freqs = tf.get(e.getKey());
+                        if (freqs == null)
+                            continue;
+                        double idf = idf(e.getKey());
+                        for (int f = 0; f < FIELD_COUNT; f++) {
+                            if (freqs[f] > 0)
+                                s += e.getValue() * weights[f] * idf * freqs[f] * (K1 + 1) / (freqs[f] + K1);
+                        }
+                    }
+                }
+                mapScores.put(map.getId(), s);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        maps.sort(Comparator.comparingDouble((MapSummary m) -> -mapScores.getOrDefault(m.getId(), 0.0)));
+    }
+
+    /** Caller must hold the read lock. */
+    private double score(Doc doc, Map<String, Double> expanded) {
+        double total = 0;
+        int n = docs.size();
+        for (Map.Entry<String, Double> e : expanded.entrySet()) {
+            int[] freqs = doc.termFreqs.get(e.getKey());
+            if (freqs == null)
+                continue;
+            double idf = idf(e.getKey());
+            for (int f = 0; f < FIELD_COUNT; f++) {
+                int tf = freqs[f];
+                if (tf == 0)
+                    continue;
+                double avgLen = n > 0 ? (double) fieldLengthTotals[f] / n : 0;
+                double norm = avgLen > 0 ? 1 - B + B * doc.fieldLengths[f] / avgLen : 1;
+                total += e.getValue() * weights[f] * idf * tf * (K1 + 1) / (tf + K1 * norm);
+            }
+        }
+        if (maxPopularity > 0 && doc.popularity > 0) {
+            total *= 1 + POPULARITY_WEIGHT * Math.log1p(doc.popularity) / Math.log1p(maxPopularity);
+        }
+        return total;
+    }
+
+    /** BM25 idf (always positive). Caller must hold the read lock. */
+    private double idf(String term) {
+        Set<Integer> ids = postings.get(term);
+        int df = ids != null ? ids.size() : 0;
+        int n = docs.size();
+        return Math.log(1 + (n - df + 0.5) / (df + 0.5));
+    }
+
+    /**
+     * Map each query term to the indexed terms it matches: itself (weight 1) and
+     * terms it is a prefix of (reduced weight). Caller must hold the read lock.
+     */
+    private Map<String, Double> expandTerms(List<String> queryTerms) {
+        Map<String, Double> expanded = new HashMap<>();
+        for (String q : queryTerms) {
+            SortedMap<String, Set<Integer>> range = postings.subMap(q, q + Character.MAX_VALUE);
+            int count = 0;
+            for (String term : range.keySet()) {
+                double w = term.equals(q) ? 1.0 : PREFIX_MATCH_WEIGHT;
+                expanded.merge(term, w, Math::max);
+                if (++count >= MAX_PREFIX_EXPANSIONS)
+                    break;
+            }
+        }
+        return expanded;
+    }
+
+    // ==================== Helpers ====================
+
+    static List<String> tokenize(String text) {
+        List<String> terms = new ArrayList<>();
+        if (text == null)
+            return terms;
+        for (String t : text.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+")) {
+            if (!t.isEmpty())
+                terms.add(t);
+        }
+        return terms;
+    }
+
+    private static String normalize(String s) {
+        if (s == null || s.trim().isEmpty())
+            return null;
+        return s.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private static boolean containsAny(List<String> values, String needle) {
+        for (String v : values) {
+            if (v.contains(needle))
+                return true;
+        }
+        return false;
+    }
+
+    private static double doubleProperty(String name, double defaultValue) {
+        String value = System.getProperty(name);
+        if (value == null)
+            return defaultValue;
+        try {
+            return Double.parseDouble(value.trim());
+        } catch (NumberFormatException e) {
+            System.out.println("CitySearchIndex: Ignoring invalid " + name + "=" + value);
+            return defaultValue;
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package server.service;
+
+import common.Request;
+import common.Response;
+
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * ETags for conditional reads (Request#setIfNoneMatch -> Response#notModified).
+ *
+ * Tags are built from version counters that writers bump, never from the payload, so checking
+ * one costs no query beyond the version read:
+ * - catalog: bumped after every successful city/map/approval/pricing write (GCMServer); covers
+ *   GET_CITIES_CATALOG, GET_CITIES and GET_MAPS_FOR_CITY
+ * - published catalog: like catalog, but not bumped by drafts, edit requests and rejections
+ *   (nothing customers see); keys the reuse of catalog exports
+ * - purchases of a user: bumped by PurchaseHandler after a purchase or download; GET_MY_PURCHASES
+ *   also depends on the catalog (city names) and the date (subscription expiry)
+ * - map content: the city's content version from the change log (MapChangeLogDAO), which also
+ *   covers distances computed in the background
+ *
+ * Handlers read the tag before loading the content, so a write racing the read can only make the
+ * client fetch again, never keep stale data. Counters live in memory; each tag starts with the
+ * server's start time so tags from before a restart never match.
+ */
+public class ContentTags {
+
+    private final String epoch;
+    private final AtomicLong catalogVersion = new AtomicLong();
+    private final AtomicLong publishedVersion = new AtomicLong();
+    private final Map<Integer, AtomicLong> purchaseVersions = new ConcurrentHashMap<>();
+
+    private static ContentTags instance;
+
+    ContentTags(long epoch) {
+        this.epoch = Long.toString(epoch, 36);
+    }
+
+    /**
+     * Get singleton instance.
+     */
+    public static synchronized ContentTags getInstance() {
+        if (instance == null) {
+            instance = new ContentTags(System.currentTimeMillis());
+        }
+        return instance;
+    }
+
+    /** Cities, maps, prices or approvals changed. */
+    public void catalogChanged() {
+        publishedVersion.incrementAndGet();
+        catalogVersion.incrementAndGet();
+    }
+
+    /** Only drafts or pending requests changed: editors' lists change, published content does not. */
+    public void draftsChanged() {
+        catalogVersion.incrementAndGet();
+    }
+
+    /** The user's purchases or download slots changed. */
+    public void purchasesChanged(int userId) {
+        purchaseVersions.computeIfAbsent(userId, id -> new AtomicLong()).incrementAndGet();
+    }
+
+    /** Tag of the catalog, city list and map lists. */
+    public String catalogTag() {
+        return epoch + "-c" + catalogVersion.get();
+    }
+
+    /** Tag of the published catalog (what customers and exports see). */
+    public String publishedCatalogTag() {
+        return epoch + "-pc" + publishedVersion.get();
+    }
+
+    /** Tag of the user's purchases, valid for the given day. */
+    public String purchasesTag(int userId, LocalDate today) {
+        AtomicLong version = purchaseVersions.get(userId);
+        return epoch + "-p" + (version != null ? version.get() : 0) + "-c" + catalogVersion.get() + "-" + today;
+    }
+
+    /**
+     * Tag of a map's content at the city content version, or null if the version is unknown
+     * (then the response carries no tag).
+     */
+    public String mapContentTag(int mapId, long cityVersion, boolean published) {
+        if (cityVersion < 0) return null;
+        return epoch + "-m" + mapId + "-v" + cityVersion + (published ? "p" : "e");
+    }
+
+    /**
+     * NOT_MODIFIED response if the client already has the content with this tag, else null.
+     */
+    public static Response notModified(Request request, String tag) {
+        if (tag != null && tag.equals(request.getIfNoneMatch())) {
+            return Response.notModified(request, tag);
+        }
+        return null;
+    }
+}
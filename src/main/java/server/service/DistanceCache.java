@@ -0,0 +1,231 @@
+package server.service;
+
+/**
+ * Bounded in-memory cache of POI pair distances (poi_distances), so tour and map
+ * distance lookups do not hit the database once per leg.
+ *
+ * Keys are the normalized pair packed into one long ((long) a &lt;&lt; 32 | b with a &lt; b),
+ * stored in a primitive open-addressing table (linear probing, backward-shift deletion)
+ * so millions of lookups create no garbage. The table never resizes; once it holds
+ * maxEntries pairs, the CLOCK algorithm evicts a pair that was not read since the
+ * hand last passed it.
+ *
+ * The cache is filled by PoiDistanceDAO: one bulk query per tour or map, plus
+ * write-through whenever a distance is computed or stored.
+ *
+ * Configuration (system properties): gcm.distanceCache.maxEntries (default 100000).
+ */
+public class DistanceCache {
+
+    private static final long EMPTY = 0L; // POI ids are positive, so no pair packs to 0
+
+    private final int maxEntries;
+    private final int mask;
+    private final long[] keys;
+    private final double[] values;
+    private final boolean[] referenced;
+    private int size;
+    private int hand;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    private static DistanceCache instance;
+
+    /**
+     * Cache holding at most maxEntries pairs (used by tests).
+     */
+    DistanceCache(int maxEntries) {
+        this.maxEntries = Math.max(1, maxEntries);
+        // Keep the load factor at or below 0.5 so probe sequences stay short
+        int capacity = Integer.highestOneBit(this.maxEntries * 2 - 1) << 1;
+        this.mask = capacity - 1;
+        this.keys = new long[capacity];
+        this.values = new double[capacity];
+        this.referenced = new boolean[capacity];
+    }
+
+    /**
+     * Get singleton instance.
+     */
+    public static synchronized DistanceCache getInstance() {
+        if (instance == null) {
+            instance = new DistanceCache(Integer.getInteger("gcm.distanceCache.maxEntries", 100_000));
+        }
+        return instance;
+    }
+
+    /**
+     * Packed key of an unordered POI pair.
+     */
+    public static long key(int poiId1, int poiId2) {
+        int a = Math.min(poiId1, poiId2);
+        int b = Math.max(poiId1, poiId2);
+        return ((long) a << 32) | (b & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Cached distance in meters, or null on a miss. Order-independent.
+     */
+    public synchronized Double get(int poiId1, int poiId2) {
+        int slot = find(key(poiId1, poiId2));
+        if (slot < 0) {
+            misses++;
+            return null;
+        }
+        hits++;
+        referenced[slot] = true;
+        return values[slot];
+    }
+
+    /**
+     * True if the pair is cached (does not count as a read).
+     */
+    public synchronized boolean contains(int poiId1, int poiId2) {
+        return find(key(poiId1, poiId2)) >= 0;
+    }
+
+    /**
+     * Store or replace a pair distance. Pairs of a POI with itself are not stored.
+     */
+    public synchronized void put(int poiId1, int poiId2, double meters) {
+        if (poiId1 == poiId2 || poiId1 <= 0 || poiId2 <= 0 || Double.isNaN(meters)) {
+            return;
+        }
+        long key = key(poiId1, poiId2);
+        int slot = find(key);
+        if (slot >= 0) {
+            values[slot] = meters;
+            return;
+        }
+        if (size >= maxEntries) {
+            evictOne();
+        }
+        slot = indexFor(key);
+        while (keys[slot] != EMPTY) {
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        values[slot] = meters;
+        referenced[slot] = false;
+        size++;
+    }
+
+    /**
+     * Drop every pair involving the POI (after it was moved or deleted). Scans the table.
+     *
+     * @return number of pairs removed
+     */
+    public synchronized int removePoi(int poiId) {
+        int removed = 0;
+        int slot = 0;
+        while (slot < keys.length) {
+            long key = keys[slot];
+            if (key != EMPTY && ((int) (key >>> 32) == poiId || (int) key == poiId)) {
+                // The backward shift may move a later entry into this slot: re-check it
+                removeAt(slot);
+                removed++;
+            } else {
+                slot++;
+            }
+        }
+        return removed;
+    }
+
+    public synchronized void clear() {
+        java.util.Arrays.fill(keys, EMPTY);
+        java.util.Arrays.fill(referenced, false);
+        size = 0;
+        hand = 0;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * One-line summary for the server metrics log.
+     */
+    public synchronized String getStats() {
+        long total = hits + misses;
+        return String.format("DistanceCache[size=%d/%d, hits=%d, misses=%d, hitRatio=%.2f, evictions=%d]",
+                size, maxEntries, hits, misses, total == 0 ? 0.0 : (double) hits / total, evictions);
+    }
+
+    // ==================== Table internals ====================
+
+    private int indexFor(long key) {
+        // Mix both halves (Murmur3 finalizer) so consecutive ids spread over the table
+        long h = key;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        return (int) h & mask;
+    }
+
+    private int find(long key) {
+        int slot = indexFor(key);
+        while (keys[slot] != EMPTY) {
+            if (keys[slot] == key) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * CLOCK: advance the hand, giving referenced pairs a second chance, and remove the
+     * first unreferenced one.
+     */
+    private void evictOne() {
+        while (true) {
+            if (keys[hand] != EMPTY) {
+                if (!referenced[hand]) {
+                    removeAt(hand);
+                    evictions++;
+                    return;
+                }
+                referenced[hand] = false;
+            }
+            hand = (hand + 1) & mask;
+        }
+    }
+
+    /**
+     * Remove the entry at slot and shift following entries of the probe run back, so
+     * lookups never stop early at the hole (no tombstones needed).
+     */
+    private void removeAt(int slot) {
+        int hole = slot;
+        int next = (hole + 1) & mask;
+        while (keys[next] != EMPTY) {
+            int home = indexFor(keys[next]);
+            // Move next into the hole unless its home lies cyclically in (hole, next]
+            boolean homeBetween = hole <= next ? (home > hole && home <= next) : (home > hole || home <= next);
+            if (!homeBetween) {
+                keys[hole] = keys[next];
+                values[hole] = values[next];
+                referenced[hole] = referenced[next];
+                hole = next;
+            }
+            next = (next + 1) & mask;
+        }
+        keys[hole] = EMPTY;
+        referenced[hole] = false;
+        size--;
+    }
+}
@@ -0,0 +1,75 @@
+package server.service;
+
+import common.Poi;
+import common.dto.MapContent;
+import common.dto.MapContentDelta;
+import common.dto.TourDTO;
+import common.dto.TourStopDTO;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Builds the delta of GET_MAP_CONTENT_DELTA from the current map content and the entities
+ * touched since the client's version (see MapChangeLogDAO).
+ *
+ * A tour is re-sent when it changed or one of its stop POIs changed (stops carry POI names).
+ */
+public final class MapContentSync {
+
+    private MapContentSync() {
+    }
+
+    /**
+     * @param current        content at the new version (contentVersion set)
+     * @param baseVersion    version the client has
+     * @param changedPoiIds  POIs touched since baseVersion
+     * @param allPois        re-send every POI of the map
+     * @param changedTourIds tours touched since baseVersion
+     * @param allTours       re-send every tour
+     */
+    public static MapContentDelta buildDelta(MapContent current, long baseVersion,
+                                             Set<Integer> changedPoiIds, boolean allPois,
+                                             Set<Integer> changedTourIds, boolean allTours) {
+        MapContentDelta delta = new MapContentDelta(current.getMapId(), baseVersion, current.getContentVersion());
+
+        List<Integer> poiIds = new ArrayList<>();
+        List<Poi> upsertedPois = new ArrayList<>();
+        for (Poi p : current.getPois()) {
+            poiIds.add(p.getId());
+            if (allPois || changedPoiIds.contains(p.getId())) upsertedPois.add(p);
+        }
+        delta.setPoiIds(poiIds);
+        delta.setUpsertedPois(upsertedPois);
+
+        // Draft tours without an id cannot be referenced: send the whole list
+        boolean unreferenced = current.getTours().stream().anyMatch(t -> t.getId() <= 0);
+        List<Integer> tourIds = new ArrayList<>();
+        List<TourDTO> upsertedTours = new ArrayList<>();
+        for (TourDTO t : current.getTours()) {
+            tourIds.add(t.getId());
+            if (unreferenced || allTours || changedTourIds.contains(t.getId()) || hasStopPoi(t, changedPoiIds)) {
+                upsertedTours.add(t);
+            }
+        }
+        delta.setTourIds(unreferenced ? null : tourIds);
+        delta.setUpsertedTours(upsertedTours);
+
+        delta.setTourId(current.getTourId());
+        delta.setTourSegments(current.getTourSegments());
+        delta.setPendingPoiMapUnlinks(current.getPendingPoiMapUnlinks());
+        delta.setPendingDeletedPoiIds(current.getPendingDeletedPoiIds());
+        delta.setPendingAddedTours(current.getPendingAddedTours());
+        delta.setPendingDeletedTourIds(current.getPendingDeletedTourIds());
+        return delta;
+    }
+
+    private static boolean hasStopPoi(TourDTO tour, Set<Integer> poiIds) {
+        if (poiIds.isEmpty() || tour.getStops() == null) return false;
+        for (TourStopDTO stop : tour.getStops()) {
+            if (poiIds.contains(stop.getPoiId())) return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,272 @@
+package server.service;
+
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonWriter;
+import common.dto.MapContent;
+import common.dto.MapPackageChunk;
+import common.dto.MapPackageInfo;
+import server.DBConnector;
+import server.dao.MapChangeLogDAO;
+import server.dao.MapPackageDAO;
+import server.dao.MapPackageDAO.PackageRecord;
+import server.dao.MapSnapshotDAO;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Prebuilt offline map packages (what DOWNLOAD_MAP_VERSION hands out).
+ *
+ * A package is the gzipped JSON of the published content of all approved maps of a city
+ * (POIs, tours, stops, segments and map metadata):
+ * <pre>
+ * {"format":1,"cityId":3,"maps":[MapContent, ...]}
+ * </pre>
+ * It is built in the background after an approval, one map at a time straight to disk, and
+ * stored under gcm.packages.dir (default "packages") as &lt;sha-256&gt;.gcmpkg, so identical
+ * content is stored once. Clients fetch it in chunks of gcm.package.chunkSize bytes (default
+ * 256 KB) read from the file at the requested offset; neither side holds the whole package in
+ * memory, and an interrupted download resumes from the bytes already received.
+ *
+ * Map tiles are not part of the package; the client's tile layer caches them itself.
+ */
+public class MapPackageService {
+
+    public static final int FORMAT_VERSION = 1;
+    public static final String EXTENSION = ".gcmpkg";
+
+    private static final Gson gson = new Gson();
+
+    private final Path directory;
+    private final int chunkSize;
+    private final ExecutorService builder;
+    /** Cities with a build queued on the builder. */
+    private final Set<Integer> pendingBuilds = ConcurrentHashMap.newKeySet();
+
+    private static MapPackageService instance;
+
+    private MapPackageService() {
+        this(Paths.get(System.getProperty("gcm.packages.dir", "packages")),
+                Integer.getInteger("gcm.package.chunkSize", 256 * 1024));
+    }
+
+    /**
+     * Service storing packages in the given directory (e.g. a temporary one in tests).
+     */
+    public MapPackageService(Path directory, int chunkSize) {
+        this.directory = directory;
+        this.chunkSize = Math.max(1024, chunkSize);
+        this.builder = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "MapPackageBuilder");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Get singleton instance.
+     */
+    public static synchronized MapPackageService getInstance() {
+        if (instance == null) {
+            instance = new MapPackageService();
+        }
+        return instance;
+    }
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    /**
+     * Rebuild the city's package in the background (call after committing an approval). A city
+     * already waiting for a build is not queued twice.
+     */
+    public void scheduleBuild(int cityId) {
+        if (cityId <= 0 || !pendingBuilds.add(cityId)) return;
+        builder.submit(() -> {
+            pendingBuilds.remove(cityId);
+            try (Connection conn = DBConnector.getConnection()) {
+                build(conn, cityId);
+            } catch (Exception e) {
+                System.err.println("MapPackageService: build of city " + cityId + " failed: " + e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * The city's package. Built now only if there is none yet; if published content (not drafts
+     * or edit requests) changed since it was built, the current package is served and a rebuild
+     * is scheduled. Null if it cannot be built.
+     */
+    public MapPackageInfo getOrBuild(int cityId) {
+        try (Connection conn = DBConnector.getConnection()) {
+            PackageRecord record = MapPackageDAO.getPackage(conn, cityId);
+            if (record == null || !Files.exists(packageFile(record.hash))) {
+                record = build(conn, cityId);
+            } else if (MapChangeLogDAO.hasPublishedChanges(conn, cityId, record.contentVersion)) {
+                scheduleBuild(cityId);
+            }
+            return new MapPackageInfo(cityId, record.hash, record.sizeBytes, chunkSize);
+        } catch (SQLException | IOException e) {
+            System.err.println("MapPackageService: package of city " + cityId + " unavailable: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Chunk of the city's package at the offset. Only the city's current and previous package
+     * are served; null for any other hash or an offset past the end (the client starts over).
+     */
+    public MapPackageChunk readChunk(int cityId, String hash, long offset) {
+        try (Connection conn = DBConnector.getConnection()) {
+            PackageRecord record = MapPackageDAO.getPackage(conn, cityId);
+            if (record == null || hash == null
+                    || !(hash.equals(record.hash) || hash.equals(record.previousHash))) {
+                return null;
+            }
+        } catch (SQLException e) {
+            System.err.println("MapPackageService: readChunk failed for city " + cityId + ": " + e.getMessage());
+            return null;
+        }
+        try {
+            return readChunk(cityId, hash, offset, chunkSize);
+        } catch (IOException e) {
+            System.err.println("MapPackageService: package " + hash + " unreadable: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Chunk of a stored package at the offset; null if the package does not exist or the offset
+     * is outside it.
+     */
+    MapPackageChunk readChunk(int cityId, String hash, long offset, int length) throws IOException {
+        Path file = packageFile(hash);
+        if (!Files.exists(file)) return null;
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "r")) {
+            long size = raf.length();
+            if (offset < 0 || offset > size) return null;
+            byte[] data = new byte[(int) Math.min(length, size - offset)];
+            raf.seek(offset);
+            raf.readFully(data);
+            return new MapPackageChunk(cityId, hash, offset, size, data);
+        }
+    }
+
+    /**
+     * Build the city's package from the published content of its approved maps and make it the
+     * current one. Stale snapshots of the maps are refreshed on the way (MapSnapshotDAO).
+     */
+    synchronized PackageRecord build(Connection conn, int cityId) throws SQLException, IOException {
+        long start = System.currentTimeMillis();
+        // Read first so a change committed while building makes the package stale, not current
+        long version = MapChangeLogDAO.getVersionForCity(conn, cityId);
+        List<Integer> mapIds = MapSnapshotDAO.getPublishedMapIds(conn, cityId);
+
+        PackageWriter writer = new PackageWriter(cityId);
+        try {
+            for (int mapId : mapIds) {
+                MapContent content = MapSnapshotDAO.refreshPublishedContent(conn, mapId);
+                if (content != null) writer.add(content);
+            }
+            writer.finish();
+        } finally {
+            writer.discard();
+        }
+
+        PackageRecord old = MapPackageDAO.getPackage(conn, cityId);
+        MapPackageDAO.savePackage(conn, cityId, writer.hash, writer.size, version);
+        if (old != null && old.previousHash != null && !old.hash.equals(writer.hash)
+                && !old.previousHash.equals(writer.hash) && !MapPackageDAO.isReferenced(conn, old.previousHash)) {
+            Files.deleteIfExists(packageFile(old.previousHash));
+        }
+
+        System.out.println("MapPackageService: Built package " + writer.hash.substring(0, 12) + " of city " + cityId
+                + " (" + mapIds.size() + " maps, " + writer.size + " bytes) in "
+                + (System.currentTimeMillis() - start) + "ms");
+        return MapPackageDAO.getPackage(conn, cityId);
+    }
+
+    Path packageFile(String hash) {
+        return directory.resolve(hash + EXTENSION);
+    }
+
+    /**
+     * Streams map contents into a temporary file and moves it to its content-addressed name.
+     */
+    class PackageWriter {
+        private final Path temp;
+        private final MessageDigest digest;
+        private final OutputStream file;
+        private final JsonWriter json;
+        String hash;
+        long size;
+
+        PackageWriter(int cityId) throws IOException {
+            Files.createDirectories(directory);
+            temp = Files.createTempFile(directory, "build-", ".tmp");
+            try {
+                digest = MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+            file = Files.newOutputStream(temp);
+            // GZIP header without a timestamp: equal content gives an equal hash
+            OutputStream gzip = new GZIPOutputStream(new DigestOutputStream(file, digest), 8192);
+            json = new JsonWriter(new OutputStreamWriter(gzip, StandardCharsets.UTF_8));
+            json.beginObject();
+            json.name("format").value(FORMAT_VERSION);
+            json.name("cityId").value(cityId);
+            json.name("maps").beginArray();
+        }
+
+        void add(MapContent content) throws IOException {
+            // The package is addressed by content; the version it was read at is tracked in map_packages
+            content.setContentVersion(-1);
+            gson.toJson(content, MapContent.class, json);
+        }
+
+        void finish() throws IOException {
+            json.endArray();
+            json.endObject();
+            json.close();
+            hash = toHex(digest.digest());
+            size = Files.size(temp);
+            Path target = packageFile(hash);
+            if (!Files.exists(target)) {
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+            }
+        }
+
+        void discard() throws IOException {
+            file.close();
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
+    }
+}
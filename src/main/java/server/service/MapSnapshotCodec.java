@@ -0,0 +1,56 @@
+package server.service;
+
+import com.google.gson.Gson;
+import common.dto.MapContent;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Stored form of a map content snapshot (map_version_snapshots.content):
+ * <pre>
+ * "GMS" | format version (1 byte) | deflated JSON of the MapContent
+ * </pre>
+ * JSON keeps snapshots of older versions readable when DTO fields are added or removed.
+ */
+public final class MapSnapshotCodec {
+
+    public static final int FORMAT_VERSION = 1;
+    private static final byte[] MAGIC = { 'G', 'M', 'S' };
+
+    private static final Gson gson = new Gson();
+
+    private MapSnapshotCodec() {
+    }
+
+    public static byte[] encode(MapContent content) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        bytes.write(MAGIC, 0, MAGIC.length);
+        bytes.write(FORMAT_VERSION);
+        try (DeflaterOutputStream out = new DeflaterOutputStream(bytes)) {
+            out.write(gson.toJson(content).getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new IllegalStateException("Encoding map snapshot failed", e);
+        }
+        return bytes.toByteArray();
+    }
+
+    public static MapContent decode(byte[] data) throws IOException {
+        if (data == null || data.length < MAGIC.length + 1
+                || data[0] != MAGIC[0] || data[1] != MAGIC[1] || data[2] != MAGIC[2]) {
+            throw new IOException("Not a map snapshot");
+        }
+        if (data[3] != FORMAT_VERSION) {
+            throw new IOException("Unsupported map snapshot format " + data[3]);
+        }
+        try (InflaterInputStream in = new InflaterInputStream(
+                new ByteArrayInputStream(data, MAGIC.length + 1, data.length - MAGIC.length - 1))) {
+            byte[] json = in.readAllBytes();
+            return gson.fromJson(new String(json, StandardCharsets.UTF_8), MapContent.class);
+        }
+    }
+}
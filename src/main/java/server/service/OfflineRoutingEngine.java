@@ -0,0 +1,351 @@
+package server.service;
+
+import common.Poi;
+import server.dao.PoiDistanceDAO;
+
+import javax.xml.stream.XMLStreamException;
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * In-process routing on a RoadGraph, so distances need no external service.
+ *
+ * Point-to-point queries use bidirectional A* with the average potential
+ * p(v) = (h(v, t) - h(v, s)) / 2, where h is the great-circle distance (a lower bound on
+ * road distance); both searches then run on the same consistent reduced costs and can stop
+ * as soon as minKeyForward + minKeyBackward &gt;= best path found. Matrix rows use one
+ * Dijkstra per source that stops once every target is settled.
+ *
+ * POIs are snapped to their nearest graph node; the straight-line distance from each POI to
+ * its node is added to the path. Search state lives in reusable per-thread arrays (stamped,
+ * so nothing is cleared between queries).
+ */
+public class OfflineRoutingEngine implements RoutingEngine {
+
+    // Slightly shrink the heuristic so float edge weights never make it inconsistent
+    private static final double HEURISTIC_FACTOR = 0.999;
+
+    private final RoadGraph graph;
+    private final ThreadLocal<Search> forwardSearch;
+    private final ThreadLocal<Search> backwardSearch;
+
+    public OfflineRoutingEngine(RoadGraph graph) {
+        this.graph = graph;
+        this.forwardSearch = ThreadLocal.withInitial(() -> new Search(graph.nodeCount));
+        this.backwardSearch = ThreadLocal.withInitial(() -> new Search(graph.nodeCount));
+    }
+
+    /**
+     * Engine for an OSM XML extract on disk.
+     */
+    public static OfflineRoutingEngine load(Path osmFile) throws IOException {
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(osmFile))) {
+            return new OfflineRoutingEngine(RoadGraph.loadOsm(in));
+        } catch (XMLStreamException e) {
+            throw new IOException("Invalid OSM file " + osmFile + ": " + e.getMessage(), e);
+        }
+    }
+
+    public RoadGraph getGraph() {
+        return graph;
+    }
+
+    // ==================== RoutingEngine ====================
+
+    @Override
+    public Double getDistanceMeters(double lat1, double lon1, double lat2, double lon2) {
+        int s = graph.nearestNode(lat1, lon1);
+        int t = graph.nearestNode(lat2, lon2);
+        if (s < 0 || t < 0) {
+            return null;
+        }
+        if (s == t) {
+            return PoiDistanceDAO.haversineMeters(lat1, lon1, lat2, lon2);
+        }
+        double path = shortestPath(s, t);
+        if (Double.isInfinite(path)) {
+            return null;
+        }
+        return offset(lat1, lon1, s) + path + offset(lat2, lon2, t);
+    }
+
+    @Override
+    public double[][] getDistanceMatrix(List<Poi> pois) {
+        int n = pois.size();
+        double[][] matrix = new double[n][n];
+        for (double[] row : matrix) {
+            Arrays.fill(row, Double.NaN);
+        }
+        int[] nodes = snap(pois);
+        for (int i = 0; i < n; i++) {
+            matrix[i][i] = 0.0;
+            if (nodes[i] < 0) continue;
+            // Upper triangle only; mirrored like OsrmClient (poi_distances stores one direction)
+            double[] row = distancesFrom(pois, nodes, i, i + 1);
+            for (int j = i + 1; j < n; j++) {
+                matrix[i][j] = row[j];
+                matrix[j][i] = row[j];
+            }
+        }
+        return matrix;
+    }
+
+    @Override
+    public double[] getDistancesFrom(Poi source, List<Poi> targets) {
+        double[] row = new double[targets.size()];
+        Arrays.fill(row, Double.NaN);
+        if (source.getLatitude() == null || source.getLongitude() == null) {
+            return row;
+        }
+        List<Poi> all = new java.util.ArrayList<>(targets.size() + 1);
+        all.add(source);
+        all.addAll(targets);
+        double[] full = distancesFrom(all, snap(all), 0, 1);
+        System.arraycopy(full, 1, row, 0, row.length);
+        return row;
+    }
+
+    /**
+     * Distances from pois[source] to pois[from..] (other entries NaN): one bounded Dijkstra,
+     * haversine for unreachable targets, NaN for POIs without coordinates.
+     */
+    private double[] distancesFrom(List<Poi> pois, int[] nodes, int source, int from) {
+        double[] row = new double[pois.size()];
+        Arrays.fill(row, Double.NaN);
+        int[] targetNodes = Arrays.copyOfRange(nodes, from, nodes.length);
+        double[] paths = oneToMany(nodes[source], targetNodes);
+        Poi s = pois.get(source);
+        for (int j = from; j < pois.size(); j++) {
+            if (nodes[j] < 0) continue;
+            Poi t = pois.get(j);
+            double path = paths[j - from];
+            if (nodes[j] == nodes[source] || Double.isInfinite(path)) {
+                row[j] = PoiDistanceDAO.haversineMeters(s.getLatitude(), s.getLongitude(), t.getLatitude(), t.getLongitude());
+            } else {
+                row[j] = offset(s.getLatitude(), s.getLongitude(), nodes[source]) + path
+                        + offset(t.getLatitude(), t.getLongitude(), nodes[j]);
+            }
+        }
+        return row;
+    }
+
+    /** Nearest node per POI, -1 for POIs without coordinates. */
+    private int[] snap(List<Poi> pois) {
+        int[] nodes = new int[pois.size()];
+        for (int i = 0; i < nodes.length; i++) {
+            Poi p = pois.get(i);
+            nodes[i] = p.getLatitude() == null || p.getLongitude() == null
+                    ? -1 : graph.nearestNode(p.getLatitude(), p.getLongitude());
+        }
+        return nodes;
+    }
+
+    private double offset(double latitude, double longitude, int node) {
+        return PoiDistanceDAO.haversineMeters(latitude, longitude, graph.lat[node], graph.lon[node]);
+    }
+
+    // ==================== Searches ====================
+
+    /**
+     * Shortest path length between two nodes (bidirectional A*), or +Infinity if unreachable.
+     */
+    double shortestPath(int s, int t) {
+        if (s == t) return 0.0;
+        Search fwd = forwardSearch.get();
+        Search bwd = backwardSearch.get();
+        fwd.reset();
+        bwd.reset();
+        double sLat = graph.lat[s], sLon = graph.lon[s];
+        double tLat = graph.lat[t], tLon = graph.lon[t];
+
+        fwd.label(s, 0.0);
+        fwd.push(s, potential(s, sLat, sLon, tLat, tLon));
+        bwd.label(t, 0.0);
+        bwd.push(t, -potential(t, sLat, sLon, tLat, tLon));
+        double best = Double.POSITIVE_INFINITY;
+
+        while (!fwd.isEmpty() && !bwd.isEmpty()) {
+            if (fwd.minKey() + bwd.minKey() >= best) {
+                break;
+            }
+            boolean forward = fwd.minKey() <= bwd.minKey();
+            Search search = forward ? fwd : bwd;
+            Search other = forward ? bwd : fwd;
+            int[] start = forward ? graph.outStart : graph.inStart;
+            int[] head = forward ? graph.outHead : graph.inHead;
+            float[] weight = forward ? graph.outWeight : graph.inWeight;
+
+            double key = search.minKey();
+            int u = search.pop();
+            double du = search.dist(u);
+            // Stale heap entry (lazy deletion): the node was reached more cheaply already
+            double pu = forward ? potential(u, sLat, sLon, tLat, tLon) : -potential(u, sLat, sLon, tLat, tLon);
+            if (key > du + pu + 1e-9) {
+                continue;
+            }
+            for (int e = start[u]; e < start[u + 1]; e++) {
+                int v = head[e];
+                double dv = du + weight[e];
+                if (dv < search.dist(v)) {
+                    search.label(v, dv);
+                    double pv = forward ? potential(v, sLat, sLon, tLat, tLon) : -potential(v, sLat, sLon, tLat, tLon);
+                    search.push(v, dv + pv);
+                    double through = dv + other.dist(v);
+                    if (through < best) {
+                        best = through;
+                    }
+                }
+            }
+        }
+        return best;
+    }
+
+    /** Forward potential (h(v, t) - h(v, s)) / 2; the backward potential is its negation. */
+    private double potential(int v, double sLat, double sLon, double tLat, double tLon) {
+        double toTarget = PoiDistanceDAO.haversineMeters(graph.lat[v], graph.lon[v], tLat, tLon);
+        double toSource = PoiDistanceDAO.haversineMeters(graph.lat[v], graph.lon[v], sLat, sLon);
+        return HEURISTIC_FACTOR * (toTarget - toSource) / 2;
+    }
+
+    /**
+     * Path lengths from node s to each target node (+Infinity if unreachable or target &lt; 0).
+     * Dijkstra stops once all targets are settled.
+     */
+    double[] oneToMany(int s, int[] targets) {
+        double[] out = new double[targets.length];
+        Arrays.fill(out, Double.POSITIVE_INFINITY);
+        if (s < 0) return out;
+        Search search = forwardSearch.get();
+        Search wanted = backwardSearch.get(); // reused as a target marker set
+        search.reset();
+        wanted.reset();
+        int remaining = 0;
+        for (int target : targets) {
+            if (target >= 0 && wanted.dist(target) == Double.POSITIVE_INFINITY) {
+                wanted.label(target, 0.0);
+                remaining++;
+            }
+        }
+        search.label(s, 0.0);
+        search.push(s, 0.0);
+        while (remaining > 0 && !search.isEmpty()) {
+            double key = search.minKey();
+            int u = search.pop();
+            if (key > search.dist(u)) {
+                continue;
+            }
+            if (wanted.dist(u) == 0.0 && !search.isSettled(u)) {
+                remaining--;
+            }
+            search.settle(u);
+            for (int e = graph.outStart[u]; e < graph.outStart[u + 1]; e++) {
+                int v = graph.outHead[e];
+                double dv = key + graph.outWeight[e];
+                if (dv < search.dist(v)) {
+                    search.label(v, dv);
+                    search.push(v, dv);
+                }
+            }
+        }
+        for (int i = 0; i < targets.length; i++) {
+            if (targets[i] >= 0) {
+                out[i] = search.dist(targets[i]);
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Per-thread search state: tentative distances with generation stamps (no clearing
+     * between queries) and a binary min-heap on primitive arrays with lazy deletion.
+     */
+    private static final class Search {
+        private final double[] dist;
+        private final int[] stamp;
+        private final boolean[] settled;
+        private int generation;
+        private int[] heapNode = new int[64];
+        private double[] heapKey = new double[64];
+        private int heapSize;
+
+        Search(int nodeCount) {
+            this.dist = new double[nodeCount];
+            this.stamp = new int[nodeCount];
+            this.settled = new boolean[nodeCount];
+        }
+
+        void reset() {
+            generation++;
+            heapSize = 0;
+        }
+
+        double dist(int v) {
+            return stamp[v] == generation ? dist[v] : Double.POSITIVE_INFINITY;
+        }
+
+        void label(int v, double d) {
+            if (stamp[v] != generation) {
+                stamp[v] = generation;
+                settled[v] = false;
+            }
+            dist[v] = d;
+        }
+
+        boolean isSettled(int v) {
+            return stamp[v] == generation && settled[v];
+        }
+
+        void settle(int v) {
+            settled[v] = true;
+        }
+
+        boolean isEmpty() {
+            return heapSize == 0;
+        }
+
+        double minKey() {
+            return heapKey[0];
+        }
+
+        void push(int v, double key) {
+            if (heapSize == heapNode.length) {
+                heapNode = Arrays.copyOf(heapNode, heapSize * 2);
+                heapKey = Arrays.copyOf(heapKey, heapSize * 2);
+            }
+            int i = heapSize++;
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (heapKey[parent] <= key) break;
+                heapNode[i] = heapNode[parent];
+                heapKey[i] = heapKey[parent];
+                i = parent;
+            }
+            heapNode[i] = v;
+            heapKey[i] = key;
+        }
+
+        int pop() {
+            int top = heapNode[0];
+            int lastNode = heapNode[--heapSize];
+            double lastKey = heapKey[heapSize];
+            int i = 0;
+            while (true) {
+                int child = 2 * i + 1;
+                if (child >= heapSize) break;
+                if (child + 1 < heapSize && heapKey[child + 1] < heapKey[child]) child++;
+                if (heapKey[child] >= lastKey) break;
+                heapNode[i] = heapNode[child];
+                heapKey[i] = heapKey[child];
+                i = child;
+            }
+            heapNode[i] = lastNode;
+            heapKey[i] = lastKey;
+            return top;
+        }
+    }
+}
@@ -1,8 +1,11 @@
 package server.service;
 
+import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
+import common.Poi;
+import server.dao.PoiDistanceDAO;
 
 import java.io.IOException;
 import java.net.URI;
@@ -11,22 +14,67 @@ import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Client for OSRM public API to compute shortest road distance between two points.
  * Uses driving profile; distance returned in meters.
+ *
+ * Single pairs use the route service; whole POI sets use the table service
+ * ({@link #getDistanceMatrix}), one request per block pair of at most
+ * maxTableCoordinates coordinates.
+ *
+ * Configuration (system properties): gcm.osrm.baseUrl (default public OSRM server),
+ * gcm.osrm.maxTableCoordinates (default 100, the public server limit),
+ * gcm.osrm.maxConcurrentRequests (default 4).
  */
-public class OsrmClient {
+public class OsrmClient implements RoutingEngine {
 
-    private static final String OSRM_BASE = "https://router.project-osrm.org/route/v1/driving";
+    private static final String DEFAULT_BASE_URL = "https://router.project-osrm.org";
     private static final int TIMEOUT_SECONDS = 10;
+    private static final int TABLE_TIMEOUT_SECONDS = 30;
 
     private final HttpClient httpClient;
+    private final String routeBase;
+    private final String tableBase;
+    private final int maxTableCoordinates;
+    private final ExecutorService tableExecutor;
 
     public OsrmClient() {
+        this(System.getProperty("gcm.osrm.baseUrl", DEFAULT_BASE_URL),
+                Integer.getInteger("gcm.osrm.maxTableCoordinates", 100),
+                Integer.getInteger("gcm.osrm.maxConcurrentRequests", 4));
+    }
+
+    /**
+     * Client for a specific OSRM server (e.g. a self-hosted instance or a test stub).
+     *
+     * @param baseUrl               server root, e.g. http://localhost:5000
+     * @param maxTableCoordinates   coordinates allowed per table request (at least 2)
+     * @param maxConcurrentRequests table requests in flight at once
+     */
+    public OsrmClient(String baseUrl, int maxTableCoordinates, int maxConcurrentRequests) {
         this.httpClient = HttpClient.newBuilder()
                 .connectTimeout(Duration.ofSeconds(5))
                 .build();
+        String base = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+        this.routeBase = base + "/route/v1/driving";
+        this.tableBase = base + "/table/v1/driving";
+        this.maxTableCoordinates = Math.max(2, maxTableCoordinates);
+        AtomicInteger threadNumber = new AtomicInteger(1);
+        this.tableExecutor = Executors.newFixedThreadPool(Math.max(1, maxConcurrentRequests), r -> {
+            Thread t = new Thread(r, "OsrmTable-" + threadNumber.getAndIncrement());
+            t.setDaemon(true);
+            return t;
+        });
     }
 
     /**
@@ -39,10 +87,11 @@ public class OsrmClient {
      * @param lon2 longitude of second point
      * @return distance in meters, or null if request failed or no route found
      */
+    @Override
     public Double getDistanceMeters(double lat1, double lon1, double lat2, double lon2) {
         // OSRM format: {lon},{lat};{lon},{lat}
         String coords = lon1 + "," + lat1 + ";" + lon2 + "," + lat2;
-        String url = OSRM_BASE + "/" + coords + "?overview=false";
+        String url = routeBase + "/" + coords + "?overview=false";
         try {
             HttpRequest request = HttpRequest.newBuilder()
                     .uri(URI.create(url))
@@ -77,6 +126,224 @@ public class OsrmClient {
         }
     }
 
+    // ==================== Distance matrix (table service) ====================
+
+    /**
+     * Road distances between all POIs, in meters. matrix[i][j] is the distance between
+     * pois.get(i) and pois.get(j); the matrix is symmetric (poi_distances stores one
+     * direction, so the i &lt; j value is mirrored) with 0 on the diagonal.
+     *
+     * The POIs are split into blocks so that each table request (sources block x
+     * destinations block) stays within maxTableCoordinates; blocks run in parallel
+     * with bounded concurrency. Cells OSRM could not route (failed request, no route)
+     * fall back to haversine. Cells involving a POI without coordinates are NaN.
+     */
+    @Override
+    public double[][] getDistanceMatrix(List<Poi> pois) {
+        int n = pois.size();
+        double[][] matrix = new double[n][n];
+        for (double[] row : matrix) {
+            Arrays.fill(row, Double.NaN);
+        }
+
+        // Only POIs with coordinates take part (indexes into pois)
+        List<Integer> located = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            matrix[i][i] = 0.0;
+            Poi p = pois.get(i);
+            if (p.getLatitude() != null && p.getLongitude() != null) {
+                located.add(i);
+            }
+        }
+        if (located.size() < 2) {
+            return matrix;
+        }
+
+        // Off-diagonal blocks send both blocks' coordinates, so a block is half the limit
+        int blockSize = Math.max(1, maxTableCoordinates / 2);
+        List<List<Integer>> blocks = new ArrayList<>();
+        for (int start = 0; start < located.size(); start += blockSize) {
+            blocks.add(located.subList(start, Math.min(located.size(), start + blockSize)));
+        }
+
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (int a = 0; a < blocks.size(); a++) {
+            for (int b = a; b < blocks.size(); b++) {
+                List<Integer> sources = blocks.get(a);
+                List<Integer> destinations = blocks.get(b);
+                tasks.add(() -> {
+                    fillBlock(pois, sources, destinations, matrix);
+                    return null;
+                });
+            }
+        }
+        try {
+            for (Future<Void> f : tableExecutor.invokeAll(tasks)) {
+                f.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            System.err.println("OsrmClient: Table block failed: " + e.getCause());
+        }
+
+        // Mirror the upper triangle and fill anything OSRM did not answer with haversine
+        for (int x = 0; x < located.size(); x++) {
+            int i = located.get(x);
+            for (int y = x + 1; y < located.size(); y++) {
+                int j = located.get(y);
+                double d = matrix[i][j];
+                if (Double.isNaN(d)) {
+                    Poi p1 = pois.get(i);
+                    Poi p2 = pois.get(j);
+                    d = PoiDistanceDAO.haversineMeters(p1.getLatitude(), p1.getLongitude(),
+                            p2.getLatitude(), p2.getLongitude());
+                }
+                matrix[i][j] = d;
+                matrix[j][i] = d;
+            }
+        }
+        return matrix;
+    }
+
+    /**
+     * Road distances in meters from one POI to each of the targets (one matrix row), using
+     * one table request per maxTableCoordinates - 1 targets. Same fallbacks as
+     * {@link #getDistanceMatrix}: haversine for unroutable cells, NaN when either POI has
+     * no coordinates.
+     */
+    @Override
+    public double[] getDistancesFrom(Poi source, List<Poi> targets) {
+        double[] row = new double[targets.size()];
+        Arrays.fill(row, Double.NaN);
+        if (source.getLatitude() == null || source.getLongitude() == null) {
+            return row;
+        }
+        // Matrix layout for the block helpers: index 0 is the source, 1..n the targets
+        List<Poi> all = new ArrayList<>(targets.size() + 1);
+        all.add(source);
+        all.addAll(targets);
+        List<Integer> located = new ArrayList<>();
+        for (int t = 1; t < all.size(); t++) {
+            Poi p = all.get(t);
+            if (p.getLatitude() != null && p.getLongitude() != null) {
+                located.add(t);
+            }
+        }
+        if (located.isEmpty()) {
+            return row;
+        }
+
+        double[][] cells = new double[1][all.size()];
+        Arrays.fill(cells[0], Double.NaN);
+        List<Integer> sources = List.of(0);
+        int blockSize = maxTableCoordinates - 1;
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (int start = 0; start < located.size(); start += blockSize) {
+            List<Integer> destinations = located.subList(start, Math.min(located.size(), start + blockSize));
+            tasks.add(() -> {
+                fillBlock(all, sources, destinations, cells);
+                return null;
+            });
+        }
+        try {
+            for (Future<Void> f : tableExecutor.invokeAll(tasks)) {
+                f.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            System.err.println("OsrmClient: Table block failed: " + e.getCause());
+        }
+
+        for (int t : located) {
+            double d = cells[0][t];
+            if (Double.isNaN(d)) {
+                Poi target = all.get(t);
+                d = PoiDistanceDAO.haversineMeters(source.getLatitude(), source.getLongitude(),
+                        target.getLatitude(), target.getLongitude());
+            }
+            row[t - 1] = d;
+        }
+        return row;
+    }
+
+    /**
+     * One table request: distances from every source to every destination.
+     * Writes only cells with i &lt; j (each task owns a disjoint set of cells).
+     */
+    private void fillBlock(List<Poi> pois, List<Integer> sources, List<Integer> destinations, double[][] matrix) {
+        boolean diagonal = sources == destinations;
+        List<Integer> coordinates = new ArrayList<>(sources);
+        if (!diagonal) {
+            coordinates.addAll(destinations);
+        }
+
+        StringBuilder url = new StringBuilder(tableBase).append('/');
+        for (int k = 0; k < coordinates.size(); k++) {
+            Poi p = pois.get(coordinates.get(k));
+            if (k > 0) url.append(';');
+            url.append(p.getLongitude()).append(',').append(p.getLatitude());
+        }
+        url.append("?annotations=distance");
+        if (!diagonal) {
+            url.append("&sources=").append(range(0, sources.size()));
+            url.append("&destinations=").append(range(sources.size(), coordinates.size()));
+        }
+
+        JsonArray rows = requestTable(url.toString());
+        if (rows == null) {
+            return;
+        }
+        for (int s = 0; s < sources.size() && s < rows.size(); s++) {
+            if (!rows.get(s).isJsonArray()) continue;
+            JsonArray row = rows.get(s).getAsJsonArray();
+            for (int d = 0; d < destinations.size() && d < row.size(); d++) {
+                int i = sources.get(s);
+                int j = destinations.get(d);
+                if (i >= j || row.get(d).isJsonNull()) continue;
+                matrix[i][j] = row.get(d).getAsDouble();
+            }
+        }
+    }
+
+    /** The "distances" array of a table response, or null if the request failed. */
+    private JsonArray requestTable(String url) {
+        try {
+            HttpRequest request = HttpRequest.newBuilder()
+                    .uri(URI.create(url))
+                    .timeout(Duration.ofSeconds(TABLE_TIMEOUT_SECONDS))
+                    .GET()
+                    .build();
+            HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+            if (response.statusCode() != 200) {
+                return null;
+            }
+            JsonObject root = JsonParser.parseString(response.body()).getAsJsonObject();
+            if (!"Ok".equals(root.has("code") ? root.get("code").getAsString() : "")) {
+                return null;
+            }
+            if (!root.has("distances") || !root.get("distances").isJsonArray()) {
+                return null;
+            }
+            return root.getAsJsonArray("distances");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    private static String range(int from, int to) {
+        StringBuilder sb = new StringBuilder();
+        for (int k = from; k < to; k++) {
+            if (k > from) sb.append(';');
+            sb.append(k);
+        }
+        return sb.toString();
+    }
+
     private static final OsrmClient INSTANCE = new OsrmClient();
 
     /** Shared instance for server-side use. */
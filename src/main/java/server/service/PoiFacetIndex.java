@@ -0,0 +1,366 @@
+package server.service;
+
+import common.Poi;
+import common.dto.SearchFacets;
+import server.DBConnector;
+import server.dao.PoiDAO;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory facet index over published POIs: per city, one bitset per category
+ * plus one for the accessible flag.
+ *
+ * Every POI of a city gets a dense slot number within that city, so the bitsets
+ * stay small even when global POI ids are large. Facet counts and facet filters
+ * are then bitwise AND / cardinality operations on a handful of longs per city,
+ * with no database round trip on the search path.
+ *
+ * Built once at server start and kept current by {@link #refreshPois} /
+ * {@link #removeCity} after approved map edits, like {@link PoiSpatialIndex}.
+ */
+public class PoiFacetIndex {
+
+    /** Facet label for POIs without a category. */
+    public static final String UNCATEGORIZED = "Other";
+
+    /** Bitsets of one city. Slots are reused after POIs are removed. */
+    private static final class CityFacets {
+        final Map<Integer, Integer> slotByPoi = new HashMap<>();
+        final BitSet used = new BitSet();
+        final BitSet accessible = new BitSet();
+        /** Lower-case category key -> POI slots. */
+        final Map<String, BitSet> byCategory = new HashMap<>();
+        /** Lower-case category key -> display label (first spelling seen). */
+        final Map<String, String> labels = new HashMap<>();
+    }
+
+    private final Map<Integer, CityFacets> cities = new HashMap<>();
+    private final Map<Integer, Integer> cityByPoi = new HashMap<>();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private volatile boolean loaded = false;
+
+    private static PoiFacetIndex instance;
+
+    PoiFacetIndex() {
+    }
+
+    /**
+     * Build an index over a fixed set of POIs (no database access; used by tests).
+     */
+    PoiFacetIndex(Collection<Poi> pois) {
+        for (Poi poi : pois) {
+            insert(poi);
+        }
+        loaded = true;
+    }
+
+    /**
+     * Get singleton instance.
+     */
+    public static synchronized PoiFacetIndex getInstance() {
+        if (instance == null) {
+            instance = new PoiFacetIndex();
+        }
+        return instance;
+    }
+
+    // ==================== Loading / incremental updates ====================
+
+    /**
+     * (Re)build the index from all published POIs in the database.
+     */
+    public void rebuild() {
+        long start = System.currentTimeMillis();
+        List<Poi> pois = PoiDAO.getApprovedPois();
+        lock.writeLock().lock();
+        try {
+            cities.clear();
+            cityByPoi.clear();
+            for (Poi poi : pois) {
+                insert(poi);
+            }
+            loaded = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        System.out.println("PoiFacetIndex: Indexed " + pois.size() + " POIs in " + cities.size() + " cities in "
+                + (System.currentTimeMillis() - start) + " ms");
+    }
+
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    /**
+     * Re-read the given POIs from the database and update their facet bits.
+     * POIs that are no longer published (deleted, unlinked) are removed.
+     */
+    public void refreshPois(Collection<Integer> poiIds) {
+        if (poiIds == null || poiIds.isEmpty() || !loaded)
+            return;
+        Set<Integer> ids = new HashSet<>();
+        for (Integer id : poiIds) {
+            if (id != null && id > 0)
+                ids.add(id);
+        }
+        if (ids.isEmpty())
+            return;
+
+        List<Poi> current;
+        try (Connection conn = DBConnector.getConnection()) {
+            if (conn == null)
+                return;
+            current = PoiDAO.getApprovedPois(conn, ids);
+        } catch (SQLException e) {
+            System.out.println("PoiFacetIndex: Refresh failed, rebuilding - " + e.getMessage());
+            rebuild();
+            return;
+        }
+
+        lock.writeLock().lock();
+        try {
+            for (Integer id : ids) {
+                remove(id);
+            }
+            for (Poi poi : current) {
+                insert(poi);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Insert or replace a single POI (no database access).
+     */
+    public void upsert(Poi poi) {
+        if (poi == null)
+            return;
+        lock.writeLock().lock();
+        try {
+            remove(poi.getId());
+            insert(poi);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Drop every POI of a city (e.g. after the city was deleted).
+     */
+    public void removeCity(int cityId) {
+        lock.writeLock().lock();
+        try {
+            CityFacets city = cities.remove(cityId);
+            if (city != null) {
+                for (Integer poiId : city.slotByPoi.keySet()) {
+                    cityByPoi.remove(poiId);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** Caller must hold the write lock. */
+    private void insert(Poi poi) {
+        CityFacets city = cities.computeIfAbsent(poi.getCityId(), k -> new CityFacets());
+        int slot = city.used.nextClearBit(0);
+        city.used.set(slot);
+        city.slotByPoi.put(poi.getId(), slot);
+        cityByPoi.put(poi.getId(), poi.getCityId());
+
+        if (poi.isAccessible())
+            city.accessible.set(slot);
+        String label = categoryLabel(poi.getCategory());
+        String key = label.toLowerCase(Locale.ROOT);
+        city.byCategory.computeIfAbsent(key, k -> new BitSet()).set(slot);
+        city.labels.putIfAbsent(key, label);
+    }
+
+    /** Caller must hold the write lock. */
+    private void remove(int poiId) {
+        Integer cityId = cityByPoi.remove(poiId);
+        if (cityId == null)
+            return;
+        CityFacets city = cities.get(cityId);
+        Integer slot = city != null ? city.slotByPoi.remove(poiId) : null;
+        if (slot == null)
+            return;
+        city.used.clear(slot);
+        city.accessible.clear(slot);
+        List<String> emptied = new ArrayList<>();
+        for (Map.Entry<String, BitSet> e : city.byCategory.entrySet()) {
+            e.getValue().clear(slot);
+            if (e.getValue().isEmpty())
+                emptied.add(e.getKey());
+        }
+        for (String key : emptied) {
+            city.byCategory.remove(key);
+            city.labels.remove(key);
+        }
+        if (city.slotByPoi.isEmpty())
+            cities.remove(cityId);
+    }
+
+    // ==================== Queries ====================
+
+    /**
+     * True if the city has at least one published POI matching the filter.
+     *
+     * @param categories categories to match (case-insensitive), null/empty = any
+     * @param accessible TRUE/FALSE to require the flag, null = any
+     */
+    public boolean matches(int cityId, Collection<String> categories, Boolean accessible) {
+        Set<String> keys = categoryKeys(categories);
+        lock.readLock().lock();
+        try {
+            CityFacets city = cities.get(cityId);
+            if (city == null)
+                return false;
+            return categoryMask(city, keys).intersects(accessibilityMask(city, accessible));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Ids of all cities with at least one published POI matching the filter.
+     */
+    public Set<Integer> matchingCities(Collection<String> categories, Boolean accessible) {
+        Set<String> keys = categoryKeys(categories);
+        Set<Integer> result = new HashSet<>();
+        lock.readLock().lock();
+        try {
+            for (Map.Entry<Integer, CityFacets> e : cities.entrySet()) {
+                CityFacets city = e.getValue();
+                if (categoryMask(city, keys).intersects(accessibilityMask(city, accessible)))
+                    result.add(e.getKey());
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return result;
+    }
+
+    /**
+     * Facet counts for one city under the given filter.
+     */
+    public SearchFacets facetsForCity(int cityId, Collection<String> categories, Boolean accessible) {
+        Set<String> keys = categoryKeys(categories);
+        SearchFacets facets = new SearchFacets();
+        lock.readLock().lock();
+        try {
+            CityFacets city = cities.get(cityId);
+            if (city != null)
+                count(city, keys, accessible, facets);
+        } finally {
+            lock.readLock().unlock();
+        }
+        return facets;
+    }
+
+    /**
+     * Facet counts summed over several cities (null = every indexed city).
+     */
+    public SearchFacets aggregate(Collection<Integer> cityIds, Collection<String> categories, Boolean accessible) {
+        Set<String> keys = categoryKeys(categories);
+        SearchFacets facets = new SearchFacets();
+        lock.readLock().lock();
+        try {
+            Collection<CityFacets> selected;
+            if (cityIds == null) {
+                selected = cities.values();
+            } else {
+                selected = new ArrayList<>();
+                for (Integer id : cityIds) {
+                    CityFacets city = cities.get(id);
+                    if (city != null)
+                        selected.add(city);
+                }
+            }
+            for (CityFacets city : selected) {
+                count(city, keys, accessible, facets);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return facets;
+    }
+
+    /**
+     * Category counts apply the accessibility filter; accessibility counts apply the category filter.
+     * Caller must hold the read lock.
+     */
+    private static void count(CityFacets city, Set<String> keys, Boolean accessible, SearchFacets out) {
+        BitSet catMask = categoryMask(city, keys);
+        BitSet accMask = accessibilityMask(city, accessible);
+
+        for (Map.Entry<String, BitSet> e : city.byCategory.entrySet()) {
+            BitSet bits = (BitSet) e.getValue().clone();
+            bits.and(accMask);
+            out.addCategoryCount(city.labels.get(e.getKey()), bits.cardinality());
+        }
+
+        BitSet bits = (BitSet) catMask.clone();
+        bits.and(city.accessible);
+        int accessibleCount = bits.cardinality();
+        int total = catMask.cardinality();
+        out.setAccessibleCount(out.getAccessibleCount() + accessibleCount);
+        out.setNotAccessibleCount(out.getNotAccessibleCount() + total - accessibleCount);
+
+        int matching = accessible == null ? total : Boolean.TRUE.equals(accessible) ? accessibleCount
+                : total - accessibleCount;
+        out.setMatchingPoiCount(out.getMatchingPoiCount() + matching);
+    }
+
+    /** Slots in any of the categories (all slots when keys is null). Never mutate the result. */
+    private static BitSet categoryMask(CityFacets city, Set<String> keys) {
+        if (keys == null)
+            return city.used;
+        BitSet mask = new BitSet();
+        for (String key : keys) {
+            BitSet bits = city.byCategory.get(key);
+            if (bits != null)
+                mask.or(bits);
+        }
+        return mask;
+    }
+
+    /** Slots with the requested accessible flag (all slots when null). Never mutate the result. */
+    private static BitSet accessibilityMask(CityFacets city, Boolean accessible) {
+        if (accessible == null)
+            return city.used;
+        if (accessible)
+            return city.accessible;
+        BitSet mask = (BitSet) city.used.clone();
+        mask.andNot(city.accessible);
+        return mask;
+    }
+
+    private static Set<String> categoryKeys(Collection<String> categories) {
+        if (categories == null || categories.isEmpty())
+            return null;
+        Set<String> keys = new HashSet<>();
+        for (String c : categories) {
+            keys.add(categoryLabel(c).toLowerCase(Locale.ROOT));
+        }
+        return keys;
+    }
+
+    private static String categoryLabel(String category) {
+        return category == null || category.trim().isEmpty() ? UNCATEGORIZED : category.trim();
+    }
+}
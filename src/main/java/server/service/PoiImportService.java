@@ -0,0 +1,218 @@
+package server.service;
+
+import common.Poi;
+import common.dto.PoiImportChunk;
+import common.dto.PoiImportResult;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+/**
+ * Server state of running POI imports (IMPORT_POIS).
+ *
+ * A file arrives as numbered chunks; per import only the dedupe keys of the city's POIs, the ids
+ * created so far and the running totals are kept, never the rows themselves. A chunk is first
+ * planned (validation and dedupe against the city and earlier rows), then written by the handler
+ * in one transaction, and only after the commit recorded here - a failed chunk leaves the import
+ * as it was and can be sent again.
+ *
+ * Imports idle for longer than gcm.poiImport.idleMinutes (default 30) are dropped.
+ */
+public class PoiImportService {
+
+    /** Result of checking one chunk; applied with {@link ImportSession#commit} once written. */
+    public static final class Plan {
+        private final List<Poi> accepted = new ArrayList<>();
+        private final List<String> acceptedKeys = new ArrayList<>();
+        private final List<String> errors = new ArrayList<>();
+        private int duplicates;
+        private int rejected;
+
+        public List<Poi> getAccepted() { return accepted; }
+        public int getDuplicates() { return duplicates; }
+        public int getRejected() { return rejected; }
+        public List<String> getErrors() { return errors; }
+    }
+
+    /** One running import. Callers hold its lock while planning, writing and committing a chunk. */
+    public static final class ImportSession {
+        private final String importId;
+        private final int userId;
+        private final int cityId;
+        private final int mapId;
+        private final Set<String> seenKeys = new HashSet<>();
+        private final List<Integer> createdPoiIds = new ArrayList<>();
+        private final PoiImportResult result;
+        private int nextSequence;
+        private int nextDisplayOrder;
+        private volatile long lastUsed;
+
+        ImportSession(String importId, int userId, int cityId, int mapId, int firstDisplayOrder, long now) {
+            this.importId = importId;
+            this.userId = userId;
+            this.cityId = cityId;
+            this.mapId = mapId;
+            this.nextDisplayOrder = firstDisplayOrder;
+            this.result = new PoiImportResult(importId);
+            this.result.setSequence(-1);
+            this.lastUsed = now;
+        }
+
+        public String getImportId() { return importId; }
+        public int getUserId() { return userId; }
+        public int getCityId() { return cityId; }
+        public int getMapId() { return mapId; }
+        public int getNextSequence() { return nextSequence; }
+        public int getNextDisplayOrder() { return nextDisplayOrder; }
+        public List<Integer> getCreatedPoiIds() { return createdPoiIds; }
+
+        /**
+         * Validate and dedupe the rows of a chunk. Rows get the import's city and are always new
+         * POIs (an id in the file is ignored).
+         *
+         * @param validator returns an error message for an invalid POI, or null
+         */
+        public Plan plan(PoiImportChunk chunk, Function<Poi, String> validator) {
+            Plan plan = new Plan();
+            Set<String> chunkKeys = new HashSet<>();
+            int row = chunk.getFirstRow();
+            for (Poi poi : chunk.getPois()) {
+                int currentRow = row++;
+                if (poi == null) continue;
+                poi.setId(0);
+                poi.setCityId(cityId);
+                String error = validator.apply(poi);
+                if (error != null) {
+                    plan.rejected++;
+                    plan.errors.add("Row " + currentRow + ": " + error);
+                    continue;
+                }
+                String key = dedupeKey(poi);
+                if (seenKeys.contains(key) || !chunkKeys.add(key)) {
+                    plan.duplicates++;
+                    continue;
+                }
+                plan.accepted.add(poi);
+                plan.acceptedKeys.add(key);
+            }
+            return plan;
+        }
+
+        /** Record a written chunk. */
+        public PoiImportResult commit(PoiImportChunk chunk, Plan plan, List<Integer> createdIds) {
+            seenKeys.addAll(plan.acceptedKeys);
+            createdPoiIds.addAll(createdIds);
+            nextDisplayOrder += createdIds.size();
+            nextSequence = chunk.getSequence() + 1;
+            result.setSequence(chunk.getSequence());
+            result.setImported(result.getImported() + createdIds.size());
+            result.setDuplicates(result.getDuplicates() + plan.duplicates);
+            result.setRejected(result.getRejected() + plan.rejected);
+            Iterator<String> errors = plan.errors.iterator();
+            while (errors.hasNext() && result.getErrors().size() < PoiImportResult.MAX_ERRORS) {
+                result.getErrors().add(errors.next());
+            }
+            if (chunk.isLast()) result.setComplete(true);
+            return getResult();
+        }
+
+        /** Set the edit request created for the finished import. */
+        public void setEditRequestId(int requestId) {
+            result.setEditRequestId(requestId);
+        }
+
+        /** Copy of the totals so far (safe to send while the import continues). */
+        public PoiImportResult getResult() {
+            PoiImportResult copy = new PoiImportResult(importId);
+            copy.setSequence(result.getSequence());
+            copy.setImported(result.getImported());
+            copy.setDuplicates(result.getDuplicates());
+            copy.setRejected(result.getRejected());
+            copy.setErrors(new ArrayList<>(result.getErrors()));
+            copy.setComplete(result.isComplete());
+            copy.setEditRequestId(result.getEditRequestId());
+            return copy;
+        }
+    }
+
+    private final Map<String, ImportSession> sessions = new ConcurrentHashMap<>();
+    private final long idleMillis;
+    private final LongSupplier clock;
+
+    private static PoiImportService instance;
+
+    PoiImportService(long idleMillis, LongSupplier clock) {
+        this.idleMillis = idleMillis;
+        this.clock = clock;
+    }
+
+    /**
+     * Get singleton instance.
+     */
+    public static synchronized PoiImportService getInstance() {
+        if (instance == null) {
+            instance = new PoiImportService(Long.getLong("gcm.poiImport.idleMinutes", 30L) * 60_000L,
+                    System::currentTimeMillis);
+        }
+        return instance;
+    }
+
+    /**
+     * Start an import into a map.
+     *
+     * @param existingPois      the city's POIs; rows equal to one of them are skipped as duplicates
+     * @param firstDisplayOrder display order of the first imported POI on the map
+     */
+    public ImportSession start(String importId, int userId, int cityId, int mapId,
+                               Collection<Poi> existingPois, int firstDisplayOrder) {
+        long now = clock.getAsLong();
+        expireIdle(now);
+        ImportSession session = new ImportSession(importId, userId, cityId, mapId, firstDisplayOrder, now);
+        for (Poi poi : existingPois) {
+            session.seenKeys.add(dedupeKey(poi));
+        }
+        ImportSession running = sessions.putIfAbsent(importId, session);
+        return running != null ? running : session;
+    }
+
+    /**
+     * The running import with this id started by the user, or null if unknown or expired.
+     */
+    public ImportSession get(String importId, int userId) {
+        long now = clock.getAsLong();
+        expireIdle(now);
+        ImportSession session = importId != null ? sessions.get(importId) : null;
+        if (session == null || session.userId != userId) return null;
+        session.lastUsed = now;
+        return session;
+    }
+
+    /** Drop a finished or failed import. */
+    public void finish(String importId) {
+        sessions.remove(importId);
+    }
+
+    private void expireIdle(long now) {
+        sessions.values().removeIf(s -> now - s.lastUsed > idleMillis);
+    }
+
+    /**
+     * Duplicate key: trimmed, lower-case name plus coordinates rounded to 5 decimals (about 1 m).
+     */
+    static String dedupeKey(Poi poi) {
+        String name = poi.getName() != null ? poi.getName().trim().toLowerCase(Locale.ROOT) : "";
+        if (poi.getLatitude() == null || poi.getLongitude() == null) {
+            return name + "|-";
+        }
+        return name + "|" + Math.round(poi.getLatitude() * 1e5) + "," + Math.round(poi.getLongitude() * 1e5);
+    }
+}
@@ -0,0 +1,400 @@
+package server.service;
+
+import common.Poi;
+import common.dto.PoiSearchResult;
+import server.DBConnector;
+import server.dao.PoiDAO;
+import server.dao.PoiDistanceDAO;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory geospatial index over published POIs (uniform lat/lon grid).
+ *
+ * Each POI is bucketed into a fixed-size grid cell; radius and bounding-box
+ * queries only visit the cells that overlap the query area, then filter by exact
+ * haversine distance and keep the closest N with a bounded heap.
+ *
+ * Built once at server start and kept current by {@link #refreshPois} /
+ * {@link #removeCity} after approved map edits, so no full reload is needed.
+ */
+public class PoiSpatialIndex {
+
+    /** Grid cell size in degrees (~2.2 km of latitude). */
+    private static final double CELL_SIZE_DEG = 0.02;
+    private static final double METERS_PER_DEG_LAT = 111_320.0;
+    private static final int LAT_CELLS = (int) Math.ceil(180.0 / CELL_SIZE_DEG);
+    private static final int LON_CELLS = (int) Math.ceil(360.0 / CELL_SIZE_DEG);
+
+    private final Map<Long, List<Poi>> cells = new HashMap<>();
+    private final Map<Integer, Poi> poisById = new HashMap<>();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private volatile boolean loaded = false;
+
+    private static PoiSpatialIndex instance;
+
+    PoiSpatialIndex() {
+    }
+
+    /**
+     * Build an index over a fixed set of POIs (no database access; used by tests).
+     */
+    PoiSpatialIndex(Collection<Poi> pois) {
+        for (Poi poi : pois) {
+            insert(poi);
+        }
+        loaded = true;
+    }
+
+    /**
+     * Get singleton instance.
+     */
+    public static synchronized PoiSpatialIndex getInstance() {
+        if (instance == null) {
+            instance = new PoiSpatialIndex();
+        }
+        return instance;
+    }
+
+    // ==================== Loading / incremental updates ====================
+
+    /**
+     * (Re)build the index from all published POIs in the database.
+     */
+    public void rebuild() {
+        long start = System.currentTimeMillis();
+        List<Poi> pois = PoiDAO.getApprovedPois();
+        lock.writeLock().lock();
+        try {
+            cells.clear();
+            poisById.clear();
+            for (Poi poi : pois) {
+                insert(poi);
+            }
+            loaded = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        System.out.println("PoiSpatialIndex: Indexed " + pois.size() + " POIs in "
+                + (System.currentTimeMillis() - start) + " ms");
+    }
+
+    /**
+     * Re-read the given POIs from the database and update their index entries.
+     * POIs that are no longer published (deleted, unlinked, no coordinates) are removed.
+     */
+    public void refreshPois(Collection<Integer> poiIds) {
+        if (poiIds == null || poiIds.isEmpty() || !loaded)
+            return;
+        Set<Integer> ids = new HashSet<>();
+        for (Integer id : poiIds) {
+            if (id != null && id > 0)
+                ids.add(id);
+        }
+        if (ids.isEmpty())
+            return;
+
+        List<Poi> current;
+        try (Connection conn = DBConnector.getConnection()) {
+            if (conn == null)
+                return;
+            current = PoiDAO.getApprovedPois(conn, ids);
+        } catch (SQLException e) {
+            System.out.println("PoiSpatialIndex: Refresh failed, rebuilding - " + e.getMessage());
+            rebuild();
+            return;
+        }
+
+        lock.writeLock().lock();
+        try {
+            for (Integer id : ids) {
+                remove(id);
+            }
+            for (Poi poi : current) {
+                insert(poi);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Insert or replace a single POI (no database access).
+     */
+    public void upsert(Poi poi) {
+        if (poi == null)
+            return;
+        lock.writeLock().lock();
+        try {
+            remove(poi.getId());
+            insert(poi);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Remove every indexed POI of a city (e.g. after the city was deleted).
+     */
+    public void removeCity(int cityId) {
+        lock.writeLock().lock();
+        try {
+            List<Integer> ids = new ArrayList<>();
+            for (Poi poi : poisById.values()) {
+                if (poi.getCityId() == cityId)
+                    ids.add(poi.getId());
+            }
+            for (Integer id : ids) {
+                remove(id);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return poisById.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** Caller must hold the write lock. */
+    private void insert(Poi poi) {
+        if (poi.getLatitude() == null || poi.getLongitude() == null)
+            return;
+        poisById.put(poi.getId(), poi);
+        cells.computeIfAbsent(cellKey(latCell(poi.getLatitude()), lonCell(poi.getLongitude())),
+                k -> new ArrayList<>()).add(poi);
+    }
+
+    /** Caller must hold the write lock. */
+    private void remove(int poiId) {
+        Poi old = poisById.remove(poiId);
+        if (old == null)
+            return;
+        long key = cellKey(latCell(old.getLatitude()), lonCell(old.getLongitude()));
+        List<Poi> cell = cells.get(key);
+        if (cell != null) {
+            cell.removeIf(p -> p.getId() == poiId);
+            if (cell.isEmpty())
+                cells.remove(key);
+        }
+    }
+
+    // ==================== Queries ====================
+
+    /**
+     * Find published POIs within radiusMeters of a point, closest first.
+     *
+     * @param categories optional category filter (case-insensitive); null/empty = all
+     * @param limit      maximum number of results
+     */
+    public List<PoiSearchResult> searchNear(double lat, double lon, double radiusMeters,
+            Collection<String> categories, int limit) {
+        ensureLoaded();
+        double latSpan = radiusMeters / METERS_PER_DEG_LAT;
+        double minLat = Math.max(-90.0, lat - latSpan);
+        double maxLat = Math.min(90.0, lat + latSpan);
+        double cos = Math.cos(Math.toRadians(Math.max(Math.abs(minLat), Math.abs(maxLat))));
+        double lonSpan = cos > 1e-6 ? latSpan / cos : 360.0;
+
+        Set<String> categoryFilter = normalizeCategories(categories);
+        TopN top = new TopN(limit);
+
+        lock.readLock().lock();
+        try {
+            if (lonSpan >= 180.0) {
+                scan(latCell(minLat), latCell(maxLat), 0, LON_CELLS - 1, lat, lon, categoryFilter, top, radiusMeters,
+                        null);
+            } else {
+                scanLonRange(minLat, maxLat, lon - lonSpan, lon + lonSpan, lat, lon, categoryFilter, top,
+                        radiusMeters, null);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return top.sorted();
+    }
+
+    /**
+     * Find published POIs inside a bounding box, ordered by distance from the box center.
+     * If minLon > maxLon the box is treated as crossing the antimeridian.
+     */
+    public List<PoiSearchResult> searchInBoundingBox(double minLat, double minLon, double maxLat, double maxLon,
+            Collection<String> categories, int limit) {
+        ensureLoaded();
+        double centerLat = (minLat + maxLat) / 2.0;
+        double maxLonUnwrapped = minLon <= maxLon ? maxLon : maxLon + 360.0;
+        double centerLon = normalizeLon((minLon + maxLonUnwrapped) / 2.0);
+
+        Set<String> categoryFilter = normalizeCategories(categories);
+        TopN top = new TopN(limit);
+
+        lock.readLock().lock();
+        try {
+            // Cells are coarser than the box: the box filter keeps only POIs strictly inside it
+            scanLonRange(minLat, maxLat, minLon, maxLonUnwrapped, centerLat, centerLon, categoryFilter, top,
+                    Double.MAX_VALUE, new double[] { minLat, minLon, maxLat, maxLon });
+        } finally {
+            lock.readLock().unlock();
+        }
+        return top.sorted();
+    }
+
+    private void ensureLoaded() {
+        if (!loaded) {
+            synchronized (this) {
+                if (!loaded)
+                    rebuild();
+            }
+        }
+    }
+
+    /** Scan a lon range that may extend past +/-180 by splitting it at the antimeridian. */
+    private void scanLonRange(double minLat, double maxLat, double fromLon, double toLon,
+            double refLat, double refLon, Set<String> categories, TopN top, double radiusMeters, double[] box) {
+        int minLatCell = latCell(minLat);
+        int maxLatCell = latCell(maxLat);
+        if (fromLon < -180.0) {
+            scan(minLatCell, maxLatCell, lonCell(fromLon + 360.0), LON_CELLS - 1, refLat, refLon, categories, top,
+                    radiusMeters, box);
+            fromLon = -180.0;
+        }
+        if (toLon > 180.0) {
+            scan(minLatCell, maxLatCell, 0, lonCell(toLon - 360.0), refLat, refLon, categories, top, radiusMeters, box);
+            toLon = 180.0;
+        }
+        scan(minLatCell, maxLatCell, lonCell(fromLon), lonCell(toLon), refLat, refLon, categories, top,
+                radiusMeters, box);
+    }
+
+    /**
+     * Visit cells in [minLatCell..maxLatCell] x [minLonCell..maxLonCell]. When the
+     * range covers more cells than are populated, iterate populated cells instead.
+     * Caller must hold the read lock.
+     */
+    private void scan(int minLatCell, int maxLatCell, int minLonCell, int maxLonCell,
+            double refLat, double refLon, Set<String> categories, TopN top, double radiusMeters, double[] box) {
+        long rangeCells = (long) (maxLatCell - minLatCell + 1) * (maxLonCell - minLonCell + 1);
+        if (rangeCells > cells.size()) {
+            for (Map.Entry<Long, List<Poi>> e : cells.entrySet()) {
+                int la = (int) (e.getKey() >> 32);
+                int lo = (int) (long) e.getKey();
+                if (la >= minLatCell && la <= maxLatCell && lo >= minLonCell && lo <= maxLonCell) {
+                    collect(e.getValue(), refLat, refLon, categories, top, radiusMeters, box);
+                }
+            }
+            return;
+        }
+        for (int la = minLatCell; la <= maxLatCell; la++) {
+            for (int lo = minLonCell; lo <= maxLonCell; lo++) {
+                List<Poi> cell = cells.get(cellKey(la, lo));
+                if (cell != null) {
+                    collect(cell, refLat, refLon, categories, top, radiusMeters, box);
+                }
+            }
+        }
+    }
+
+    private static void collect(List<Poi> cell, double refLat, double refLon, Set<String> categories,
+            TopN top, double radiusMeters, double[] box) {
+        for (Poi poi : cell) {
+            if (box != null && !insideBox(poi, box[0], box[1], box[2], box[3])) {
+                continue;
+            }
+            if (categories != null && (poi.getCategory() == null
+                    || !categories.contains(poi.getCategory().trim().toLowerCase(Locale.ROOT)))) {
+                continue;
+            }
+            double d = PoiDistanceDAO.haversineMeters(refLat, refLon, poi.getLatitude(), poi.getLongitude());
+            if (d <= radiusMeters) {
+                top.offer(poi, d);
+            }
+        }
+    }
+
+    // ==================== Helpers ====================
+
+    private static Set<String> normalizeCategories(Collection<String> categories) {
+        if (categories == null || categories.isEmpty())
+            return null;
+        Set<String> set = new HashSet<>();
+        for (String c : categories) {
+            if (c != null && !c.trim().isEmpty())
+                set.add(c.trim().toLowerCase(Locale.ROOT));
+        }
+        return set.isEmpty() ? null : set;
+    }
+
+    private static boolean insideBox(Poi poi, double minLat, double minLon, double maxLat, double maxLon) {
+        double lat = poi.getLatitude();
+        double lon = poi.getLongitude();
+        if (lat < minLat || lat > maxLat)
+            return false;
+        return minLon <= maxLon ? (lon >= minLon && lon <= maxLon) : (lon >= minLon || lon <= maxLon);
+    }
+
+    private static double normalizeLon(double lon) {
+        while (lon > 180.0)
+            lon -= 360.0;
+        while (lon < -180.0)
+            lon += 360.0;
+        return lon;
+    }
+
+    private static int latCell(double lat) {
+        return Math.max(0, Math.min(LAT_CELLS - 1, (int) Math.floor((lat + 90.0) / CELL_SIZE_DEG)));
+    }
+
+    private static int lonCell(double lon) {
+        return Math.max(0, Math.min(LON_CELLS - 1, (int) Math.floor((lon + 180.0) / CELL_SIZE_DEG)));
+    }
+
+    private static long cellKey(int latCell, int lonCell) {
+        return ((long) latCell << 32) | (lonCell & 0xffffffffL);
+    }
+
+    /**
+     * Keeps the N closest hits using a max-heap on distance.
+     */
+    private static class TopN {
+        private final int limit;
+        private final PriorityQueue<PoiSearchResult> heap;
+
+        TopN(int limit) {
+            this.limit = Math.max(1, limit);
+            this.heap = new PriorityQueue<>(Comparator.comparingDouble(PoiSearchResult::getDistanceMeters).reversed());
+        }
+
+        void offer(Poi poi, double distance) {
+            if (heap.size() < limit) {
+                heap.add(new PoiSearchResult(poi, distance));
+            } else if (distance < heap.peek().getDistanceMeters()) {
+                heap.poll();
+                heap.add(new PoiSearchResult(poi, distance));
+            }
+        }
+
+        List<PoiSearchResult> sorted() {
+            List<PoiSearchResult> list = new ArrayList<>(heap);
+            list.sort(Comparator.comparingDouble(PoiSearchResult::getDistanceMeters)
+                    .thenComparingInt(r -> r.getPoi().getId()));
+            return list;
+        }
+    }
+}
@@ -0,0 +1,227 @@
+package server.service;
+
+import server.dao.PoiDistanceDAO;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Directed road network in compressed sparse row form, for OfflineRoutingEngine.
+ *
+ * Node i has coordinates lat[i]/lon[i]; its outgoing edges are outHead/outWeight in
+ * [outStart[i], outStart[i + 1]) and its incoming edges likewise in the in* arrays
+ * (used by backward searches). Edge weights are meters (haversine between the two
+ * nodes), so great-circle distance is a lower bound on any path (A* heuristic).
+ *
+ * Built from an OpenStreetMap XML extract (.osm, e.g. exported from openstreetmap.org or
+ * converted from .pbf with osmium): every way with a drivable highway tag becomes edges
+ * between consecutive nodes, honoring oneway tags. Nodes not on such a way are dropped.
+ */
+public class RoadGraph {
+
+    /** highway values routed by the driving profile (same idea as OSRM's car profile). */
+    private static final Set<String> DRIVABLE = Set.of(
+            "motorway", "motorway_link", "trunk", "trunk_link", "primary", "primary_link",
+            "secondary", "secondary_link", "tertiary", "tertiary_link", "unclassified",
+            "residential", "living_street", "service", "road");
+
+    final int nodeCount;
+    final double[] lat;
+    final double[] lon;
+    final int[] outStart;
+    final int[] outHead;
+    final float[] outWeight;
+    final int[] inStart;
+    final int[] inHead;
+    final float[] inWeight;
+
+    private RoadGraph(double[] lat, double[] lon, int[] from, int[] to, int edgeCount) {
+        this.nodeCount = lat.length;
+        this.lat = lat;
+        this.lon = lon;
+        float[] weight = new float[edgeCount];
+        for (int e = 0; e < edgeCount; e++) {
+            weight[e] = (float) PoiDistanceDAO.haversineMeters(lat[from[e]], lon[from[e]], lat[to[e]], lon[to[e]]);
+        }
+        this.outStart = new int[nodeCount + 1];
+        this.outHead = new int[edgeCount];
+        this.outWeight = new float[edgeCount];
+        buildCsr(from, to, weight, edgeCount, outStart, outHead, outWeight);
+        this.inStart = new int[nodeCount + 1];
+        this.inHead = new int[edgeCount];
+        this.inWeight = new float[edgeCount];
+        buildCsr(to, from, weight, edgeCount, inStart, inHead, inWeight);
+    }
+
+    /**
+     * Graph from explicit edges (from[e] -&gt; to[e]); weights are computed from the coordinates.
+     */
+    public static RoadGraph fromEdges(double[] lat, double[] lon, int[] from, int[] to, int edgeCount) {
+        return new RoadGraph(lat, lon, from, to, edgeCount);
+    }
+
+    /**
+     * Parse an OSM XML extract. Nodes must precede the ways that use them (standard OSM order).
+     */
+    public static RoadGraph loadOsm(InputStream in) throws XMLStreamException {
+        Map<Long, Integer> nodeIndex = new HashMap<>();
+        double[] lat = new double[1024];
+        double[] lon = new double[1024];
+        int nodes = 0;
+        int[] from = new int[1024];
+        int[] to = new int[1024];
+        int edges = 0;
+
+        // Current way
+        long[] refs = new long[64];
+        int refCount = 0;
+        String highway = null;
+        String oneway = null;
+        boolean roundabout = false;
+        boolean inWay = false;
+
+        XMLInputFactory factory = XMLInputFactory.newFactory();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        XMLStreamReader xml = factory.createXMLStreamReader(in);
+        try {
+            while (xml.hasNext()) {
+                int event = xml.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    String name = xml.getLocalName();
+                    if ("node".equals(name)) {
+                        if (nodes == lat.length) {
+                            lat = Arrays.copyOf(lat, nodes * 2);
+                            lon = Arrays.copyOf(lon, nodes * 2);
+                        }
+                        nodeIndex.put(Long.parseLong(xml.getAttributeValue(null, "id")), nodes);
+                        lat[nodes] = Double.parseDouble(xml.getAttributeValue(null, "lat"));
+                        lon[nodes] = Double.parseDouble(xml.getAttributeValue(null, "lon"));
+                        nodes++;
+                    } else if ("way".equals(name)) {
+                        inWay = true;
+                        refCount = 0;
+                        highway = null;
+                        oneway = null;
+                        roundabout = false;
+                    } else if (inWay && "nd".equals(name)) {
+                        if (refCount == refs.length) {
+                            refs = Arrays.copyOf(refs, refCount * 2);
+                        }
+                        refs[refCount++] = Long.parseLong(xml.getAttributeValue(null, "ref"));
+                    } else if (inWay && "tag".equals(name)) {
+                        String k = xml.getAttributeValue(null, "k");
+                        String v = xml.getAttributeValue(null, "v");
+                        if ("highway".equals(k)) highway = v;
+                        else if ("oneway".equals(k)) oneway = v;
+                        else if ("junction".equals(k)) roundabout = "roundabout".equals(v);
+                    }
+                } else if (event == XMLStreamConstants.END_ELEMENT && "way".equals(xml.getLocalName())) {
+                    inWay = false;
+                    if (highway == null || !DRIVABLE.contains(highway)) {
+                        continue;
+                    }
+                    boolean onewayForward = "yes".equals(oneway) || "true".equals(oneway) || "1".equals(oneway)
+                            || roundabout || (oneway == null && "motorway".equals(highway));
+                    boolean onewayReverse = "-1".equals(oneway);
+                    boolean forward = !onewayReverse;
+                    boolean backward = !onewayForward;
+                    for (int r = 1; r < refCount; r++) {
+                        Integer a = nodeIndex.get(refs[r - 1]);
+                        Integer b = nodeIndex.get(refs[r]);
+                        if (a == null || b == null || a.equals(b)) {
+                            continue; // node outside the extract
+                        }
+                        if (edges + 2 > from.length) {
+                            from = Arrays.copyOf(from, from.length * 2);
+                            to = Arrays.copyOf(to, to.length * 2);
+                        }
+                        if (forward) {
+                            from[edges] = a;
+                            to[edges++] = b;
+                        }
+                        if (backward) {
+                            from[edges] = b;
+                            to[edges++] = a;
+                        }
+                    }
+                }
+            }
+        } finally {
+            xml.close();
+        }
+
+        // Keep only nodes that are on a road, renumbered densely
+        int[] remap = new int[nodes];
+        Arrays.fill(remap, -1);
+        int kept = 0;
+        for (int e = 0; e < edges; e++) {
+            if (remap[from[e]] < 0) remap[from[e]] = kept++;
+            if (remap[to[e]] < 0) remap[to[e]] = kept++;
+        }
+        double[] keptLat = new double[kept];
+        double[] keptLon = new double[kept];
+        for (int n = 0; n < nodes; n++) {
+            if (remap[n] >= 0) {
+                keptLat[remap[n]] = lat[n];
+                keptLon[remap[n]] = lon[n];
+            }
+        }
+        for (int e = 0; e < edges; e++) {
+            from[e] = remap[from[e]];
+            to[e] = remap[to[e]];
+        }
+        return new RoadGraph(keptLat, keptLon, from, to, edges);
+    }
+
+    public int getNodeCount() {
+        return nodeCount;
+    }
+
+    public int getEdgeCount() {
+        return outHead.length;
+    }
+
+    /**
+     * Node closest to the point (linear scan; called once per POI per query batch), or -1 if empty.
+     */
+    public int nearestNode(double latitude, double longitude) {
+        int best = -1;
+        double bestDistance = Double.POSITIVE_INFINITY;
+        // Equirectangular distance is enough to compare candidates
+        double cosLat = Math.cos(Math.toRadians(latitude));
+        for (int n = 0; n < nodeCount; n++) {
+            double dLat = lat[n] - latitude;
+            double dLon = (lon[n] - longitude) * cosLat;
+            double d = dLat * dLat + dLon * dLon;
+            if (d < bestDistance) {
+                bestDistance = d;
+                best = n;
+            }
+        }
+        return best;
+    }
+
+    /** Counting sort of edges by tail node into CSR arrays. */
+    private static void buildCsr(int[] tail, int[] head, float[] weight, int edgeCount,
+                                 int[] start, int[] outHead, float[] outWeight) {
+        for (int e = 0; e < edgeCount; e++) {
+            start[tail[e] + 1]++;
+        }
+        for (int n = 0; n < start.length - 1; n++) {
+            start[n + 1] += start[n];
+        }
+        int[] next = Arrays.copyOf(start, start.length - 1);
+        for (int e = 0; e < edgeCount; e++) {
+            int slot = next[tail[e]]++;
+            outHead[slot] = head[e];
+            outWeight[slot] = weight[e];
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package server.service;
+
+import common.Poi;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+
+/**
+ * Road-network distances between points / POIs, in meters.
+ *
+ * Implementations: OsrmClient (remote OSRM server) and OfflineRoutingEngine (in-process
+ * shortest paths on a road graph loaded from an OSM extract). PoiDistanceDAO uses
+ * {@link #getInstance()}, selected by system properties:
+ * gcm.routing.engine = osrm (default) | offline, and gcm.routing.graphFile = path of the
+ * .osm extract for the offline engine. If the graph cannot be loaded, OSRM is used.
+ */
+public interface RoutingEngine {
+
+    /**
+     * Shortest road distance between two (lat, lon) points, or null if there is no route
+     * or the engine failed (callers fall back to haversine).
+     */
+    Double getDistanceMeters(double lat1, double lon1, double lat2, double lon2);
+
+    /**
+     * Symmetric distance matrix between all POIs (see OsrmClient#getDistanceMatrix):
+     * unroutable cells fall back to haversine, cells of POIs without coordinates are NaN.
+     */
+    double[][] getDistanceMatrix(List<Poi> pois);
+
+    /**
+     * Distances from one POI to each target (one matrix row), same fallbacks as the matrix.
+     */
+    double[] getDistancesFrom(Poi source, List<Poi> targets);
+
+    /**
+     * The configured engine (created on first use).
+     */
+    static RoutingEngine getInstance() {
+        return Configured.INSTANCE;
+    }
+
+    /** Lazy holder for the configured engine. */
+    final class Configured {
+        private static final RoutingEngine INSTANCE = create();
+
+        private Configured() {
+        }
+
+        private static RoutingEngine create() {
+            String engine = System.getProperty("gcm.routing.engine", "osrm");
+            if ("offline".equalsIgnoreCase(engine)) {
+                String graphFile = System.getProperty("gcm.routing.graphFile");
+                if (graphFile == null || graphFile.trim().isEmpty()) {
+                    System.err.println("RoutingEngine: gcm.routing.graphFile not set, using OSRM");
+                } else {
+                    Path path = Paths.get(graphFile.trim());
+                    try {
+                        long start = System.currentTimeMillis();
+                        OfflineRoutingEngine offline = OfflineRoutingEngine.load(path);
+                        System.out.println("RoutingEngine: Offline graph " + path.getFileName() + " loaded ("
+                                + offline.getGraph().getNodeCount() + " nodes, " + offline.getGraph().getEdgeCount()
+                                + " edges) in " + (System.currentTimeMillis() - start) + " ms");
+                        return offline;
+                    } catch (Exception e) {
+                        System.err.println("RoutingEngine: Failed to load " + path + ", using OSRM: " + e.getMessage());
+                    }
+                }
+            }
+            return OsrmClient.getInstance();
+        }
+    }
+}
@@ -0,0 +1,295 @@
+package server.service;
+
+import common.MessageType;
+import common.dto.CitySearchResult;
+import common.dto.PaginatedRequest;
+import common.dto.PaginatedResponse;
+import common.dto.SearchRequest;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.LongSupplier;
+
+/**
+ * Bounded result cache for catalog / city / POI searches.
+ *
+ * Keys are the message type plus the normalized (trimmed, lower-case) search terms,
+ * facet filter and page cursor, so "Paris" and " paris " share one entry.
+ * Entries are evicted least-recently-used once the cache is full and expire after a TTL.
+ *
+ * When a city is published or changed, {@link #invalidateCity} drops only the entries
+ * that could be affected: results that contain the city, and queries the city matches
+ * now (so newly matching cities appear immediately).
+ *
+ * Configuration (system properties): gcm.searchCache.maxEntries (default 1000),
+ * gcm.searchCache.ttlSeconds (default 300, 0 disables the cache).
+ */
+public class SearchResultCache {
+
+    /** Decides whether a city currently matches a query's terms (see CitySearchIndex#matches). */
+    public interface CityMatcher {
+        boolean matches(int cityId, String cityTerm, String poiTerm);
+    }
+
+    private static final class Entry {
+        final Object payload;
+        final long expiresAt;
+        final String cityTerm;
+        final String poiTerm;
+        final Set<Integer> cityIds;
+
+        Entry(Object payload, long expiresAt, String cityTerm, String poiTerm, Set<Integer> cityIds) {
+            this.payload = payload;
+            this.expiresAt = expiresAt;
+            this.cityTerm = cityTerm;
+            this.poiTerm = poiTerm;
+            this.cityIds = cityIds;
+        }
+    }
+
+    private final int maxEntries;
+    private final long ttlMillis;
+    private final LongSupplier clock;
+    private final CityMatcher matcher;
+    private final LinkedHashMap<String, Entry> entries;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long expirations;
+    private long invalidations;
+
+    private static SearchResultCache instance;
+
+    /**
+     * Cache with explicit limits, clock and matcher (used by tests).
+     */
+    SearchResultCache(int maxEntries, long ttlMillis, LongSupplier clock, CityMatcher matcher) {
+        this.maxEntries = Math.max(1, maxEntries);
+        this.ttlMillis = ttlMillis;
+        this.clock = clock;
+        this.matcher = matcher;
+        // accessOrder = true: iteration order is least-recently-used first
+        this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                if (size() > SearchResultCache.this.maxEntries) {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Get singleton instance.
+     */
+    public static synchronized SearchResultCache getInstance() {
+        if (instance == null) {
+            instance = new SearchResultCache(
+                    Integer.getInteger("gcm.searchCache.maxEntries", 1000),
+                    Long.getLong("gcm.searchCache.ttlSeconds", 300L) * 1000L,
+                    System::currentTimeMillis,
+                    (cityId, cityTerm, poiTerm) -> CitySearchIndex.getInstance().matches(cityId, cityTerm, poiTerm));
+        }
+        return instance;
+    }
+
+    // ==================== Keys ====================
+
+    /**
+     * Cache key for a search request, or null if the request is not cacheable.
+     *
+     * @param type    GET_CITIES_CATALOG or SEARCH_BY_*
+     * @param payload SearchRequest, PaginatedRequest with a SearchRequest filter, or null (catalog)
+     */
+    public static String keyFor(MessageType type, Object payload) {
+        if (type != MessageType.GET_CITIES_CATALOG && type != MessageType.SEARCH_BY_CITY_NAME
+                && type != MessageType.SEARCH_BY_POI_NAME && type != MessageType.SEARCH_BY_CITY_AND_POI) {
+            return null;
+        }
+        PaginatedRequest page = null;
+        SearchRequest search = null;
+        if (payload instanceof PaginatedRequest) {
+            page = (PaginatedRequest) payload;
+            if (page.getFilter() instanceof SearchRequest)
+                search = (SearchRequest) page.getFilter();
+        } else if (payload instanceof SearchRequest) {
+            search = (SearchRequest) payload;
+        } else if (payload != null) {
+            return null;
+        }
+
+        StringBuilder key = new StringBuilder(type.name());
+        // The catalog ignores search terms
+        boolean catalog = type == MessageType.GET_CITIES_CATALOG;
+        key.append('|').append(catalog || search == null ? "" : nullToEmpty(normalize(search.getCityName())));
+        key.append('|').append(catalog || search == null ? "" : nullToEmpty(normalize(search.getPoiName())));
+        key.append('|');
+        if (search != null && search.getCategories() != null) {
+            List<String> categories = new ArrayList<>();
+            for (String c : search.getCategories()) {
+                String n = normalize(c);
+                if (n != null && !categories.contains(n))
+                    categories.add(n);
+            }
+            Collections.sort(categories);
+            key.append(String.join(",", categories));
+        }
+        key.append('|').append(search != null && search.getAccessible() != null ? search.getAccessible() : "");
+        if (page != null) {
+            key.append("|page=").append(page.getPageNumber()).append(':').append(page.getPageSize());
+            if (page.hasCursor()) {
+                key.append(":after=").append(page.getAfterKey()).append(':').append(page.getAfterId());
+            }
+        }
+        return key.toString();
+    }
+
+    // ==================== Lookup / store ====================
+
+    /**
+     * Cached payload for the key, or null on a miss or expired entry.
+     */
+    public synchronized Object get(String key) {
+        if (key == null || ttlMillis <= 0)
+            return null;
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        if (clock.getAsLong() >= entry.expiresAt) {
+            entries.remove(key);
+            expirations++;
+            misses++;
+            return null;
+        }
+        hits++;
+        return entry.payload;
+    }
+
+    /**
+     * Store a search result. The payload must not be modified afterwards (it is shared).
+     *
+     * @param cityTerm the city search term of the query (null for none / catalog)
+     * @param poiTerm  the POI search term of the query (null for none / catalog)
+     */
+    public synchronized void put(String key, Object payload, String cityTerm, String poiTerm) {
+        if (key == null || payload == null || ttlMillis <= 0)
+            return;
+        entries.put(key, new Entry(payload, clock.getAsLong() + ttlMillis,
+                normalize(cityTerm), normalize(poiTerm), cityIdsOf(payload)));
+    }
+
+    // ==================== Invalidation ====================
+
+    /**
+     * Drop entries that contain the city or whose query the city matches now.
+     * Call after the city's maps/POIs/price were published (and the search index refreshed).
+     */
+    public void invalidateCity(int cityId) {
+        invalidateCities(Collections.singleton(cityId));
+    }
+
+    /**
+     * Drop entries affected by any of the given cities (see {@link #invalidateCity}).
+     */
+    public synchronized void invalidateCities(Collection<Integer> cityIds) {
+        if (cityIds == null || cityIds.isEmpty() || entries.isEmpty())
+            return;
+        Iterator<Entry> it = entries.values().iterator();
+        while (it.hasNext()) {
+            Entry entry = it.next();
+            for (Integer cityId : cityIds) {
+                if (cityId == null)
+                    continue;
+                if (entry.cityIds.contains(cityId) || matcher.matches(cityId, entry.cityTerm, entry.poiTerm)) {
+                    it.remove();
+                    invalidations++;
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Drop every entry.
+     */
+    public synchronized void clear() {
+        invalidations += entries.size();
+        entries.clear();
+    }
+
+    // ==================== Metrics ====================
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    /** Hit ratio in [0, 1] (0 before the first lookup). */
+    public synchronized double getHitRatio() {
+        long lookups = hits + misses;
+        return lookups == 0 ? 0.0 : (double) hits / lookups;
+    }
+
+    /**
+     * Get cache statistics for monitoring.
+     */
+    public synchronized String getStats() {
+        return String.format(Locale.ROOT,
+                "SearchCache[size=%d/%d, hits=%d, misses=%d, hitRatio=%.1f%%, evictions=%d, expired=%d, invalidated=%d]",
+                entries.size(), maxEntries, hits, misses, getHitRatio() * 100.0, evictions, expirations,
+                invalidations);
+    }
+
+    // ==================== Helpers ====================
+
+    private static Set<Integer> cityIdsOf(Object payload) {
+        List<?> items;
+        if (payload instanceof PaginatedResponse) {
+            items = ((PaginatedResponse<?>) payload).getItems();
+        } else if (payload instanceof List) {
+            items = (List<?>) payload;
+        } else {
+            return Collections.emptySet();
+        }
+        Set<Integer> ids = new HashSet<>();
+        for (Object item : items) {
+            if (item instanceof CitySearchResult)
+                ids.add(((CitySearchResult) item).getCityId());
+        }
+        return ids;
+    }
+
+    private static String normalize(String s) {
+        if (s == null || s.trim().isEmpty())
+            return null;
+        return s.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private static String nullToEmpty(String s) {
+        return s != null ? s : "";
+    }
+}
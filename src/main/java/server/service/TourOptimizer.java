@@ -0,0 +1,245 @@
+package server.service;
+
+/**
+ * Stop ordering for tours: shortest open path through all stops (no circle-back, like
+ * tour totals) on a symmetric distance matrix.
+ *
+ * A nearest-neighbour tour (best over all start stops for small tours) seeds the search,
+ * unless the current order is already shorter; 2-opt (segment reversal) and Or-opt
+ * (moving runs of 1-3 stops, optionally reversed) then improve it until no move helps
+ * or the time budget is spent. The result is never longer than the current order.
+ *
+ * The open path is handled as a cycle through a dummy stop whose edges cost 0, so the
+ * usual cycle moves also change the first and last stop; a fixed start or end is
+ * enforced by making every other edge to the dummy prohibitively expensive.
+ */
+public final class TourOptimizer {
+
+    private static final double PROHIBITED = 1e15;
+    private static final double EPS = 1e-7;
+    private static final int MULTI_START_LIMIT = 100;
+
+    /**
+     * Optimized order: order[k] is the index (into the distance matrix / current order)
+     * of the k-th stop.
+     */
+    public static final class Result {
+        public final int[] order;
+        public final double length;
+        public final boolean timeBudgetReached;
+
+        Result(int[] order, double length, boolean timeBudgetReached) {
+            this.order = order;
+            this.length = length;
+            this.timeBudgetReached = timeBudgetReached;
+        }
+    }
+
+    private final double[][] dist;
+    private final int n;
+    private final int dummy;
+    private final boolean fixedStart;
+    private final boolean fixedEnd;
+    private final long deadline;
+    private boolean timedOut;
+
+    private TourOptimizer(double[][] dist, boolean fixedStart, boolean fixedEnd, long timeBudgetNanos) {
+        this.dist = dist;
+        this.n = dist.length;
+        this.dummy = n;
+        this.fixedStart = fixedStart;
+        this.fixedEnd = fixedEnd;
+        this.deadline = System.nanoTime() + timeBudgetNanos;
+    }
+
+    /**
+     * Reorder stops 0..n-1 (currently visited in index order) to minimize the path length.
+     *
+     * @param dist            symmetric matrix of finite distances
+     * @param fixedStart      keep stop 0 first
+     * @param fixedEnd        keep stop n-1 last
+     * @param timeBudgetNanos stop improving after this long (the best order so far is returned)
+     */
+    public static Result optimize(double[][] dist, boolean fixedStart, boolean fixedEnd, long timeBudgetNanos) {
+        return new TourOptimizer(dist, fixedStart, fixedEnd, timeBudgetNanos).run();
+    }
+
+    /**
+     * Length of the open path visiting the stops in the given order.
+     */
+    public static double pathLength(double[][] dist, int[] order) {
+        double total = 0;
+        for (int k = 1; k < order.length; k++) {
+            total += dist[order[k - 1]][order[k]];
+        }
+        return total;
+    }
+
+    private Result run() {
+        int[] identity = new int[n];
+        for (int i = 0; i < n; i++) identity[i] = i;
+        if (n <= 2) {
+            return new Result(identity, pathLength(dist, identity), false);
+        }
+
+        int[] seed = nearestNeighbourSeed();
+        int[] start = pathLength(dist, seed) < pathLength(dist, identity) ? seed : identity;
+
+        // Route as a cycle: route[0] is the dummy, route[1..n] the stops
+        int[] route = new int[n + 1];
+        route[0] = dummy;
+        System.arraycopy(start, 0, route, 1, n);
+
+        boolean improved = true;
+        while (improved && !outOfTime()) {
+            improved = twoOpt(route);
+            if (!outOfTime()) {
+                improved |= orOpt(route);
+            }
+        }
+        int[] order = java.util.Arrays.copyOfRange(route, 1, n + 1);
+        return new Result(order, pathLength(dist, order), timedOut);
+    }
+
+    private boolean outOfTime() {
+        if (!timedOut && System.nanoTime() >= deadline) {
+            timedOut = true;
+        }
+        return timedOut;
+    }
+
+    /** Edge cost including the dummy stop (a == dummy: b is first; b == dummy: a is last). */
+    private double cost(int a, int b) {
+        if (a == dummy) {
+            return fixedStart && b != 0 ? PROHIBITED : 0;
+        }
+        if (b == dummy) {
+            return fixedEnd && a != n - 1 ? PROHIBITED : 0;
+        }
+        return dist[a][b];
+    }
+
+    // ==================== Construction ====================
+
+    private int[] nearestNeighbourSeed() {
+        int[] best = null;
+        double bestLength = Double.POSITIVE_INFINITY;
+        int starts = fixedStart ? 1 : (n <= MULTI_START_LIMIT ? n : 1);
+        for (int s = 0; s < starts; s++) {
+            if (fixedEnd && s == n - 1) continue;
+            int[] path = nearestNeighbourFrom(s);
+            double length = pathLength(dist, path);
+            if (length < bestLength) {
+                bestLength = length;
+                best = path;
+            }
+        }
+        return best;
+    }
+
+    private int[] nearestNeighbourFrom(int first) {
+        int[] path = new int[n];
+        boolean[] used = new boolean[n];
+        path[0] = first;
+        used[first] = true;
+        int count = 1;
+        int lastFree = fixedEnd ? n - 1 : n; // a fixed end stop is appended last
+        while (count < lastFree) {
+            int current = path[count - 1];
+            int next = -1;
+            for (int c = 0; c < n; c++) {
+                if (used[c] || (fixedEnd && c == n - 1)) continue;
+                if (next < 0 || dist[current][c] < dist[current][next]) next = c;
+            }
+            path[count++] = next;
+            used[next] = true;
+        }
+        if (fixedEnd && !used[n - 1]) {
+            path[count] = n - 1;
+        }
+        return path;
+    }
+
+    // ==================== Local search ====================
+
+    /**
+     * One pass of first-improvement 2-opt: reverse route[i..j] when that shortens the route.
+     */
+    private boolean twoOpt(int[] route) {
+        int m = route.length;
+        boolean improved = false;
+        for (int i = 1; i < m - 1; i++) {
+            if (outOfTime()) return improved;
+            for (int j = i + 1; j < m; j++) {
+                int a = route[i - 1], b = route[i], c = route[j], d = route[(j + 1) % m];
+                double delta = cost(a, c) + cost(b, d) - cost(a, b) - cost(c, d);
+                if (delta < -EPS) {
+                    reverse(route, i, j);
+                    improved = true;
+                }
+            }
+        }
+        return improved;
+    }
+
+    /**
+     * One pass of Or-opt: move a run of 1-3 stops (possibly reversed) to a better position.
+     */
+    private boolean orOpt(int[] route) {
+        int m = route.length;
+        boolean improved = false;
+        for (int len = 1; len <= 3 && len < m - 1; len++) {
+            for (int i = 1; i + len <= m; i++) {
+                if (outOfTime()) return improved;
+                int first = route[i], last = route[i + len - 1];
+                int prev = route[i - 1], next = route[(i + len) % m];
+                double removeGain = cost(prev, first) + cost(last, next) - cost(prev, next);
+                for (int j = 0; j < m; j++) {
+                    // Insert between route[j] and route[j + 1]; skip edges touching the run
+                    if (j >= i - 1 && j <= i + len - 1) continue;
+                    int p = route[j], q = route[(j + 1) % m];
+                    double forward = cost(p, first) + cost(last, q) - cost(p, q);
+                    double reversed = cost(p, last) + cost(first, q) - cost(p, q);
+                    boolean reverse = reversed < forward;
+                    if (Math.min(forward, reversed) - removeGain < -EPS) {
+                        moveRun(route, i, len, j, reverse);
+                        improved = true;
+                        break;
+                    }
+                }
+            }
+        }
+        return improved;
+    }
+
+    private static void reverse(int[] route, int i, int j) {
+        while (i < j) {
+            int t = route[i];
+            route[i++] = route[j];
+            route[j--] = t;
+        }
+    }
+
+    /** Move route[i..i+len-1] to just after the element currently at position j. */
+    private static void moveRun(int[] route, int i, int len, int j, boolean reverse) {
+        int m = route.length;
+        int[] run = java.util.Arrays.copyOfRange(route, i, i + len);
+        if (reverse) {
+            reverse(run, 0, len - 1);
+        }
+        int anchor = route[j];
+        int[] rest = new int[m - len];
+        int r = 0;
+        for (int k = 0; k < m; k++) {
+            if (k < i || k >= i + len) rest[r++] = route[k];
+        }
+        int out = 0;
+        for (int k = 0; k < rest.length; k++) {
+            route[out++] = rest[k];
+            if (rest[k] == anchor) {
+                System.arraycopy(run, 0, route, out, len);
+                out += len;
+            }
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package client.control;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import common.Poi;
+import org.junit.jupiter.api.*;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the map tile cache (TileStore) and TileService against a stub tile server that
+ * answers /tiles/{z}/{x}/{y}.png with the text "z/x/y".
+ */
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+public class TileServiceTest {
+
+    private HttpServer server;
+    private String urlTemplate;
+    private Path dir;
+    private final AtomicInteger requests = new AtomicInteger();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/tiles/", this::handleTile);
+        server.setExecutor(Executors.newFixedThreadPool(8));
+        server.start();
+        urlTemplate = "http://127.0.0.1:" + server.getAddress().getPort() + "/tiles/{z}/{x}/{y}.png";
+        dir = Files.createTempDirectory("gcm-tiles");
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+    }
+
+    /**
+     * Test 1: A tile is downloaded once, then served from disk, also after a restart
+     */
+    @Test
+    @Order(1)
+    @DisplayName("Tiles are downloaded once and cached on disk")
+    void getTile_cached() throws Exception {
+        TileService service = new TileService(urlTemplate, new TileStore(dir, 1 << 20), 2, 1, 12, 12, 10);
+        assertEquals("14/9000/6000", text(service.getTile(14, 9000, 6000).get()));
+        assertEquals("14/9000/6000", text(service.getTile(14, 9000, 6000).get()));
+        assertEquals(1, requests.get());
+
+        TileService restarted = new TileService(urlTemplate, new TileStore(dir, 1 << 20), 2, 1, 12, 12, 10);
+        assertEquals(1, restarted.getStore().getTileCount());
+        assertEquals("14/9000/6000", text(restarted.getTile(14, 9000, 6000).get()));
+        assertEquals(1, requests.get(), "Served from disk");
+
+        System.out.println("✓ Test 1 passed: 1 download for 3 reads");
+    }
+
+    /**
+     * Test 2: Beyond the size limit the least recently used tiles are deleted
+     */
+    @Test
+    @Order(2)
+    @DisplayName("LRU eviction keeps the cache under its limit")
+    void store_evictsLeastRecentlyUsed() {
+        TileStore store = new TileStore(dir, 300);
+        store.put(10, 1, 1, new byte[100]);
+        store.put(10, 1, 2, new byte[100]);
+        store.put(10, 1, 3, new byte[100]);
+        assertNotNull(store.get(10, 1, 1), "Used again: now the most recent");
+        store.put(10, 1, 4, new byte[100]);
+
+        assertTrue(store.contains(10, 1, 1));
+        assertFalse(store.contains(10, 1, 2), "Least recently used");
+        assertFalse(Files.exists(dir.resolve("10/1/2.png")));
+        assertEquals(300, store.getTotalBytes());
+
+        System.out.println("✓ Test 2 passed: " + store.getTileCount() + " tiles, " + store.getTotalBytes() + " bytes");
+    }
+
+    /**
+     * Test 3: Prefetch covers the POIs' box at each zoom level with at most N downloads at once
+     */
+    @Test
+    @Order(3)
+    @DisplayName("City prefetch has bounded parallelism")
+    void prefetch_bounded() throws Exception {
+        TileService service = new TileService(urlTemplate, new TileStore(dir, 1 << 20), 4, 2, 13, 15, 100);
+        List<Poi> pois = List.of(poi(32.79, 34.98), poi(32.82, 35.02));
+        int fetched = service.prefetchPois(pois).get();
+
+        assertTrue(fetched > 3, "Several zoom levels");
+        assertEquals(fetched, requests.get());
+        assertEquals(fetched, service.getStore().getTileCount());
+        assertTrue(maxInFlight.get() <= 2, "At most 2 prefetch downloads at once, was " + maxInFlight.get());
+        assertEquals(0, (int) service.prefetchPois(pois).get(), "All cached already");
+
+        long x = TileService.tileX(34.98, 15);
+        long y = TileService.tileY(32.79, 15);
+        assertTrue(service.getStore().contains(15, x, y));
+
+        System.out.println("✓ Test 3 passed: " + fetched + " tiles prefetched, max " + maxInFlight.get() + " in flight");
+    }
+
+    /**
+     * Test 4: Offline mode serves cached tiles only and downloads nothing
+     */
+    @Test
+    @Order(4)
+    @DisplayName("Offline mode serves only cached tiles")
+    void offline_cachedOnly() throws Exception {
+        TileService service = new TileService(urlTemplate, new TileStore(dir, 1 << 20), 2, 1, 12, 12, 10);
+        service.getTile(12, 2400, 1600).get();
+        service.setOffline(true);
+
+        assertEquals("12/2400/1600", text(service.getTile(12, 2400, 1600).get()));
+        assertNull(service.getTile(12, 2401, 1600).get());
+        assertEquals(0, (int) service.prefetchPois(List.of(poi(32.8, 35.0))).get());
+        assertEquals(1, requests.get());
+
+        System.out.println("✓ Test 4 passed: offline, " + requests.get() + " download");
+    }
+
+    private void handleTile(HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+        int now = inFlight.incrementAndGet();
+        maxInFlight.accumulateAndGet(now, Math::max);
+        try {
+            Thread.sleep(20);
+        } catch (InterruptedException ignored) {
+        }
+        String path = exchange.getRequestURI().getPath();
+        String tile = path.substring("/tiles/".length(), path.length() - ".png".length());
+        byte[] body = tile.getBytes(StandardCharsets.UTF_8);
+        inFlight.decrementAndGet();
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private static String text(byte[] data) {
+        return data != null ? new String(data, StandardCharsets.UTF_8) : null;
+    }
+
+    private static Poi poi(double lat, double lon) {
+        return new Poi(1, 3, "POI", null, lat, lon, "Museum", null, false);
+    }
+}
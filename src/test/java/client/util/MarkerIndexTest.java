@@ -0,0 +1,102 @@
+package client.util;
+
+import org.junit.jupiter.api.*;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for MarkerIndex: which markers a map layer lays out for a viewport, and how they are
+ * clustered when zoomed out. Runs offline.
+ */
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+public class MarkerIndexTest {
+
+    /**
+     * Test 1: The transform derived from two projected points maps coordinates back to them
+     */
+    @Test
+    @Order(1)
+    @DisplayName("Transform from reference points")
+    void transform_fromReference() {
+        MarkerIndex.Transform zoom14 = new MarkerIndex.Transform(256 * Math.pow(2, 14), -1000, -2000);
+        double ax = zoom14.toScreenX(MarkerIndex.worldX(0)), ay = zoom14.toScreenY(MarkerIndex.worldY(0));
+        double bx = zoom14.toScreenX(MarkerIndex.worldX(90)), by = zoom14.toScreenY(MarkerIndex.worldY(0));
+
+        MarkerIndex.Transform view = MarkerIndex.Transform.fromReference(0, 0, ax, ay, 0, 90, bx, by);
+        assertNotNull(view);
+        assertEquals(14.0, view.getZoom(), 1e-9);
+        double y = MarkerIndex.worldY(32.8);
+        assertEquals(zoom14.toScreenY(y), view.toScreenY(y), 1e-6);
+        assertEquals(y, view.toWorldY(view.toScreenY(y)), 1e-12);
+        assertNull(MarkerIndex.Transform.fromReference(0, 0, 5, 5, 0, 90, 5, 5), "Map not laid out yet");
+
+        System.out.println("✓ Test 1 passed: zoom " + view.getZoom());
+    }
+
+    /**
+     * Test 2: Only markers inside the viewport (plus margin) are returned
+     */
+    @Test
+    @Order(2)
+    @DisplayName("Viewport culling")
+    void query_culls() {
+        MarkerIndex<Integer> index = grid(20);
+        MarkerIndex.Transform view = centredOn(32.8, 35.0, 17);
+
+        List<MarkerIndex.Cluster<Integer>> shown = index.query(view, 800, 600, 0, 0);
+        assertFalse(shown.isEmpty());
+        assertTrue(shown.size() < index.size(), shown.size() + " of " + index.size());
+        for (MarkerIndex.Cluster<Integer> c : shown) {
+            assertTrue(c.isSingle());
+            assertTrue(c.getScreenX() >= 0 && c.getScreenX() <= 800);
+            assertTrue(c.getScreenY() >= 0 && c.getScreenY() <= 600);
+        }
+        assertTrue(index.query(view, 800, 600, 200, 0).size() > shown.size(), "Margin adds markers");
+
+        System.out.println("✓ Test 2 passed: " + shown.size() + " of " + index.size() + " markers laid out");
+    }
+
+    /**
+     * Test 3: Zoomed out, nearby markers become clusters whose counts add up
+     */
+    @Test
+    @Order(3)
+    @DisplayName("Clusters with counts")
+    void query_clusters() {
+        MarkerIndex<Integer> index = grid(20);
+        MarkerIndex.Transform view = centredOn(32.8, 35.0, 11);
+
+        List<MarkerIndex.Cluster<Integer>> clusters = index.query(view, 800, 600, 0, 48);
+        int total = 0;
+        for (MarkerIndex.Cluster<Integer> c : clusters) total += c.getCount();
+        assertEquals(index.size(), total, "Whole city is on screen");
+        assertTrue(clusters.size() < 20, "Clustered into " + clusters.size());
+        assertTrue(clusters.stream().anyMatch(c -> c.getCount() > 1));
+        assertEquals(index.size(), index.query(view, 800, 600, 0, 0).size(), "No clustering");
+
+        index.clear();
+        assertTrue(index.query(view, 800, 600, 0, 48).isEmpty());
+
+        System.out.println("✓ Test 3 passed: " + total + " markers in " + clusters.size() + " clusters");
+    }
+
+    /** n x n markers ~100 m apart around (32.8, 35.0). */
+    private static MarkerIndex<Integer> grid(int n) {
+        MarkerIndex<Integer> index = new MarkerIndex<>();
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < n; j++) {
+                index.add(i * n + j, 32.8 + (i - n / 2) * 0.001, 35.0 + (j - n / 2) * 0.001);
+            }
+        }
+        return index;
+    }
+
+    /** An 800 x 600 view centred on a coordinate at a zoom level. */
+    private static MarkerIndex.Transform centredOn(double lat, double lon, int zoom) {
+        double scale = 256 * Math.pow(2, zoom);
+        return new MarkerIndex.Transform(scale,
+                400 - MarkerIndex.worldX(lon) * scale, 300 - MarkerIndex.worldY(lat) * scale);
+    }
+}
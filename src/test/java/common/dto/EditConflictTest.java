@@ -0,0 +1,117 @@
+package common.dto;
+
+import common.Poi;
+import org.junit.jupiter.api.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for EditConflict: what the editor shows for a CONFLICT answer and how it rebases its
+ * changes onto the current versions. Runs offline.
+ */
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+public class EditConflictTest {
+
+    /**
+     * Test 1: Rebasing moves base versions to the current ones and drops edits of deleted entities
+     */
+    @Test
+    @Order(1)
+    @DisplayName("Rebase takes current versions")
+    void rebase_currentVersions() {
+        MapChanges changes = new MapChanges().forMap(10).forCity(3);
+        changes.setNewMapName("Downtown 2");
+        changes.setBaseMapVersion(4);
+        changes.getUpdatedPois().add(new Poi(101, 3, "Port", null, 32.8, 35.0, "Historic", null, false));
+        changes.getUpdatedPois().add(new Poi(102, 3, "Museum", null, 32.8, 35.0, "Museum", null, false));
+        changes.getBasePoiVersions().put(101, 2);
+        changes.getBasePoiVersions().put(102, 7);
+        changes.getUpdatedTours().add(new TourDTO(12, 3, "Harbour walk", null));
+        changes.getBaseTourVersions().put(12, 1);
+
+        EditConflict conflict = new EditConflict(10, List.of(
+                new EditConflict.Entity(EditConflict.MAP, 10, 4, 6),
+                new EditConflict.Entity(EditConflict.POI, 101, 2, 3),
+                new EditConflict.Entity(EditConflict.TOUR, 12, 1, -1)));
+        conflict.rebase(changes);
+
+        assertEquals(Integer.valueOf(6), changes.getBaseMapVersion());
+        assertEquals(Integer.valueOf(3), changes.getBasePoiVersions().get(101));
+        assertEquals(Integer.valueOf(7), changes.getBasePoiVersions().get(102), "Not conflicting: unchanged");
+        assertEquals(2, changes.getUpdatedPois().size(), "Edits are kept");
+        assertTrue(changes.getUpdatedTours().isEmpty(), "Tour was deleted meanwhile");
+        assertFalse(changes.getBaseTourVersions().containsKey(12));
+
+        System.out.println("✓ Test 1 passed: rebased onto " + conflict.getEntities().size() + " newer versions");
+    }
+
+    /**
+     * Test 2: The conflict names each entity and whether it was changed or deleted
+     */
+    @Test
+    @Order(2)
+    @DisplayName("Describe names the conflicting entities")
+    void describe_entities() {
+        EditConflict conflict = new EditConflict(10, List.of(
+                new EditConflict.Entity(EditConflict.POI, 12, 0, 1),
+                new EditConflict.Entity(EditConflict.TOUR, 4, 2, -1)));
+        assertEquals("POI #12 (changed), tour #4 (deleted)", conflict.describe());
+        assertTrue(conflict.getEntities().get(1).isDeleted());
+
+        System.out.println("✓ Test 2 passed: " + conflict.describe());
+    }
+
+    /**
+     * Test 3: Parts of one submission writing the same POI, tour or map keep the base version only in the first
+     */
+    @Test
+    @Order(3)
+    @DisplayName("Only the first part writing an entity keeps its base version")
+    void keepBaseVersionsInFirstPart_siblings() {
+        List<MapChanges> parts = new ArrayList<>();
+        MapChanges rename = part();
+        rename.setNewMapName("Downtown 2");
+        parts.add(rename);
+        MapChanges update = part();
+        update.getUpdatedPois().add(new Poi(101, 3, "Port", null, 32.8, 35.0, "Historic", null, false));
+        parts.add(update);
+        MapChanges unlink = part();
+        unlink.getPoiMapUnlinks().add(new MapChanges.PoiMapLink(10, 101, 0));
+        parts.add(unlink);
+        MapChanges stops = part();
+        stops.getUpdatedStops().add(new TourStopDTO(40, 12, 102, "Start here"));
+        parts.add(stops);
+        MapChanges deletedStops = part();
+        deletedStops.getDeletedStopIds().add(41);
+        parts.add(deletedStops);
+        MapChanges delete = part();
+        delete.getDeletedMapIds().add(10);
+        parts.add(delete);
+
+        EditConflict.keepBaseVersionsInFirstPart(parts, Set.of(12));
+
+        assertEquals(Integer.valueOf(4), rename.getBaseMapVersion());
+        assertEquals(Integer.valueOf(2), update.getBasePoiVersions().get(101));
+        assertFalse(unlink.getBasePoiVersions().containsKey(101), "POI already written by the update part");
+        assertEquals(Integer.valueOf(2), unlink.getBasePoiVersions().get(102), "Not written by an earlier part");
+        assertEquals(Integer.valueOf(1), stops.getBaseTourVersions().get(12));
+        assertFalse(deletedStops.getBaseTourVersions().containsKey(12), "Tour already written by the stop part");
+        assertNull(delete.getBaseMapVersion(), "Map already written by the rename part");
+
+        System.out.println("✓ Test 3 passed: base versions kept in the first of " + parts.size() + " parts");
+    }
+
+    /** A part carrying every base version of the submission, as the split creates it. */
+    private static MapChanges part() {
+        MapChanges c = new MapChanges().forMap(10).forCity(3);
+        c.setBaseMapVersion(4);
+        c.getBasePoiVersions().put(101, 2);
+        c.getBasePoiVersions().put(102, 2);
+        c.getBaseTourVersions().put(12, 1);
+        return c;
+    }
+}
@@ -0,0 +1,139 @@
+package common.dto;
+
+import com.google.gson.Gson;
+import common.Poi;
+import org.junit.jupiter.api.*;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for MapChangesCodec (stored form of map edit requests) and MapChangesSummary titles. Runs offline.
+ */
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+public class MapChangesCodecTest {
+
+    /**
+     * Test 1: Encoded changes decode to the same content
+     */
+    @Test
+    @Order(1)
+    @DisplayName("Encode / decode round trip")
+    void roundTrip() {
+        MapChanges changes = importChanges(50);
+        changes.getUpdatedTours().add(new TourDTO(12, 3, "Harbour walk", "Updated"));
+        changes.getDeletedTourIds().add(13);
+        changes.getAddedStops().add(new TourStopDTO(0, 12, 1001, "First"));
+
+        MapChanges decoded = MapChangesCodec.decode(MapChangesCodec.encode(changes));
+        assertEquals(50, decoded.getAddedPois().size());
+        Poi poi = decoded.getAddedPois().get(7);
+        assertEquals("Imported POI 7", poi.getName());
+        assertEquals(32.807, poi.getLatitude(), 1e-9);
+        assertEquals("Harbour walk", decoded.getUpdatedTours().get(0).getName());
+        assertEquals(Integer.valueOf(13), decoded.getDeletedTourIds().get(0));
+        assertEquals(1001, decoded.getAddedStops().get(0).getPoiId());
+        assertEquals("Haifa", decoded.getDisplayCityName());
+
+        System.out.println("✓ Test 1 passed: " + decoded.getAddedPois().size() + " POIs round-tripped");
+    }
+
+    /**
+     * Test 2: The summary is read from the header alone
+     */
+    @Test
+    @Order(2)
+    @DisplayName("Summary is readable without the body")
+    void summary_withoutBody() {
+        byte[] encoded = MapChangesCodec.encode(importChanges(20));
+        // Damage the compressed body: the header must still be readable
+        byte[] damaged = Arrays.copyOf(encoded, encoded.length);
+        damaged[damaged.length - 3] ^= 0x5A;
+        damaged[damaged.length - 2] ^= 0x5A;
+
+        MapChangesSummary summary = MapChangesCodec.readSummary(damaged);
+        assertEquals(20, summary.getAddedPoiCount());
+        assertEquals("Add POI: Imported POI 0", summary.title("Haifa", "Downtown"));
+        assertFalse(summary.isCityOnly());
+
+        MapEditRequestDTO dto = new MapEditRequestDTO();
+        dto.setEncodedChanges(encoded);
+        assertEquals(20, dto.getSummary().getAddedPoiCount());
+        assertEquals(20, dto.getChanges().getAddedPois().size());
+
+        // Damaged header (after magic, format and length): the summary comes from the body instead
+        byte[] badHeader = Arrays.copyOf(encoded, encoded.length);
+        Arrays.fill(badHeader, 8, 12, (byte) ']');
+        MapEditRequestDTO row = new MapEditRequestDTO();
+        row.setEncodedChanges(badHeader);
+        assertEquals(20, row.getSummary().getAddedPoiCount(), "Decoded lazily");
+
+        System.out.println("✓ Test 2 passed: " + summary.title("Haifa", "Downtown"));
+    }
+
+    /**
+     * Test 3: Titles match the kinds of request shown in the approvals list
+     */
+    @Test
+    @Order(3)
+    @DisplayName("Titles for city, map, POI and tour requests")
+    void titles() {
+        MapChanges city = new MapChanges();
+        city.getNewCityWithMap().add(new MapChanges.CityWithMapRequest("Acre", "", 10, "Old City", ""));
+        assertEquals("Add city and map: Acre / Old City", MapChangesSummary.of(city).title(null, null));
+        assertTrue(MapChangesSummary.of(city).isCityOnly());
+
+        MapChanges deleteCity = new MapChanges();
+        deleteCity.getDeletedCityIds().add(4);
+        deleteCity.setDisplayCityName("Eilat");
+        assertEquals("Delete city: Eilat", MapChangesSummary.of(deleteCity).title(null, null));
+        assertTrue(MapChangesSummary.of(deleteCity).isCityOnly());
+
+        MapChanges deletePoi = new MapChanges();
+        deletePoi.setMapId(3);
+        deletePoi.getDeletedPoiIds().add(77);
+        assertEquals("Delete POI: \"id: 77\"", MapChangesSummary.of(deletePoi).title("Haifa", "Downtown"));
+
+        MapChanges links = new MapChanges();
+        links.setMapId(3);
+        assertEquals("Update map: Downtown (Haifa)", MapChangesSummary.of(links).title("Haifa", "Downtown"));
+
+        System.out.println("✓ Test 3 passed: titles match");
+    }
+
+    /**
+     * Test 4: Legacy JSON is still readable and the encoded form is much smaller
+     */
+    @Test
+    @Order(4)
+    @DisplayName("Legacy JSON rows decode; encoding compresses")
+    void legacyJson_andSize() {
+        MapChanges changes = importChanges(500);
+        byte[] json = new Gson().toJson(changes).getBytes(StandardCharsets.UTF_8);
+        assertFalse(MapChangesCodec.isEncoded(json));
+        MapChanges legacy = MapChangesCodec.fromJson(new String(json, StandardCharsets.UTF_8));
+        assertEquals(500, legacy.getAddedPois().size());
+        assertEquals("Imported POI 499", legacy.getAddedPois().get(499).getName());
+
+        byte[] encoded = MapChangesCodec.encode(changes);
+        assertTrue(MapChangesCodec.isEncoded(encoded));
+        assertTrue(encoded.length * 3 < json.length, encoded.length + " bytes vs " + json.length + " JSON");
+
+        System.out.println("✓ Test 4 passed: " + json.length + " bytes JSON -> " + encoded.length + " bytes encoded");
+    }
+
+    private static MapChanges importChanges(int pois) {
+        MapChanges changes = new MapChanges();
+        changes.setMapId(3);
+        changes.setCityId(1);
+        changes.setDisplayCityName("Haifa");
+        changes.setDisplayMapName("Downtown");
+        for (int i = 0; i < pois; i++) {
+            changes.getAddedPois().add(new Poi(0, 1, "Imported POI " + i, "", 32.8 + i * 0.001, 34.98 + i * 0.001,
+                    "Museum", "Imported from the city open data catalogue", i % 2 == 0));
+        }
+        return changes;
+    }
+}
@@ -0,0 +1,136 @@
+package common.dto;
+
+import common.Poi;
+import org.junit.jupiter.api.*;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for MapChangesPatch: the ops the editor autosaves (diff against the saved draft) and
+ * how the server folds them into the stored draft. Runs offline.
+ */
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+public class MapChangesPatchTest {
+
+    /**
+     * Test 1: An op holds only the entries edited since the saved draft
+     */
+    @Test
+    @Order(1)
+    @DisplayName("Diff sends only new and changed entries")
+    void diff_onlyEdits() {
+        MapChanges saved = draft();
+        MapChanges current = MapChangesPatch.copyOf(saved);
+        assertNull(MapChangesPatch.diff(saved, current, 5), "Nothing edited");
+
+        current.getUpdatedPois().get(1).setName("Museum (renovated)");
+        current.getDeletedPoiIds().add(104);
+        current.setNewMapName("Downtown 2");
+        MapChangesPatch.Op op = MapChangesPatch.diff(saved, current, 5);
+        assertNotNull(op);
+        assertEquals(5, op.getSequence());
+        assertFalse(op.isFull());
+        assertEquals(1, op.getChanges().getUpdatedPois().size(), "Unchanged POIs are not sent");
+        assertEquals(102, op.getChanges().getUpdatedPois().get(0).getId());
+        assertEquals(List.of(104), op.getChanges().getDeletedPoiIds());
+        assertEquals("Downtown 2", op.getChanges().getNewMapName());
+        assertTrue(op.getChanges().getUpdatedTours().isEmpty());
+
+        System.out.println("✓ Test 1 passed: op with " + op.getChanges().getUpdatedPois().size() + " POI");
+    }
+
+    /**
+     * Test 2: Taking something out of the draft makes the op carry the whole draft
+     */
+    @Test
+    @Order(2)
+    @DisplayName("Removed entries make a full op")
+    void diff_removalIsFull() {
+        MapChanges saved = draft();
+        MapChanges current = MapChangesPatch.copyOf(saved);
+        current.getDeletedPoiIds().remove(Integer.valueOf(103));
+        MapChangesPatch.Op op = MapChangesPatch.diff(saved, current, 2);
+        assertTrue(op.isFull());
+        assertEquals(2, op.getChanges().getUpdatedPois().size(), "Full op is the whole draft");
+        assertTrue(op.getChanges().getDeletedPoiIds().isEmpty());
+
+        current = MapChangesPatch.copyOf(saved);
+        current.setNewMapDescription(null);
+        assertTrue(MapChangesPatch.diff(saved, current, 2).isFull(), "Cleared description");
+
+        System.out.println("✓ Test 2 passed: removals sent as full draft");
+    }
+
+    /**
+     * Test 3: Folding the ops into the stored draft gives what the editor has
+     */
+    @Test
+    @Order(3)
+    @DisplayName("Merged ops equal the editor's draft")
+    void merge_replaysOps() {
+        MapChanges stored = draft();
+        MapChanges editor = MapChangesPatch.copyOf(stored);
+
+        editor.getUpdatedPois().get(0).setCategory("Beach");
+        editor.getUpdatedTours().add(new TourDTO(12, 3, "Harbour walk", "Longer"));
+        MapChangesPatch.Op first = MapChangesPatch.diff(stored, editor, 1);
+        MapChanges saved = MapChangesPatch.copyOf(editor);
+
+        editor.getUpdatedTours().get(0).setDescription("Longer, with lunch");
+        editor.getPoiMapUnlinks().add(new MapChanges.PoiMapLink(10, 105, 0));
+        editor.getAddedPois().add(poi(0, "New kiosk"));
+        MapChangesPatch.Op second = MapChangesPatch.diff(saved, editor, 2);
+        assertEquals(1, second.getChanges().getUpdatedTours().size());
+
+        MapChangesPatch.merge(stored, first.getChanges());
+        MapChangesPatch.merge(stored, second.getChanges());
+        assertEquals(2, stored.getUpdatedPois().size(), "Replaced by id, not appended");
+        assertEquals("Beach", stored.getUpdatedPois().get(1).getCategory());
+        assertEquals(1, stored.getUpdatedTours().size());
+        assertEquals("Longer, with lunch", stored.getUpdatedTours().get(0).getDescription());
+        assertEquals(105, stored.getPoiMapUnlinks().get(0).poiId);
+        assertTrue(stored.getAddedPois().isEmpty(), "New POIs are rows, not part of the draft");
+        assertEquals(List.of(103), stored.getDeletedPoiIds());
+
+        System.out.println("✓ Test 3 passed: 2 ops folded into the draft");
+    }
+
+    /**
+     * Test 4: Base versions of edited entities travel with the ops; a rebase overwrites them
+     */
+    @Test
+    @Order(4)
+    @DisplayName("Ops carry base versions")
+    void diff_baseVersions() {
+        MapChanges stored = draft();
+        stored.getBasePoiVersions().put(101, 2);
+        MapChanges editor = MapChangesPatch.copyOf(stored);
+
+        editor.getUpdatedPois().get(1).setName("Museum (renovated)");
+        editor.getBasePoiVersions().put(102, 5);
+        editor.getBasePoiVersions().put(101, 3);
+        MapChangesPatch.Op op = MapChangesPatch.diff(stored, editor, 1);
+        assertEquals(2, op.getChanges().getBasePoiVersions().size());
+
+        MapChangesPatch.merge(stored, op.getChanges());
+        assertEquals(Integer.valueOf(3), stored.getBasePoiVersions().get(101), "Rebased");
+        assertEquals(Integer.valueOf(5), stored.getBasePoiVersions().get(102));
+
+        System.out.println("✓ Test 4 passed: " + stored.getBasePoiVersions().size() + " base versions merged");
+    }
+
+    private static MapChanges draft() {
+        MapChanges changes = new MapChanges().forMap(10).forCity(3);
+        changes.getUpdatedPois().add(poi(101, "Port"));
+        changes.getUpdatedPois().add(poi(102, "Museum"));
+        changes.getDeletedPoiIds().add(103);
+        changes.setNewMapDescription("Old town and port");
+        return changes;
+    }
+
+    private static Poi poi(int id, String name) {
+        return new Poi(id, 3, name, null, 32.8, 35.0, "Museum", null, false);
+    }
+}
@@ -0,0 +1,163 @@
+package server.dao;
+
+import org.junit.jupiter.api.*;
+import server.DBConnector;
+import server.dao.DistanceJobDAO.DistanceJob;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the persistent distance job queue.
+ *
+ * IMPORTANT: Run dummy_db.sql first to create tables.
+ */
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+public class DistanceJobDAOTest {
+
+    private static final String BATCH_ID = UUID.randomUUID().toString();
+    private static final int TEST_MAP_ID = 1; // Haifa Bay Area map from seed data
+    private static final int TEST_MANAGER_ID = 3; // manager user
+
+    /**
+     * Test 1: Jobs enqueued in a rolled-back transaction do not exist
+     */
+    @Test
+    @Order(1)
+    @DisplayName("Enqueue is part of the caller's transaction")
+    void enqueue_rollback_leavesNoJob() throws SQLException {
+        String rolledBack = UUID.randomUUID().toString();
+        try (Connection conn = DBConnector.getConnection()) {
+            conn.setAutoCommit(false);
+            DistanceJobDAO.enqueue(conn, rolledBack, DistanceJobDAO.TYPE_MAP, TEST_MAP_ID, TEST_MANAGER_ID);
+            conn.rollback();
+        }
+        assertEquals(0, DistanceJobDAO.countOpenJobs(rolledBack));
+
+        System.out.println("✓ Test 1 passed: Rolled-back enqueue leaves no job");
+    }
+
+    /**
+     * Test 2: Committed jobs can be claimed once
+     */
+    @Test
+    @Order(2)
+    @DisplayName("Committed jobs are claimed and completed")
+    void enqueue_claim_done() throws SQLException {
+        try (Connection conn = DBConnector.getConnection()) {
+            conn.setAutoCommit(false);
+            DistanceJobDAO.enqueue(conn, BATCH_ID, DistanceJobDAO.TYPE_MAP, TEST_MAP_ID, TEST_MANAGER_ID);
+            conn.commit();
+        }
+        assertEquals(1, DistanceJobDAO.countOpenJobs(BATCH_ID));
+
+        DistanceJob job = claimFromBatch();
+        assertNotNull(job, "Job of our batch should be claimable");
+        assertEquals(DistanceJobDAO.TYPE_MAP, job.jobType);
+        assertEquals(TEST_MAP_ID, job.targetId);
+        assertEquals(1, job.attempts);
+        assertNull(claimFromBatch(), "A RUNNING job must not be claimed again");
+
+        DistanceJobDAO.markDone(job.id);
+        assertEquals(0, DistanceJobDAO.countOpenJobs(BATCH_ID));
+
+        System.out.println("✓ Test 2 passed: Claimed and completed job " + job.id);
+    }
+
+    /**
+     * Test 3: Failed jobs are retried, then marked FAILED
+     */
+    @Test
+    @Order(3)
+    @DisplayName("Failures retry until MAX_ATTEMPTS")
+    void markFailed_retriesThenGivesUp() throws SQLException {
+        String batch = UUID.randomUUID().toString();
+        try (Connection conn = DBConnector.getConnection()) {
+            DistanceJobDAO.enqueue(conn, batch, DistanceJobDAO.TYPE_TOUR, 1, 0);
+        }
+
+        for (int attempt = 1; attempt <= DistanceJobDAO.MAX_ATTEMPTS; attempt++) {
+            DistanceJob job = claimFrom(batch);
+            assertNotNull(job, "Attempt " + attempt + " should be claimable");
+            boolean gaveUp = DistanceJobDAO.markFailed(job, "test failure");
+            assertEquals(attempt == DistanceJobDAO.MAX_ATTEMPTS, gaveUp);
+        }
+        assertEquals(0, DistanceJobDAO.countOpenJobs(batch));
+        assertEquals(1, DistanceJobDAO.countFailedJobs(batch));
+
+        System.out.println("✓ Test 3 passed: Retries and permanent failure");
+    }
+
+    /**
+     * Test 4: Finished jobs older than the retention are pruned; open and recent ones are kept
+     */
+    @Test
+    @Order(4)
+    @DisplayName("Prune finished jobs past the retention")
+    void pruneFinishedJobs_keepsOpenAndRecent() throws SQLException {
+        String batch = UUID.randomUUID().toString();
+        try (Connection conn = DBConnector.getConnection()) {
+            DistanceJobDAO.enqueue(conn, batch, DistanceJobDAO.TYPE_TOUR, 1, 0);
+            DistanceJobDAO.enqueue(conn, batch, DistanceJobDAO.TYPE_TOUR, 2, 0);
+            try (PreparedStatement stmt = conn.prepareStatement(
+                    "UPDATE distance_jobs SET status = 'DONE', updated_at = NOW() - INTERVAL 30 DAY WHERE batch_id = ? AND target_id = 1")) {
+                stmt.setString(1, batch);
+                stmt.executeUpdate();
+            }
+        }
+
+        assertTrue(DistanceJobDAO.pruneFinishedJobs(7) >= 1);
+        assertEquals(1, DistanceJobDAO.countOpenJobs(batch), "Pending job is kept");
+        assertEquals(0, countJobs(batch, DistanceJobDAO.STATUS_DONE), "Old finished job is pruned");
+
+        DistanceJob job = claimFrom(batch);
+        assertNotNull(job);
+        DistanceJobDAO.markDone(job.id);
+        DistanceJobDAO.pruneFinishedJobs(7);
+        assertEquals(1, countJobs(batch, DistanceJobDAO.STATUS_DONE), "Recently finished job is kept");
+
+        System.out.println("✓ Test 4 passed: Pruned finished jobs past the retention");
+    }
+
+    private static int countJobs(String batchId, String status) throws SQLException {
+        try (Connection conn = DBConnector.getConnection();
+             PreparedStatement stmt = conn.prepareStatement("SELECT COUNT(*) FROM distance_jobs WHERE batch_id = ? AND status = ?")) {
+            stmt.setString(1, batchId);
+            stmt.setString(2, status);
+            ResultSet rs = stmt.executeQuery();
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    private static DistanceJob claimFromBatch() {
+        return claimFrom(BATCH_ID);
+    }
+
+    /** Claim pending jobs until one of the batch shows up; jobs of other batches are marked done. */
+    private static DistanceJob claimFrom(String batchId) {
+        for (int round = 0; round < 10; round++) {
+            List<DistanceJob> claimed = DistanceJobDAO.claimPending(10);
+            if (claimed.isEmpty()) {
+                return null;
+            }
+            DistanceJob found = null;
+            for (DistanceJob job : claimed) {
+                if (job.batchId.equals(batchId) && found == null) {
+                    found = job;
+                } else {
+                    DistanceJobDAO.markDone(job.id);
+                }
+            }
+            if (found != null) {
+                return found;
+            }
+        }
+        return null;
+    }
+}
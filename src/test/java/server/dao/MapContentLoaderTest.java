@@ -0,0 +1,212 @@
+package server.dao;
+
+import common.dto.MapContent;
+import common.dto.TourDTO;
+import common.dto.TourStopDTO;
+import org.junit.jupiter.api.*;
+import server.DBConnector;
+import server.service.DistanceCache;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests and latency benchmark for MapContentLoader on a generated large city
+ * (2000 POIs on one map, 60 tours of 20 stops).
+ *
+ * IMPORTANT: Run dummy_db.sql first to create tables.
+ */
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+public class MapContentLoaderTest {
+
+    private static final int POIS = 2000;
+    private static final int TOURS = 60;
+    private static final int STOPS_PER_TOUR = 20;
+    private static final int MAX_QUERIES = 8;
+    private static final int TEST_USER_ID = 2; // employee user from seed data
+
+    private static int cityId;
+    private static int mapId;
+    private static int sampleTourId;
+
+    @BeforeAll
+    static void createLargeCity() throws SQLException {
+        Random random = new Random(42);
+        try (Connection conn = DBConnector.getConnection()) {
+            conn.setAutoCommit(false);
+            cityId = CityDAO.createCity(conn, "LoaderBenchCity " + System.currentTimeMillis(), "Large city for map content benchmark", 10.0);
+            mapId = MapDAO.createMap(conn, cityId, "Large Map", "All POIs of the benchmark city");
+
+            List<Integer> poiIds = new ArrayList<>();
+            try (PreparedStatement stmt = conn.prepareStatement(
+                    "INSERT INTO pois (city_id, name, location, latitude, longitude, category, short_explanation, is_accessible) " +
+                            "VALUES (?, ?, '', ?, ?, 'Museum', 'Benchmark POI', 1)", Statement.RETURN_GENERATED_KEYS)) {
+                for (int i = 0; i < POIS; i++) {
+                    stmt.setInt(1, cityId);
+                    stmt.setString(2, "Bench POI " + i);
+                    stmt.setDouble(3, 32.75 + random.nextDouble() * 0.1);
+                    stmt.setDouble(4, 34.95 + random.nextDouble() * 0.1);
+                    stmt.addBatch();
+                }
+                stmt.executeBatch();
+                ResultSet keys = stmt.getGeneratedKeys();
+                while (keys.next()) poiIds.add(keys.getInt(1));
+            }
+            assertEquals(POIS, poiIds.size());
+
+            try (PreparedStatement stmt = conn.prepareStatement(
+                    "INSERT INTO map_pois (map_id, poi_id, display_order, approved) VALUES (?, ?, ?, 1)")) {
+                for (int i = 0; i < POIS; i++) {
+                    stmt.setInt(1, mapId);
+                    stmt.setInt(2, poiIds.get(i));
+                    stmt.setInt(3, i);
+                    stmt.addBatch();
+                }
+                stmt.executeBatch();
+            }
+
+            try (PreparedStatement stops = conn.prepareStatement(
+                    "INSERT INTO tour_stops (tour_id, poi_id, stop_order, notes) VALUES (?, ?, ?, '')");
+                 PreparedStatement distances = conn.prepareStatement(
+                    "INSERT IGNORE INTO poi_distances (poi_id_a, poi_id_b, distance_meters) VALUES (?, ?, ?)")) {
+                for (int t = 0; t < TOURS; t++) {
+                    int tourId = TourDAO.createTour(conn, new TourDTO(0, cityId, "Bench Tour " + t, "Benchmark tour"));
+                    if (t == 0) sampleTourId = tourId;
+                    int previous = -1;
+                    for (int s = 0; s < STOPS_PER_TOUR; s++) {
+                        int poiId = poiIds.get((t * STOPS_PER_TOUR + s) % POIS);
+                        stops.setInt(1, tourId);
+                        stops.setInt(2, poiId);
+                        stops.setInt(3, s + 1);
+                        stops.addBatch();
+                        if (previous > 0) {
+                            distances.setInt(1, Math.min(previous, poiId));
+                            distances.setInt(2, Math.max(previous, poiId));
+                            distances.setDouble(3, 100 + random.nextInt(5000));
+                            distances.addBatch();
+                        }
+                        previous = poiId;
+                    }
+                }
+                stops.executeBatch();
+                distances.executeBatch();
+            }
+            conn.commit();
+        }
+    }
+
+    @AfterAll
+    static void deleteLargeCity() throws SQLException {
+        try (Connection conn = DBConnector.getConnection();
+             PreparedStatement stmt = conn.prepareStatement("DELETE FROM cities WHERE id = ?")) {
+            stmt.setInt(1, cityId);
+            stmt.executeUpdate();
+        }
+    }
+
+    /**
+     * Test 1: The number of queries does not grow with tours and stops
+     */
+    @Test
+    @Order(1)
+    @DisplayName("Map content is loaded with a constant number of queries")
+    void load_constantQueries() throws SQLException {
+        DistanceCache.getInstance().clear();
+        AtomicInteger coldQueries = new AtomicInteger();
+        AtomicInteger warmQueries = new AtomicInteger();
+        MapContent content;
+        try (Connection conn = DBConnector.getConnection()) {
+            content = MapContentLoader.load(countingConnection(conn, coldQueries), mapId, TEST_USER_ID);
+            MapContentLoader.load(countingConnection(conn, warmQueries), mapId, TEST_USER_ID);
+        }
+
+        assertNotNull(content);
+        assertEquals(POIS, content.getPois().size());
+        assertEquals(TOURS, content.getTours().size());
+        assertTrue(coldQueries.get() <= MAX_QUERIES, "Cold load ran " + coldQueries.get() + " queries");
+        assertEquals(coldQueries.get() - 1, warmQueries.get(), "Warm load skips only the distance load");
+
+        System.out.println("✓ Test 1 passed: " + coldQueries.get() + " queries cold, " + warmQueries.get()
+                + " warm for " + TOURS + " tours / " + TOURS * STOPS_PER_TOUR + " stops");
+    }
+
+    /**
+     * Test 2: Tours match the per-tour loader, including leg distances
+     */
+    @Test
+    @Order(2)
+    @DisplayName("Batched tours match getTourById")
+    void load_toursMatchPerTourLoad() throws SQLException {
+        MapContent content = MapDAO.getMapContent(mapId, TEST_USER_ID);
+        TourDTO batched = content.getTours().stream().filter(t -> t.getId() == sampleTourId).findFirst().orElse(null);
+        assertNotNull(batched);
+        TourDTO single = TourDAO.getTourById(sampleTourId);
+
+        assertEquals(single.getStops().size(), batched.getStops().size());
+        for (int i = 0; i < single.getStops().size(); i++) {
+            TourStopDTO expected = single.getStops().get(i);
+            TourStopDTO actual = batched.getStops().get(i);
+            assertEquals(expected.getId(), actual.getId());
+            assertEquals(expected.getPoiId(), actual.getPoiId());
+            assertEquals(expected.getPoiName(), actual.getPoiName());
+            assertEquals(expected.getStopOrder(), actual.getStopOrder());
+            assertEquals(expected.getDistanceToNextMeters(), actual.getDistanceToNextMeters());
+        }
+        assertNull(batched.getStops().get(STOPS_PER_TOUR - 1).getDistanceToNextMeters());
+
+        System.out.println("✓ Test 2 passed: Tour " + sampleTourId + " has " + batched.getStops().size() + " matching stops");
+    }
+
+    /**
+     * Test 3: Latency benchmark on the large city
+     */
+    @Test
+    @Order(3)
+    @DisplayName("Large city map content latency")
+    void load_latencyBenchmark() {
+        for (int i = 0; i < 3; i++) {
+            MapDAO.getMapContent(mapId, TEST_USER_ID);
+        }
+        int runs = 20;
+        long[] millis = new long[runs];
+        for (int i = 0; i < runs; i++) {
+            long start = System.nanoTime();
+            MapContent content = MapDAO.getMapContent(mapId, TEST_USER_ID);
+            millis[i] = (System.nanoTime() - start) / 1_000_000;
+            assertNotNull(content);
+        }
+        Arrays.sort(millis);
+        double avg = Arrays.stream(millis).average().orElse(0);
+        assertTrue(avg < 1000, "Average load took " + avg + " ms");
+
+        System.out.println("✓ Test 3 passed: avg " + String.format("%.1f", avg) + " ms, p50 " + millis[runs / 2]
+                + " ms, p95 " + millis[(int) (runs * 0.95) - 1] + " ms (" + POIS + " POIs, " + TOURS + " tours)");
+    }
+
+    /** Connection that counts prepared and plain statements created through it. */
+    private static Connection countingConnection(Connection conn, AtomicInteger queries) {
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[] { Connection.class },
+                (proxy, method, args) -> {
+                    if (method.getName().equals("prepareStatement") || method.getName().equals("createStatement")) {
+                        queries.incrementAndGet();
+                    }
+                    try {
+                        return method.invoke(conn, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                });
+    }
+}
@@ -0,0 +1,166 @@
+package server.dao;
+
+import common.Poi;
+import common.dto.MapChanges;
+import common.dto.TourDTO;
+import common.dto.TourStopDTO;
+import org.junit.jupiter.api.*;
+import server.DBConnector;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the batched writes used when a map edit is applied (200-POI import).
+ *
+ * IMPORTANT: Run dummy_db.sql first to create tables.
+ */
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+public class MapEditBatchDAOTest {
+
+    private static final int POIS = 200;
+    private static final int MAX_STATEMENTS = 12;
+
+    private static int cityId;
+    private static int mapId;
+    private static int tourId;
+    private static List<Integer> poiIds = new ArrayList<>();
+
+    @BeforeAll
+    static void createCity() throws SQLException {
+        try (Connection conn = DBConnector.getConnection()) {
+            cityId = CityDAO.createCity(conn, "BatchCity " + System.currentTimeMillis(), "City for batched map edits", 10.0);
+            mapId = MapDAO.createMap(conn, cityId, "Batch Map", "Imported POIs");
+        }
+    }
+
+    @AfterAll
+    static void deleteCity() throws SQLException {
+        try (Connection conn = DBConnector.getConnection();
+             PreparedStatement stmt = conn.prepareStatement("DELETE FROM cities WHERE id = ?")) {
+            stmt.setInt(1, cityId);
+            stmt.executeUpdate();
+        }
+    }
+
+    /**
+     * Test 1: 200 POIs are created and linked with a constant number of statements
+     */
+    @Test
+    @Order(1)
+    @DisplayName("Create and link 200 POIs in batches")
+    void createAndLink_constantStatements() throws SQLException {
+        List<Poi> pois = new ArrayList<>();
+        for (int i = 0; i < POIS; i++) {
+            pois.add(new Poi(0, cityId, "Batch POI " + i, "", "Museum", "Imported POI", true));
+        }
+        AtomicInteger statements = new AtomicInteger();
+        try (Connection conn = DBConnector.getConnection()) {
+            conn.setAutoCommit(false);
+            Connection counting = countingConnection(conn, statements);
+            poiIds = PoiDAO.createPois(counting, pois);
+            List<MapChanges.PoiMapLink> links = new ArrayList<>();
+            for (int i = 0; i < poiIds.size(); i++) {
+                links.add(new MapChanges.PoiMapLink(mapId, poiIds.get(i), i));
+            }
+            PoiDAO.linkPoisToMaps(counting, links, true, 0);
+            conn.commit();
+        }
+
+        assertEquals(POIS, poiIds.size());
+        for (int i = 1; i < poiIds.size(); i++) {
+            assertTrue(poiIds.get(i) > poiIds.get(i - 1), "Ids follow insert order");
+        }
+        List<Poi> linked = PoiDAO.getPoisForMap(mapId);
+        assertEquals(POIS, linked.size());
+        assertEquals("Batch POI 0", linked.get(0).getName());
+        assertTrue(statements.get() <= MAX_STATEMENTS, "Ran " + statements.get() + " statements");
+
+        System.out.println("✓ Test 1 passed: " + POIS + " POIs created and linked with " + statements.get() + " statements");
+    }
+
+    /**
+     * Test 2: Stops are added and updated in batches after one existence check
+     */
+    @Test
+    @Order(2)
+    @DisplayName("Add and update stops in batches")
+    void stops_batched() throws SQLException {
+        try (Connection conn = DBConnector.getConnection()) {
+            tourId = TourDAO.createTour(conn, new TourDTO(0, cityId, "Batch Tour", "All imported POIs"));
+            List<Integer> referenced = new ArrayList<>(poiIds);
+            referenced.add(Integer.MAX_VALUE);
+            Set<Integer> existing = TourDAO.getExistingPoiIds(conn, referenced);
+            assertEquals(POIS, existing.size());
+            assertFalse(existing.contains(Integer.MAX_VALUE));
+
+            List<TourStopDTO> stops = new ArrayList<>();
+            for (int i = 0; i < POIS; i++) {
+                stops.add(new TourStopDTO(0, tourId, poiIds.get(i), null, null, i + 1, ""));
+            }
+            TourDAO.addTourStops(conn, stops);
+
+            TourDTO tour = TourDAO.getTourById(conn, tourId);
+            assertEquals(POIS, tour.getStops().size());
+            TourStopDTO first = tour.getStops().get(0);
+            TourDAO.updateTourStops(conn, List.of(new TourStopDTO(first.getId(), tourId, first.getPoiId(),
+                    null, null, first.getStopOrder(), "Start here")));
+            assertEquals("Start here", TourDAO.getTourById(conn, tourId).getStops().get(0).getNotes());
+        }
+
+        System.out.println("✓ Test 2 passed: " + POIS + " stops added to tour " + tourId);
+    }
+
+    /**
+     * Test 3: POIs used by a tour are not deleted; after removing the stops they all are
+     */
+    @Test
+    @Order(3)
+    @DisplayName("Delete POIs in one batch once no stop uses them")
+    void deletePois_batched() throws SQLException {
+        try (Connection conn = DBConnector.getConnection()) {
+            assertThrows(SQLException.class, () -> PoiDAO.deletePois(conn, poiIds));
+            assertEquals(POIS, PoiDAO.getPoisForMap(conn, mapId).size(), "Nothing deleted when blocked");
+
+            List<Integer> stopIds = new ArrayList<>();
+            for (TourStopDTO stop : TourDAO.getTourById(conn, tourId).getStops()) stopIds.add(stop.getId());
+            assertEquals(Set.of(tourId), TourDAO.removeTourStops(conn, stopIds));
+
+            assertEquals(POIS, PoiDAO.deletePois(conn, poiIds));
+            assertTrue(TourDAO.getExistingPoiIds(conn, poiIds).isEmpty());
+            try (PreparedStatement stmt = conn.prepareStatement("SELECT COUNT(*) FROM map_pois WHERE map_id = ?")) {
+                stmt.setInt(1, mapId);
+                ResultSet rs = stmt.executeQuery();
+                assertTrue(rs.next());
+                assertEquals(0, rs.getInt(1));
+            }
+        }
+
+        System.out.println("✓ Test 3 passed: " + POIS + " POIs deleted");
+    }
+
+    /** Connection that counts prepared and plain statements created through it. */
+    private static Connection countingConnection(Connection conn, AtomicInteger statements) {
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[] { Connection.class },
+                (proxy, method, args) -> {
+                    if (method.getName().equals("prepareStatement") || method.getName().equals("createStatement")) {
+                        statements.incrementAndGet();
+                    }
+                    try {
+                        return method.invoke(conn, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                });
+    }
+}
@@ -4,6 +4,7 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
@@ -19,6 +20,7 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.TestMethodOrder;
 
 import common.Poi;
+import common.dto.EditConflict;
 import common.dto.MapChanges;
 import common.dto.MapSummary;
 import common.dto.TourDTO;
@@ -238,10 +240,48 @@ public class MapEditDAOTest {
     }
 
     /**
-     * Cleanup: Delete test data
+     * Test 6: Approving two parts of one submission that write the same POI and tour does not conflict
      */
     @Test
     @Order(6)
+    @DisplayName("Approve sibling parts writing the same POI and tour")
+    void approveSiblingParts_noConflict() throws SQLException {
+        try (Connection conn = DBConnector.getConnection()) {
+            int poiVersion = EntityVersionDAO.getVersion(conn, EntityVersionDAO.POIS, testPoiId);
+            int tourVersion = EntityVersionDAO.getVersion(conn, EntityVersionDAO.TOURS, testTourId);
+            TourStopDTO stop = TourDAO.getTourById(conn, testTourId).getStops().get(0);
+
+            MapChanges update = sibling(poiVersion, tourVersion);
+            update.getUpdatedPois().add(PoiDAO.getPoiById(conn, testPoiId));
+            update.getUpdatedStops().add(stop);
+            MapChanges unlink = sibling(poiVersion, tourVersion);
+            unlink.getPoiMapUnlinks().add(new MapChanges.PoiMapLink(testMapId, testPoiId, 0));
+            unlink.getDeletedStopIds().add(stop.getId());
+            List<MapChanges> parts = new ArrayList<>(List.of(update, unlink));
+            EditConflict.keepBaseVersionsInFirstPart(parts, TourDAO.getTourIdsForStops(conn, unlink.getDeletedStopIds()));
+
+            conn.setAutoCommit(false);
+            try {
+                for (MapChanges part : parts) {
+                    assertTrue(EntityVersionDAO.claim(conn, part).isEmpty(), "Part conflicts with its sibling");
+                }
+                // Still carrying the versions the editor saw, the second part would conflict with the first
+                MapChanges stale = sibling(poiVersion, tourVersion);
+                stale.getPoiMapUnlinks().add(new MapChanges.PoiMapLink(testMapId, testPoiId, 0));
+                assertEquals(1, EntityVersionDAO.claim(conn, stale).size());
+            } finally {
+                conn.rollback();
+            }
+        }
+
+        System.out.println("✓ Test 6 passed: sibling parts approved without conflicts");
+    }
+
+    /**
+     * Cleanup: Delete test data
+     */
+    @Test
+    @Order(7)
     @DisplayName("Cleanup test data")
     void cleanup() throws SQLException {
         // First delete tour (which frees the POI)
@@ -261,6 +301,14 @@ public class MapEditDAOTest {
         System.out.println("✓ Cleanup complete");
     }
 
+    /** A part of a submission for the test map, carrying the base versions the editor saw. */
+    private static MapChanges sibling(int poiVersion, int tourVersion) {
+        MapChanges c = new MapChanges().forMap(testMapId).forCity(testCityId);
+        c.getBasePoiVersions().put(testPoiId, poiVersion);
+        c.getBaseTourVersions().put(testTourId, tourVersion);
+        return c;
+    }
+
     /**
      * Helper: Validate changes (simulates validation logic from handler)
      */
@@ -0,0 +1,117 @@
+package server.dao;
+
+import common.Poi;
+import common.dto.MapChanges;
+import common.dto.TourDTO;
+import org.junit.jupiter.api.*;
+import server.DBConnector;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the indexed entity lookups of MapEditRequestDAO (map_edit_request_entities).
+ *
+ * IMPORTANT: Run dummy_db.sql first to create tables.
+ */
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+public class MapEditRequestDAOTest {
+
+    private static final int TEST_USER_ID = 2; // employee user from seed data
+
+    private static int cityId;
+    private static int mapId;
+    private static int requestId;
+
+    @BeforeAll
+    static void createCity() {
+        cityId = CityDAO.createCity("RequestIndexCity " + System.currentTimeMillis(), "Request index test city", 10.0);
+        mapId = MapDAO.createMap(cityId, "Request Index Map", "");
+    }
+
+    @AfterAll
+    static void deleteCity() throws SQLException {
+        try (Connection conn = DBConnector.getConnection();
+             PreparedStatement stmt = conn.prepareStatement("DELETE FROM map_edit_requests WHERE city_id = ?")) {
+            stmt.setInt(1, cityId);
+            stmt.executeUpdate();
+        }
+        MapDAO.deleteMap(mapId);
+        CityDAO.deleteCity(cityId);
+    }
+
+    /**
+     * Test 1: Added and updated tours of PENDING requests are found through the index
+     */
+    @Test
+    @Order(1)
+    @DisplayName("Pending tour ids come from the entity index")
+    void pendingTourIds_indexed() throws SQLException {
+        MapChanges changes = new MapChanges();
+        changes.getAddedTours().add(new TourDTO(900001, cityId, "Added", ""));
+        changes.getUpdatedTours().add(new TourDTO(900002, cityId, "Updated", ""));
+        changes.getDeletedTourIds().add(900003);
+        Poi updated = new Poi(900010, cityId, "Updated", "", "Museum", "", true);
+        changes.getUpdatedPois().add(updated);
+        changes.getDeletedPoiIds().add(900011);
+
+        try (Connection conn = DBConnector.getConnection()) {
+            requestId = MapEditRequestDAO.createRequest(conn, mapId, cityId, TEST_USER_ID, changes, "PENDING");
+            assertTrue(requestId > 0);
+            Set<Integer> tourIds = MapEditRequestDAO.getTourIdsWithPendingRequestByUser(conn, TEST_USER_ID, cityId);
+            assertEquals(Set.of(900001, 900002), tourIds);
+            assertEquals(5, countEntities(conn, requestId));
+        }
+
+        System.out.println("✓ Test 1 passed: Pending tours " + Set.of(900001, 900002));
+    }
+
+    /**
+     * Test 2: Deleted tours and POIs of REJECTED requests are found per map/city scope
+     */
+    @Test
+    @Order(2)
+    @DisplayName("Rejected deletions are found per scope")
+    void rejectedDeletions_indexed() throws SQLException {
+        try (Connection conn = DBConnector.getConnection()) {
+            assertTrue(MapEditRequestDAO.updateStatus(conn, requestId, "REJECTED"));
+            assertEquals(Set.of(900003), MapEditRequestDAO.getRejectedDeletedTourIdsForUserAndScope(conn, TEST_USER_ID, mapId, cityId));
+            assertEquals(Set.of(900011), MapEditRequestDAO.getRejectedDeletedPoiIdsForUserAndScope(conn, TEST_USER_ID, mapId, cityId));
+            assertTrue(MapEditRequestDAO.getRejectedDeletedTourIdsForUserAndScope(conn, TEST_USER_ID, 0, cityId).isEmpty());
+            assertTrue(MapEditRequestDAO.getTourIdsWithPendingRequestByUser(conn, TEST_USER_ID, cityId).isEmpty());
+        }
+
+        System.out.println("✓ Test 2 passed: Rejected deletions found for map " + mapId);
+    }
+
+    /**
+     * Test 3: Deleting a request removes its index entries
+     */
+    @Test
+    @Order(3)
+    @DisplayName("Index entries are deleted with the request")
+    void deleteRequest_cascades() throws SQLException {
+        try (Connection conn = DBConnector.getConnection()) {
+            try (PreparedStatement stmt = conn.prepareStatement("DELETE FROM map_edit_requests WHERE id = ?")) {
+                stmt.setInt(1, requestId);
+                stmt.executeUpdate();
+            }
+            assertEquals(0, countEntities(conn, requestId));
+        }
+
+        System.out.println("✓ Test 3 passed: Entries of request " + requestId + " removed");
+    }
+
+    private static int countEntities(Connection conn, int requestId) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement("SELECT COUNT(*) FROM map_edit_request_entities WHERE request_id = ?")) {
+            stmt.setInt(1, requestId);
+            ResultSet rs = stmt.executeQuery();
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+}
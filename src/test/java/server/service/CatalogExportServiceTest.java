@@ -0,0 +1,126 @@
+package server.service;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import common.dto.CatalogExportChunk;
+import common.dto.CatalogExportInfo;
+import common.dto.CatalogExportInfo.Format;
+import org.junit.jupiter.api.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the catalog export: GeoJSON / newline-delimited output of the feature writer and
+ * chunked reads of an export file. Runs offline (no database).
+ */
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+public class CatalogExportServiceTest {
+
+    /**
+     * Test 1: A GeoJSON export is one FeatureCollection with points for POIs and lines for tours
+     */
+    @Test
+    @Order(1)
+    @DisplayName("GeoJSON export is a FeatureCollection")
+    void geoJson_featureCollection() throws IOException {
+        String text = writeSample(Format.GEOJSON);
+        JsonObject collection = JsonParser.parseString(text).getAsJsonObject();
+        assertEquals("FeatureCollection", collection.get("type").getAsString());
+        JsonArray features = collection.getAsJsonArray("features");
+        assertEquals(5, features.size());
+
+        JsonObject city = features.get(0).getAsJsonObject();
+        assertEquals("city/3", city.get("id").getAsString());
+        assertTrue(city.get("geometry").isJsonNull());
+        assertEquals("Haifa", city.getAsJsonObject("properties").get("name").getAsString());
+
+        JsonObject poi = features.get(2).getAsJsonObject();
+        JsonArray point = poi.getAsJsonObject("geometry").getAsJsonArray("coordinates");
+        assertEquals(34.99, point.get(0).getAsDouble(), 1e-9, "Longitude first");
+        assertEquals(32.79, point.get(1).getAsDouble(), 1e-9);
+        assertEquals(2, poi.getAsJsonObject("properties").getAsJsonArray("mapIds").size());
+
+        assertTrue(features.get(3).getAsJsonObject().get("geometry").isJsonNull(), "POI without coordinates");
+
+        JsonObject tour = features.get(4).getAsJsonObject();
+        assertEquals("LineString", tour.getAsJsonObject("geometry").get("type").getAsString());
+        assertEquals(3, tour.getAsJsonObject("properties").getAsJsonArray("poiIds").size());
+        assertEquals(2, tour.getAsJsonObject("geometry").getAsJsonArray("coordinates").size(),
+                "Stops without coordinates are left out of the line");
+
+        System.out.println("✓ Test 1 passed: " + features.size() + " features");
+    }
+
+    /**
+     * Test 2: The newline-delimited export has one complete Feature per line
+     */
+    @Test
+    @Order(2)
+    @DisplayName("NDJSON export has one feature per line")
+    void ndjson_featurePerLine() throws IOException {
+        String text = writeSample(Format.NDJSON);
+        String[] lines = text.split("\n");
+        assertEquals(5, lines.length);
+        assertTrue(text.endsWith("\n"));
+        for (String line : lines) {
+            JsonObject feature = JsonParser.parseString(line).getAsJsonObject();
+            assertEquals("Feature", feature.get("type").getAsString());
+            assertNotNull(feature.getAsJsonObject("properties").get("kind"));
+        }
+        assertEquals("tour", JsonParser.parseString(lines[4]).getAsJsonObject()
+                .getAsJsonObject("properties").get("kind").getAsString());
+
+        System.out.println("✓ Test 2 passed: " + lines.length + " lines");
+    }
+
+    /**
+     * Test 3: An export file is served in fixed-size chunks, only for known exports
+     */
+    @Test
+    @Order(3)
+    @DisplayName("Export file is read in chunks")
+    void readChunk_fixedSize() throws IOException {
+        Path dir = Files.createTempDirectory("gcm-exports");
+        CatalogExportService service = new CatalogExportService(dir, 1024);
+        byte[] content = new byte[2500];
+        for (int i = 0; i < content.length; i++) content[i] = (byte) i;
+        CatalogExportInfo info = new CatalogExportInfo(Format.NDJSON, "ab".repeat(32), content.length, 1024, 1);
+        Files.write(service.exportFile(info), content);
+
+        CatalogExportChunk first = service.readChunk(info, 0, 1024);
+        assertEquals(1024, first.getData().length);
+        assertFalse(first.isLast());
+        CatalogExportChunk last = service.readChunk(info, 2048, 1024);
+        assertEquals(452, last.getData().length);
+        assertTrue(last.isLast());
+        assertEquals(content[2048], last.getData()[0]);
+        assertNull(service.readChunk(info, 3000, 1024));
+        assertNull(service.readChunk("ab".repeat(32), 0), "Not an export of this service");
+
+        System.out.println("✓ Test 3 passed: Export read in chunks");
+    }
+
+    private static String writeSample(Format format) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        Writer out = new OutputStreamWriter(bytes, StandardCharsets.UTF_8);
+        CatalogExportService.FeatureWriter writer = new CatalogExportService.FeatureWriter(out, format);
+        writer.city(3, "Haifa", "Port city", 49.9);
+        writer.map(10, 3, "Downtown", null);
+        writer.poi(100, 3, "Port", "Port area", 32.79, 34.99, "Historic", "Old port", true, List.of(10, 11));
+        writer.poi(101, 3, "Market", null, null, null, "Food", null, false, List.of(10));
+        writer.tour(7, 3, "Harbour walk", "Along the water", 1250.0, List.of(100, 101, 102),
+                List.of(new double[]{34.99, 32.79}, new double[]{35.0, 32.8}));
+        assertEquals(5, writer.finish());
+        return bytes.toString(StandardCharsets.UTF_8);
+    }
+}
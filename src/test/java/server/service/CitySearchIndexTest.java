@@ -0,0 +1,256 @@
+package server.service;
+
+import common.dto.MapSummary;
+import org.junit.jupiter.api.*;
+import server.dao.SearchDAO.CityDocument;
+import server.dao.SearchDAO.MapDocument;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests and latency benchmark for the BM25 CitySearchIndex.
+ * Documents are built from the seed data in dummy_db.sql (no database required).
+ */
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+public class CitySearchIndexTest {
+
+    private static List<CityDocument> seedDocs;
+    private static CitySearchIndex index;
+
+    @BeforeAll
+    static void loadSeedData() throws IOException {
+        seedDocs = parseSeedDocuments(Paths.get("dummy_db.sql"));
+        index = new CitySearchIndex(seedDocs, Collections.emptyMap());
+    }
+
+    /**
+     * Test 1: Seed data is parsed into city documents
+     */
+    @Test
+    @Order(1)
+    @DisplayName("Seed data produces city documents with maps and POIs")
+    void seedDocuments_loaded() {
+        assertTrue(seedDocs.size() >= 20, "Expected the seeded world cities");
+        CityDocument first = seedDocs.get(0);
+        assertFalse(first.maps.isEmpty());
+        assertFalse(first.maps.get(0).poiNames.isEmpty());
+
+        System.out.println("✓ Test 1 passed: " + seedDocs.size() + " seed cities indexed");
+    }
+
+    /**
+     * Test 2: Matching keeps the substring semantics of SearchDAO
+     */
+    @Test
+    @Order(2)
+    @DisplayName("search matches city and POI names like SearchDAO")
+    void search_matchingSemantics() {
+        List<CitySearchIndex.ScoredCity> paris = index.search("pari", null);
+        assertEquals(1, paris.size());
+        assertEquals(3, paris.get(0).cityId, "Paris, France has id 3 in the seed data");
+
+        List<CitySearchIndex.ScoredCity> liberty = index.search(null, "statue of liberty");
+        assertEquals(1, liberty.size());
+        assertEquals(1, liberty.get(0).cityId);
+
+        assertTrue(index.search("paris", "statue of liberty").isEmpty(), "Both criteria must match");
+
+        System.out.println("✓ Test 2 passed: Matching semantics");
+    }
+
+    /**
+     * Test 3: A name match outranks a description-only match, popularity breaks ties
+     */
+    @Test
+    @Order(3)
+    @DisplayName("BM25 ranks name matches above weak matches and applies popularity")
+    void search_ranking() {
+        List<CityDocument> docs = new ArrayList<>();
+        docs.add(doc(1, "Springfield", "A quiet town.", "Old Museum", "Museum of museums."));
+        docs.add(doc(2, "Shelbyville", "Near the museum district.", "Market", "Local market."));
+        docs.add(doc(3, "Capital City", "Seat of government.", "Museum Row", "City museum."));
+        docs.add(doc(4, "Ogdenville", "Seat of government.", "Museum Row", "City museum."));
+
+        CitySearchIndex plain = new CitySearchIndex(docs, Collections.emptyMap());
+        List<CitySearchIndex.ScoredCity> ranked = plain.search(null, "museum");
+        assertEquals(3, ranked.size(), "Shelbyville has no museum POI");
+        assertEquals(1, ranked.get(0).cityId, "Most museum mentions should rank first");
+
+        Map<Integer, Long> popularity = new HashMap<>();
+        popularity.put(4, 1000L);
+        CitySearchIndex popular = new CitySearchIndex(docs, popularity);
+        List<CitySearchIndex.ScoredCity> boosted = popular.search(null, "museum row");
+        assertEquals(4, boosted.get(0).cityId, "Popularity should break the tie between identical docs");
+
+        System.out.println("✓ Test 3 passed: Ranking and popularity boost");
+    }
+
+    /**
+     * Test 4: Maps within a city are ordered by relevance
+     */
+    @Test
+    @Order(4)
+    @DisplayName("sortMaps orders a city's maps by relevance")
+    void sortMaps_byRelevance() {
+        CityDocument city = doc(1, "Springfield", "A quiet town.", "Shopping", "Malls and markets.");
+        MapDocument beaches = new MapDocument(2, "Beaches", "Sand and sea.");
+        beaches.poiNames.add("Sunset Beach");
+        beaches.poiExplanations.add("Beach with a view.");
+        city.maps.add(beaches);
+        CitySearchIndex small = new CitySearchIndex(Collections.singletonList(city), Collections.emptyMap());
+
+        List<MapSummary> maps = new ArrayList<>(Arrays.asList(
+                new MapSummary(1, "Shopping", "Malls and markets.", 1, 0),
+                new MapSummary(2, "Beaches", "Sand and sea.", 1, 0)));
+        small.sortMaps(1, maps, "beach");
+        assertEquals(2, maps.get(0).getId());
+
+        System.out.println("✓ Test 4 passed: Map ordering");
+    }
+
+    /**
+     * Test 5: Query latency benchmark on the seed data and a 100x scaled copy
+     */
+    @Test
+    @Order(5)
+    @DisplayName("Benchmark: query latency on seeded world cities")
+    void benchmark_queryLatency() {
+        String[] queries = { "paris", "new york", "museum", "park", "tower", "beach", "old city", "temple" };
+
+        double seedMs = averageQueryMillis(index, queries, 2000);
+
+        List<CityDocument> scaled = new ArrayList<>();
+        for (int copy = 0; copy < 100; copy++) {
+            for (CityDocument d : seedDocs) {
+                CityDocument c = new CityDocument(copy * 1000 + d.cityId, d.name, d.description);
+                c.maps.addAll(d.maps);
+                scaled.add(c);
+            }
+        }
+        CitySearchIndex big = new CitySearchIndex(scaled, Collections.emptyMap());
+        double scaledMs = averageQueryMillis(big, queries, 200);
+
+        System.out.println(String.format("  seed (%d cities): %.4f ms/query, scaled (%d cities): %.4f ms/query",
+                seedDocs.size(), seedMs, scaled.size(), scaledMs));
+        assertTrue(seedMs < 1.0, "Seed-data queries should take well under 1 ms, was " + seedMs);
+        assertTrue(scaledMs < 20.0, "Scaled queries should stay interactive, was " + scaledMs);
+
+        System.out.println("✓ Test 5 passed: Query latency benchmark");
+    }
+
+    // ==================== Helpers ====================
+
+    private static double averageQueryMillis(CitySearchIndex idx, String[] queries, int rounds) {
+        // Warm-up
+        for (int i = 0; i < rounds / 4; i++) {
+            idx.search(null, queries[i % queries.length]);
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < rounds; i++) {
+            String q = queries[i % queries.length];
+            idx.search(i % 2 == 0 ? q : null, i % 2 == 0 ? null : q);
+        }
+        return (System.nanoTime() - start) / 1_000_000.0 / rounds;
+    }
+
+    private static CityDocument doc(int id, String name, String description, String mapName, String poiText) {
+        CityDocument d = new CityDocument(id, name, description);
+        MapDocument m = new MapDocument(id * 10, mapName, poiText);
+        m.poiNames.add(mapName);
+        m.poiExplanations.add(poiText);
+        d.maps.add(m);
+        return d;
+    }
+
+    /**
+     * Build documents from the INSERT statements for cities, maps, pois and map_pois.
+     */
+    private static List<CityDocument> parseSeedDocuments(Path sqlFile) throws IOException {
+        List<String> lines = Files.readAllLines(sqlFile, StandardCharsets.UTF_8);
+        Map<Integer, CityDocument> cities = new LinkedHashMap<>();
+        Map<Integer, MapDocument> maps = new HashMap<>();
+        Map<Integer, String[]> pois = new HashMap<>();
+
+        for (List<String> row : rowsOf(lines, "INSERT INTO cities ")) {
+            int id = Integer.parseInt(row.get(0));
+            cities.put(id, new CityDocument(id, row.get(1), row.get(2)));
+        }
+        for (List<String> row : rowsOf(lines, "INSERT INTO maps ")) {
+            CityDocument city = cities.get(Integer.parseInt(row.get(1)));
+            if (city == null || !"1".equals(row.get(4))) continue;
+            MapDocument map = new MapDocument(Integer.parseInt(row.get(0)), row.get(2), row.get(3));
+            city.maps.add(map);
+            maps.put(map.mapId, map);
+        }
+        for (List<String> row : rowsOf(lines, "INSERT INTO pois ")) {
+            pois.put(Integer.parseInt(row.get(0)), new String[] { row.get(2), row.get(5) });
+        }
+        for (List<String> row : rowsOf(lines, "INSERT INTO map_pois ")) {
+            MapDocument map = maps.get(Integer.parseInt(row.get(0)));
+            String[] poi = pois.get(Integer.parseInt(row.get(1)));
+            if (map == null || poi == null || !"1".equals(row.get(3))) continue;
+            map.poiNames.add(poi[0]);
+            map.poiExplanations.add(poi[1]);
+        }
+        return new ArrayList<>(cities.values());
+    }
+
+    /** Value tuples of the first multi-row INSERT that starts with the given prefix. */
+    private static List<List<String>> rowsOf(List<String> lines, String insertPrefix) {
+        List<List<String>> rows = new ArrayList<>();
+        boolean inInsert = false;
+        for (String line : lines) {
+            String trimmed = line.trim();
+            if (!inInsert) {
+                inInsert = trimmed.startsWith(insertPrefix) && trimmed.endsWith("VALUES");
+                continue;
+            }
+            if (!trimmed.startsWith("(")) break;
+            rows.add(parseTuple(trimmed));
+            if (trimmed.endsWith(";")) break;
+        }
+        return rows;
+    }
+
+    private static List<String> parseTuple(String tuple) {
+        List<String> values = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        boolean quoted = false;
+        int i = tuple.indexOf('(') + 1;
+        for (; i < tuple.length(); i++) {
+            char ch = tuple.charAt(i);
+            if (quoted) {
+                if (ch == '\'' && i + 1 < tuple.length() && tuple.charAt(i + 1) == '\'') {
+                    current.append('\'');
+                    i++;
+                } else if (ch == '\'') {
+                    quoted = false;
+                } else {
+                    current.append(ch);
+                }
+            } else if (ch == '\'') {
+                quoted = true;
+            } else if (ch == ',' || ch == ')') {
+                values.add(current.toString().trim());
+                current.setLength(0);
+                if (ch == ')') break;
+            } else {
+                current.append(ch);
+            }
+        }
+        return values;
+    }
+}
@@ -0,0 +1,130 @@
+package server.service;
+
+import client.ResponseCache;
+import common.MessageType;
+import common.Request;
+import common.Response;
+import org.junit.jupiter.api.*;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for conditional reads: server ETags (ContentTags) and the client's ResponseCache.
+ * Runs offline.
+ */
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+public class ContentTagsTest {
+
+    private static final LocalDate TODAY = LocalDate.of(2026, 3, 1);
+
+    /**
+     * Test 1: Tags change only when their counters are bumped
+     */
+    @Test
+    @Order(1)
+    @DisplayName("Writes change the affected tags only")
+    void tags_changeOnWrites() {
+        ContentTags tags = new ContentTags(1000);
+        String catalog = tags.catalogTag();
+        String purchasesA = tags.purchasesTag(1, TODAY);
+        String purchasesB = tags.purchasesTag(2, TODAY);
+        assertEquals(catalog, tags.catalogTag(), "Stable without writes");
+
+        tags.purchasesChanged(1);
+        assertNotEquals(purchasesA, tags.purchasesTag(1, TODAY));
+        assertEquals(purchasesB, tags.purchasesTag(2, TODAY), "Other users keep their tag");
+        assertEquals(catalog, tags.catalogTag());
+
+        tags.catalogChanged();
+        assertNotEquals(catalog, tags.catalogTag());
+        assertNotEquals(purchasesB, tags.purchasesTag(2, TODAY), "Purchases show city names");
+        assertNotEquals(tags.purchasesTag(2, TODAY), tags.purchasesTag(2, TODAY.plusDays(1)), "Expiry is by date");
+
+        String published = tags.publishedCatalogTag();
+        String editorCatalog = tags.catalogTag();
+        tags.draftsChanged();
+        assertNotEquals(editorCatalog, tags.catalogTag(), "Editors see their drafts");
+        assertEquals(published, tags.publishedCatalogTag(), "Drafts are not published");
+        tags.catalogChanged();
+        assertNotEquals(published, tags.publishedCatalogTag());
+
+        assertNotEquals(tags.mapContentTag(10, 5, true), tags.mapContentTag(10, 6, true));
+        assertNotEquals(tags.mapContentTag(10, 5, true), tags.mapContentTag(10, 5, false));
+        assertNull(tags.mapContentTag(10, -1, true), "No tag without a version");
+        assertNotEquals(catalog, new ContentTags(2000).catalogTag(), "Tags do not survive a restart");
+
+        System.out.println("✓ Test 1 passed: Tags follow their writes");
+    }
+
+    /**
+     * Test 2: Only a matching ETag gets NOT_MODIFIED
+     */
+    @Test
+    @Order(2)
+    @DisplayName("NOT_MODIFIED for a matching ETag")
+    void notModified_onlyForMatchingTag() {
+        ContentTags tags = new ContentTags(1000);
+        Request request = new Request(MessageType.GET_CITIES, null, "token");
+        assertNull(ContentTags.notModified(request, tags.catalogTag()), "No ETag sent");
+
+        request.setIfNoneMatch(tags.catalogTag());
+        Response response = ContentTags.notModified(request, tags.catalogTag());
+        assertNotNull(response);
+        assertTrue(response.isOk());
+        assertTrue(response.isNotModified());
+        assertNull(response.getPayload());
+
+        tags.catalogChanged();
+        assertNull(ContentTags.notModified(request, tags.catalogTag()), "Stale ETag");
+        assertNull(ContentTags.notModified(request, null));
+
+        System.out.println("✓ Test 2 passed: NOT_MODIFIED only for the current ETag");
+    }
+
+    /**
+     * Test 3: The client sends the stored ETag and fills NOT_MODIFIED answers from its copy
+     */
+    @Test
+    @Order(3)
+    @DisplayName("Client reuses its copy on NOT_MODIFIED")
+    void responseCache_reusesPayload() {
+        ContentTags tags = new ContentTags(1000);
+        ResponseCache cache = new ResponseCache();
+        List<String> cities = new ArrayList<>(List.of("Haifa", "Akko"));
+
+        Request first = new Request(MessageType.GET_MAPS_FOR_CITY, 3, "token");
+        cache.prepare(first);
+        assertNull(first.getIfNoneMatch());
+        cache.complete(Response.success(first, cities, tags.catalogTag()));
+
+        Request second = new Request(MessageType.GET_MAPS_FOR_CITY, 3, "token");
+        cache.prepare(second);
+        assertEquals(tags.catalogTag(), second.getIfNoneMatch());
+        Response answered = cache.complete(ContentTags.notModified(second, tags.catalogTag()));
+        assertFalse(answered.isNotModified());
+        assertEquals(cities, answered.getPayload());
+        assertFalse(cities == answered.getPayload(), "Screens get their own copy");
+        assertEquals(MessageType.GET_MAPS_FOR_CITY, answered.getRequestType());
+
+        Request otherCity = new Request(MessageType.GET_MAPS_FOR_CITY, 4, "token");
+        Request otherSession = new Request(MessageType.GET_MAPS_FOR_CITY, 3, "other");
+        Request notCached = new Request(MessageType.GET_POIS_FOR_CITY, 3, "token");
+        cache.prepare(otherCity);
+        cache.prepare(otherSession);
+        cache.prepare(notCached);
+        assertNull(otherCity.getIfNoneMatch());
+        assertNull(otherSession.getIfNoneMatch());
+        assertNull(notCached.getIfNoneMatch());
+
+        cache.clear();
+        Request afterLogout = new Request(MessageType.GET_MAPS_FOR_CITY, 3, "token");
+        cache.prepare(afterLogout);
+        assertNull(afterLogout.getIfNoneMatch());
+
+        System.out.println("✓ Test 3 passed: Cached payload reused for NOT_MODIFIED");
+    }
+}
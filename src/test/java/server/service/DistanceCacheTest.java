@@ -0,0 +1,135 @@
+package server.service;
+
+import org.junit.jupiter.api.*;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for DistanceCache (packed keys, open addressing, CLOCK eviction).
+ */
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+public class DistanceCacheTest {
+
+    /**
+     * Test 1: Pairs are order-independent and self pairs are not stored
+     */
+    @Test
+    @Order(1)
+    @DisplayName("Keys are order-independent")
+    void putGet_orderIndependent() {
+        DistanceCache cache = new DistanceCache(10);
+        assertEquals(DistanceCache.key(3, 7), DistanceCache.key(7, 3));
+        assertEquals((3L << 32) | 7L, DistanceCache.key(7, 3));
+
+        cache.put(7, 3, 1234.5);
+        assertEquals(1234.5, cache.get(3, 7), 1e-9);
+        cache.put(3, 7, 99.0);
+        assertEquals(99.0, cache.get(7, 3), 1e-9);
+        assertEquals(1, cache.size());
+
+        cache.put(5, 5, 1.0);
+        cache.put(1, 2, Double.NaN);
+        assertEquals(1, cache.size());
+        assertNull(cache.get(1, 2));
+
+        System.out.println("✓ Test 1 passed: Order-independent keys");
+    }
+
+    /**
+     * Test 2: The cache never exceeds its bound and keeps recently read pairs
+     */
+    @Test
+    @Order(2)
+    @DisplayName("CLOCK eviction keeps referenced pairs")
+    void eviction_bounded() {
+        DistanceCache cache = new DistanceCache(4);
+        cache.put(1, 2, 12);
+        cache.put(1, 3, 13);
+        cache.put(1, 4, 14);
+        cache.put(1, 5, 15);
+        assertNotNull(cache.get(1, 2));
+        assertNotNull(cache.get(1, 4));
+
+        cache.put(1, 6, 16);
+        cache.put(1, 7, 17);
+
+        assertEquals(4, cache.size());
+        assertEquals(2, cache.getEvictions());
+        assertTrue(cache.contains(1, 2), "Referenced pair survives");
+        assertTrue(cache.contains(1, 4), "Referenced pair survives");
+        assertFalse(cache.contains(1, 3));
+        assertFalse(cache.contains(1, 5));
+
+        System.out.println("✓ Test 2 passed: " + cache.getStats());
+    }
+
+    /**
+     * Test 3: removePoi drops all pairs of a POI and lookups still find the rest
+     */
+    @Test
+    @Order(3)
+    @DisplayName("removePoi keeps probe chains intact")
+    void removePoi_keepsOthers() {
+        DistanceCache cache = new DistanceCache(2000);
+        Map<Long, Double> expected = new HashMap<>();
+        for (int a = 1; a <= 40; a++) {
+            for (int b = a + 1; b <= 40; b++) {
+                cache.put(a, b, a * 1000 + b);
+                expected.put(DistanceCache.key(a, b), (double) (a * 1000 + b));
+            }
+        }
+        assertEquals(39, cache.removePoi(17));
+        for (int a = 1; a <= 40; a++) {
+            for (int b = a + 1; b <= 40; b++) {
+                if (a == 17 || b == 17) {
+                    assertFalse(cache.contains(a, b));
+                } else {
+                    assertEquals(expected.get(DistanceCache.key(a, b)), cache.get(a, b), "pair " + a + "," + b);
+                }
+            }
+        }
+        assertEquals(780 - 39, cache.size());
+
+        System.out.println("✓ Test 3 passed: removePoi");
+    }
+
+    /**
+     * Test 4: Random workload agrees with a reference map for the entries still cached
+     */
+    @Test
+    @Order(4)
+    @DisplayName("Random puts and evictions stay consistent")
+    void randomWorkload_consistent() {
+        DistanceCache cache = new DistanceCache(500);
+        Map<Long, Double> reference = new HashMap<>();
+        Random random = new Random(42);
+        for (int n = 0; n < 20_000; n++) {
+            int a = 1 + random.nextInt(300);
+            int b = 1 + random.nextInt(300);
+            if (a == b) continue;
+            double meters = random.nextDouble() * 10_000;
+            cache.put(a, b, meters);
+            reference.put(DistanceCache.key(a, b), meters);
+            if (random.nextInt(4) == 0) {
+                cache.get(1 + random.nextInt(300), 1 + random.nextInt(300));
+            }
+        }
+        assertTrue(cache.size() <= 500);
+        int checked = 0;
+        for (Map.Entry<Long, Double> e : reference.entrySet()) {
+            int a = (int) (e.getKey() >>> 32);
+            int b = (int) (long) e.getKey();
+            if (cache.contains(a, b)) {
+                assertEquals(e.getValue(), cache.get(a, b), 1e-9);
+                checked++;
+            }
+        }
+        assertEquals(cache.size(), checked);
+
+        System.out.println("✓ Test 4 passed: " + checked + " cached pairs consistent");
+    }
+}
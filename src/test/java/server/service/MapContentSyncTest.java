@@ -0,0 +1,164 @@
+package server.service;
+
+import common.Poi;
+import common.dto.MapContent;
+import common.dto.MapContentDelta;
+import common.dto.TourDTO;
+import common.dto.TourStopDTO;
+import org.junit.jupiter.api.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for MapContentSync deltas and MapContentDelta.applyTo (client side). Runs offline.
+ */
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+public class MapContentSyncTest {
+
+    private static final int MAP_ID = 7;
+
+    /**
+     * Test 1: Only the changed POI and the tours that stop there are sent
+     */
+    @Test
+    @Order(1)
+    @DisplayName("Changed POI is sent with the tours that stop there")
+    void changedPoi_sentWithItsTours() {
+        MapContent cached = content(10, 3);
+        MapContent current = content(10, 3);
+        current.setContentVersion(11);
+        current.getPois().get(4).setName("Renamed POI");
+        current.getTours().get(1).getStops().get(0).setPoiName("Renamed POI");
+
+        MapContentDelta delta = MapContentSync.buildDelta(current, 10, Set.of(105), false, Collections.emptySet(), false);
+        assertEquals(1, delta.getUpsertedPois().size());
+        assertEquals(1, delta.getUpsertedTours().size());
+        assertEquals(current.getTours().get(1).getId(), delta.getUpsertedTours().get(0).getId());
+
+        assertTrue(delta.applyTo(cached));
+        assertSameContent(current, cached);
+
+        System.out.println("✓ Test 1 passed: " + delta);
+    }
+
+    /**
+     * Test 2: Added, removed and reordered POIs and tours are applied from the id lists
+     */
+    @Test
+    @Order(2)
+    @DisplayName("Added and removed entities follow the id order")
+    void addedAndRemoved_applied() {
+        MapContent cached = content(10, 3);
+        MapContent current = content(10, 3);
+        current.setContentVersion(12);
+        current.getPois().remove(0);
+        current.getPois().add(0, new Poi(200, 1, "New POI", "", 32.8, 35.0, "Beach", "", true));
+        current.getTours().remove(2);
+        Collections.reverse(current.getTours());
+
+        MapContentDelta delta = MapContentSync.buildDelta(current, 10, Set.of(200, 101), false, Set.of(1003), false);
+        assertEquals(1, delta.getUpsertedPois().size());
+        // Tour 1003 was deleted; tour 1001 stops at the unlinked POI 101
+        assertEquals(1, delta.getUpsertedTours().size());
+
+        assertTrue(delta.applyTo(cached));
+        assertSameContent(current, cached);
+
+        System.out.println("✓ Test 2 passed: " + cached.getPois().size() + " POIs, " + cached.getTours().size() + " tours");
+    }
+
+    /**
+     * Test 3: Draft tours without an id make the delta carry the full tour list
+     */
+    @Test
+    @Order(3)
+    @DisplayName("Draft tours without id send the whole tour list")
+    void draftTour_sendsAllTours() {
+        MapContent cached = content(5, 2);
+        MapContent current = content(5, 2);
+        current.setContentVersion(11);
+        TourDTO draft = new TourDTO(0, 1, "Draft tour", "");
+        draft.setDraft(true);
+        current.getTours().add(draft);
+
+        MapContentDelta delta = MapContentSync.buildDelta(current, 10, Collections.emptySet(), false, Collections.emptySet(), false);
+        assertNull(delta.getTourIds());
+        assertEquals(3, delta.getUpsertedTours().size());
+
+        assertTrue(delta.applyTo(cached));
+        assertSameContent(current, cached);
+
+        System.out.println("✓ Test 3 passed: " + delta.getUpsertedTours().size() + " tours sent");
+    }
+
+    /**
+     * Test 4: A delta for another base version or with missing entities leaves the cache untouched
+     */
+    @Test
+    @Order(4)
+    @DisplayName("Delta that does not fit the cache is rejected")
+    void mismatch_rejected() {
+        MapContent cached = content(5, 2);
+        MapContent current = content(6, 2);
+        current.setContentVersion(12);
+
+        // POI 106 is new but not marked as changed: the cache cannot resolve it
+        MapContentDelta missing = MapContentSync.buildDelta(current, 10, Collections.emptySet(), false, Collections.emptySet(), false);
+        assertFalse(missing.applyTo(cached));
+        assertEquals(5, cached.getPois().size());
+        assertEquals(10, cached.getContentVersion());
+
+        MapContentDelta otherBase = MapContentSync.buildDelta(current, 9, Set.of(106), false, Collections.emptySet(), false);
+        assertFalse(otherBase.applyTo(cached));
+
+        assertTrue(MapContentDelta.unchanged(MAP_ID, 10).applyTo(cached));
+        assertFalse(MapContentDelta.unchanged(MAP_ID, 11).applyTo(cached));
+
+        System.out.println("✓ Test 4 passed: mismatching deltas rejected");
+    }
+
+    /** Map content at version 10: POIs 101..100+n, tours 1001.. with two stops each. */
+    private static MapContent content(int pois, int tours) {
+        MapContent content = new MapContent(MAP_ID, 1, "City", "Map", "");
+        content.setContentVersion(10);
+        List<Poi> list = new ArrayList<>();
+        for (int i = 1; i <= pois; i++) {
+            list.add(new Poi(100 + i, 1, "POI " + i, "", 32.7 + i * 0.01, 34.9, "Museum", "", true));
+        }
+        content.setPois(list);
+        for (int t = 1; t <= tours; t++) {
+            TourDTO tour = new TourDTO(1000 + t, 1, "Tour " + t, "");
+            int first = 100 + (t * 4 - 3 - 1) % pois + 1;
+            int second = 100 + (t * 4 - 1) % pois + 1;
+            tour.addStop(new TourStopDTO(t * 10, tour.getId(), first, "POI " + (first - 100), "Museum", 1, ""));
+            tour.addStop(new TourStopDTO(t * 10 + 1, tour.getId(), second, "POI " + (second - 100), "Museum", 2, ""));
+            content.addTour(tour);
+        }
+        return content;
+    }
+
+    private static void assertSameContent(MapContent expected, MapContent actual) {
+        assertEquals(expected.getContentVersion(), actual.getContentVersion());
+        assertEquals(expected.getPois().size(), actual.getPois().size());
+        for (int i = 0; i < expected.getPois().size(); i++) {
+            assertEquals(expected.getPois().get(i).getId(), actual.getPois().get(i).getId());
+            assertEquals(expected.getPois().get(i).getName(), actual.getPois().get(i).getName());
+        }
+        assertEquals(expected.getTours().size(), actual.getTours().size());
+        for (int i = 0; i < expected.getTours().size(); i++) {
+            TourDTO e = expected.getTours().get(i);
+            TourDTO a = actual.getTours().get(i);
+            assertEquals(e.getId(), a.getId());
+            assertEquals(e.getName(), a.getName());
+            assertEquals(e.getStops().size(), a.getStops().size());
+            for (int k = 0; k < e.getStops().size(); k++) {
+                assertEquals(e.getStops().get(k).getPoiName(), a.getStops().get(k).getPoiName());
+            }
+        }
+    }
+}
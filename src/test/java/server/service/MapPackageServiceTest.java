@@ -0,0 +1,176 @@
+package server.service;
+
+import client.control.MapPackageDownload;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import common.Poi;
+import common.dto.MapContent;
+import common.dto.MapPackageChunk;
+import common.dto.MapPackageChunkRequest;
+import common.dto.MapPackageInfo;
+import org.junit.jupiter.api.*;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for offline map packages: writing them to disk, serving chunks and the resumable
+ * client download. Runs offline (no database).
+ */
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+public class MapPackageServiceTest {
+
+    private static final int CHUNK_SIZE = 4096;
+
+    private static Path serverDir;
+    private static Path clientDir;
+    private static MapPackageService service;
+    private static String hash;
+    private static long size;
+
+    @BeforeAll
+    static void createDirectories() throws IOException {
+        serverDir = Files.createTempDirectory("gcm-packages");
+        clientDir = Files.createTempDirectory("gcm-client-packages");
+        service = new MapPackageService(serverDir, CHUNK_SIZE);
+    }
+
+    /**
+     * Test 1: A package holds every map, is stored under its hash and equal content gives the same hash
+     */
+    @Test
+    @Order(1)
+    @DisplayName("Package is written under its content hash")
+    void write_contentAddressed() throws IOException {
+        hash = writePackage(3);
+        size = Files.size(service.packageFile(hash));
+        assertEquals(64, hash.length());
+        assertTrue(size > CHUNK_SIZE, "Package spans several chunks: " + size);
+
+        try (Reader reader = new InputStreamReader(
+                new GZIPInputStream(Files.newInputStream(service.packageFile(hash))), StandardCharsets.UTF_8)) {
+            JsonObject json = JsonParser.parseReader(reader).getAsJsonObject();
+            assertEquals(MapPackageService.FORMAT_VERSION, json.get("format").getAsInt());
+            assertEquals(3, json.get("cityId").getAsInt());
+            assertEquals(3, json.getAsJsonArray("maps").size());
+            assertEquals(300, json.getAsJsonArray("maps").get(0).getAsJsonObject().getAsJsonArray("pois").size());
+        }
+
+        assertEquals(hash, writePackage(3), "Same content, same package");
+        try (var files = Files.list(serverDir)) {
+            assertEquals(1, files.count(), "No temporary files left behind");
+        }
+
+        System.out.println("✓ Test 1 passed: Package " + hash.substring(0, 12) + " (" + size + " bytes)");
+    }
+
+    /**
+     * Test 2: Chunks have the configured size, the last one holds the rest
+     */
+    @Test
+    @Order(2)
+    @DisplayName("Chunks are read at the requested offset")
+    void readChunk_fixedSize() throws IOException {
+        MapPackageChunk first = service.readChunk(3, hash, 0, CHUNK_SIZE);
+        assertEquals(CHUNK_SIZE, first.getData().length);
+        assertEquals(size, first.getTotalSize());
+        assertFalse(first.isLast());
+
+        long lastOffset = (size - 1) / CHUNK_SIZE * CHUNK_SIZE;
+        MapPackageChunk last = service.readChunk(3, hash, lastOffset, CHUNK_SIZE);
+        assertEquals(size - lastOffset, last.getData().length);
+        assertTrue(last.isLast());
+
+        assertNull(service.readChunk(3, hash, size + 1, CHUNK_SIZE));
+        assertNull(service.readChunk(3, "0".repeat(64), 0, CHUNK_SIZE));
+
+        System.out.println("✓ Test 2 passed: " + (lastOffset / CHUNK_SIZE + 1) + " chunks");
+    }
+
+    /**
+     * Test 3: An interrupted download resumes from the bytes on disk and ends with the same file
+     */
+    @Test
+    @Order(3)
+    @DisplayName("Interrupted download resumes from the received bytes")
+    void download_resumes() throws IOException {
+        MapPackageInfo info = new MapPackageInfo(3, hash, size, CHUNK_SIZE);
+        MapPackageDownload download = new MapPackageDownload(clientDir, info);
+        assertFalse(download.append(fetch(download.nextRequest())));
+        assertFalse(download.append(fetch(download.nextRequest())));
+        assertEquals(2L * CHUNK_SIZE, download.getReceivedBytes());
+
+        // New session: continues at the offset already on disk, duplicates are ignored
+        MapPackageDownload resumed = new MapPackageDownload(clientDir, info);
+        assertEquals(2L * CHUNK_SIZE, resumed.nextRequest().getOffset());
+        assertFalse(resumed.append(service.readChunk(3, hash, 0, CHUNK_SIZE)));
+        assertEquals(2L * CHUNK_SIZE, resumed.getReceivedBytes());
+
+        int requests = 0;
+        boolean complete = false;
+        while (!complete) {
+            complete = resumed.append(fetch(resumed.nextRequest()));
+            requests++;
+        }
+        assertTrue(resumed.isComplete());
+        assertEquals(100, resumed.getPercent());
+        assertArrayEquals(Files.readAllBytes(service.packageFile(hash)), Files.readAllBytes(resumed.getPackageFile()));
+
+        System.out.println("✓ Test 3 passed: Resumed after 2 chunks, finished with " + requests + " more");
+    }
+
+    /**
+     * Test 4: A file that does not match the hash is discarded
+     */
+    @Test
+    @Order(4)
+    @DisplayName("Corrupt download is discarded")
+    void download_rejectsCorruptData() throws IOException {
+        MapPackageInfo info = new MapPackageInfo(3, hash, size, CHUNK_SIZE);
+        MapPackageDownload download = new MapPackageDownload(Files.createTempDirectory("gcm-corrupt"), info);
+        MapPackageChunk whole = service.readChunk(3, hash, 0, (int) size);
+        whole.getData()[10] ^= 1;
+
+        assertThrows(IOException.class, () -> download.append(whole));
+        assertFalse(download.isComplete());
+        assertEquals(0, download.getReceivedBytes(), "Next attempt starts over");
+
+        System.out.println("✓ Test 4 passed: Corrupt package rejected");
+    }
+
+    private static MapPackageChunk fetch(MapPackageChunkRequest request) throws IOException {
+        return service.readChunk(request.getCityId(), request.getHash(), request.getOffset(), CHUNK_SIZE);
+    }
+
+    private static String writePackage(int maps) throws IOException {
+        MapPackageService.PackageWriter writer = service.new PackageWriter(3);
+        try {
+            for (int m = 0; m < maps; m++) {
+                MapContent content = new MapContent(10 + m, 3, "Haifa", "Map " + m, "Map of Haifa " + m);
+                content.setContentVersion(42 + m);
+                List<Poi> pois = new ArrayList<>();
+                for (int i = 0; i < 300; i++) {
+                    // Varied coordinates keep the package from compressing into a single chunk
+                    pois.add(new Poi(1000 * m + i, 3, "POI " + m + "-" + i, "Street " + i,
+                            32.7 + Math.sin(i * 7.3 + m) * 0.1, 34.9 + Math.cos(i * 3.1 + m) * 0.1,
+                            "Museum", "Explanation " + i, i % 2 == 0));
+                }
+                content.setPois(pois);
+                writer.add(content);
+            }
+            writer.finish();
+        } finally {
+            writer.discard();
+        }
+        return writer.hash;
+    }
+}
@@ -0,0 +1,118 @@
+package server.service;
+
+import common.Poi;
+import common.dto.MapContent;
+import common.dto.TourDTO;
+import common.dto.TourSegmentDTO;
+import common.dto.TourStopDTO;
+import org.junit.jupiter.api.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for MapSnapshotCodec (stored form of published map content). Runs offline.
+ */
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+public class MapSnapshotCodecTest {
+
+    /**
+     * Test 1: POIs, tours, stops and segments survive a round trip
+     */
+    @Test
+    @Order(1)
+    @DisplayName("Snapshot round trip keeps the content")
+    void roundTrip_keepsContent() throws IOException {
+        MapContent content = sampleContent(20, 3);
+        MapContent decoded = MapSnapshotCodec.decode(MapSnapshotCodec.encode(content));
+
+        assertEquals(content.getMapId(), decoded.getMapId());
+        assertEquals(content.getCityName(), decoded.getCityName());
+        assertEquals(content.getContentVersion(), decoded.getContentVersion());
+        assertEquals(content.getTourId(), decoded.getTourId());
+        assertEquals(20, decoded.getPois().size());
+        assertEquals(content.getPois().get(7).getName(), decoded.getPois().get(7).getName());
+        assertEquals(content.getPois().get(7).getLatitude(), decoded.getPois().get(7).getLatitude());
+        assertEquals(3, decoded.getTours().size());
+        TourStopDTO stop = decoded.getTours().get(1).getStops().get(2);
+        assertEquals(content.getTours().get(1).getStops().get(2).getPoiId(), stop.getPoiId());
+        assertEquals(content.getTours().get(1).getStops().get(2).getDistanceToNextMeters(), stop.getDistanceToNextMeters());
+        assertEquals(content.getTourSegments().size(), decoded.getTourSegments().size());
+        assertNotNull(decoded.getPendingDeletedPoiIds(), "Lists not in the snapshot stay empty, not null");
+
+        System.out.println("✓ Test 1 passed: " + decoded.getPois().size() + " POIs, " + decoded.getTours().size() + " tours");
+    }
+
+    /**
+     * Test 2: Snapshots are much smaller than the serialized content
+     */
+    @Test
+    @Order(2)
+    @DisplayName("Snapshot is compressed")
+    void encode_compressed() throws IOException {
+        MapContent content = sampleContent(500, 20);
+        byte[] encoded = MapSnapshotCodec.encode(content);
+
+        ByteArrayOutputStream serialized = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(serialized)) {
+            out.writeObject(content);
+        }
+        assertTrue(encoded.length * 3 < serialized.size(),
+                "Snapshot " + encoded.length + " bytes vs serialized " + serialized.size());
+
+        System.out.println("✓ Test 2 passed: " + serialized.size() + " bytes serialized -> " + encoded.length + " bytes");
+    }
+
+    /**
+     * Test 3: Other data is rejected
+     */
+    @Test
+    @Order(3)
+    @DisplayName("Non-snapshot data is rejected")
+    void decode_rejectsOtherData() {
+        assertThrows(IOException.class, () -> MapSnapshotCodec.decode(null));
+        assertThrows(IOException.class, () -> MapSnapshotCodec.decode("{\"mapId\":1}".getBytes()));
+        byte[] future = MapSnapshotCodec.encode(sampleContent(1, 0));
+        future[3] = (byte) (MapSnapshotCodec.FORMAT_VERSION + 1);
+        assertThrows(IOException.class, () -> MapSnapshotCodec.decode(future));
+
+        System.out.println("✓ Test 3 passed: Invalid snapshots rejected");
+    }
+
+    private static MapContent sampleContent(int pois, int tours) {
+        MapContent content = new MapContent(10, 3, "Haifa", "Downtown", "Central Haifa");
+        content.setContentVersion(42);
+        List<Poi> poiList = new ArrayList<>();
+        for (int i = 0; i < pois; i++) {
+            poiList.add(new Poi(100 + i, 3, "POI " + i, "Street " + i, 32.79 + i * 0.001, 34.98 + i * 0.001,
+                    i % 2 == 0 ? "Museum" : "Beach", "Explanation of POI " + i, i % 3 == 0));
+        }
+        content.setPois(poiList);
+        List<TourDTO> tourList = new ArrayList<>();
+        for (int t = 0; t < tours; t++) {
+            TourDTO tour = new TourDTO(500 + t, 3, "Tour " + t, "Tour description " + t);
+            List<TourStopDTO> stops = new ArrayList<>();
+            for (int s = 0; s < Math.min(5, pois); s++) {
+                TourStopDTO stop = new TourStopDTO(900 + t * 10 + s, tour.getId(), 100 + (t + s) % pois,
+                        "POI " + (t + s) % pois, "Museum", s + 1, "");
+                stop.setDistanceToNextMeters(s < 4 ? 150.0 * (s + 1) : null);
+                stops.add(stop);
+            }
+            tour.setStops(stops);
+            tourList.add(tour);
+        }
+        content.setTours(tourList);
+        if (tours > 0) {
+            content.setTourId(500);
+            List<TourSegmentDTO> segments = new ArrayList<>();
+            segments.add(new TourSegmentDTO(100, 101, 32.79, 34.98, 32.791, 34.981, 150.0));
+            content.setTourSegments(segments);
+        }
+        return content;
+    }
+}
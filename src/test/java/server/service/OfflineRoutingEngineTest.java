@@ -0,0 +1,203 @@
+package server.service;
+
+import common.Poi;
+import org.junit.jupiter.api.*;
+import server.dao.PoiDistanceDAO;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for RoadGraph / OfflineRoutingEngine on the bundled test graph
+ * (src/test/resources/routing/test_grid.osm) and a larger synthetic grid. Runs offline.
+ */
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+public class OfflineRoutingEngineTest {
+
+    private static OfflineRoutingEngine engine;
+
+    @BeforeAll
+    static void loadGraph() throws Exception {
+        try (InputStream in = OfflineRoutingEngineTest.class.getResourceAsStream("/routing/test_grid.osm")) {
+            assertNotNull(in, "test_grid.osm must be on the test classpath");
+            engine = new OfflineRoutingEngine(RoadGraph.loadOsm(in));
+        }
+    }
+
+    /**
+     * Test 1: Only drivable ways become edges, respecting oneway
+     */
+    @Test
+    @Order(1)
+    @DisplayName("OSM extract is parsed into a directed road graph")
+    void loadOsm_drivableWaysOnly() {
+        RoadGraph graph = engine.getGraph();
+        // 36 grid nodes + 2 isolated road nodes; the off-road node is dropped
+        assertEquals(38, graph.getNodeCount());
+        // 5 two-way rows + 1 one-way row + 6 two-way columns (5 segments each) + 1 two-way service road
+        assertEquals(5 * 5 * 2 + 5 + 6 * 5 * 2 + 2, graph.getEdgeCount());
+
+        System.out.println("✓ Test 1 passed: " + graph.getNodeCount() + " nodes, " + graph.getEdgeCount() + " edges");
+    }
+
+    /**
+     * Test 2: Distances follow the streets, not the footway shortcut
+     */
+    @Test
+    @Order(2)
+    @DisplayName("Shortest paths follow drivable streets")
+    void shortestPath_followsStreets() {
+        double row0 = 0;
+        for (int c = 1; c < 6; c++) {
+            row0 += PoiDistanceDAO.haversineMeters(lat(0), lon(c - 1), lat(0), lon(c));
+        }
+        assertEquals(row0, engine.getDistanceMeters(lat(0), lon(0), lat(0), lon(5)), 0.01);
+
+        double corner = engine.getDistanceMeters(lat(0), lon(0), lat(5), lon(5));
+        double diagonal = PoiDistanceDAO.haversineMeters(lat(0), lon(0), lat(5), lon(5));
+        assertTrue(corner > diagonal * 1.3, "Footway diagonal must not be used: " + corner + " vs " + diagonal);
+
+        System.out.println("✓ Test 2 passed: row " + Math.round(row0) + " m, corner to corner " + Math.round(corner) + " m");
+    }
+
+    /**
+     * Test 3: One-way streets are only driven in their direction
+     */
+    @Test
+    @Order(3)
+    @DisplayName("One-way row forces a detour westbound")
+    void oneway_detour() {
+        double east = engine.getDistanceMeters(lat(2), lon(0), lat(2), lon(5));
+        double west = engine.getDistanceMeters(lat(2), lon(5), lat(2), lon(0));
+        double rowLength = engine.getDistanceMeters(lat(1), lon(0), lat(1), lon(5));
+        assertEquals(rowLength, east, 5.0);
+        assertTrue(west > east + 2 * 100, "Westbound must leave row 2: " + west);
+
+        System.out.println("✓ Test 3 passed: eastbound " + Math.round(east) + " m, westbound " + Math.round(west) + " m");
+    }
+
+    /**
+     * Test 4: Bidirectional A* agrees with plain Dijkstra on every node pair
+     */
+    @Test
+    @Order(4)
+    @DisplayName("Bidirectional A* matches Dijkstra for all pairs")
+    void bidirectionalAStar_matchesDijkstra() {
+        RoadGraph graph = engine.getGraph();
+        int n = graph.getNodeCount();
+        int[] all = new int[n];
+        for (int i = 0; i < n; i++) all[i] = i;
+        int unreachable = 0;
+        for (int s = 0; s < n; s++) {
+            double[] reference = engine.oneToMany(s, all);
+            for (int t = 0; t < n; t++) {
+                double path = engine.shortestPath(s, t);
+                if (Double.isInfinite(reference[t])) {
+                    assertTrue(Double.isInfinite(path));
+                    unreachable++;
+                } else {
+                    assertEquals(reference[t], path, 1e-6, "pair " + s + "," + t);
+                }
+            }
+        }
+        assertTrue(unreachable > 0, "The isolated road is unreachable from the grid");
+
+        System.out.println("✓ Test 4 passed: " + (n * n) + " pairs, " + unreachable + " unreachable");
+    }
+
+    /**
+     * Test 5: POI matrix snaps POIs and falls back to haversine when unreachable
+     */
+    @Test
+    @Order(5)
+    @DisplayName("POI matrix snaps to nodes and falls back for unreachable POIs")
+    void poiMatrix_snapAndFallback() {
+        List<Poi> pois = new ArrayList<>();
+        pois.add(poi(1, lat(0), lon(0)));
+        pois.add(poi(2, lat(0), lon(5) + 0.0001));      // ~9 m east of the row end
+        pois.add(poi(3, 32.9000, 35.1000));              // on the isolated road
+        pois.add(new Poi(4, 1, "No coords", null, "Museum", null, true));
+
+        double[][] m = engine.getDistanceMatrix(pois);
+        double row0 = engine.getDistanceMeters(lat(0), lon(0), lat(0), lon(5));
+        double snapOffset = PoiDistanceDAO.haversineMeters(lat(0), lon(5), lat(0), lon(5) + 0.0001);
+        assertEquals(row0 + snapOffset, m[0][1], 0.01);
+        assertEquals(m[0][1], m[1][0], 1e-9);
+        assertEquals(PoiDistanceDAO.haversineMeters(lat(0), lon(0), 32.9000, 35.1000), m[0][2], 0.01);
+        assertTrue(Double.isNaN(m[0][3]));
+        assertNull(engine.getDistanceMeters(lat(0), lon(0), 32.9000, 35.1000));
+
+        double[] row = engine.getDistancesFrom(pois.get(0), pois.subList(1, 4));
+        assertEquals(m[0][1], row[0], 1e-9);
+        assertEquals(m[0][2], row[1], 1e-9);
+        assertTrue(Double.isNaN(row[2]));
+
+        System.out.println("✓ Test 5 passed: Snapping and fallbacks");
+    }
+
+    /**
+     * Test 6: Query latency on a 40 000-node grid
+     */
+    @Test
+    @Order(6)
+    @DisplayName("Point-to-point queries on a city-sized grid are fast")
+    void queryLatency_largeGrid() {
+        int size = 200;
+        double[] lat = new double[size * size];
+        double[] lon = new double[size * size];
+        int[] from = new int[4 * size * size];
+        int[] to = new int[4 * size * size];
+        int edges = 0;
+        for (int r = 0; r < size; r++) {
+            for (int c = 0; c < size; c++) {
+                int v = r * size + c;
+                lat[v] = 32.70 + r * 0.0008;
+                lon[v] = 34.95 + c * 0.0008;
+                if (c + 1 < size) {
+                    from[edges] = v; to[edges++] = v + 1;
+                    from[edges] = v + 1; to[edges++] = v;
+                }
+                if (r + 1 < size) {
+                    from[edges] = v; to[edges++] = v + size;
+                    from[edges] = v + size; to[edges++] = v;
+                }
+            }
+        }
+        OfflineRoutingEngine big = new OfflineRoutingEngine(RoadGraph.fromEdges(lat, lon, from, to, edges));
+
+        Random random = new Random(7);
+        int queries = 200;
+        // Warm up the JIT and the per-thread search arrays
+        for (int q = 0; q < 20; q++) {
+            big.shortestPath(random.nextInt(size * size), random.nextInt(size * size));
+        }
+        long start = System.nanoTime();
+        for (int q = 0; q < queries; q++) {
+            int s = random.nextInt(size * size);
+            int t = random.nextInt(size * size);
+            double path = big.shortestPath(s, t);
+            assertFalse(Double.isInfinite(path));
+        }
+        double avgMillis = (System.nanoTime() - start) / 1e6 / queries;
+        assertTrue(avgMillis < 50, "Average query took " + avgMillis + " ms");
+
+        System.out.println("✓ Test 6 passed: " + String.format("%.2f", avgMillis) + " ms per query on "
+                + big.getGraph().getNodeCount() + " nodes");
+    }
+
+    private static double lat(int row) {
+        return 32.800 + row * 0.001;
+    }
+
+    private static double lon(int column) {
+        return 35.000 + column * 0.001;
+    }
+
+    private static Poi poi(int id, double latitude, double longitude) {
+        return new Poi(id, 1, "POI " + id, null, latitude, longitude, "Museum", null, true);
+    }
+}
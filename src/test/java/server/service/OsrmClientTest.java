@@ -0,0 +1,244 @@
+package server.service;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import common.Poi;
+import org.junit.jupiter.api.*;
+import server.dao.PoiDistanceDAO;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for OsrmClient.getDistanceMatrix and getDistancesFrom against a stub OSRM table server.
+ *
+ * POI k lies at (0, k * 0.01); the stub answers |k_source - k_destination| * 1000 meters,
+ * except for pairs listed in unroutable, which it answers with null.
+ */
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+public class OsrmClientTest {
+
+    private HttpServer server;
+    private String baseUrl;
+    private final AtomicInteger requests = new AtomicInteger();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+    private volatile int failStatus = 0;
+    private volatile int[] unroutable = null;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/table/v1/driving/", this::handleTable);
+        server.setExecutor(Executors.newFixedThreadPool(8));
+        server.start();
+        baseUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+    }
+
+    /**
+     * Test 1: Small sets are answered by a single request
+     */
+    @Test
+    @Order(1)
+    @DisplayName("One request for a set within the coordinate limit")
+    void singleRequest_symmetricMatrix() {
+        OsrmClient client = new OsrmClient(baseUrl, 100, 4);
+        double[][] m = client.getDistanceMatrix(pois(5));
+
+        assertEquals(1, requests.get());
+        for (int i = 0; i < 5; i++) {
+            assertEquals(0.0, m[i][i], 1e-9);
+            for (int j = 0; j < 5; j++) {
+                assertEquals(Math.abs(i - j) * 1000.0, m[i][j], 1e-6, "cell " + i + "," + j);
+            }
+        }
+        System.out.println("✓ Test 1 passed: Single table request");
+    }
+
+    /**
+     * Test 2: Large sets are chunked into block pairs with bounded concurrency
+     */
+    @Test
+    @Order(2)
+    @DisplayName("Chunked requests cover every pair with bounded parallelism")
+    void chunkedRequests_boundedParallelism() {
+        // 10 coordinates per request -> blocks of 5 -> 4 blocks -> 4 + 3 + 2 + 1 = 10 block pairs
+        OsrmClient client = new OsrmClient(baseUrl, 10, 2);
+        double[][] m = client.getDistanceMatrix(pois(20));
+
+        assertEquals(10, requests.get());
+        assertTrue(maxInFlight.get() <= 2, "At most 2 concurrent requests, saw " + maxInFlight.get());
+        for (int i = 0; i < 20; i++) {
+            for (int j = 0; j < 20; j++) {
+                assertEquals(Math.abs(i - j) * 1000.0, m[i][j], 1e-6, "cell " + i + "," + j);
+            }
+        }
+        System.out.println("✓ Test 2 passed: " + requests.get() + " chunked requests, max in flight " + maxInFlight.get());
+    }
+
+    /**
+     * Test 3: Unroutable cells and failed requests fall back to haversine
+     */
+    @Test
+    @Order(3)
+    @DisplayName("Null cells and HTTP failures fall back to haversine")
+    void fallbacks() {
+        List<Poi> pois = pois(4);
+        unroutable = new int[]{1, 3};
+        double[][] m = new OsrmClient(baseUrl, 100, 2).getDistanceMatrix(pois);
+        assertEquals(haversine(pois.get(1), pois.get(3)), m[1][3], 1e-6);
+        assertEquals(m[1][3], m[3][1], 1e-9);
+        assertEquals(1000.0, m[0][1], 1e-6, "Routable cells keep the OSRM value");
+
+        unroutable = null;
+        failStatus = 500;
+        m = new OsrmClient(baseUrl, 100, 2).getDistanceMatrix(pois);
+        assertEquals(haversine(pois.get(0), pois.get(2)), m[0][2], 1e-6);
+
+        System.out.println("✓ Test 3 passed: Haversine fallback");
+    }
+
+    /**
+     * Test 4: POIs without coordinates are skipped
+     */
+    @Test
+    @Order(4)
+    @DisplayName("POIs without coordinates get NaN cells")
+    void missingCoordinates_nan() {
+        List<Poi> pois = pois(3);
+        pois.add(1, new Poi(99, 1, "No coords", null, "Museum", null, true));
+        double[][] m = new OsrmClient(baseUrl, 100, 2).getDistanceMatrix(pois);
+
+        assertTrue(Double.isNaN(m[1][0]));
+        assertTrue(Double.isNaN(m[2][1]));
+        assertEquals(0.0, m[1][1], 1e-9);
+        assertEquals(2000.0, m[0][3], 1e-6);
+        System.out.println("✓ Test 4 passed: Missing coordinates skipped");
+    }
+
+    /**
+     * Test 5: A single row covers one POI against many targets in few requests
+     */
+    @Test
+    @Order(5)
+    @DisplayName("getDistancesFrom chunks targets and keeps their order")
+    void distancesFrom_row() {
+        List<Poi> all = pois(12);
+        Poi source = all.remove(4);
+        all.add(2, new Poi(99, 1, "No coords", null, "Museum", null, true));
+
+        // 5 coordinates per request -> source + 4 targets; 11 located targets -> 3 requests
+        double[] row = new OsrmClient(baseUrl, 5, 2).getDistancesFrom(source, all);
+
+        assertEquals(3, requests.get());
+        assertEquals(all.size(), row.length);
+        for (int t = 0; t < all.size(); t++) {
+            Poi target = all.get(t);
+            if (target.getLatitude() == null) {
+                assertTrue(Double.isNaN(row[t]));
+            } else {
+                assertEquals(Math.abs(target.getId() - source.getId()) * 1000.0, row[t], 1e-6, "target " + target.getId());
+            }
+        }
+        System.out.println("✓ Test 5 passed: Distance row in " + requests.get() + " requests");
+    }
+
+    // ==================== Stub server ====================
+
+    private void handleTable(HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+        int now = inFlight.incrementAndGet();
+        maxInFlight.accumulateAndGet(now, Math::max);
+        try {
+            Thread.sleep(20); // keep requests overlapping so the concurrency bound is observable
+            if (failStatus != 0) {
+                send(exchange, failStatus, "{\"code\":\"Error\"}");
+                return;
+            }
+            String path = exchange.getRequestURI().getPath();
+            String[] coords = path.substring("/table/v1/driving/".length()).split(";");
+            int[] keys = new int[coords.length];
+            for (int c = 0; c < coords.length; c++) {
+                keys[c] = (int) Math.round(Double.parseDouble(coords[c].split(",")[0]) * 100);
+            }
+            List<Integer> sources = indexes(exchange.getRequestURI().getQuery(), "sources", coords.length);
+            List<Integer> destinations = indexes(exchange.getRequestURI().getQuery(), "destinations", coords.length);
+
+            JsonArray distances = new JsonArray();
+            for (int s : sources) {
+                JsonArray row = new JsonArray();
+                for (int d : destinations) {
+                    int a = keys[s];
+                    int b = keys[d];
+                    if (unroutable != null && Math.min(a, b) == unroutable[0] && Math.max(a, b) == unroutable[1]) {
+                        row.add(JsonNull.INSTANCE);
+                    } else {
+                        row.add(new JsonPrimitive(Math.abs(a - b) * 1000.0));
+                    }
+                }
+                distances.add(row);
+            }
+            JsonObject root = new JsonObject();
+            root.addProperty("code", "Ok");
+            root.add("distances", distances);
+            send(exchange, 200, root.toString());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            inFlight.decrementAndGet();
+        }
+    }
+
+    private static List<Integer> indexes(String query, String name, int count) {
+        List<Integer> out = new ArrayList<>();
+        if (query != null) {
+            for (String param : query.split("&")) {
+                if (param.startsWith(name + "=")) {
+                    for (String v : param.substring(name.length() + 1).split(";")) {
+                        out.add(Integer.parseInt(v));
+                    }
+                    return out;
+                }
+            }
+        }
+        for (int k = 0; k < count; k++) out.add(k);
+        return out;
+    }
+
+    private static void send(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream os = exchange.getResponseBody()) {
+            os.write(bytes);
+        }
+    }
+
+    private static List<Poi> pois(int count) {
+        List<Poi> list = new ArrayList<>();
+        for (int k = 0; k < count; k++) {
+            list.add(new Poi(k + 1, 1, "POI " + k, null, 0.0, k * 0.01, "Museum", null, true));
+        }
+        return list;
+    }
+
+    private static double haversine(Poi a, Poi b) {
+        return PoiDistanceDAO.haversineMeters(a.getLatitude(), a.getLongitude(), b.getLatitude(), b.getLongitude());
+    }
+}
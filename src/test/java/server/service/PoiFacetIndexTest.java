@@ -0,0 +1,164 @@
+package server.service;
+
+import common.Poi;
+import common.dto.SearchFacets;
+import org.junit.jupiter.api.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for PoiFacetIndex (per-city bitsets, no database required).
+ */
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+public class PoiFacetIndexTest {
+
+    private PoiFacetIndex index;
+
+    @BeforeEach
+    void setUp() {
+        List<Poi> pois = new ArrayList<>();
+        // Haifa (city 21)
+        pois.add(poi(1, 21, "Bahai Gardens", "Historic", true));
+        pois.add(poi(2, 21, "German Colony", "historic", false));
+        pois.add(poi(3, 21, "Bat Galim Beach", "Beach", true));
+        pois.add(poi(4, 21, "Stella Maris", null, false));
+        // Tel Aviv (city 23)
+        pois.add(poi(1_000_005, 23, "Jaffa Port", "Historic", false));
+        pois.add(poi(1_000_006, 23, "Gordon Beach", "Beach", false));
+        index = new PoiFacetIndex(pois);
+    }
+
+    /**
+     * Test 1: Per-city counts without a filter
+     */
+    @Test
+    @Order(1)
+    @DisplayName("facetsForCity counts categories and accessibility")
+    void facetsForCity_counts() {
+        SearchFacets haifa = index.facetsForCity(21, null, null);
+        assertEquals(2, haifa.getCategoryCount("Historic"), "Categories are case-insensitive");
+        assertEquals(1, haifa.getCategoryCount("Beach"));
+        assertEquals(1, haifa.getCategoryCount(PoiFacetIndex.UNCATEGORIZED));
+        assertEquals(2, haifa.getAccessibleCount());
+        assertEquals(2, haifa.getNotAccessibleCount());
+        assertEquals(4, haifa.getMatchingPoiCount());
+
+        assertEquals(0, index.facetsForCity(99, null, null).getMatchingPoiCount());
+
+        System.out.println("✓ Test 1 passed: Per-city facet counts");
+    }
+
+    /**
+     * Test 2: Filters narrow the other facet and the matching count
+     */
+    @Test
+    @Order(2)
+    @DisplayName("Facet filters apply across dimensions")
+    void facets_withFilters() {
+        SearchFacets accessibleOnly = index.facetsForCity(21, null, Boolean.TRUE);
+        assertEquals(1, accessibleOnly.getCategoryCount("Historic"));
+        assertEquals(1, accessibleOnly.getCategoryCount("Beach"));
+        assertEquals(2, accessibleOnly.getMatchingPoiCount());
+
+        SearchFacets beaches = index.facetsForCity(21, Collections.singletonList("BEACH"), null);
+        assertEquals(1, beaches.getAccessibleCount());
+        assertEquals(0, beaches.getNotAccessibleCount());
+        assertEquals(2, beaches.getCategoryCount("Historic"), "Category counts ignore the category filter");
+
+        assertTrue(index.matches(21, Collections.singletonList("beach"), Boolean.TRUE));
+        assertFalse(index.matches(23, Collections.singletonList("beach"), Boolean.TRUE));
+        Set<Integer> accessibleCities = index.matchingCities(null, Boolean.TRUE);
+        assertEquals(Collections.singleton(21), accessibleCities);
+
+        System.out.println("✓ Test 2 passed: Facet filters");
+    }
+
+    /**
+     * Test 3: Aggregation over several cities
+     */
+    @Test
+    @Order(3)
+    @DisplayName("aggregate sums city facets")
+    void aggregate_sumsCities() {
+        SearchFacets all = index.aggregate(null, null, null);
+        assertEquals(3, all.getCategoryCount("historic"));
+        assertEquals(2, all.getCategoryCount("Beach"));
+        assertEquals(6, all.getMatchingPoiCount());
+
+        SearchFacets telAviv = index.aggregate(Arrays.asList(23, 99), Arrays.asList("Historic"), null);
+        assertEquals(1, telAviv.getMatchingPoiCount());
+
+        System.out.println("✓ Test 3 passed: Aggregation");
+    }
+
+    /**
+     * Test 4: Counts stay correct as POIs are approved, changed and removed
+     */
+    @Test
+    @Order(4)
+    @DisplayName("upsert and removeCity keep counts correct")
+    void incrementalUpdates() {
+        index.upsert(poi(2, 21, "German Colony", "Historic", true));
+        index.upsert(poi(7, 21, "Haifa Museum of Art", "Museum", true));
+        SearchFacets haifa = index.facetsForCity(21, null, null);
+        assertEquals(4, haifa.getAccessibleCount());
+        assertEquals(1, haifa.getCategoryCount("Museum"));
+        assertEquals(5, haifa.getMatchingPoiCount());
+
+        // Move a POI to another category: the old category disappears
+        index.upsert(poi(3, 21, "Bat Galim Beach", "Park", true));
+        assertEquals(0, index.facetsForCity(21, null, null).getCategoryCount("Beach"));
+        assertFalse(index.facetsForCity(21, null, null).getCategoryCounts().containsKey("Beach"));
+
+        index.removeCity(21);
+        assertFalse(index.matches(21, null, null));
+        assertEquals(2, index.aggregate(null, null, null).getMatchingPoiCount());
+
+        System.out.println("✓ Test 4 passed: Incremental updates");
+    }
+
+    /**
+     * Test 5: Facet counting over many cities stays fast
+     */
+    @Test
+    @Order(5)
+    @DisplayName("aggregate is fast across many cities")
+    void aggregate_performance() {
+        String[] categories = { "Museum", "Park", "Beach", "Historic", "Restaurant", "Religious" };
+        List<Poi> pois = new ArrayList<>();
+        for (int i = 1; i <= 200_000; i++) {
+            pois.add(poi(i, i % 1000, "POI " + i, categories[i % categories.length], i % 3 == 0));
+        }
+        PoiFacetIndex big = new PoiFacetIndex(pois);
+
+        List<Integer> cityIds = new ArrayList<>();
+        for (int c = 0; c < 1000; c++) {
+            cityIds.add(c);
+        }
+        List<String> filter = Arrays.asList("museum", "park");
+        big.aggregate(cityIds, filter, Boolean.TRUE);
+
+        int queries = 200;
+        long start = System.nanoTime();
+        SearchFacets last = null;
+        for (int i = 0; i < queries; i++) {
+            last = big.aggregate(cityIds, filter, Boolean.TRUE);
+        }
+        double avgMs = (System.nanoTime() - start) / 1_000_000.0 / queries;
+
+        assertEquals(200_000, big.aggregate(null, null, null).getMatchingPoiCount());
+        assertTrue(last.getMatchingPoiCount() > 0);
+        assertTrue(avgMs < 20.0, "Facets over 1000 cities should take < 20 ms, was " + avgMs);
+        System.out.println("✓ Test 5 passed: avg aggregate = " + String.format("%.3f", avgMs) + " ms");
+    }
+
+    private static Poi poi(int id, int cityId, String name, String category, boolean accessible) {
+        return new Poi(id, cityId, name, null, null, null, category, null, accessible);
+    }
+}
@@ -0,0 +1,168 @@
+package server.service;
+
+import client.control.PoiImportReader;
+import common.Poi;
+import common.dto.PoiImportChunk;
+import common.dto.PoiImportResult;
+import org.junit.jupiter.api.*;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for bulk POI import: reading CSV/GeoJSON files in chunks and the server-side
+ * validation and dedupe of chunks. Runs offline (no database).
+ */
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+public class PoiImportServiceTest {
+
+    /** Same checks as MapEditHandler#validatePoi. */
+    private static final Function<Poi, String> VALIDATOR = poi -> {
+        if (poi.getName() == null || poi.getName().trim().isEmpty()) return "POI name is required";
+        if (poi.getLatitude() != null && (poi.getLatitude().isNaN() || Math.abs(poi.getLatitude()) > 90)) {
+            return "Latitude must be between -90 and 90";
+        }
+        return null;
+    };
+
+    /**
+     * Test 1: CSV rows are read a chunk at a time with header aliases and quoted fields
+     */
+    @Test
+    @Order(1)
+    @DisplayName("CSV is read in chunks")
+    void csv_readInChunks() throws IOException {
+        StringBuilder csv = new StringBuilder("Name,Lat,Lng,Category,Description,Accessible\n");
+        csv.append("\"Bahai Gardens, upper\",32.8145,34.9872,Garden,\"The \"\"Shrine\"\" terraces\",yes\n");
+        csv.append("\n");
+        for (int i = 0; i < 4; i++) {
+            csv.append("Beach ").append(i).append(",32.8").append(i).append(",34.95,Beach,,no\n");
+        }
+        try (PoiImportReader reader = PoiImportReader.csv(new StringReader(csv.toString()))) {
+            List<Poi> first = reader.next(2);
+            assertEquals(2, first.size());
+            assertEquals("Bahai Gardens, upper", first.get(0).getName());
+            assertEquals("The \"Shrine\" terraces", first.get(0).getShortExplanation());
+            assertEquals(32.8145, first.get(0).getLatitude(), 1e-9);
+            assertEquals(34.9872, first.get(0).getLongitude(), 1e-9);
+            assertTrue(first.get(0).isAccessible());
+            assertFalse(first.get(1).isAccessible());
+            assertTrue(reader.hasMore());
+
+            assertEquals(3, reader.next(10).size());
+            assertFalse(reader.hasMore());
+            assertEquals(5, reader.getRowsRead());
+            assertTrue(reader.next(10).isEmpty());
+        }
+        assertThrows(IOException.class, () -> PoiImportReader.csv(new StringReader("title,lat\nx,1\n")));
+
+        System.out.println("✓ Test 1 passed: CSV read in chunks");
+    }
+
+    /**
+     * Test 2: GeoJSON features are read one by one, coordinates in [lon, lat] order
+     */
+    @Test
+    @Order(2)
+    @DisplayName("GeoJSON features become POIs")
+    void geoJson_readsFeatures() throws IOException {
+        String geoJson = "{\"type\":\"FeatureCollection\",\"name\":\"haifa\",\"features\":["
+                + "{\"type\":\"Feature\",\"geometry\":{\"type\":\"Point\",\"coordinates\":[34.99,32.79]},"
+                + "\"properties\":{\"name\":\"Port\",\"category\":\"Historic\",\"accessible\":true}},"
+                + "{\"type\":\"Feature\",\"geometry\":{\"type\":\"LineString\",\"coordinates\":[[1,2],[3,4]]},"
+                + "\"properties\":{\"name\":\"Promenade\"}}]}";
+        try (PoiImportReader reader = PoiImportReader.geoJson(new StringReader(geoJson))) {
+            List<Poi> pois = reader.next(10);
+            assertEquals(2, pois.size());
+            assertEquals("Port", pois.get(0).getName());
+            assertEquals(32.79, pois.get(0).getLatitude(), 1e-9);
+            assertEquals(34.99, pois.get(0).getLongitude(), 1e-9);
+            assertTrue(pois.get(0).isAccessible());
+            assertTrue(pois.get(1).getLatitude().isNaN(), "Non-point geometry is rejected by the server");
+            assertFalse(reader.hasMore());
+        }
+
+        System.out.println("✓ Test 2 passed: GeoJSON features read");
+    }
+
+    /**
+     * Test 3: Chunks are deduplicated against the city and earlier rows, totals only change on commit
+     */
+    @Test
+    @Order(3)
+    @DisplayName("Chunks are validated and deduplicated")
+    void session_dedupesAcrossChunks() {
+        PoiImportService service = new PoiImportService(60_000, () -> 0L);
+        List<Poi> existing = List.of(poi("Port", 32.79, 34.99));
+        PoiImportService.ImportSession session = service.start("imp-1", 7, 3, 10, existing, 5);
+
+        PoiImportChunk first = new PoiImportChunk("imp-1", 3, 10, 0, 1, new ArrayList<>(List.of(
+                poi(" port ", 32.790001, 34.990001),
+                poi("Museum", 32.8, 35.0),
+                poi("museum", 32.8, 35.0),
+                poi("", 32.8, 35.0),
+                poi("Tower", 120.0, 35.0))), false);
+        PoiImportService.Plan plan = session.plan(first, VALIDATOR);
+        assertEquals(1, plan.getAccepted().size());
+        assertEquals(3, plan.getAccepted().get(0).getCityId(), "Rows get the import's city");
+        assertEquals(2, plan.getDuplicates());
+        assertEquals(2, plan.getRejected());
+        assertEquals("Row 4: POI name is required", plan.getErrors().get(0));
+        assertEquals(-1, session.getResult().getSequence(), "Nothing applied before the commit");
+
+        PoiImportResult result = session.commit(first, plan, List.of(100));
+        assertEquals(0, result.getSequence());
+        assertEquals(1, session.getNextSequence());
+        assertEquals(6, session.getNextDisplayOrder());
+
+        PoiImportChunk last = new PoiImportChunk("imp-1", 3, 10, 1, 6, new ArrayList<>(List.of(
+                poi("Museum", 32.8, 35.0),
+                poi("Museum", 32.81, 35.0))), true);
+        plan = session.plan(last, VALIDATOR);
+        assertEquals(1, plan.getAccepted().size(), "Same name at another place is not a duplicate");
+        result = session.commit(last, plan, List.of(101));
+        assertTrue(result.isComplete());
+        assertEquals(2, result.getImported());
+        assertEquals(3, result.getDuplicates());
+        assertEquals(2, result.getRejected());
+        assertEquals(List.of(100, 101), session.getCreatedPoiIds());
+
+        System.out.println("✓ Test 3 passed: " + result);
+    }
+
+    /**
+     * Test 4: Imports belong to their user and expire when idle
+     */
+    @Test
+    @Order(4)
+    @DisplayName("Imports are per user and expire")
+    void sessions_perUserAndExpire() {
+        long[] now = {0};
+        PoiImportService service = new PoiImportService(1000, () -> now[0]);
+        PoiImportService.ImportSession session = service.start("imp-2", 7, 3, 10, List.of(), 0);
+        assertTrue(session == service.get("imp-2", 7));
+        assertNull(service.get("imp-2", 8), "Other users cannot continue the import");
+
+        now[0] = 900;
+        assertNotNull(service.get("imp-2", 7), "Use keeps the import alive");
+        now[0] = 1800;
+        assertNotNull(service.get("imp-2", 7));
+        now[0] = 3000;
+        assertNull(service.get("imp-2", 7), "Idle import expired");
+
+        service.start("imp-3", 7, 3, 10, List.of(), 0);
+        service.finish("imp-3");
+        assertNull(service.get("imp-3", 7));
+
+        System.out.println("✓ Test 4 passed: Import sessions scoped and expired");
+    }
+
+    private static Poi poi(String name, double lat, double lon) {
+        return new Poi(0, 0, name, null, lat, lon, "Museum", null, false);
+    }
+}
@@ -0,0 +1,140 @@
+package server.service;
+
+import common.Poi;
+import common.dto.PoiSearchResult;
+import org.junit.jupiter.api.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for PoiSpatialIndex (in-memory grid, no database required).
+ */
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+public class PoiSpatialIndexTest {
+
+    private PoiSpatialIndex index;
+
+    @BeforeEach
+    void setUp() {
+        List<Poi> pois = new ArrayList<>();
+        // Haifa
+        pois.add(poi(1, 21, "Bahai Gardens", 32.8147, 34.9870, "Historic"));
+        pois.add(poi(2, 21, "German Colony", 32.8193, 34.9896, "Historic"));
+        pois.add(poi(3, 21, "Bat Galim Beach", 32.8326, 34.9769, "Beach"));
+        pois.add(poi(4, 21, "Stella Maris", 32.8270, 34.9700, "Religious"));
+        // Tel Aviv (~80 km away)
+        pois.add(poi(5, 23, "Jaffa Port", 32.0535, 34.7506, "Historic"));
+        // Fiji / Taveuni straddles the antimeridian
+        pois.add(poi(6, 99, "East of 180", -16.80, 179.95, "Park"));
+        pois.add(poi(7, 99, "West of 180", -16.80, -179.95, "Park"));
+        index = new PoiSpatialIndex(pois);
+    }
+
+    /**
+     * Test 1: Radius search returns only POIs within range, closest first
+     */
+    @Test
+    @Order(1)
+    @DisplayName("searchNear returns POIs in radius sorted by distance")
+    void searchNear_sortedByDistance() {
+        List<PoiSearchResult> results = index.searchNear(32.8150, 34.9875, 3000, null, 10);
+
+        assertEquals(4, results.size(), "Only the four Haifa POIs are within 3 km");
+        assertEquals(1, results.get(0).getPoi().getId(), "Closest POI should be first");
+        for (int i = 1; i < results.size(); i++) {
+            assertTrue(results.get(i - 1).getDistanceMeters() <= results.get(i).getDistanceMeters());
+        }
+
+        System.out.println("✓ Test 1 passed: Radius search sorted by distance");
+    }
+
+    /**
+     * Test 2: Category filter and limit
+     */
+    @Test
+    @Order(2)
+    @DisplayName("searchNear applies category filter and limit")
+    void searchNear_categoryAndLimit() {
+        List<PoiSearchResult> historic = index.searchNear(32.8150, 34.9875, 200_000,
+                Arrays.asList("historic"), 10);
+        assertEquals(3, historic.size(), "Category match should be case-insensitive");
+        assertEquals(5, historic.get(2).getPoi().getId(), "Jaffa is the furthest historic POI");
+
+        List<PoiSearchResult> limited = index.searchNear(32.8150, 34.9875, 200_000, null, 2);
+        assertEquals(2, limited.size());
+        assertEquals(1, limited.get(0).getPoi().getId());
+
+        System.out.println("✓ Test 2 passed: Category filter and limit");
+    }
+
+    /**
+     * Test 3: Bounding box search, including a box that crosses the antimeridian
+     */
+    @Test
+    @Order(3)
+    @DisplayName("searchInBoundingBox handles normal and antimeridian boxes")
+    void searchInBoundingBox() {
+        List<PoiSearchResult> haifa = index.searchInBoundingBox(32.81, 34.98, 32.82, 35.00, null, 10);
+        assertEquals(2, haifa.size(), "Only Bahai Gardens and German Colony are inside the box");
+
+        List<PoiSearchResult> fiji = index.searchInBoundingBox(-17.0, 179.9, -16.5, -179.9, null, 10);
+        assertEquals(2, fiji.size(), "Both sides of the antimeridian should match");
+
+        System.out.println("✓ Test 3 passed: Bounding box search");
+    }
+
+    /**
+     * Test 4: Incremental updates move and remove POIs
+     */
+    @Test
+    @Order(4)
+    @DisplayName("upsert and removeCity update the index incrementally")
+    void incrementalUpdates() {
+        index.upsert(poi(5, 23, "Jaffa Port (moved)", 32.8160, 34.9880, "Historic"));
+        assertEquals(5, index.searchNear(32.8160, 34.9880, 100, null, 1).get(0).getPoi().getId());
+        assertTrue(index.searchNear(32.0535, 34.7506, 1000, null, 10).isEmpty(), "Old cell should be empty");
+
+        index.removeCity(21);
+        List<PoiSearchResult> remaining = index.searchNear(32.8150, 34.9875, 5000, null, 10);
+        assertEquals(1, remaining.size());
+        assertEquals(23, remaining.get(0).getPoi().getCityId());
+
+        System.out.println("✓ Test 4 passed: Incremental updates");
+    }
+
+    /**
+     * Test 5: Queries over a world-sized index stay in the millisecond range
+     */
+    @Test
+    @Order(5)
+    @DisplayName("searchNear is fast across many cities")
+    void searchNear_performance() {
+        Random random = new Random(42);
+        List<Poi> pois = new ArrayList<>();
+        for (int i = 1; i <= 200_000; i++) {
+            double lat = -60 + random.nextDouble() * 130;
+            double lon = -180 + random.nextDouble() * 360;
+            pois.add(poi(i, i % 500, "POI " + i, lat, lon, i % 2 == 0 ? "Museum" : "Park"));
+        }
+        PoiSpatialIndex big = new PoiSpatialIndex(pois);
+
+        long start = System.nanoTime();
+        int queries = 1000;
+        for (int i = 0; i < queries; i++) {
+            big.searchNear(-60 + random.nextDouble() * 130, -180 + random.nextDouble() * 360, 25_000, null, 50);
+        }
+        double avgMs = (System.nanoTime() - start) / 1_000_000.0 / queries;
+
+        assertTrue(avgMs < 5.0, "Average radius query should take < 5 ms, was " + avgMs);
+        System.out.println("✓ Test 5 passed: avg searchNear = " + String.format("%.3f", avgMs) + " ms");
+    }
+
+    private static Poi poi(int id, int cityId, String name, double lat, double lon, String category) {
+        return new Poi(id, cityId, name, lat + "," + lon, lat, lon, category, null, false);
+    }
+}
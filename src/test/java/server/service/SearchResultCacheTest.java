@@ -0,0 +1,136 @@
+package server.service;
+
+import common.MessageType;
+import common.dto.CitySearchResult;
+import common.dto.PaginatedRequest;
+import common.dto.SearchRequest;
+import org.junit.jupiter.api.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for SearchResultCache (keys, LRU, TTL, targeted invalidation).
+ */
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+public class SearchResultCacheTest {
+
+    private long now;
+    private SearchResultCache cache;
+
+    @BeforeEach
+    void setUp() {
+        now = 1_000_000L;
+        // City 1 is "Paris" with a "Louvre" POI; city 2 is "Parma"; nothing else matches
+        cache = new SearchResultCache(3, 60_000L, () -> now, (cityId, cityTerm, poiTerm) -> {
+            String name = cityId == 1 ? "paris" : cityId == 2 ? "parma" : "springfield";
+            boolean poiMatch = poiTerm == null || (cityId == 1 && "louvre".contains(poiTerm));
+            return (cityTerm == null || name.contains(cityTerm)) && poiMatch;
+        });
+    }
+
+    /**
+     * Test 1: Keys are normalized and distinguish type, filters and pages
+     */
+    @Test
+    @Order(1)
+    @DisplayName("keyFor normalizes terms and separates pages and filters")
+    void keyFor_normalization() {
+        String a = SearchResultCache.keyFor(MessageType.SEARCH_BY_CITY_NAME, SearchRequest.byCity("  Paris "));
+        String b = SearchResultCache.keyFor(MessageType.SEARCH_BY_CITY_NAME, SearchRequest.byCity("paris"));
+        assertEquals(a, b);
+        assertNotEquals(a, SearchResultCache.keyFor(MessageType.SEARCH_BY_POI_NAME, SearchRequest.byPoi("paris")));
+
+        String filtered = SearchResultCache.keyFor(MessageType.SEARCH_BY_CITY_NAME,
+                SearchRequest.byCity("paris").withFacetFilter(Arrays.asList("Museum", "beach"), true));
+        String reordered = SearchResultCache.keyFor(MessageType.SEARCH_BY_CITY_NAME,
+                SearchRequest.byCity("paris").withFacetFilter(Arrays.asList("BEACH", "museum"), true));
+        assertEquals(filtered, reordered);
+        assertNotEquals(a, filtered);
+
+        PaginatedRequest first = new PaginatedRequest(1, 20, SearchRequest.byCity("paris"));
+        assertNotEquals(a, SearchResultCache.keyFor(MessageType.SEARCH_BY_CITY_NAME, first));
+        assertEquals(SearchResultCache.keyFor(MessageType.GET_CITIES_CATALOG, null),
+                SearchResultCache.keyFor(MessageType.GET_CITIES_CATALOG, SearchRequest.byCity("ignored")));
+        assertNull(SearchResultCache.keyFor(MessageType.SEARCH_POIS_NEAR, null), "Geo searches are not cached");
+
+        System.out.println("✓ Test 1 passed: Key normalization");
+    }
+
+    /**
+     * Test 2: LRU eviction and hit ratio
+     */
+    @Test
+    @Order(2)
+    @DisplayName("Least recently used entry is evicted when full")
+    void lruEviction() {
+        cache.put("k1", results(1), "paris", null);
+        cache.put("k2", results(2), "parma", null);
+        cache.put("k3", results(3), "spring", null);
+        assertNotNull(cache.get("k1"), "Touch k1 so k2 becomes least recently used");
+        cache.put("k4", results(3), "field", null);
+
+        assertNull(cache.get("k2"));
+        assertNotNull(cache.get("k1"));
+        assertEquals(3, cache.size());
+        assertEquals(1, cache.getEvictions());
+        assertEquals(2, cache.getHits());
+        assertEquals(1, cache.getMisses());
+        assertEquals(2.0 / 3.0, cache.getHitRatio(), 1e-9);
+        assertTrue(cache.getStats().contains("evictions=1"));
+
+        System.out.println("✓ Test 2 passed: LRU eviction and metrics");
+    }
+
+    /**
+     * Test 3: Entries expire after the TTL
+     */
+    @Test
+    @Order(3)
+    @DisplayName("Entries expire after the TTL")
+    void ttlExpiry() {
+        cache.put("k1", results(1), "paris", null);
+        now += 59_999L;
+        assertNotNull(cache.get("k1"));
+        now += 1L;
+        assertNull(cache.get("k1"));
+        assertEquals(0, cache.size());
+
+        System.out.println("✓ Test 3 passed: TTL expiry");
+    }
+
+    /**
+     * Test 4: Invalidation only drops entries the city can affect
+     */
+    @Test
+    @Order(4)
+    @DisplayName("invalidateCity drops containing and newly matching entries only")
+    void targetedInvalidation() {
+        cache.put("paris", results(1), "paris", null);
+        cache.put("par", results(2), "par", null);       // Paris did not match when cached
+        cache.put("spring", results(3), "spring", null);
+
+        cache.invalidateCity(1);
+
+        assertNull(cache.get("paris"), "Result contains the city");
+        assertNull(cache.get("par"), "Query matches the city now");
+        assertNotNull(cache.get("spring"), "Unrelated query stays cached");
+
+        cache.put("catalog", results(2, 3), null, null);
+        cache.invalidateCity(1);
+        assertNull(cache.get("catalog"), "Catalog matches every city");
+
+        System.out.println("✓ Test 4 passed: Targeted invalidation");
+    }
+
+    private static List<CitySearchResult> results(int... cityIds) {
+        List<CitySearchResult> list = new ArrayList<>();
+        for (int id : cityIds) {
+            list.add(new CitySearchResult(id, "City " + id, "", 10.0));
+        }
+        return list;
+    }
+}
@@ -0,0 +1,179 @@
+package server.service;
+
+import org.junit.jupiter.api.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for TourOptimizer (nearest-neighbour seed + 2-opt / Or-opt) on planar distance
+ * matrices. Runs offline.
+ */
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+public class TourOptimizerTest {
+
+    private static final long BUDGET = 2_000_000_000L;
+
+    /**
+     * Test 1: Shuffled points on a line are put back in line order
+     */
+    @Test
+    @Order(1)
+    @DisplayName("Collinear stops are sorted along the line")
+    void collinear_sorted() {
+        List<Integer> positions = new ArrayList<>();
+        for (int i = 0; i < 30; i++) positions.add(i * 100);
+        Collections.shuffle(positions, new Random(3));
+        double[][] x = new double[30][2];
+        for (int i = 0; i < 30; i++) x[i][0] = positions.get(i);
+
+        double[][] dist = matrix(x);
+        TourOptimizer.Result result = TourOptimizer.optimize(dist, false, false, BUDGET);
+        assertEquals(29 * 100, result.length, 1e-6);
+        assertFalse(result.timeBudgetReached);
+
+        System.out.println("✓ Test 1 passed: " + Math.round(TourOptimizer.pathLength(dist, identity(30)))
+                + " -> " + Math.round(result.length));
+    }
+
+    /**
+     * Test 2: Fixed start / end stops stay in place
+     */
+    @Test
+    @Order(2)
+    @DisplayName("Fixed start and end are respected")
+    void fixedEnds_respected() {
+        double[][] dist = matrix(randomPoints(40, 11));
+        TourOptimizer.Result both = TourOptimizer.optimize(dist, true, true, BUDGET);
+        assertEquals(0, both.order[0]);
+        assertEquals(39, both.order[39]);
+        assertPermutation(both.order);
+
+        TourOptimizer.Result start = TourOptimizer.optimize(dist, true, false, BUDGET);
+        assertEquals(0, start.order[0]);
+        TourOptimizer.Result end = TourOptimizer.optimize(dist, false, true, BUDGET);
+        assertEquals(39, end.order[39]);
+        TourOptimizer.Result free = TourOptimizer.optimize(dist, false, false, BUDGET);
+        assertTrue(free.length <= both.length + 1e-6);
+
+        System.out.println("✓ Test 2 passed: free " + Math.round(free.length) + ", fixed ends " + Math.round(both.length));
+    }
+
+    /**
+     * Test 3: Never longer than the current order, and close to the optimum on small tours
+     */
+    @Test
+    @Order(3)
+    @DisplayName("Small tours are near-optimal and never worse than the input")
+    void smallTours_nearOptimal() {
+        double worstRatio = 1;
+        for (int seed = 0; seed < 20; seed++) {
+            double[][] dist = matrix(randomPoints(8, seed));
+            TourOptimizer.Result result = TourOptimizer.optimize(dist, false, false, BUDGET);
+            assertPermutation(result.order);
+            assertEquals(TourOptimizer.pathLength(dist, result.order), result.length, 1e-6);
+            assertTrue(result.length <= TourOptimizer.pathLength(dist, identity(8)) + 1e-6);
+
+            double optimum = bruteForce(dist);
+            worstRatio = Math.max(worstRatio, result.length / optimum);
+        }
+        assertTrue(worstRatio <= 1.05, "Worst ratio to optimum: " + worstRatio);
+
+        System.out.println("✓ Test 3 passed: worst ratio to optimum " + String.format("%.3f", worstRatio));
+    }
+
+    /**
+     * Test 4: 100 stops are optimized well within the budget
+     */
+    @Test
+    @Order(4)
+    @DisplayName("100-stop tour is optimized quickly")
+    void hundredStops_fast() {
+        double[][] dist = matrix(randomPoints(100, 5));
+        long start = System.nanoTime();
+        TourOptimizer.Result result = TourOptimizer.optimize(dist, false, false, BUDGET);
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        double original = TourOptimizer.pathLength(dist, identity(100));
+
+        assertPermutation(result.order);
+        assertFalse(result.timeBudgetReached);
+        assertTrue(millis < 1000, "Took " + millis + " ms");
+        assertTrue(result.length < original * 0.5, "Random order should shrink a lot: " + result.length + " vs " + original);
+
+        System.out.println("✓ Test 4 passed: " + Math.round(original) + " -> " + Math.round(result.length) + " in " + millis + " ms");
+    }
+
+    /**
+     * Test 5: A tiny time budget still returns a valid order
+     */
+    @Test
+    @Order(5)
+    @DisplayName("Time budget stops the search with a valid order")
+    void timeBudget_respected() {
+        double[][] dist = matrix(randomPoints(500, 9));
+        TourOptimizer.Result result = TourOptimizer.optimize(dist, true, false, 1_000_000L);
+
+        assertTrue(result.timeBudgetReached);
+        assertPermutation(result.order);
+        assertEquals(0, result.order[0]);
+        assertTrue(result.length <= TourOptimizer.pathLength(dist, identity(500)) + 1e-6);
+
+        System.out.println("✓ Test 5 passed: 500 stops, length " + Math.round(result.length) + " after budget");
+    }
+
+    private static double[][] randomPoints(int n, long seed) {
+        Random random = new Random(seed);
+        double[][] points = new double[n][2];
+        for (int i = 0; i < n; i++) {
+            points[i][0] = random.nextDouble() * 5000;
+            points[i][1] = random.nextDouble() * 5000;
+        }
+        return points;
+    }
+
+    private static double[][] matrix(double[][] points) {
+        int n = points.length;
+        double[][] dist = new double[n][n];
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < n; j++) {
+                dist[i][j] = Math.hypot(points[i][0] - points[j][0], points[i][1] - points[j][1]);
+            }
+        }
+        return dist;
+    }
+
+    private static int[] identity(int n) {
+        int[] order = new int[n];
+        for (int i = 0; i < n; i++) order[i] = i;
+        return order;
+    }
+
+    private static void assertPermutation(int[] order) {
+        boolean[] seen = new boolean[order.length];
+        for (int stop : order) {
+            assertFalse(seen[stop], "Stop " + stop + " visited twice");
+            seen[stop] = true;
+        }
+    }
+
+    private static double bruteForce(double[][] dist) {
+        return permute(dist, identity(dist.length), 0);
+    }
+
+    private static double permute(double[][] dist, int[] order, int k) {
+        if (k == order.length) {
+            return TourOptimizer.pathLength(dist, order);
+        }
+        double best = Double.POSITIVE_INFINITY;
+        for (int i = k; i < order.length; i++) {
+            int t = order[k]; order[k] = order[i]; order[i] = t;
+            best = Math.min(best, permute(dist, order, k + 1));
+            t = order[k]; order[k] = order[i]; order[i] = t;
+        }
+        return best;
+    }
+}